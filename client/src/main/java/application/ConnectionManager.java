@@ -1,5 +1,9 @@
 package application;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -9,11 +13,16 @@ import java.rmi.RemoteException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import Exceptions.InvalidEmailException;
 import Exceptions.InvalidPasswordException;
 import Exceptions.InvalidUserNameException;
 import applicationEvents.ConnectionEvent;
+import enumClasses.FacetType;
 import enumClasses.QueryParameter;
 import enumClasses.ServerServicesName;
 import interfaces.ServerServices;
@@ -22,6 +31,7 @@ import javafx.scene.control.Label;
 import objects.Account;
 import objects.Album;
 import objects.Artist;
+import objects.BinaryProtocol;
 import objects.Emotion;
 import objects.Packet;
 import objects.Playlist;
@@ -38,6 +48,8 @@ public class ConnectionManager implements ServerServices
 
     //Singleton pattern
     private static ConnectionManager manager;
+	//il modo di ricerca che tollera errori di battitura e parole mancanti, per canzoni, album e artisti
+	public static final int FUZZY_SEARCH_MODE = 3;
 	private ObjectsCache cache = ObjectsCache.getInstance();
 
 	private String defaultHostAddress = "127.0.0.1";
@@ -47,12 +59,32 @@ public class ConnectionManager implements ServerServices
 	private ObjectInputStream inputStream;
     private ObjectOutputStream outputStream;
 	private Socket clientSocket;
+	//protocollo binario, usato se il server lo supporta
+	private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+	private boolean binary = false;
+	private BinaryProtocol protocol = new BinaryProtocol();
+	private DataInputStream binaryInput;
+	private DataOutputStream binaryOutput;
 	private boolean connected = false;
 	private Label pingLable;
 
 	private HashMap<String, Object> requestResult = new HashMap<>();
 	private PacketLintener_thread packetLintener;
 
+	//le richieste fatte a breve distanza vengono raccolte in un unico pacchetto BATCH
+	private static final long BATCH_WINDOW_MS = 5;
+	private static final int MAX_BATCH_SIZE = 64;
+	private boolean batching = true;
+	private boolean serverSupportsBatch = true;
+	private long batchCounter = 0;
+	private ArrayList<Packet> pendingBatch = new ArrayList<>();
+	private HashMap<String, Packet[]> sentBatches = new HashMap<>();
+	private ScheduledExecutorService batchTimer = Executors.newSingleThreadScheduledExecutor((r) -> {
+		Thread t = new Thread(r, "BatchTimer");
+		t.setDaemon(true);
+		return t;
+	});
+
 	
 
     private ConnectionManager() {
@@ -255,18 +287,22 @@ public class ConnectionManager implements ServerServices
 		try	{
 			//provo a creare un socket e i relativi streams.
 			//se va a buon fine, vuoldire che mi sono collegato al server
-			Socket clientSocket  = new Socket(hostAddress, hostPort);
-			this.clientSocket = clientSocket;
+			//provo prima il protocollo binario, se il server non lo supporta uso la serializzazione Java
+			if(!connectBinary()) {
+				Socket clientSocket  = new Socket(hostAddress, hostPort);
+				this.clientSocket = clientSocket;
 
-			this.outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
-			this.inputStream = new ObjectInputStream(clientSocket.getInputStream());
+				this.outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
+				this.inputStream = new ObjectInputStream(clientSocket.getInputStream());
+			}
 
 			
 			System.out.println("ConnectionManager - connected to EmotionalSongs_services");
 			//timeline.setCycleCount(Timeline.INDEFINITE); // Imposta il conteggio ciclico infinito
 			//timeline.play();
 			connected = true;
-			requestResult.clear();
+			serverSupportsBatch = true;
+			clearPendingRequests();
 			notifyAll();
 			SceneManager.instance().fireEvent(SceneManager.ApplicationWinodws.EMOTIONALSONGS_WINDOW, new ConnectionEvent(ConnectionEvent.CONNECTED));
 			return true;
@@ -279,6 +315,40 @@ public class ConnectionManager implements ServerServices
 		return false;
 	}
 
+	/**
+	 * Prova a connettersi al server usando il protocollo binario.
+	 * Un server che non lo supporta risponde con l'intestazione della serializzazione Java oppure chiude la connessione.
+	 * @return true se il server ha accettato il protocollo binario.
+	 * @throws IOException Se non è possibile raggiungere il server.
+	 */
+	private boolean connectBinary() throws IOException
+	{
+		Socket socket = new Socket(hostAddress, hostPort);
+
+		try {
+			socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+			//il client accetta le risposte compresse, il server decide se usarle
+			BinaryProtocol.writeHandshake(output, BinaryProtocol.VERSION, BinaryProtocol.FEATURE_DEFLATE);
+			output.flush();
+			BinaryProtocol.readFeatures(input, BinaryProtocol.readHandshake(input));
+			socket.setSoTimeout(0);
+
+			this.clientSocket = socket;
+			this.binaryOutput = output;
+			this.binaryInput = input;
+			this.binary = true;
+			return true;
+		}
+		catch (IOException e) {
+			try {socket.close();} catch (IOException ex) {}
+			this.binary = false;
+			return false;
+		}
+	}
+
 	/**
 	 * Funzione che ritorna lo stato della connesione
 	 * @return
@@ -303,7 +373,7 @@ public class ConnectionManager implements ServerServices
 		}
 
 		SceneManager.instance().fireEvent(SceneManager.ApplicationWinodws.EMOTIONALSONGS_WINDOW, new ConnectionEvent(ConnectionEvent.DISCONNECTED));
-		requestResult.clear();
+		clearPendingRequests();
 		connected = false;
 		clientSocket = null;
 		notifyAll();
@@ -327,7 +397,7 @@ public class ConnectionManager implements ServerServices
 				} catch (IOException e) {
 					
 				}
-				requestResult.clear();
+				clearPendingRequests();
 				connected = false;
 				clientSocket = null;
 				notifyAll();
@@ -393,9 +463,19 @@ public class ConnectionManager implements ServerServices
 			
 			synchronized(this) {
 				try {
-					outputStream.writeObject(task);
-					outputStream.flush();
 					requestResult.put(myId, result);
+
+					if(isBatchable(task)) {
+						//la prima richiesta apre la finestra, le altre si aggiungono allo stesso BATCH
+						pendingBatch.add(task);
+						if(pendingBatch.size() == 1)
+							batchTimer.schedule(this::flushBatch, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+						else if(pendingBatch.size() >= MAX_BATCH_SIZE)
+							flushBatch();
+					}
+					else {
+						sendPacket(task);
+					}
 					notifyAll();
 				} catch (java.net.SocketException e) {
 					connetionLost();
@@ -444,6 +524,120 @@ public class ConnectionManager implements ServerServices
 		return result;
 	}
 
+	/**
+	 * Scrive un pacchetto sul socket con il protocollo in uso.
+	 * @param task Il pacchetto da inviare.
+	 * @throws IOException Se si riscontrano problemi con la comunicazione con il server.
+	 */
+	private synchronized void sendPacket(Packet task) throws IOException
+	{
+		if(binary) {
+			protocol.writeRequest(binaryOutput, task.getId(), task.getServiceCommand(), task.getParameters());
+			binaryOutput.flush();
+		}
+		else {
+			outputStream.writeObject(task);
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * Verifica se una richiesta può essere raccolta in un BATCH.
+	 * PING e DISCONNECT vengono sempre inviati subito.
+	 */
+	private boolean isBatchable(Packet task) {
+		return batching && serverSupportsBatch
+			&& !ServerServicesName.PING.name().equals(task.getServiceCommand()) 
+			&& !ServerServicesName.DISCONNECT.name().equals(task.getServiceCommand());
+	}
+
+	/**
+	 * Invia le richieste raccolte durante la finestra: una richiesta da sola viene inviata così com'è,
+	 * più richieste vengono inviate in un unico pacchetto BATCH.
+	 */
+	private synchronized void flushBatch() 
+	{
+		if(pendingBatch.isEmpty())
+			return;
+
+		try {
+			if(pendingBatch.size() == 1) {
+				sendPacket(pendingBatch.get(0));
+			}
+			else {
+				Packet[] batch = pendingBatch.toArray(new Packet[0]);
+				Object[] requests = new Object[batch.length];
+				for (int i = 0; i < batch.length; i++)
+					requests[i] = new Object[]{batch[i].getServiceCommand(), batch[i].getParameters()};
+
+				String batchId = "batch-" + (++batchCounter);
+				sentBatches.put(batchId, batch);
+				sendPacket(new Packet(batchId, ServerServicesName.BATCH.name(), new Object[]{QueryParameter.REQUESTS.toString(), requests}));
+			}
+			pendingBatch.clear();
+		} 
+		catch (IOException e) {
+			System.out.println(e);
+			connetionLost();
+		}
+	}
+
+	/**
+	 * Consegna i risultati di un BATCH alle singole richieste.
+	 * Se il server non conosce il servizio BATCH, la raccolta viene disattivata e le richieste vengono inviate una alla volta.
+	 * @param batch Le richieste contenute nel BATCH.
+	 * @param result La risposta del server.
+	 * @throws IOException Se non è possibile inviare di nuovo le richieste.
+	 */
+	private synchronized void completeBatch(Packet[] batch, Object result) throws IOException
+	{
+		if(result instanceof Object[] && ((Object[]) result).length == batch.length) {
+			Object[] results = (Object[]) result;
+			for (int i = 0; i < batch.length; i++)
+				setResult(batch[i].getId(), results[i]);
+		}
+		else if(result instanceof RejectedExecutionException) {
+			//server occupato: ogni richiesta riceve l'errore, come se fosse stata inviata da sola
+			for (Packet task : batch)
+				setResult(task.getId(), result);
+		}
+		else {
+			System.out.println("ConnectionManager - BATCH not supported by the server: " + result);
+			serverSupportsBatch = false;
+			for (Packet task : batch)
+				if(requestResult.containsKey(task.getId()))
+					sendPacket(task);
+		}
+	}
+
+	/**
+	 * Salva il risultato di una richiesta, se è ancora in attesa.
+	 */
+	private synchronized void setResult(String id, Object result) {
+		if(requestResult.containsKey(id) && requestResult.get(id) == null) {
+			requestResult.put(id, result);
+		}
+	}
+
+	/**
+	 * Scarta tutte le richieste in attesa di risposta.
+	 */
+	private synchronized void clearPendingRequests() {
+		requestResult.clear();
+		pendingBatch.clear();
+		sentBatches.clear();
+	}
+
+	/**
+	 * Attiva o disattiva la raccolta automatica delle richieste in pacchetti BATCH.
+	 * @param enabled true per raccogliere le richieste fatte a breve distanza.
+	 */
+	public synchronized void setBatching(boolean enabled) {
+		this.batching = enabled;
+		if(!enabled)
+			flushBatch();
+	}
+
 	/**
 	 * Questa classe gestiscele le risposte del server.
 	 */
@@ -485,14 +679,28 @@ public class ConnectionManager implements ServerServices
 	private void getPackets() throws ClassNotFoundException 
 	{
 		try {
-			String id = (String) inputStream.readObject();
-			Object result = inputStream.readObject();
+			String id;
+			Object result;
+
+			if(binary) {
+				Object[] response = BinaryProtocol.readResponse(binaryInput);
+				id = (String) response[0];
+				result = response[1];
+			}
+			else {
+				id = (String) inputStream.readObject();
+				result = inputStream.readObject();
+			}
 
 			//salvo il risultato e avviso
 			synchronized(this) {
+				Packet[] batch = sentBatches.remove(id);
 
-				if(requestResult.containsKey(id) && requestResult.get(id) == null) {
-					requestResult.put(id, result);
+				if(batch != null) {
+					completeBatch(batch, result);
+				}
+				else {
+					setResult(id, result);
 				}
 				notifyAll();
 			}
@@ -537,7 +745,10 @@ public class ConnectionManager implements ServerServices
 		String key = service;
 
 		for (int i = 0; i < parametre.length; i++) {
-			if(parametre[i].getClass() == Long.class) {
+			if(parametre[i] == null) {
+				key += "null";
+			}
+			else if(parametre[i].getClass() == Long.class) {
 				key += Long.toString((long)parametre[i]);
 			}
 			else if(parametre[i].getClass() == String.class) {
@@ -677,7 +888,7 @@ public class ConnectionManager implements ServerServices
 	public ArrayList<Song> getMostPopularSongs(long limit, long offset) throws Exception 
 	{
 		try {
-			Object[] params = new Object[]{QueryParameter.LIMIT.toString(), limit,QueryParameter.OFFSET.toString(), offset};
+			Object[] params = new Object[]{QueryParameter.LIMIT.toString(), limit,QueryParameter.OFFSET.toString(), offset, QueryParameter.CURSOR.toString(), null};
 			Packet p = new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.GET_MOST_POPULAR_SONGS.name(), params);
 			
 			//verifico se il dato è già presente in cache
@@ -688,7 +899,8 @@ public class ConnectionManager implements ServerServices
 				return (ArrayList<Song>) cacheResult;
 			}
 			
-			Object result = makeRequest(p);
+			//il server restituisce anche il cursore della pagina successiva, che qui non serve
+			Object result = ((Object[]) makeRequest(p))[0];
 			cache.addItem(ObjectsCache.CacheObjectType.QUERY, key, result, true);
 			
 			return (ArrayList<Song>) result;
@@ -711,7 +923,7 @@ public class ConnectionManager implements ServerServices
 		
 		try {
 			//verifico se il dato è già presente in cache
-			Object[] params = new Object[]{QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset, QueryParameter.THRESHOLD.toString(), threshold};
+			Object[] params = new Object[]{QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset, QueryParameter.CURSOR.toString(), null, QueryParameter.THRESHOLD.toString(), threshold};
 			Packet p = new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.GET_RECENT_PUPLISCED_ALBUMS.name(), params);
 			String key = generateKey(p);
 			Object cacheResult = cache.getItem(ObjectsCache.CacheObjectType.QUERY, key);
@@ -720,7 +932,8 @@ public class ConnectionManager implements ServerServices
 				return (ArrayList<Album>) cacheResult;
 			}
 		
-			Object result = makeRequest(p);
+			//il server restituisce anche il cursore della pagina successiva, che qui non serve
+			Object result = ((Object[]) makeRequest(p))[0];
 			
 			cache.addItem(ObjectsCache.CacheObjectType.QUERY, key, result, true);
 			return (ArrayList<Album>) result;
@@ -735,17 +948,20 @@ public class ConnectionManager implements ServerServices
 	 * Per ricercare una canzone
 	 * @param searchString prefisso con cui deve incominciare la parola
 	 * @param limit numero massimo di risultati
-	 * @param offset numero di risultati da saltare
-	 * @param mode 0: ricerca per nome, 1: ricerca per anno, 2: ricerca per numero emozioni
+	 * @param offset numero di risultati da saltare, usato se il cursore è null
+	 * @param cursor il cursore restituito con la pagina precedente per ottenere la successiva, oppure null
+	 * @param mode 0: ricerca per nome, 1: ricerca per anno, 2: ricerca per numero emozioni, FUZZY_SEARCH_MODE: ricerca approssimata
+	 * @return il numero di risultati, la lista delle canzoni e il cursore della pagina successiva (null se non c'è)
 	 */
 	@SuppressWarnings("unchecked")
-	public Object[] searchSongs(String searchString, long limit, long offset, int mode) throws Exception 
+	public Object[] searchSongs(String searchString, long limit, long offset, String cursor, int mode) throws Exception 
 	{
 		try {
 			Object[] params = new Object[]{
 				QueryParameter.SEARCH_STRING.toString(), searchString, 
 				QueryParameter.LIMIT.toString(), limit, 
 				QueryParameter.OFFSET.toString(), offset,
+				QueryParameter.CURSOR.toString(), cursor,
 				QueryParameter.MODE.toString(), mode
 			}; 
 
@@ -789,12 +1005,15 @@ public class ConnectionManager implements ServerServices
 	 * Per ricercare una canzone
 	 * @param searchString prefisso con cui deve incominciare la parola
 	 * @param limit numero massimo di risultati
-	 * @param offset numero di risultati da saltare
+	 * @param offset numero di risultati da saltare, usato se il cursore è null
+	 * @param cursor il cursore restituito con la pagina precedente per ottenere la successiva, oppure null
+	 * @param mode 0: ricerca per nome, FUZZY_SEARCH_MODE: ricerca approssimata
+	 * @return il numero di risultati, la lista degli album e il cursore della pagina successiva (null se non c'è)
 	 */
 	@SuppressWarnings("unchecked")
-	public Object[] searchAlbums(String searchString, long limit, long offset) throws Exception {
+	public Object[] searchAlbums(String searchString, long limit, long offset, String cursor, int mode) throws Exception {
 		try {
-			Object[] params = new Object[]{QueryParameter.SEARCH_STRING.toString(), searchString, QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset};
+			Object[] params = new Object[]{QueryParameter.SEARCH_STRING.toString(), searchString, QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset, QueryParameter.CURSOR.toString(), cursor, QueryParameter.MODE.toString(), mode};
 			Packet p = new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.SEARCH_ALBUMS.name(), params);
 			
 			String key = generateKey(p);
@@ -828,14 +1047,17 @@ public class ConnectionManager implements ServerServices
 	 * Per ricercare una canzone
 	 * @param searchString prefisso con cui deve incominciare la parola
 	 * @param limit numero massimo di risultati
-	 * @param offset numero di risultati da saltare
+	 * @param offset numero di risultati da saltare, usato se il cursore è null
+	 * @param cursor il cursore restituito con la pagina precedente per ottenere la successiva, oppure null
+	 * @param mode 0: ricerca per nome, FUZZY_SEARCH_MODE: ricerca approssimata
+	 * @return il numero di risultati, la lista degli artisti e il cursore della pagina successiva (null se non c'è)
 	 */
 	@Override
 	@SuppressWarnings("unchecked")
-	public Object[] searchArtists(String searchString, long limit, long offset) {
+	public Object[] searchArtists(String searchString, long limit, long offset, String cursor, int mode) {
 
 		try {
-			Object[] params = new Object[]{QueryParameter.SEARCH_STRING.toString(), searchString, QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset};
+			Object[] params = new Object[]{QueryParameter.SEARCH_STRING.toString(), searchString, QueryParameter.LIMIT.toString(), limit, QueryParameter.OFFSET.toString(), offset, QueryParameter.CURSOR.toString(), cursor, QueryParameter.MODE.toString(), mode};
 			Packet p = new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.SEARCH_ARTISTS.name(), params);
 			
 			String key = generateKey(p);
@@ -864,6 +1086,56 @@ public class ConnectionManager implements ServerServices
 		}
 	}
 
+	/**
+	 * Per ottenere i completamenti del testo scritto nel campo di ricerca
+	 * @param prefix il testo scritto finora
+	 * @param limit numero massimo di suggerimenti
+	 * @return un array con tre array di String: i nomi suggeriti, il tipo di ogni elemento (SuggestionType) e il suo ID
+	 */
+	@Override
+	public Object[] getSuggestions(String prefix, long limit) throws Exception {
+		Object[] params = new Object[]{
+			QueryParameter.SEARCH_STRING.toString(), prefix,
+			QueryParameter.LIMIT.toString(), limit
+		};
+
+		Object result = makeRequest(new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.SUGGEST.name(), params));
+
+		if(result instanceof Exception)
+			throw (Exception) result;
+
+		return (Object[])result;
+	}
+
+	/**
+	 * Per cercare le canzoni combinando i filtri per anno, genere, fascia di popolarità ed emozione con più voti.
+	 * I valori dello stesso filtro sono in alternativa, filtri diversi devono essere tutti soddisfatti.
+	 * @param filters per ogni facet i valori ammessi
+	 * @param limit numero di record massimi che si vuole avere come risultato
+	 * @param offset numero di record da saltare
+	 * @return un array con il numero totale di canzoni trovate, la lista di Song dalla più popolare e una HashMap
+	 *         che associa al nome di ogni facet (FacetType) una HashMap con il numero di canzoni di ogni suo valore
+	 */
+	@Override
+	public Object[] facetSearch(HashMap<FacetType, String[]> filters, long limit, long offset) throws Exception {
+		HashMap<String, Object> facets = new HashMap<String, Object>();
+		for (FacetType type : filters.keySet())
+			facets.put(type.name(), filters.get(type));
+
+		Object[] params = new Object[]{
+			QueryParameter.FACETS.toString(), facets,
+			QueryParameter.LIMIT.toString(), limit,
+			QueryParameter.OFFSET.toString(), offset
+		};
+
+		Object result = makeRequest(new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.FACET_SEARCH.name(), params));
+
+		if(result instanceof Exception)
+			throw (Exception) result;
+
+		return (Object[])result;
+	}
+
 	/**
 	 * Funzione per ottenere degli oggetti "Song" specificando i loro ID
 	 */
@@ -1270,6 +1542,52 @@ public class ConnectionManager implements ServerServices
 		
 		return (ArrayList<Emotion>)result;
 	}
+
+
+	/**
+	 * Funzione per ottenere il riepilogo delle emozioni di una canzone, senza le singole emozioni
+	 * @param songID L'id della canzone
+	 * @return un array con il numero totale di voti e una HashMap che associa al nome di ogni tipo di emozione votato
+	 * un array con il numero di voti e il valore medio
+	 */
+	@Override
+	public Object[] getEmotionSummary(String songID) throws Exception {
+		Object[] params = new Object[]{
+			QueryParameter.SONG_ID.toString(), songID,
+		};
+
+		Object result = makeRequest(new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.GET_SONG_EMOTION_SUMMARY.name(), params));
+		
+		if(result instanceof Exception)
+			throw (Exception) result;
+		
+		return (Object[])result;
+	}
+
+
+	/**
+	 * Funzione per ottenere una pagina dei commenti di una canzone
+	 * @param songID L'id della canzone
+	 * @param limit numero massimo di commenti
+	 * @param cursor il cursore restituito con la pagina precedente, null per la prima pagina
+	 * @return un array con la lista di emozioni con un commento e il cursore della pagina successiva, null se la pagina è l'ultima
+	 */
+	@Override
+	public Object[] getSongComments(String songID, long limit, String cursor) throws Exception {
+		Object[] params = new Object[]{
+			QueryParameter.SONG_ID.toString(), songID,
+			QueryParameter.LIMIT.toString(), limit,
+			QueryParameter.OFFSET.toString(), 0L,
+			QueryParameter.CURSOR.toString(), cursor,
+		};
+
+		Object result = makeRequest(new Packet(Long.toString(Thread.currentThread().getId()), ServerServicesName.GET_COMMENTS_SONG.name(), params));
+		
+		if(result instanceof Exception)
+			throw (Exception) result;
+		
+		return (Object[])result;
+	}
 }
 
 
@@ -74,7 +74,8 @@ public class CommentArea extends ControllerBase implements Initializable, Inject
 
         new Thread(() -> {
             try {
-                ArrayList<Emotion> list = connectionManager.getEmotions(song.getId());
+                Object[] page = connectionManager.getSongComments(song.getId(), 1, null);
+                ArrayList<Emotion> list = (ArrayList<Emotion>) page[0];
             
                 if(list.size() == 0) {
                      Platform.runLater(() -> {
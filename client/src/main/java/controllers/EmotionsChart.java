@@ -2,7 +2,6 @@ package controllers;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.ResourceBundle;
 
@@ -21,7 +20,6 @@ import javafx.scene.control.Tooltip;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
-import objects.Emotion;
 
 public class EmotionsChart extends ControllerBase implements Initializable, Injectable 
 {
@@ -38,7 +36,8 @@ public class EmotionsChart extends ControllerBase implements Initializable, Inje
     @FXML public Label imgLabel;
     @FXML public Label mediaLabel;
 
-    private ArrayList<Emotion> listaEmozini;
+    private long totaleVoti;
+    private HashMap<String, Object[]> riepilogo;
 
 
     @Override
@@ -52,9 +51,12 @@ public class EmotionsChart extends ControllerBase implements Initializable, Inje
     @Override
     public void injectData(Object... data) {
         
-        listaEmozini = (ArrayList<Emotion>) data[0];
+        //data[0]: riepilogo restituito da GET_SONG_EMOTION_SUMMARY
+        Object[] summary = (Object[]) data[0];
+        totaleVoti = (long) summary[0];
+        riepilogo = (HashMap<String, Object[]>) summary[1];
 
-        if(listaEmozini.size() == 0) {
+        if(totaleVoti == 0) {
             StackPane sp = (StackPane)chartContainer.getParent();
             sp.getChildren().remove(chartContainer);
             
@@ -64,7 +66,7 @@ public class EmotionsChart extends ControllerBase implements Initializable, Inje
             StackPane sp = (StackPane)chartContainer.getParent();
             sp.getChildren().remove(labelContainer);
 
-            labelTotUsers.setText(Main.applicationLanguage == 0 ? "Commenti Totali: " + listaEmozini.size() : "Total Comments: " + listaEmozini.size());
+            labelTotUsers.setText(Main.applicationLanguage == 0 ? "Commenti Totali: " + totaleVoti : "Total Comments: " + totaleVoti);
             InitializePieChart();
         }
 
@@ -76,31 +78,12 @@ public class EmotionsChart extends ControllerBase implements Initializable, Inje
        
     }
 
-    private class Node {
-        public long count = 0;
-        public long summ = 0;
-    }
-
-
     private void InitializePieChart() {
         
         ObservableList<PieChart.Data> pieData = FXCollections.observableArrayList();
      
 
-        HashMap<EmotionType, Node> conteggioEmozioni = new HashMap<>();
-        final long total_emotion = listaEmozini.size();
-
-        //inizilizzo tutto 0
-        for (EmotionType e : enumClasses.EmotionType.values()) {
-            conteggioEmozioni.put(e, new Node());
-        }
-
-        //conto i valori
-        for (Emotion e : listaEmozini) {
-            Node n = conteggioEmozioni.get(e.getEmotionType());
-            n.count++;
-            n.summ += e.getEmotionValue();
-        }
+        final long total_emotion = totaleVoti;
 
         StringBuilder sb = new StringBuilder();
         sb.append(chart.getStyle() + "\n");
@@ -110,13 +93,18 @@ public class EmotionsChart extends ControllerBase implements Initializable, Inje
         
         for (EmotionType e : enumClasses.EmotionType.values()) 
         {
-            if(conteggioEmozioni.get(e).count != 0) {
-                PieChart.Data p = new PieChart.Data(e.getName(), conteggioEmozioni.get(e).count);
+            //i tipi senza voti non sono presenti nel riepilogo
+            Object[] valori = riepilogo.get(e.toString());
+            long count = valori != null ? (long) valori[0] : 0;
+            double media = valori != null ? (double) valori[1] : 0;
+
+            if(count != 0) {
+                PieChart.Data p = new PieChart.Data(e.getName(), count);
                 pieData.add(p); 
             }
                        
             EmotionsChartKeys_Controller controller = (EmotionsChartKeys_Controller) sceneManager.injectScene(SceneManager.SceneElemets.CHART_KEYS.getElemetFilePath(), Vbox_keys);
-            controller.injectData(e, conteggioEmozioni.get(e).count, conteggioEmozioni.get(e).summ);
+            controller.injectData(e, count, media);
         }
    
 
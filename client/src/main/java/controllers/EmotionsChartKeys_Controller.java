@@ -40,8 +40,8 @@ public class EmotionsChartKeys_Controller extends ControllerBase implements Init
             everageLabel.setText("-");
         }
         else {
-            this.everage = (double)(((long) data[2])/this.numer);
-            everageLabel.setText(Double.toString(everage));
+            this.everage = (double) data[2];
+            everageLabel.setText(String.format("%.2f", everage));
         }
 
         emotionTypeLabel.setText(emotionType.getName());
@@ -61,6 +61,9 @@ public class MainPage_ElementDisplayer_Controller extends ControllerBase impleme
     @FXML public Button spotifyButton;
 
 
+    //numero di commenti caricati per pagina
+    private static final int COMMENTS_PAGE = 20;
+
     @FXML public ListView<Object> listView;
     private Object displayedElement;
     private ElementDisplayerMode mode;
@@ -257,25 +260,18 @@ public class MainPage_ElementDisplayer_Controller extends ControllerBase impleme
         
         try {
             new Thread(() -> {
-                ArrayList<Emotion> list;
                 try {
-                    list = connectionManager.getEmotions(song.getId());
-                    //if(list.size() != 0) {
+                    //per il grafico basta il riepilogo, i commenti vengono caricati una pagina alla volta
+                    Object[] summary = connectionManager.getEmotionSummary(song.getId());
                     Platform.runLater(() -> {
-                            EmotionsChart emotionsChart = (EmotionsChart) SceneManager.instance().injectScene(SceneManager.SceneElemets.CHART.getElemetFilePath(), elementContainer);
-                            emotionsChart.injectData(list);
-                        //}
+                        EmotionsChart emotionsChart = (EmotionsChart) SceneManager.instance().injectScene(SceneManager.SceneElemets.CHART.getElemetFilePath(), elementContainer);
+                        emotionsChart.injectData(summary);
 
                         CommentArea commentArea = (CommentArea)SceneManager.instance().injectScene(SceneManager.SceneElemets.COMMENT_AREA.getElemetFilePath(), elementContainer);
                         commentArea.injectData(song);
                     });
 
-                    for (Emotion emotion : list) {
-                        Platform.runLater(() -> {
-                            CommentListCell_Controller controller = (CommentListCell_Controller)SceneManager.instance().injectScene(SceneManager.SceneElemets.COMMENT_VIEW.getElemetFilePath(), elementContainer);
-                            controller.injectData(emotion);
-                        });
-                    }
+                    loadComments(song, null);
 
                 } catch (Exception e) {
                     // TODO Auto-generated catch block
@@ -373,6 +369,48 @@ public class MainPage_ElementDisplayer_Controller extends ControllerBase impleme
 
 
 
+    /**
+     * Carica una pagina dei commenti della canzone e la aggiunge in fondo alla pagina.
+     * I commenti arrivano dal più recente; quelli scritti prima degli ID ordinati nel tempo seguono tutti gli altri,
+     * in un ordine non cronologico.
+     * Se ci sono altri commenti aggiunge un pulsante che carica la pagina successiva.
+     * Da chiamare fuori dal thread di JavaFX.
+     * @param song la canzone mostrata
+     * @param cursor il cursore restituito con la pagina precedente, null per la prima pagina
+     */
+    @SuppressWarnings("unchecked")
+    private void loadComments(Song song, String cursor) throws Exception
+    {
+        Object[] page = connectionManager.getSongComments(song.getId(), COMMENTS_PAGE, cursor);
+        ArrayList<Emotion> list = (ArrayList<Emotion>) page[0];
+        String next = (String) page[1];
+
+        Platform.runLater(() -> {
+            for (Emotion emotion : list) {
+                CommentListCell_Controller controller = (CommentListCell_Controller)SceneManager.instance().injectScene(SceneManager.SceneElemets.COMMENT_VIEW.getElemetFilePath(), elementContainer);
+                controller.injectData(emotion);
+            }
+
+            if(next != null) {
+                Button moreButton = new Button(Main.applicationLanguage == 0 ? "Mostra altri commenti" : "Show more comments");
+                elementContainer.getChildren().add(moreButton);
+
+                moreButton.setOnAction(event -> {
+                    elementContainer.getChildren().remove(moreButton);
+                    new Thread(() -> {
+                        try {
+                            loadComments(song, next);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }).start();
+                });
+            }
+        });
+    }
+
+
+
     private void setupAsAlbum(Object... data) throws Exception 
     {
         final Album album = (Album) displayedElement;
@@ -2,11 +2,14 @@ package controllers;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.kordamp.ikonli.javafx.FontIcon;
 
+import application.ConnectionManager;
 import application.Main;
 import application.SceneManager;
 import application.SceneManager.SceneElemets;
@@ -43,6 +46,12 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     private long currentPage = 0;
     private long availablePage = 0;
 
+    //il cursore con cui chiedere una pagina, restituito dal server insieme alla pagina precedente:
+    //le pagine senza cursore (la prima e quelle raggiunte con un salto) vengono chieste con l'offset
+    private final Map<Long, String> pageCursors = new ConcurrentHashMap<>();
+    //se la ricerca per nome non trova niente viene ripetuta con la ricerca approssimata, che tollera gli errori di battitura
+    private volatile boolean fuzzy = false;
+
 
     @FXML public Button songNameButtonFilter;
     @FXML public Button songDateButtonFilter;
@@ -92,6 +101,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
         else {
             currentPage = 0;
         }
+        pageCursors.clear();
+        fuzzy = false;
 
 
         
@@ -112,31 +123,48 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     {
         try {
             Object[] result = new Object[2];
+            String cursor = pageCursors.get(index);
 
             System.out.println("filterType: " + filterType);
 
+            int nameMode = fuzzy ? ConnectionManager.FUZZY_SEARCH_MODE : 0;
+
             switch (filterType) {
                 
                 case SONG_NAME -> {
-                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, 0);
+                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, cursor, nameMode);
                 }
                 case SONG_DATE -> {
-                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, 1);
+                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, cursor, 1);
                 }
                 case ALBUM_NAME -> {
-                    result = connectionManager.searchAlbums(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE);
+                    result = connectionManager.searchAlbums(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, cursor, nameMode);
                 }
                 case ARTIST_NAME -> {
-                    result = connectionManager.searchArtists(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE);
+                    result = connectionManager.searchArtists(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, cursor, nameMode);
                 }
                 case EMOTION_NUMBER -> {
-                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, 2);
+                    result = connectionManager.searchSongs(key, MAX_ELEMENT_FOR_PAGE, index*MAX_ELEMENT_FOR_PAGE, cursor, 2);
                 }
             }
 
+            //la pagina successiva verrà chiesta continuando da questa invece di saltare index*MAX_ELEMENT_FOR_PAGE risultati
+            if(result.length > 2 && result[2] != null) {
+                pageCursors.put(index + 1, (String) result[2]);
+            }
+
             if(caricaPrercedente_e_successivo == false) {
                 return;
             }
+
+            //nessun risultato per nome: la chiave potrebbe contenere un errore di battitura
+            boolean nameFilter = filterType == FilterType.SONG_NAME || filterType == FilterType.ALBUM_NAME || filterType == FilterType.ARTIST_NAME;
+            if(!fuzzy && nameFilter && index == 0 && (long) result[0] == 0 && !key.isBlank()) {
+                fuzzy = true;
+                pageCursors.clear();
+                makeResearch(index, true);
+                return;
+            }
            
 
             final Object list =  result[1];
@@ -167,7 +195,10 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
             elementContainer.getChildren().clear();
 
             pageIndex.setText((index+1) + (Main.applicationLanguage == 0 ? " di " : " of ") + (availablePage));
-            resultLabel.setText((Main.applicationLanguage == 0 ? "Risultati trovat: " : "Results found: ") + totalResult);
+            if(fuzzy)
+                resultLabel.setText((Main.applicationLanguage == 0 ? "Risultati simili trovati: " : "Similar results found: ") + totalResult);
+            else
+                resultLabel.setText((Main.applicationLanguage == 0 ? "Risultati trovat: " : "Results found: ") + totalResult);
             
             if(totalResult == 0) {
                 pageIndex.setText((Main.applicationLanguage == 0 ? "nessun risultato" : "no result"));
@@ -272,6 +303,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     @FXML
     public void songNameButton_click(ActionEvent event) {
         currentPage = 0;
+        pageCursors.clear();
+        fuzzy = false;
         MainPage_Search_Controller.filterType = FilterType.SONG_NAME;
         changeButtonColor();
         new Thread(() -> {
@@ -282,6 +315,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     @FXML
     public void songDateButton_click(ActionEvent event) {
         currentPage = 0;
+        pageCursors.clear();
+        fuzzy = false;
         MainPage_Search_Controller.filterType = FilterType.SONG_DATE;
         String s = searchBox.getText();
         changeButtonColor();
@@ -308,6 +343,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     @FXML
     public void albumNameButton_click(ActionEvent event) {
         currentPage = 0;
+        pageCursors.clear();
+        fuzzy = false;
         MainPage_Search_Controller.filterType = FilterType.ALBUM_NAME;
         changeButtonColor();
         new Thread(() -> {
@@ -318,6 +355,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     @FXML
     public void artistNameButton_click(ActionEvent event) {
         currentPage = 0;
+        pageCursors.clear();
+        fuzzy = false;
         MainPage_Search_Controller.filterType = FilterType.ARTIST_NAME;
         changeButtonColor();
         new Thread(() -> {
@@ -328,6 +367,8 @@ public class MainPage_Search_Controller extends ControllerBase implements Initia
     @FXML
     public void emotionNumberButton_click(ActionEvent event) {
         currentPage = 0;
+        pageCursors.clear();
+        fuzzy = false;
         MainPage_Search_Controller.filterType = FilterType.EMOTION_NUMBER;
         changeButtonColor();
         new Thread(() -> {
@@ -7,6 +7,10 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.kordamp.ikonli.javafx.FontIcon;
 
@@ -16,16 +20,22 @@ import application.SceneManager;
 import application.FileManager.FileType;
 import application.SceneManager.ApplicationScene;
 import applicationEvents.SceneChangeEvent;
+import enumClasses.SuggestionType;
 import interfaces.Injectable;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Side;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -34,6 +44,7 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import objects.SceneAction;
 
 /**
@@ -85,6 +96,20 @@ public class MainPage_SideBar_Controller extends ControllerBase implements Initi
     private final String ButtonColor = "-fx-background-color: #f18100f6;" + "-fx-text-fill:#ffffff;";
     protected int state = 1;
 
+    //i suggerimenti vengono chiesti solo quando l'utente smette di scrivere per SUGGEST_DELAY_MS millisecondi
+    private static final int SUGGEST_DELAY_MS = 150;
+    private static final int SUGGESTIONS = 8;
+
+    private PauseTransition suggestDelay = new PauseTransition(Duration.millis(SUGGEST_DELAY_MS));
+    private ContextMenu suggestionsMenu = new ContextMenu();
+    private AtomicLong suggestRequest = new AtomicLong();
+    private Future<?> pendingSuggest;
+    private static ExecutorService suggestThread = Executors.newSingleThreadExecutor((r) -> {
+        Thread t = new Thread(r, "suggestions");
+        t.setDaemon(true);
+        return t;
+    });
+
 
 
 
@@ -117,6 +142,7 @@ public class MainPage_SideBar_Controller extends ControllerBase implements Initi
         }
 
         setupActionButtons();
+        suggestDelay.setOnFinished((e) -> requestSuggestions());
         try {
             setLogo();
         } catch (Exception e) {
@@ -183,10 +209,71 @@ public class MainPage_SideBar_Controller extends ControllerBase implements Initi
 
         if(((int)event.getCharacter().charAt(0)) == 13) {
             String key = searchField.getText().replace("\n", "").replace("\r", "").replace("\t", "");
-            sceneManager.setScene(SceneManager.ApplicationWinodws.EMOTIONALSONGS_WINDOW, SceneManager.ApplicationScene.MAIN_PAGE_SEARCH, this, key);
+            openSearch(key);
+        }
+        else {
+            suggestDelay.playFromStart();
         }
+    }
 
-        
+    private void openSearch(String key) {
+        //i suggerimenti ancora in arrivo non servono più
+        suggestRequest.incrementAndGet();
+        suggestDelay.stop();
+        suggestionsMenu.hide();
+        sceneManager.setScene(SceneManager.ApplicationWinodws.EMOTIONALSONGS_WINDOW, SceneManager.ApplicationScene.MAIN_PAGE_SEARCH, this, key);
+    }
+
+    /**
+     * Chiede al server i completamenti del testo scritto nella barra di ricerca.
+     * Ogni richiesta ha un numero crescente: le risposte di una richiesta superata da una più recente vengono scartate
+     * e se la richiesta precedente non è ancora partita viene annullata.
+     */
+    private void requestSuggestions() {
+        String prefix = searchField.getText().trim();
+        long request = suggestRequest.incrementAndGet();
+        if(pendingSuggest != null)
+            pendingSuggest.cancel(false);
+
+        if(prefix.isEmpty()) {
+            suggestionsMenu.hide();
+            return;
+        }
+
+        pendingSuggest = suggestThread.submit(() -> {
+            if(request != suggestRequest.get())
+                return;
+            try {
+                Object[] result = connectionManager.getSuggestions(prefix, SUGGESTIONS);
+                Platform.runLater(() -> {
+                    if(request == suggestRequest.get())
+                        showSuggestions(result);
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void showSuggestions(Object[] result) {
+        String[] names = (String[]) result[0];
+        String[] types = (String[]) result[1];
+
+        suggestionsMenu.getItems().clear();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            MenuItem item = new MenuItem(name + "  -  " + SuggestionType.valueOf(types[i]).getLabel());
+            item.setOnAction((e) -> {
+                searchField.setText(name);
+                openSearch(name);
+            });
+            suggestionsMenu.getItems().add(item);
+        }
+
+        if(names.length == 0 || !searchField.isFocused())
+            suggestionsMenu.hide();
+        else if(!suggestionsMenu.isShowing())
+            suggestionsMenu.show(searchField, Side.BOTTOM, 0, 0);
     }
 
     @FXML
@@ -0,0 +1,30 @@
+package enumClasses;
+
+import application.Main;
+
+/**
+ * Questa classe rappresenta i filtri della ricerca a faccette delle canzoni
+ */
+public enum FacetType {
+
+    YEAR("Anno", "Year"),
+    GENRE("Genere", "Genre"),
+    POPULARITY("Popolarit\u00E0", "Popularity"),
+    EMOTION("Emozione", "Emotion");
+
+
+    private String italian;
+    private String english;
+
+    private FacetType(String italian, String english) {
+        this.italian = italian;
+        this.english = english;
+    }
+
+    /**
+     * @return il nome del filtro nella lingua dell'applicazione
+     */
+    public String getLabel() {
+        return Main.applicationLanguage == 0 ? italian : english;
+    }
+}
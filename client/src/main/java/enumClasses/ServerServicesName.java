@@ -14,12 +14,15 @@ public enum ServerServicesName
     SEARCH_SONGS,
     SEARCH_ALBUMS,
     SEARCH_ARTISTS,
+    SUGGEST,
+    FACET_SEARCH,
 
     //utility
     GET_MOST_POPULAR_SONGS,
     GET_RECENT_PUPLISCED_ALBUMS,
     DISCONNECT,
     PING,
+    BATCH,
     
     //song
     GET_SONG_BY_IDS,
@@ -47,6 +50,7 @@ public enum ServerServicesName
     ADD_EMOTION,
     REMOVE_EMOTION,
     GET_SONG_EMOTION,
+    GET_SONG_EMOTION_SUMMARY,
     GET_COMMENTS_SONG_FOR_ACCOUNT,
     GET_COMMENTS_SONG,
     GET_ACCOUNT_EMOTIONS;
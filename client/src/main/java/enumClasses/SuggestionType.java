@@ -0,0 +1,29 @@
+package enumClasses;
+
+import application.Main;
+
+/**
+ * Questa classe rappresenta il tipo di elemento di un suggerimento ricevuto dal servizio SUGGEST
+ */
+public enum SuggestionType {
+
+    SONG("Canzone", "Song"),
+    ALBUM("Album", "Album"),
+    ARTIST("Artista", "Artist");
+
+
+    private String italian;
+    private String english;
+
+    private SuggestionType(String italian, String english) {
+        this.italian = italian;
+        this.english = english;
+    }
+
+    /**
+     * @return il nome del tipo nella lingua dell'applicazione
+     */
+    public String getLabel() {
+        return Main.applicationLanguage == 0 ? italian : english;
+    }
+}
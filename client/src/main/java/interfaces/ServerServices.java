@@ -3,10 +3,12 @@ package interfaces;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import Exceptions.InvalidEmailException;
 import Exceptions.InvalidPasswordException;
 import Exceptions.InvalidUserNameException;
+import enumClasses.FacetType;
 import objects.Account;
 import objects.Album;
 import objects.Artist;
@@ -29,9 +31,11 @@ public interface ServerServices {
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //ricerca
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    public Object[] searchSongs(String searchString, long limit, long offset, int mode) throws Exception;
-    public Object[] searchAlbums(String searchString, long limit, long offset) throws Exception;
-    public Object[] searchArtists(String searchString, long limit, long offset) throws RemoteException;
+    public Object[] searchSongs(String searchString, long limit, long offset, String cursor, int mode) throws Exception;
+    public Object[] searchAlbums(String searchString, long limit, long offset, String cursor, int mode) throws Exception;
+    public Object[] searchArtists(String searchString, long limit, long offset, String cursor, int mode) throws RemoteException;
+    public Object[] getSuggestions(String prefix, long limit) throws Exception;
+    public Object[] facetSearch(HashMap<FacetType, String[]> filters, long limit, long offset) throws Exception;
 
     //canzoni
     public ArrayList<Song> getSongByIDs(String[] IDs) throws Exception;
@@ -50,5 +54,7 @@ public interface ServerServices {
     public boolean addEmotion(String userID, String songID, String emotionType, int value, String comment) throws Exception;
     public boolean removeEmotion(String id) throws Exception;
     public Object getEmotions(String songID) throws Exception;
+    public Object getEmotionSummary(String songID) throws Exception;
+    public Object getSongComments(String songID, long limit, String cursor) throws Exception;
 }
 
@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -128,6 +131,45 @@ public class Album implements Serializable {
         return artistID;
     }
 
-    
-    
+
+    /**
+     * Costruisce l'album leggendolo dal formato del protocollo binario.
+     * @param in Lo stream da cui leggere.
+     * @throws IOException Se si verifica un errore durante la lettura.
+     */
+    public Album(DataInputStream in) throws IOException
+    {
+        this.ID = BinaryProtocol.readString(in);
+        this.name = BinaryProtocol.readString(in);
+        this.releaseDate = BinaryProtocol.readString(in);
+        this.spotifyURL = BinaryProtocol.readString(in);
+        this.type = BinaryProtocol.readString(in);
+        this.element = (int) BinaryProtocol.readVarLong(in);
+        this.artistID = BinaryProtocol.readString(in);
+        int count = BinaryProtocol.readCount(in);
+        for (int i = 0; i < count; i++)
+            songID_list.add(BinaryProtocol.readString(in));
+        BinaryProtocol.readImages(in, images);
+    }
+
+
+    /**
+     * Scrive l'album nel formato del protocollo binario.
+     * @param out Lo stream su cui scrivere.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, ID);
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, releaseDate);
+        BinaryProtocol.writeString(out, spotifyURL);
+        BinaryProtocol.writeString(out, type);
+        BinaryProtocol.writeVarLong(out, element);
+        BinaryProtocol.writeString(out, artistID);
+        BinaryProtocol.writeLength(out, songID_list.size());
+        for (String value : songID_list)
+            BinaryProtocol.writeString(out, value);
+        BinaryProtocol.writeImages(out, images);
+    }
 }
@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -70,4 +73,36 @@ public class Artist implements Serializable
     public int getPopularity() {
         return popularity;
     }
+
+
+    /**
+     * Costruisce l'artista leggendolo dal formato del protocollo binario.
+     * @param in Lo stream da cui leggere.
+     * @throws IOException Se si verifica un errore durante la lettura.
+     */
+    public Artist(DataInputStream in) throws IOException
+    {
+        this.id = BinaryProtocol.readString(in);
+        this.name = BinaryProtocol.readString(in);
+        this.spotifyURL = BinaryProtocol.readString(in);
+        this.followers = BinaryProtocol.readVarLong(in);
+        this.popularity = (int) BinaryProtocol.readVarLong(in);
+        BinaryProtocol.readImages(in, images);
+    }
+
+
+    /**
+     * Scrive l'artista nel formato del protocollo binario.
+     * @param out Lo stream su cui scrivere.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, spotifyURL);
+        BinaryProtocol.writeVarLong(out, followers);
+        BinaryProtocol.writeVarLong(out, popularity);
+        BinaryProtocol.writeImages(out, images);
+    }
 }
@@ -0,0 +1,849 @@
+package objects;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Protocollo binario compatto usato al posto della serializzazione Java di {@link Packet} e dei risultati.
+ *
+ * Appena connesso, il client invia {@code MAGIC} seguito dalla versione più alta che supporta e il server risponde
+ * con {@code MAGIC} e la versione scelta. Dalla versione 2 la versione è seguita da un byte con le funzionalità
+ * che il client accetta ({@code FEATURE_DEFLATE}) e il server risponde con quelle abilitate.
+ * Un client che usa ancora la serializzazione Java invia invece l'intestazione
+ * di ObjectOutputStream (0xACED), che il server riconosce per continuare con il vecchio protocollo.
+ *
+ * Dopo l'handshake ogni messaggio è un frame formato dalla sua lunghezza (int) seguita dal contenuto:
+ * una richiesta contiene id, comando e parametri, una risposta contiene id e risultato.
+ * Se la compressione è stata negoziata, i frame più grandi della soglia vengono compressi con deflate
+ * e il bit più alto della lunghezza lo segnala.
+ * I valori sono preceduti da un tag che ne indica il tipo; gli oggetti del progetto hanno un codec scritto a mano,
+ * gli altri oggetti serializzabili vengono inviati con la serializzazione Java.
+ *
+ * Un'istanza riutilizza lo stesso buffer per comporre i frame e non è thread safe.
+ */
+public class BinaryProtocol
+{
+    public static final byte[] MAGIC = {'E', 'S', 'B', 'P'};
+    public static final int VERSION = 2;
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    //capacità massima allocata prima di leggere gli elementi di un array o di una collezione
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    //funzionalità negoziate nell'handshake
+    public static final int FEATURE_DEFLATE = 1;
+    private static final int COMPRESSED_FLAG = 0x80000000;
+
+    //tag dei valori
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte OBJECT_ARRAY = 7;
+    private static final byte STRING_ARRAY = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+    private static final byte SONG = 11;
+    private static final byte ALBUM = 12;
+    private static final byte ARTIST = 13;
+    private static final byte PLAYLIST = 14;
+    private static final byte EMOTION = 15;
+    private static final byte IMAGE = 16;
+    private static final byte ACCOUNT = 17;
+    private static final byte RESIDENZE = 18;
+    private static final byte EXCEPTION = 19;
+    private static final byte SERIALIZED = 20;
+
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private DataOutputStream body = new DataOutputStream(buffer);
+
+    //0 se i frame inviati non vengono compressi
+    private int compressionThreshold = 0;
+    private Deflater deflater;
+    private byte[] compressed;
+
+    //contatori della compressione di tutte le connessioni
+    private static AtomicLong compressedFrames = new AtomicLong(0);
+    private static AtomicLong uncompressedBytes = new AtomicLong(0);
+    private static AtomicLong compressedBytes = new AtomicLong(0);
+    private static AtomicLong compressionNanos = new AtomicLong(0);
+    private static AtomicLong incompressibleFrames = new AtomicLong(0);
+    private static AtomicLong decompressionNanos = new AtomicLong(0);
+
+
+
+/**
+ * Verifica se i primi due byte ricevuti su una connessione sono l'inizio dell'handshake del protocollo binario.
+ *
+ * @param first Il primo byte ricevuto.
+ * @param second Il secondo byte ricevuto.
+ * @return true se il client usa il protocollo binario, false se usa la serializzazione Java.
+ */
+    public static boolean isBinaryHandshake(int first, int second) {
+        return first == MAGIC[0] && second == MAGIC[1];
+    }
+
+
+
+/**
+ * Scrive l'handshake: {@code MAGIC} seguito dalla versione e, dalla versione 2, dalle funzionalità.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param version La versione proposta (client) o scelta (server).
+ * @param features Le funzionalità accettate (client) o abilitate (server).
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public static void writeHandshake(DataOutputStream out, int version, int features) throws IOException
+    {
+        out.write(MAGIC);
+        out.writeByte(version);
+        if(version >= 2)
+            out.writeByte(features);
+    }
+
+
+
+/**
+ * Restituisce la lunghezza dell'handshake per una versione.
+ *
+ * @param version La versione letta dopo {@code MAGIC}.
+ * @return Il numero di byte dell'handshake.
+ */
+    public static int handshakeLength(int version) {
+        return MAGIC.length + (version >= 2 ? 2 : 1);
+    }
+
+
+
+/**
+ * Legge l'handshake inviato dall'altro lato della connessione.
+ *
+ * @param in Lo stream da cui leggere.
+ * @return La versione ricevuta.
+ * @throws IOException Se i byte ricevuti non sono un handshake valido.
+ */
+    public static int readHandshake(DataInputStream in) throws IOException
+    {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+
+        for (int i = 0; i < MAGIC.length; i++)
+            if(magic[i] != MAGIC[i])
+                throw new StreamCorruptedException("invalid protocol handshake");
+
+        int version = in.readUnsignedByte();
+        if(version < 1)
+            throw new StreamCorruptedException("invalid protocol version " + version);
+        return version;
+    }
+
+
+
+/**
+ * Legge le funzionalità che seguono la versione nell'handshake.
+ *
+ * @param in Lo stream da cui leggere.
+ * @param version La versione restituita da {@link #readHandshake(DataInputStream)}.
+ * @return Le funzionalità ricevute, 0 per la versione 1.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public static int readFeatures(DataInputStream in, int version) throws IOException {
+        return version >= 2 ? in.readUnsignedByte() : 0;
+    }
+
+
+
+/**
+ * Risponde all'handshake di un client (lato server) e abilita la compressione se il client la accetta.
+ *
+ * @param in Lo stream da cui leggere l'handshake del client.
+ * @param out Lo stream su cui scrivere la risposta, che non viene svuotato.
+ * @param compressionThreshold La dimensione minima dei frame da comprimere, 0 per non comprimere.
+ * @return La versione scelta.
+ * @throws IOException Se l'handshake non è valido.
+ */
+    public int acceptHandshake(DataInputStream in, DataOutputStream out, int compressionThreshold) throws IOException
+    {
+        int clientVersion = readHandshake(in);
+        int clientFeatures = readFeatures(in, clientVersion);
+        int version = Math.min(VERSION, clientVersion);
+
+        int features = 0;
+        if(compressionThreshold > 0 && (clientFeatures & FEATURE_DEFLATE) != 0) {
+            features |= FEATURE_DEFLATE;
+            setCompressionThreshold(compressionThreshold);
+        }
+
+        writeHandshake(out, version, features);
+        return version;
+    }
+
+
+
+/**
+ * Abilita la compressione dei frame inviati con questa istanza.
+ *
+ * @param threshold La dimensione minima in byte dei frame da comprimere, 0 per disabilitare la compressione.
+ */
+    public void setCompressionThreshold(int threshold)
+    {
+        this.compressionThreshold = Math.max(0, threshold);
+        if(compressionThreshold > 0 && deflater == null) {
+            //senza intestazione zlib: la lunghezza del frame basta a delimitare i dati
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+            compressed = new byte[8192];
+        }
+    }
+
+
+
+/**
+ * Scrive un frame di richiesta.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param id L'identificativo della richiesta.
+ * @param command Il servizio richiesto.
+ * @param parameters Le coppie chiave, valore dei parametri.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeRequest(DataOutputStream out, String id, String command, Object[] parameters) throws IOException
+    {
+        writeString(body, id);
+        writeString(body, command);
+        writeValue(body, parameters);
+        writeFrame(out);
+    }
+
+
+
+/**
+ * Scrive un frame di risposta.
+ * Se il risultato non può essere codificato, al suo posto viene inviata l'eccezione.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param id L'identificativo della richiesta a cui si risponde.
+ * @param result Il risultato della richiesta.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeResponse(DataOutputStream out, String id, Object result) throws IOException
+    {
+        try {
+            writeString(body, id);
+            writeValue(body, result);
+        }
+        catch (NotSerializableException e) {
+            //il client riceve l'errore al posto del risultato, la connessione resta utilizzabile
+            buffer.reset();
+            writeString(body, id);
+            writeValue(body, e);
+        }
+        writeFrame(out);
+    }
+
+
+
+    private void writeFrame(DataOutputStream out) throws IOException
+    {
+        try {
+            if(buffer.size() > MAX_FRAME_SIZE)
+                throw new IOException("frame too large: " + buffer.size() + " bytes");
+
+            if(compressionThreshold > 0 && buffer.size() >= compressionThreshold && writeCompressedFrame(out))
+                return;
+
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+        }
+        finally {
+            buffer.reset();
+        }
+    }
+
+
+
+    //comprime il contenuto del buffer; se non si riduce, il frame viene inviato non compresso
+    private boolean writeCompressedFrame(DataOutputStream out) throws IOException
+    {
+        long start = System.nanoTime();
+        byte[] data = buffer.toByteArray();
+        if(compressed.length < data.length)
+            compressed = new byte[data.length];
+
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        int size = 0;
+        while(!deflater.finished() && size < data.length)
+            size += deflater.deflate(compressed, size, data.length - size);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(5);
+        writeLength(new DataOutputStream(header), data.length);
+
+        if(!deflater.finished() || header.size() + size >= data.length) {
+            compressionNanos.addAndGet(System.nanoTime() - start);
+            incompressibleFrames.incrementAndGet();
+            return false;
+        }
+
+        out.writeInt((header.size() + size) | COMPRESSED_FLAG);
+        header.writeTo(out);
+        out.write(compressed, 0, size);
+
+        compressionNanos.addAndGet(System.nanoTime() - start);
+        compressedFrames.incrementAndGet();
+        uncompressedBytes.addAndGet(data.length);
+        compressedBytes.addAndGet(header.size() + size);
+        return true;
+    }
+
+
+
+/**
+ * Legge un frame di richiesta.
+ *
+ * @param in Lo stream da cui leggere.
+ * @return Il pacchetto ricevuto.
+ * @throws IOException Se il frame non è valido o la connessione si interrompe.
+ */
+    public static Packet readRequest(DataInputStream in) throws IOException
+    {
+        DataInputStream frame = readFrame(in);
+
+        String id = readString(frame);
+        String command = readString(frame);
+        return new Packet(id, command, (Object[]) readValue(frame));
+    }
+
+
+
+/**
+ * Legge un frame di risposta.
+ *
+ * @param in Lo stream da cui leggere.
+ * @return Un array con l'identificativo della richiesta e il risultato.
+ * @throws IOException Se il frame non è valido o la connessione si interrompe.
+ */
+    public static Object[] readResponse(DataInputStream in) throws IOException
+    {
+        DataInputStream frame = readFrame(in);
+        return new Object[] {readString(frame), readValue(frame)};
+    }
+
+
+
+/**
+ * Restituisce la lunghezza del contenuto di un frame a partire dal suo primo int.
+ *
+ * @param header Il primo int del frame.
+ * @return La lunghezza del contenuto, senza il bit di compressione.
+ */
+    public static int frameLength(int header) {
+        return header & ~COMPRESSED_FLAG;
+    }
+
+
+
+    //il frame viene letto per intero, così un errore di decodifica non desincronizza lo stream
+    private static DataInputStream readFrame(DataInputStream in) throws IOException
+    {
+        int header = in.readInt();
+        int length = frameLength(header);
+        if(length > MAX_FRAME_SIZE)
+            throw new StreamCorruptedException("invalid frame length " + length);
+
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+
+        if((header & COMPRESSED_FLAG) != 0)
+            frame = decompress(frame);
+        return new DataInputStream(new ByteArrayInputStream(frame));
+    }
+
+
+
+    private static byte[] decompress(byte[] frame) throws IOException
+    {
+        long start = System.nanoTime();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int length = readLength(in);
+        int offset = frame.length - in.available();
+
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(frame, offset, frame.length - offset);
+            int size = 0;
+            while(size < length && !inflater.finished()) {
+                int n = inflater.inflate(data, size, length - size);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                size += n;
+            }
+            if(size != length)
+                throw new StreamCorruptedException("invalid compressed frame");
+        }
+        catch (DataFormatException e) {
+            throw new StreamCorruptedException("invalid compressed frame: " + e.getMessage());
+        }
+        finally {
+            inflater.end();
+            decompressionNanos.addAndGet(System.nanoTime() - start);
+        }
+        return data;
+    }
+
+
+
+/**
+ * @return Il numero di frame inviati compressi.
+ */
+    public static long getCompressedFrames() {
+        return compressedFrames.get();
+    }
+
+/**
+ * @return Il numero di frame sopra la soglia inviati non compressi perché la compressione non li riduceva.
+ */
+    public static long getIncompressibleFrames() {
+        return incompressibleFrames.get();
+    }
+
+/**
+ * @return I byte dei frame compressi prima della compressione.
+ */
+    public static long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+/**
+ * @return I byte dei frame compressi dopo la compressione.
+ */
+    public static long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+/**
+ * @return Il tempo totale speso a comprimere, in nanosecondi (compresi i tentativi non riusciti).
+ */
+    public static long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+/**
+ * @return Il tempo totale speso a decomprimere, in nanosecondi.
+ */
+    public static long getDecompressionNanos() {
+        return decompressionNanos.get();
+    }
+
+
+
+/**
+ * Scrive un valore preceduto dal tag del suo tipo.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param value Il valore da scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura o il valore non è serializzabile.
+ */
+    public static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if(value == null) {
+            out.writeByte(NULL);
+        }
+        else if(value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if(value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, (Integer) value);
+        }
+        else if(value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        }
+        else if(value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else if(value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if(value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if(value instanceof String[]) {
+            String[] array = (String[]) value;
+            out.writeByte(STRING_ARRAY);
+            writeLength(out, array.length);
+            for (String s : array)
+                writeString(out, s);
+        }
+        else if(value.getClass() == Object[].class) {
+            Object[] array = (Object[]) value;
+            out.writeByte(OBJECT_ARRAY);
+            writeLength(out, array.length);
+            for (Object o : array)
+                writeValue(out, o);
+        }
+        else if(value instanceof ArrayList) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            writeLength(out, list.size());
+            for (Object o : list)
+                writeValue(out, o);
+        }
+        else if(value instanceof HashMap) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            writeLength(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        else if(value instanceof Song) {
+            out.writeByte(SONG);
+            ((Song) value).writeBinary(out);
+        }
+        else if(value instanceof Album) {
+            out.writeByte(ALBUM);
+            ((Album) value).writeBinary(out);
+        }
+        else if(value instanceof Artist) {
+            out.writeByte(ARTIST);
+            ((Artist) value).writeBinary(out);
+        }
+        else if(value instanceof Playlist) {
+            out.writeByte(PLAYLIST);
+            ((Playlist) value).writeBinary(out);
+        }
+        else if(value instanceof Emotion) {
+            out.writeByte(EMOTION);
+            ((Emotion) value).writeBinary(out);
+        }
+        else if(value instanceof MyImage) {
+            out.writeByte(IMAGE);
+            ((MyImage) value).writeBinary(out);
+        }
+        else if(value instanceof Account) {
+            out.writeByte(ACCOUNT);
+            ((Account) value).writeBinary(out);
+        }
+        else if(value instanceof Residenze) {
+            out.writeByte(RESIDENZE);
+            ((Residenze) value).writeBinary(out);
+        }
+        else if(value instanceof Exception) {
+            //solo classe e messaggio: l'altro lato potrebbe non conoscere la classe (ad esempio le eccezioni del driver JDBC)
+            out.writeByte(EXCEPTION);
+            writeString(out, value.getClass().getName());
+            writeString(out, ((Exception) value).getMessage());
+        }
+        else {
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectStream = new ObjectOutputStream(serialized)) {
+                objectStream.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            writeLength(out, serialized.size());
+            serialized.writeTo(out);
+        }
+    }
+
+
+
+/**
+ * Legge un valore scritto con {@link #writeValue(DataOutputStream, Object)}.
+ *
+ * @param in Lo stream da cui leggere.
+ * @return Il valore letto.
+ * @throws IOException Se il valore non è valido.
+ */
+    public static Object readValue(DataInputStream in) throws IOException
+    {
+        byte tag = in.readByte();
+
+        switch (tag)
+        {
+            case NULL:          return null;
+            case STRING:        return readString(in);
+            case INTEGER:       return (int) readVarLong(in);
+            case LONG:          return readVarLong(in);
+            case BOOLEAN:       return in.readBoolean();
+            case DOUBLE:        return in.readDouble();
+            case FLOAT:         return in.readFloat();
+            case SONG:          return new Song(in);
+            case ALBUM:         return new Album(in);
+            case ARTIST:        return new Artist(in);
+            case PLAYLIST:      return new Playlist(in);
+            case EMOTION:       return new Emotion(in);
+            case IMAGE:         return new MyImage(in);
+            case ACCOUNT:       return new Account(in);
+            case RESIDENZE:     return new Residenze(in);
+            case EXCEPTION:     return readException(in);
+
+            case STRING_ARRAY: {
+                int size = readCount(in);
+                ArrayList<String> list = new ArrayList<>(initialCapacity(size));
+                for (int i = 0; i < size; i++)
+                    list.add(readString(in));
+                return list.toArray(new String[0]);
+            }
+            case OBJECT_ARRAY: {
+                int size = readCount(in);
+                ArrayList<Object> list = new ArrayList<>(initialCapacity(size));
+                for (int i = 0; i < size; i++)
+                    list.add(readValue(in));
+                return list.toArray();
+            }
+            case LIST: {
+                int size = readCount(in);
+                ArrayList<Object> list = new ArrayList<>(initialCapacity(size));
+                for (int i = 0; i < size; i++)
+                    list.add(readValue(in));
+                return list;
+            }
+            case MAP: {
+                int size = readCount(in);
+                HashMap<Object, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++)
+                    map.put(readValue(in), readValue(in));
+                return map;
+            }
+            case SERIALIZED: {
+                int length = readLength(in);
+                checkRemaining(in, length);
+                byte[] serialized = new byte[length];
+                in.readFully(serialized);
+                try (ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return objectStream.readObject();
+                }
+                catch (ClassNotFoundException e) {
+                    throw new StreamCorruptedException("unknown class: " + e.getMessage());
+                }
+            }
+            default:
+                throw new StreamCorruptedException("unknown value tag " + tag);
+        }
+    }
+
+
+
+    //ricrea l'eccezione se la classe è disponibile, altrimenti usa una Exception generica con lo stesso messaggio;
+    //la classe viene caricata senza inizializzarla e istanziata solo se è un'eccezione, perché il nome arriva dall'altro lato
+    private static Exception readException(DataInputStream in) throws IOException
+    {
+        String className = readString(in);
+        String message = readString(in);
+
+        try {
+            Class<?> exceptionClass = Class.forName(className, false, BinaryProtocol.class.getClassLoader());
+            if(Exception.class.isAssignableFrom(exceptionClass))
+                return exceptionClass.asSubclass(Exception.class).getConstructor(String.class).newInstance(message);
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+        }
+        return new Exception(message);
+    }
+
+
+
+/**
+ * Scrive una stringa (anche null) come lunghezza seguita dai byte UTF-8.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param value La stringa da scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if(value == null) {
+            writeLength(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLength(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+
+
+/**
+ * Legge una stringa scritta con {@link #writeString(DataOutputStream, String)}.
+ *
+ * @param in Lo stream da cui leggere.
+ * @return La stringa letta, eventualmente null.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public static String readString(DataInputStream in) throws IOException
+    {
+        int length = readLength(in);
+        if(length == 0)
+            return null;
+
+        checkRemaining(in, length - 1);
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+
+/**
+ * Scrive le immagini di un oggetto.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param images Le immagini indicizzate per dimensione.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public static void writeImages(DataOutputStream out, HashMap<String, MyImage> images) throws IOException
+    {
+        writeLength(out, images.size());
+        for (MyImage image : images.values())
+            image.writeBinary(out);
+    }
+
+
+
+/**
+ * Legge le immagini scritte con {@link #writeImages(DataOutputStream, HashMap)}.
+ *
+ * @param in Lo stream da cui leggere.
+ * @param images La mappa in cui inserire le immagini, indicizzate per dimensione.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public static void readImages(DataInputStream in, HashMap<String, MyImage> images) throws IOException
+    {
+        int count = readCount(in);
+        for (int i = 0; i < count; i++) {
+            MyImage image = new MyImage(in);
+            images.put(image.getSize(), image);
+        }
+    }
+
+
+
+/**
+ * Scrive un intero con segno in formato variabile (zig-zag): i valori piccoli occupano un solo byte.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param value Il valore da scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+/**
+ * @param in Lo stream da cui leggere.
+ * @return L'intero scritto con {@link #writeVarLong(DataOutputStream, long)}.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public static long readVarLong(DataInputStream in) throws IOException {
+        long value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+/**
+ * Scrive una lunghezza o un conteggio in formato variabile.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @param length La lunghezza, non negativa.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public static void writeLength(DataOutputStream out, int length) throws IOException {
+        writeUnsigned(out, length);
+    }
+
+/**
+ * @param in Lo stream da cui leggere.
+ * @return La lunghezza scritta con {@link #writeLength(DataOutputStream, int)}.
+ * @throws IOException Se la lunghezza non è valida.
+ */
+    public static int readLength(DataInputStream in) throws IOException
+    {
+        long length = readUnsigned(in);
+        if(length < 0 || length > MAX_FRAME_SIZE)
+            throw new StreamCorruptedException("invalid length " + length);
+        return (int) length;
+    }
+
+/**
+ * Legge il numero di elementi di un array o di una collezione. Ogni elemento occupa almeno un byte,
+ * quindi un numero maggiore dei byte rimasti nel frame non è valido e viene rifiutato prima di allocare qualcosa.
+ *
+ * @param in Il frame da cui leggere.
+ * @return Il numero di elementi scritto con {@link #writeLength(DataOutputStream, int)}.
+ * @throws IOException Se il numero non è valido.
+ */
+    public static int readCount(DataInputStream in) throws IOException
+    {
+        int count = readLength(in);
+        checkRemaining(in, count);
+        return count;
+    }
+
+/**
+ * @param count Il numero di elementi letto con {@link #readCount(DataInputStream)}.
+ * @return La capacità iniziale della collezione in cui leggerli: oltre questa la collezione cresce man mano che
+ * gli elementi arrivano, così un numero grande non alloca subito memoria che gli elementi non occuperanno.
+ */
+    public static int initialCapacity(int count) {
+        return Math.min(count, MAX_INITIAL_CAPACITY);
+    }
+
+
+
+    //i frame vengono decodificati da un ByteArrayInputStream, per cui available() sono esattamente i byte rimasti
+    private static void checkRemaining(DataInputStream in, int length) throws IOException
+    {
+        if(length > in.available())
+            throw new StreamCorruptedException("length " + length + " exceeds the " + in.available() + " bytes left in the frame");
+    }
+
+
+
+    private static void writeUnsigned(DataOutputStream out, long value) throws IOException
+    {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readUnsigned(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new StreamCorruptedException("invalid variable length number");
+    }
+}
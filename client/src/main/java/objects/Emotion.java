@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 
 import application.Main;
@@ -83,5 +86,39 @@ public class Emotion implements Serializable {
      */
     public String getID_Account() {
         return ID_Account;
-    } 
+    }
+
+
+    /**
+     * Costruisce l'emozione leggendola dal formato del protocollo binario.
+     * @param in Lo stream da cui leggere.
+     * @throws IOException Se si verifica un errore durante la lettura.
+     */
+    public Emotion(DataInputStream in) throws IOException
+    {
+        this.ID = BinaryProtocol.readString(in);
+        this.emotionType = BinaryProtocol.readString(in);
+        this.emotionValue = (int) BinaryProtocol.readVarLong(in);
+        this.emotionDate = BinaryProtocol.readString(in);
+        this.comment = BinaryProtocol.readString(in);
+        this.ID_Song = BinaryProtocol.readString(in);
+        this.ID_Account = BinaryProtocol.readString(in);
+    }
+
+
+    /**
+     * Scrive l'emozione nel formato del protocollo binario.
+     * @param out Lo stream su cui scrivere.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, ID);
+        BinaryProtocol.writeString(out, emotionType);
+        BinaryProtocol.writeVarLong(out, emotionValue);
+        BinaryProtocol.writeString(out, emotionDate);
+        BinaryProtocol.writeString(out, comment);
+        BinaryProtocol.writeString(out, ID_Song);
+        BinaryProtocol.writeString(out, ID_Account);
+    }
 }
@@ -1,6 +1,10 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -61,4 +65,43 @@ public class Playlist implements Serializable
     public String[] getSongsID() {
         return songsID;
     }
+
+
+    /**
+     * Costruisce la playlist leggendola dal formato del protocollo binario.
+     * @param in Lo stream da cui leggere.
+     * @throws IOException Se si verifica un errore durante la lettura.
+     */
+    public Playlist(DataInputStream in) throws IOException
+    {
+        this.id = BinaryProtocol.readString(in);
+        this.name = BinaryProtocol.readString(in);
+        this.data = BinaryProtocol.readString(in);
+        this.userID = BinaryProtocol.readString(in);
+        int count = BinaryProtocol.readCount(in);
+        if(count > 0) {
+            ArrayList<String> songs = new ArrayList<>(BinaryProtocol.initialCapacity(count - 1));
+            for (int i = 0; i < count - 1; i++)
+                songs.add(BinaryProtocol.readString(in));
+            this.songsID = songs.toArray(new String[0]);
+        }
+    }
+
+
+    /**
+     * Scrive la playlist nel formato del protocollo binario.
+     * @param out Lo stream su cui scrivere.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, data);
+        BinaryProtocol.writeString(out, userID);
+        BinaryProtocol.writeLength(out, songsID == null ? 0 : songsID.length + 1);
+        if(songsID != null)
+            for (String value : songsID)
+                BinaryProtocol.writeString(out, value);
+    }
 }
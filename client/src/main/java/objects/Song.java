@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 
@@ -103,4 +106,38 @@ public class Song implements Serializable
                ", Popularity: " + popularity +
                ", Album ID: " + albumId;
     }
+
+
+    /**
+     * Costruisce la canzone leggendola dal formato del protocollo binario.
+     * @param in Lo stream da cui leggere.
+     * @throws IOException Se si verifica un errore durante la lettura.
+     */
+    public Song(DataInputStream in) throws IOException
+    {
+        this.id = BinaryProtocol.readString(in);
+        this.title = BinaryProtocol.readString(in);
+        this.spotifyUrl = BinaryProtocol.readString(in);
+        this.durationMs = BinaryProtocol.readVarLong(in);
+        this.popularity = (int) BinaryProtocol.readVarLong(in);
+        this.albumId = BinaryProtocol.readString(in);
+        BinaryProtocol.readImages(in, images);
+    }
+
+
+    /**
+     * Scrive la canzone nel formato del protocollo binario.
+     * @param out Lo stream su cui scrivere.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, title);
+        BinaryProtocol.writeString(out, spotifyUrl);
+        BinaryProtocol.writeVarLong(out, durationMs);
+        BinaryProtocol.writeVarLong(out, popularity);
+        BinaryProtocol.writeString(out, albumId);
+        BinaryProtocol.writeImages(out, images);
+    }
 }
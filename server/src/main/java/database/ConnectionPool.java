@@ -0,0 +1,408 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.Terminal;
+
+
+/**
+ * Pool di connessioni al database PostgreSQL.
+ *
+ * Mantiene aperte almeno {@code minSize} connessioni e ne apre al massimo {@code maxSize}: quando sono tutte in uso
+ * i thread attendono fino a {@code borrowTimeout} millisecondi, poi ricevono una SQLTimeoutException.
+ * Una connessione rimasta inutilizzata a lungo viene verificata prima di essere prestata; una connessione
+ * non restituita entro {@code leakThreshold} millisecondi viene segnalata sul terminale insieme al punto in cui è stata presa.
+ */
+public class ConnectionPool
+{
+    public static final int DEFAULT_MIN_SIZE = 2;
+    public static final int DEFAULT_MAX_SIZE = 16;
+    public static final int DEFAULT_BORROW_TIMEOUT = 5000;
+    public static final int DEFAULT_LEAK_THRESHOLD = 30000;
+
+    //una connessione inutilizzata da più di questo tempo viene verificata prima del prestito
+    private static final long VALIDATION_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private static final int VALIDATION_TIMEOUT = 2;
+    //le connessioni oltre il minimo inutilizzate da più di questo tempo vengono chiuse
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+    private String url;
+    private Properties jdbcOptions;
+    private int minSize;
+    private int maxSize;
+    private long borrowTimeout;
+    private long leakThreshold;
+
+    private Semaphore permits;
+    //le connessioni usate più di recente sono in testa
+    private ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private ThreadLocal<PooledConnection> current = new ThreadLocal<>();
+    private ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private AtomicInteger size = new AtomicInteger(0);
+    private AtomicLong borrows = new AtomicLong(0);
+    private AtomicLong totalWaitNanos = new AtomicLong(0);
+    private AtomicLong maxWaitNanos = new AtomicLong(0);
+    private AtomicLong timeouts = new AtomicLong(0);
+    private AtomicLong created = new AtomicLong(0);
+    private AtomicLong validationFailures = new AtomicLong(0);
+    private AtomicLong leaks = new AtomicLong(0);
+    private AtomicLong preparedHits = new AtomicLong(0);
+    private AtomicLong preparedMisses = new AtomicLong(0);
+
+
+
+/**
+ * Crea il pool e apre le connessioni minime.
+ *
+ * @param url L'URL JDBC del database.
+ * @param jdbcOptions Le opzioni della connessione, compresi utente e password.
+ * @param minSize Il numero di connessioni da tenere sempre aperte.
+ * @param maxSize Il numero massimo di connessioni aperte.
+ * @param borrowTimeout L'attesa massima per una connessione, in millisecondi.
+ * @param leakThreshold Il tempo dopo il quale una connessione non restituita viene segnalata, in millisecondi; 0 disattiva il controllo.
+ * @throws SQLException Se non è possibile aprire le connessioni minime.
+ */
+    public ConnectionPool(String url, Properties jdbcOptions, int minSize, int maxSize, long borrowTimeout, long leakThreshold) throws SQLException
+    {
+        this.url = url;
+        this.jdbcOptions = jdbcOptions;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.borrowTimeout = Math.max(0, borrowTimeout);
+        this.leakThreshold = Math.max(0, leakThreshold);
+        this.permits = new Semaphore(this.maxSize, true);
+
+        try {
+            for (int i = 0; i < this.minSize; i++)
+                idle.addLast(open());
+        }
+        catch (SQLException e) {
+            close();
+            throw e;
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "Database-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, 1, 1, TimeUnit.SECONDS);
+    }
+
+
+
+/**
+ * Presta una connessione al thread corrente, attendendo se sono tutte in uso.
+ * Se il thread ha già una connessione in prestito riceve la stessa.
+ *
+ * @return Il prestito, da chiudere al termine dell'operazione.
+ * @throws SQLException Se il pool è chiuso, l'attesa supera il timeout o non è possibile aprire una nuova connessione.
+ */
+    public PooledConnection borrow() throws SQLException
+    {
+        PooledConnection lease = current.get();
+        if(lease != null) {
+            lease.enter();
+            return lease;
+        }
+
+        if(closed)
+            throw new SQLException("Connection pool closed");
+
+        long start = System.nanoTime();
+        try {
+            if(!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("No database connection available after " + borrowTimeout + " ms (" + maxSize + " in use)");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            lease = take();
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        long wait = System.nanoTime() - start;
+        borrows.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+
+        lease.owner = Thread.currentThread();
+        lease.borrowedAt = System.nanoTime();
+        lease.borrowTrace = leakThreshold > 0 ? new Throwable("Connection borrowed by " + lease.owner.getName()) : null;
+        lease.leakReported = false;
+        lease.enter();
+
+        active.add(lease);
+        current.set(lease);
+        return lease;
+    }
+
+
+
+    //prende una connessione libera valida oppure ne apre una nuova
+    private PooledConnection take() throws SQLException
+    {
+        PooledConnection lease;
+        while((lease = idle.pollFirst()) != null) {
+            if(System.nanoTime() - lease.lastUsed < VALIDATION_INTERVAL || isValid(lease))
+                return lease;
+
+            validationFailures.incrementAndGet();
+            discard(lease);
+        }
+        return open();
+    }
+
+
+
+    private boolean isValid(PooledConnection lease) {
+        try {
+            return lease.getConnection().isValid(VALIDATION_TIMEOUT);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+
+
+/**
+ * Riceve una connessione restituita dal thread che l'aveva presa.
+ *
+ * @param lease Il prestito terminato.
+ */
+    void release(PooledConnection lease)
+    {
+        current.remove();
+        active.remove(lease);
+        lease.owner = null;
+        lease.borrowTrace = null;
+        lease.lastUsed = System.nanoTime();
+
+        if(!closed && lease.reset())
+            idle.addFirst(lease);
+        else
+            discard(lease);
+
+        permits.release();
+    }
+
+
+
+    void preparedHit() {
+        preparedHits.incrementAndGet();
+    }
+
+    void preparedMiss() {
+        preparedMisses.incrementAndGet();
+    }
+
+
+
+    private PooledConnection open() throws SQLException
+    {
+        Connection connection = DriverManager.getConnection(url, jdbcOptions);
+        size.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(this, connection);
+    }
+
+
+
+    private void discard(PooledConnection lease) {
+        lease.closePhysical();
+        size.decrementAndGet();
+    }
+
+
+
+    //segnala i prestiti troppo lunghi, chiude le connessioni in eccesso inutilizzate e riapre quelle minime
+    private void housekeeping()
+    {
+        try {
+            long now = System.nanoTime();
+
+            if(leakThreshold > 0) {
+                for (PooledConnection lease : active) {
+                    Throwable trace = lease.borrowTrace;
+                    if(!lease.leakReported && trace != null && now - lease.borrowedAt > TimeUnit.MILLISECONDS.toNanos(leakThreshold)) {
+                        lease.leakReported = true;
+                        leaks.incrementAndGet();
+                        reportLeak(trace, now - lease.borrowedAt);
+                    }
+                }
+            }
+
+            //la coda contiene in fondo le connessioni usate meno di recente
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while(size.get() > minSize && iterator.hasNext()) {
+                PooledConnection lease = iterator.next();
+                if(now - lease.lastUsed > IDLE_TIMEOUT && idle.removeLastOccurrence(lease))
+                    discard(lease);
+            }
+
+            while(!closed && size.get() < minSize && permits.tryAcquire()) {
+                try {
+                    idle.addLast(open());
+                }
+                finally {
+                    permits.release();
+                }
+            }
+        }
+        catch (Exception e) {
+            Terminal.getInstance().printErrorln("Database pool: " + e.getMessage());
+        }
+    }
+
+
+
+    private void reportLeak(Throwable trace, long heldNanos)
+    {
+        StringBuilder message = new StringBuilder("Possible connection leak: " + trace.getMessage() + " held for " + TimeUnit.NANOSECONDS.toMillis(heldNanos) + " ms");
+        for (StackTraceElement element : trace.getStackTrace())
+            message.append("\n\tat ").append(element);
+        Terminal.getInstance().printErrorln(message.toString());
+    }
+
+
+
+/**
+ * Chiude il pool e le connessioni libere. Le connessioni in prestito vengono chiuse quando sono restituite.
+ */
+    public void close()
+    {
+        closed = true;
+        if(housekeeper != null)
+            housekeeper.shutdownNow();
+
+        PooledConnection lease;
+        while((lease = idle.pollFirst()) != null)
+            discard(lease);
+    }
+
+
+
+/**
+ * @return Il numero di connessioni in prestito.
+ */
+    public int getActive() {
+        return active.size();
+    }
+
+/**
+ * @return Il numero di connessioni aperte e libere.
+ */
+    public int getIdle() {
+        return idle.size();
+    }
+
+/**
+ * @return Il numero di thread in attesa di una connessione.
+ */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+/**
+ * @return Il numero minimo di connessioni aperte.
+ */
+    public int getMinSize() {
+        return minSize;
+    }
+
+/**
+ * @return Il numero massimo di connessioni aperte.
+ */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+/**
+ * @return Il numero di prestiti concessi.
+ */
+    public long getBorrows() {
+        return borrows.get();
+    }
+
+/**
+ * @return Il tempo totale di attesa dei prestiti, in nanosecondi.
+ */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+/**
+ * @return L'attesa più lunga di un prestito, in nanosecondi.
+ */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+/**
+ * @return Il numero di richieste scadute senza ricevere una connessione.
+ */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+/**
+ * @return Il numero di connessioni aperte dalla creazione del pool.
+ */
+    public long getCreated() {
+        return created.get();
+    }
+
+/**
+ * @return Il numero di connessioni scartate perché non più valide.
+ */
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+/**
+ * @return Il numero di prestiti segnalati come possibili perdite.
+ */
+    public long getLeaks() {
+        return leaks.get();
+    }
+
+/**
+ * @return Il numero di esecuzioni che hanno riusato un PreparedStatement già preparato sulla connessione.
+ */
+    public long getPreparedHits() {
+        return preparedHits.get();
+    }
+
+/**
+ * @return Il numero di query preparate per la prima volta su una connessione.
+ */
+    public long getPreparedMisses() {
+        return preparedMisses.get();
+    }
+}
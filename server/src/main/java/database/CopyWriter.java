@@ -0,0 +1,318 @@
+package database;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Tabelle;
+import server.Terminal;
+
+
+/**
+ * Scrive le righe di una tabella nel database con il comando COPY, invece di una INSERT costruita come testo per ogni riga.
+ *
+ * Le righe vengono codificate nel formato testo di COPY e raccolte in blocchi. Ogni blocco pieno passa al thread del
+ * writer, che lo copia in una tabella di appoggio senza vincoli mentre chi legge il dataset continua con le righe
+ * successive; la coda dei blocchi è limitata, così se il database è più lento della lettura chi aggiunge le righe aspetta.
+ *
+ * Alla chiusura le righe della tabella di appoggio passano nella tabella con una sola query che, come il caricamento
+ * riga per riga, scarta i duplicati e le righe che riferiscono un elemento mancante. Per questo i writer vanno chiusi
+ * nell'ordine delle tabelle, da quelle riferite a quelle che le riferiscono.
+ */
+public class CopyWriter implements AutoCloseable
+{
+    //caratteri di un blocco copiato con un solo comando COPY
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    //blocchi pieni in attesa di essere copiati
+    private static final int QUEUE_SIZE = 4;
+    private static final Chunk END = new Chunk(null, 0);
+
+    private final Tabelle table;
+    private final Colonne[] columns;
+    private final DatabaseManager database;
+    private final String copyQuery;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+
+    private StringBuilder chunk = new StringBuilder();
+    private int pending = 0;
+    private long rows = 0;
+    private long rejected = 0;
+    private volatile long copied = 0;
+    private volatile long failed = 0;
+    private volatile long copyTime = 0;
+    private long inserted = 0;
+    private long mergeTime = 0;
+    private boolean closed = false;
+
+
+
+    private static class Chunk
+    {
+        final StringBuilder text;
+        final int rows;
+
+        Chunk(StringBuilder text, int rows) {
+            this.text = text;
+            this.rows = rows;
+        }
+    }
+
+
+
+/**
+ * Crea il writer della tabella, creando da capo la sua tabella di appoggio, e avvia il thread che copia i blocchi.
+ *
+ * @param table La tabella da caricare.
+ * @throws SQLException Se non è possibile creare la tabella di appoggio.
+ */
+    public CopyWriter(Tabelle table) throws SQLException
+    {
+        this.table = table;
+        this.columns = PredefinedSQLCode.tablesAttributes.get(table);
+        this.database = DatabaseManager.getInstance();
+        this.copyQuery = QueryBuilder.copyQuery(table);
+
+        //una tabella di appoggio rimasta da un caricamento interrotto viene sostituita
+        database.submitQuery(QueryBuilder.dropStagingTable_query_creator(table));
+        database.submitQuery(QueryBuilder.createStagingTable_query_creator(table));
+
+        this.thread = new Thread(this::copyChunks, "CopyWriter-" + table);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+
+
+/**
+ * Aggiunge una riga alla tabella. I valori vanno indicati nell'ordine delle colonne della tabella
+ * in {@link PredefinedSQLCode#tablesAttributes}.
+ *
+ * Una riga con un valore null, con un testo più lungo della colonna o con un carattere nullo viene scartata
+ * subito: nel caricamento riga per riga la sua INSERT fallirebbe, mentre qui farebbe fallire l'intero blocco.
+ *
+ * @param values I valori della riga.
+ * @return true se la riga è stata aggiunta, false se è stata scartata.
+ * @throws SQLException Se il writer è già stato chiuso o se il thread viene interrotto mentre aspetta la coda.
+ */
+    public synchronized boolean add(Object... values) throws SQLException
+    {
+        if(closed)
+            throw new SQLException("the writer of " + table + " is closed");
+        if(values.length != columns.length)
+            throw new IllegalArgumentException(table + " has " + columns.length + " columns, " + values.length + " values given");
+
+        int mark = chunk.length();
+        for (int i = 0; i < values.length; i++) {
+            if(i > 0)
+                chunk.append('\t');
+
+            if(!appendValue(columns[i], values[i])) {
+                chunk.setLength(mark);
+                rejected++;
+                return false;
+            }
+        }
+        chunk.append('\n');
+        pending++;
+        rows++;
+
+        if(chunk.length() >= CHUNK_SIZE)
+            flush();
+        return true;
+    }
+
+
+
+    private boolean appendValue(Colonne column, Object value)
+    {
+        if(value == null)
+            return false;
+
+        String text = value.toString();
+        int length = column.getLength();
+        if(length >= 0 && text.length() > length && text.codePointCount(0, text.length()) > length)
+            return false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> chunk.append("\\\\");
+                case '\t' -> chunk.append("\\t");
+                case '\n' -> chunk.append("\\n");
+                case '\r' -> chunk.append("\\r");
+                case '\0' -> { return false; }
+                default -> chunk.append(c);
+            }
+        }
+        return true;
+    }
+
+
+
+    private void flush() throws SQLException
+    {
+        if(pending == 0)
+            return;
+
+        try {
+            queue.put(new Chunk(chunk, pending));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while loading " + table, e);
+        }
+        chunk = new StringBuilder();
+        pending = 0;
+    }
+
+
+
+/**
+ * Il ciclo del thread del writer: copia i blocchi nella tabella di appoggio finché non riceve la fine delle righe.
+ * Un blocco rifiutato dal database viene contato tra le righe fallite e il caricamento continua con i successivi.
+ */
+    private void copyChunks()
+    {
+        while (true) {
+            Chunk next;
+            try {
+                next = queue.take();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            if(next == END)
+                return;
+
+            long start = System.nanoTime();
+            try {
+                database.copyIn(copyQuery, new StringReader(next.text.toString()));
+                copied += next.rows;
+            }
+            catch (SQLException | IOException e) {
+                failed += next.rows;
+                Terminal.getInstance().printErrorln("COPY " + table + " failed, " + next.rows + " rows lost: " + e.getMessage());
+            }
+            copyTime += System.nanoTime() - start;
+        }
+    }
+
+
+
+/**
+ * Copia le ultime righe, aspetta il thread del writer e inserisce nella tabella le righe della tabella di appoggio,
+ * che poi viene eliminata.
+ *
+ * @throws SQLException Se l'inserimento delle righe o l'eliminazione della tabella di appoggio non riesce.
+ */
+    @Override
+    public synchronized void close() throws SQLException
+    {
+        if(closed)
+            return;
+
+        flush();
+        closed = true;
+        finish();
+
+        long start = System.nanoTime();
+        try {
+            inserted = database.submitUpdateQuery(QueryBuilder.mergeStagingTable_query_creator(table));
+        }
+        finally {
+            mergeTime = System.nanoTime() - start;
+            database.submitQuery(QueryBuilder.dropStagingTable_query_creator(table));
+        }
+    }
+
+
+
+/**
+ * Interrompe il caricamento senza inserire le righe nella tabella ed elimina la tabella di appoggio.
+ *
+ * @throws SQLException Se l'eliminazione della tabella di appoggio non riesce.
+ */
+    public synchronized void abort() throws SQLException
+    {
+        if(closed)
+            return;
+
+        closed = true;
+        queue.clear();
+        finish();
+        database.submitQuery(QueryBuilder.dropStagingTable_query_creator(table));
+    }
+
+
+
+    private void finish() throws SQLException
+    {
+        try {
+            queue.put(END);
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while loading " + table, e);
+        }
+    }
+
+
+
+    public Tabelle getTable() {
+        return table;
+    }
+
+/**
+ * @return Le righe aggiunte al writer, senza quelle scartate.
+ */
+    public synchronized long getRows() {
+        return rows;
+    }
+
+/**
+ * @return Le righe scartate da {@link #add(Object...)} perché non valide per la tabella.
+ */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+/**
+ * @return Le righe copiate nella tabella di appoggio.
+ */
+    public long getCopied() {
+        return copied;
+    }
+
+/**
+ * @return Le righe dei blocchi rifiutati dal database.
+ */
+    public long getFailed() {
+        return failed;
+    }
+
+/**
+ * @return Il tempo passato dal thread del writer nei comandi COPY, in nanosecondi.
+ */
+    public long getCopyTime() {
+        return copyTime;
+    }
+
+/**
+ * @return Le righe inserite nella tabella alla chiusura, senza i duplicati e le righe con una chiave esterna mancante.
+ */
+    public synchronized long getInserted() {
+        return inserted;
+    }
+
+/**
+ * @return Il tempo dell'inserimento delle righe nella tabella alla chiusura, in nanosecondi.
+ */
+    public synchronized long getMergeTime() {
+        return mergeTime;
+    }
+}
@@ -0,0 +1,151 @@
+package database;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cache di breve durata del numero di risultati delle ricerche.
+ *
+ * Il numero è salvato per query di conteggio e valori del predicato, così le pagine successive della stessa
+ * ricerca non ripetono il conteggio. Un numero resta valido per il tempo indicato, dopo il quale viene
+ * calcolato di nuovo; le scritture che lo modificano possono invalidarlo prima con {@link #invalidate(QueryTemplate)}.
+ */
+public class CountCache
+{
+    public static final int DEFAULT_TTL = 30;
+    private static final int MAX_ENTRIES = 4096;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long ttl = TimeUnit.SECONDS.toNanos(DEFAULT_TTL);
+
+
+
+    private static class Entry {
+        private final QueryTemplate template;
+        private final long count;
+        private final long expiration;
+
+        Entry(QueryTemplate template, long count, long expiration) {
+            this.template = template;
+            this.count = count;
+            this.expiration = expiration;
+        }
+    }
+
+
+
+/**
+ * Imposta la durata dei numeri salvati.
+ *
+ * @param seconds La durata in secondi; 0 per non salvare i numeri.
+ */
+    public void setTtl(int seconds) {
+        this.ttl = TimeUnit.SECONDS.toNanos(Math.max(0, seconds));
+        if(seconds <= 0)
+            entries.clear();
+    }
+
+
+
+/**
+ * @return La durata dei numeri salvati, in secondi.
+ */
+    public int getTtl() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(ttl);
+    }
+
+
+
+/**
+ * Restituisce il numero salvato per la query di conteggio e i valori indicati.
+ *
+ * @param template La query di conteggio.
+ * @param params I valori dei parametri della query.
+ * @return Il numero salvato, oppure null se non è presente o è scaduto.
+ */
+    public Long get(QueryTemplate template, Object... params)
+    {
+        String key = createKey(template, params);
+        Entry entry = entries.get(key);
+        if(entry == null)
+            return null;
+
+        if(System.nanoTime() - entry.expiration >= 0) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.count;
+    }
+
+
+
+/**
+ * Salva il numero ottenuto dalla query di conteggio con i valori indicati.
+ *
+ * @param template La query di conteggio.
+ * @param count Il numero di risultati.
+ * @param params I valori dei parametri della query.
+ */
+    public void put(QueryTemplate template, long count, Object... params)
+    {
+        if(ttl == 0)
+            return;
+
+        if(entries.size() >= MAX_ENTRIES)
+            removeExpired();
+        //se sono tutti validi si ricomincia da capo: i numeri vengono ricalcolati alla prossima richiesta
+        if(entries.size() >= MAX_ENTRIES)
+            entries.clear();
+
+        entries.put(createKey(template, params), new Entry(template, count, System.nanoTime() + ttl));
+    }
+
+
+
+/**
+ * Rimuove tutti i numeri ottenuti dalla query di conteggio indicata.
+ *
+ * @param template La query di conteggio.
+ */
+    public void invalidate(QueryTemplate template) {
+        entries.values().removeIf((entry) -> entry.template == template);
+    }
+
+/**
+ * Rimuove tutti i numeri salvati.
+ */
+    public void clear() {
+        entries.clear();
+    }
+
+/**
+ * @return Il numero di valori salvati.
+ */
+    public int size() {
+        return entries.size();
+    }
+
+
+
+    private void removeExpired()
+    {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(iterator.hasNext()) {
+            if(now - iterator.next().expiration >= 0)
+                iterator.remove();
+        }
+    }
+
+
+
+    private static String createKey(QueryTemplate template, Object[] params)
+    {
+        StringBuilder key = new StringBuilder(template.name());
+        for (Object param : params)
+            key.append('\u0000').append(param);
+        return key.toString();
+    }
+}
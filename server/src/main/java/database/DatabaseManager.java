@@ -1,12 +1,23 @@
 package database;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Properties;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+
+import enumclass.SearchCountMode;
+
 /**
  * La classe `DatabaseManager` gestisce la connessione e le operazioni su un database PostgreSQL.
  */
@@ -24,8 +35,14 @@ public class DatabaseManager {
     
     /*Variabili connessione DB  */
     private static DatabaseManager database;
-    private static Connection connection = null;
-    //private static Statement statement   = null;
+    private ConnectionPool pool = null;
+    private int poolMinSize = ConnectionPool.DEFAULT_MIN_SIZE;
+    private int poolMaxSize = ConnectionPool.DEFAULT_MAX_SIZE;
+    private long borrowTimeout = ConnectionPool.DEFAULT_BORROW_TIMEOUT;
+    private long leakThreshold = ConnectionPool.DEFAULT_LEAK_THRESHOLD;
+    private final CountCache countCache = new CountCache();
+    private SearchCountMode searchCountMode = SearchCountMode.SINGLE_PASS;
+    private int approximateCountPrefix = 0;
 
     
     private DatabaseManager(){
@@ -97,41 +114,72 @@ public class DatabaseManager {
     }
 
 
+
+/**
+ * Imposta le dimensioni e i tempi del pool di connessioni. Vale per le connessioni aperte dalla prossima chiamata a connect.
+ *
+ * @param minSize Il numero di connessioni da tenere sempre aperte.
+ * @param maxSize Il numero massimo di connessioni aperte contemporaneamente.
+ * @param borrowTimeout L'attesa massima per ottenere una connessione, in millisecondi.
+ * @param leakThreshold Il tempo dopo il quale una connessione non restituita viene segnalata, in millisecondi; 0 per non segnalarla.
+ */
+    public void setPoolParametre(int minSize, int maxSize, long borrowTimeout, long leakThreshold) {
+        this.poolMinSize = minSize;
+        this.poolMaxSize = maxSize;
+        this.borrowTimeout = borrowTimeout;
+        this.leakThreshold = leakThreshold;
+    }
+
+
+
+/**
+ * Imposta il modo in cui le ricerche ottengono il numero totale di risultati.
+ *
+ * @param mode Il modo con cui calcolare il totale insieme alla pagina.
+ * @param cacheTtl La durata in secondi dei totali salvati in cache; 0 per non salvarli.
+ * @param approximatePrefix La lunghezza sotto la quale la chiave di ricerca è considerata troppo ampia e il totale
+ *                          viene stimato dal planner di PostgreSQL invece di essere contato; 0 per contare sempre.
+ */
+    public void setSearchCountParametre(SearchCountMode mode, int cacheTtl, int approximatePrefix) {
+        this.searchCountMode = mode;
+        this.countCache.setTtl(cacheTtl);
+        this.approximateCountPrefix = Math.max(0, approximatePrefix);
+    }
+
+
     
 /**
  * Stabilisce una connessione al database utilizzando i parametri precedentemente configurati.
  *
- * Questo metodo tenta di stabilire una connessione al database utilizzando l'URL e le opzioni JDBC
- * configurate. Se la connessione riesce con successo, restituisce true; altrimenti, solleva un'eccezione
- * di tipo SQLException.
+ * Questo metodo crea il pool di connessioni utilizzando l'URL e le opzioni JDBC configurate, aprendo
+ * subito le connessioni minime; un pool creato in precedenza viene chiuso. Se la connessione riesce con successo,
+ * restituisce true; altrimenti, solleva un'eccezione di tipo SQLException.
  *
  * @return True se la connessione al database ha avuto successo, altrimenti solleva un'eccezione SQLException.
  * @throws SQLException Eccezione sollevata in caso di errore durante la connessione al database.
  */
     public boolean connect() throws SQLException {
-        //connection = DriverManager.getConnection(URL, user, password);
-        connection = DriverManager.getConnection(URL, jdbcOptions);
-        //statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        closeConnection();
+        pool = new ConnectionPool(URL, jdbcOptions, poolMinSize, poolMaxSize, borrowTimeout, leakThreshold);
         return true;
     }
 
 
 
 /**
- * Chiude la connessione al database, se è attualmente aperta.
+ * Chiude le connessioni al database, se sono attualmente aperte.
  *
- * Questo metodo chiude la connessione al database se è attualmente aperta. Verifica
- * se la connessione è diversa da null prima di tentare di chiuderla. Dopo la chiusura,
- * imposta il riferimento alla connessione a null.
+ * Questo metodo chiude il pool di connessioni se è stato creato. Le connessioni ancora in uso
+ * vengono chiuse appena sono restituite. Dopo la chiusura, imposta il riferimento al pool a null.
  *
  * @throws SQLException Eccezione sollevata in caso di errore durante la chiusura della connessione.
  */
     public void closeConnection() throws SQLException {
-        if(connection == null) 
+        if(pool == null) 
             return;
 
-        connection.close();
-        connection = null;
+        pool.close();
+        pool = null;
     }
 
 
@@ -148,25 +196,31 @@ public class DatabaseManager {
  * @throws SQLException Eccezione sollevata in caso di errore durante il test di validità della connessione.
  */
     public boolean testConnection() throws SQLException {
-        if(connection == null) 
+        if(pool == null) 
             return false;
-        return connection.isValid(2); //timeout
+
+        try (PooledConnection connection = pool.borrow()) {
+            return connection.getConnection().isValid(2); //timeout
+        }
     }
 
 
 
 /**
- * Crea e restituisce un oggetto Statement associato alla connessione corrente.
+ * Prende in prestito una connessione dal pool per la durata di un'operazione.
  *
- * Questo metodo crea un nuovo oggetto Statement associato alla connessione corrente.
- * L'oggetto Statement è configurato per restituire risultati di tipo scroll insensitive e
- * concorrenza di sola lettura. Restituisce l'oggetto Statement appena creato.
+ * Le query eseguite dal thread mentre il prestito è aperto usano questa connessione; le chiamate annidate
+ * dello stesso thread ricevono lo stesso prestito. La connessione torna al pool quando viene chiuso il prestito più esterno.
  *
- * @return Un oggetto Statement associato alla connessione corrente.
- * @throws SQLException Eccezione sollevata in caso di errore durante la creazione dell'oggetto Statement.
+ * @return Il prestito della connessione, da usare in un blocco try-with-resources.
+ * @throws SQLException Se il database non è connesso o nessuna connessione si libera entro il timeout.
  */
-    private Statement createStatement() throws SQLException {
-        return connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+    public PooledConnection borrowConnection() throws SQLException {
+        ConnectionPool pool = this.pool;
+        if(pool == null)
+            throw new SQLException("Database not connected");
+
+        return pool.borrow();
     }
 
 
@@ -174,10 +228,11 @@ public class DatabaseManager {
 /**
  * Esegue una query SQL e restituisce il risultato come un oggetto ResultSet.
  *
- * Questo metodo crea un nuovo oggetto Statement utilizzando il metodo privato `createStatement`,
- * esegue la query SQL fornita e restituisce il risultato sotto forma di oggetto ResultSet.
+ * Se il thread ha una connessione in prestito, la query viene eseguita su di essa e lo Statement
+ * viene chiuso quando la connessione torna al pool. Altrimenti la connessione viene presa solo per questa query
+ * e il risultato viene copiato in memoria, così la connessione può essere restituita subito.
  * Se la query restituisce un risultato, viene restituito l'oggetto ResultSet corrispondente;
- * altrimenti, restituisce null. L'oggetto Statement viene chiuso automaticamente dopo l'esecuzione della query.
+ * altrimenti, restituisce null.
  *
  * @param sql La query SQL da eseguire.
  * @return Un oggetto ResultSet contenente il risultato della query, o null se la query non restituisce risultati.
@@ -185,11 +240,213 @@ public class DatabaseManager {
  */
     public ResultSet submitQuery(String sql) throws SQLException 
     {
-        Statement statement = createStatement();
-        if(statement.execute(sql)){
-            return statement.getResultSet();
+        try (PooledConnection connection = borrowConnection()) {
+            Statement statement = connection.createStatement();
+            connection.countQuery();
+            if(!statement.execute(sql))
+                return null;
+
+            ResultSet result = statement.getResultSet();
+            if(connection.isNested())
+                return result;
+
+            //nessuna operazione in corso: il risultato deve sopravvivere alla restituzione della connessione
+            CachedRowSet copy = RowSetProvider.newFactory().createCachedRowSet();
+            copy.populate(result);
+            statement.close();
+            return copy;
+        }
+    }
+
+
+
+/**
+ * Esegue una query predefinita con i parametri indicati e restituisce il risultato.
+ *
+ * La query viene eseguita con il PreparedStatement della connessione in prestito, preparato solo alla prima esecuzione.
+ * Se il thread ha una connessione in prestito il risultato resta aperto fino alla sua restituzione; altrimenti
+ * viene copiato in memoria e la connessione viene restituita subito, come in submitQuery.
+ *
+ * @param template La query da eseguire.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query. Un array di String diventa un array SQL.
+ * @return Un oggetto ResultSet contenente il risultato della query.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query.
+ */
+    public ResultSet executeQuery(QueryTemplate template, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection()) {
+            PreparedStatement statement = connection.prepare(template);
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+            ResultSet result = statement.executeQuery();
+
+            if(connection.isNested()) {
+                connection.track(template, result);
+                return result;
+            }
+
+            CachedRowSet copy = RowSetProvider.newFactory().createCachedRowSet();
+            copy.populate(result);
+            result.close();
+            return copy;
+        }
+    }
+
+
+
+/**
+ * Esegue una query predefinita e converte ogni riga del risultato con il mapper indicato.
+ *
+ * Il mapper viene preparato una sola volta sulle colonne del risultato e poi usato per ogni riga.
+ * Il ResultSet viene chiuso prima di restituire la lista, anche in caso di errore, e il PreparedStatement
+ * resta nella cache della connessione: chi chiama non gestisce nessuna risorsa del driver.
+ *
+ * @param <T> Il tipo degli oggetti costruiti.
+ * @param template La query da eseguire.
+ * @param mapper Il mapper che costruisce un oggetto da ogni riga.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query.
+ * @return La lista degli oggetti, nell'ordine delle righe.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query o la lettura delle righe.
+ */
+    public <T> ArrayList<T> queryList(QueryTemplate template, RowMapper<T> mapper, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection()) {
+            PreparedStatement statement = connection.prepare(template);
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RowMapper<T> rowMapper = mapper.bind(resultSet.getMetaData());
+                ArrayList<T> result = new ArrayList<T>();
+                while (resultSet.next())
+                    result.add(rowMapper.map(resultSet));
+                return result;
+            }
+        }
+    }
+
+
+
+/**
+ * Esegue una query predefinita _COUNTED, che restituisce in ogni riga anche il numero totale di righe del predicato.
+ *
+ * @param <T> Il tipo degli oggetti costruiti.
+ * @param template La query da eseguire, con la colonna {@link QueryTemplate#TOTAL}.
+ * @param mapper Il mapper che costruisce un oggetto da ogni riga.
+ * @param page La lista a cui aggiungere gli oggetti, nell'ordine delle righe.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query.
+ * @return Il numero totale di righe, oppure -1 se la query non restituisce righe e il totale non è noto.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query o la lettura delle righe.
+ */
+    public <T> long queryPage(QueryTemplate template, RowMapper<T> mapper, ArrayList<T> page, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection()) {
+            PreparedStatement statement = connection.prepare(template);
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RowMapper<T> rowMapper = mapper.bind(resultSet.getMetaData());
+                int totalColumn = resultSet.findColumn(QueryTemplate.TOTAL);
+                long total = -1;
+                while (resultSet.next()) {
+                    total = resultSet.getLong(totalColumn);
+                    page.add(rowMapper.map(resultSet));
+                }
+                return total;
+            }
+        }
+    }
+
+
+
+/**
+ * Stima il numero di righe elaborate da una query predefinita senza eseguirla, usando il piano di PostgreSQL.
+ *
+ * Per una query di conteggio restituisce la stima delle righe contate, cioè quelle in ingresso al nodo di aggregazione.
+ *
+ * @param template La query da stimare.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query.
+ * @return Il numero stimato di righe.
+ * @throws SQLException Eccezione sollevata in caso di errori durante la pianificazione o la lettura del piano.
+ */
+    public long estimateRows(QueryTemplate template, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection();
+             PreparedStatement statement = connection.getConnection().prepareStatement("EXPLAIN (FORMAT JSON) " + template.getSQL())) {
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if(!resultSet.next())
+                    throw new SQLException("No plan returned for " + template);
+
+                JsonNode plan = new ObjectMapper().readTree(resultSet.getString(1)).path(0).path("Plan");
+                if(plan.path("Node Type").asText().equals("Aggregate") && plan.has("Plans"))
+                    plan = plan.path("Plans").path(0);
+                return plan.path("Plan Rows").asLong();
+            }
+            catch (IOException e) {
+                throw new SQLException("Unable to read the plan of " + template, e);
+            }
+        }
+    }
+
+
+
+/**
+ * Esegue una query predefinita e converte la prima riga del risultato con il mapper indicato.
+ *
+ * @param <T> Il tipo dell'oggetto costruito.
+ * @param template La query da eseguire.
+ * @param mapper Il mapper che costruisce l'oggetto dalla riga.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query.
+ * @return L'oggetto della prima riga, o null se la query non restituisce righe.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query o la lettura della riga.
+ */
+    public <T> T querySingle(QueryTemplate template, RowMapper<T> mapper, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection()) {
+            PreparedStatement statement = connection.prepare(template);
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? mapper.bind(resultSet.getMetaData()).map(resultSet) : null;
+            }
+        }
+    }
+
+
+
+/**
+ * Esegue una query predefinita di tipo INSERT, UPDATE o DELETE con i parametri indicati.
+ *
+ * @param template La query da eseguire.
+ * @param params I valori dei parametri, nell'ordine dei '?' della query.
+ * @return Il numero di righe modificate.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query.
+ */
+    public int executeUpdate(QueryTemplate template, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = borrowConnection()) {
+            PreparedStatement statement = connection.prepare(template);
+            bindParameters(connection, statement, params);
+            connection.countQuery();
+            return statement.executeUpdate();
+        }
+    }
+
+
+
+    private static void bindParameters(PooledConnection connection, PreparedStatement statement, Object[] params) throws SQLException
+    {
+        for (int i = 0; i < params.length; i++) {
+            if(params[i] instanceof String[])
+                statement.setArray(i + 1, connection.getConnection().createArrayOf("varchar", (String[]) params[i]));
+            else
+                statement.setObject(i + 1, params[i]);
         }
-        return null;
     }
 
 
@@ -197,7 +454,7 @@ public class DatabaseManager {
 /**
  * Esegue una query SQL e restituisce il risultato come un oggetto ResultSet.
  *
- * Questo metodo crea un nuovo oggetto Statement utilizzando il metodo privato `createStatement`,
+ * Questo metodo crea un nuovo oggetto Statement sulla connessione presa in prestito dal pool,
  * esegue la query SQL fornita e restituisce il risultato sotto forma di oggetto ResultSet.
  * Dopo l'ottenimento del risultato, chiude immediatamente l'oggetto Statement per rilasciare le risorse.
  * Se la query restituisce un risultato, viene restituito l'oggetto ResultSet corrispondente;
@@ -209,14 +466,17 @@ public class DatabaseManager {
  */
     public ResultSet submitQuery2(String sql) throws SQLException 
     {
-        Statement statement = createStatement();
+        try (PooledConnection connection = borrowConnection()) {
+            Statement statement = connection.createStatement();
+            connection.countQuery();
        
-        if(statement.execute(sql)){
-            ResultSet result = statement.getResultSet();
-            statement.close();
-            return result;
+            if(statement.execute(sql)){
+                ResultSet result = statement.getResultSet();
+                statement.close();
+                return result;
+            }
+            return null;
         }
-        return null;
     }
 
 
@@ -224,7 +484,7 @@ public class DatabaseManager {
 /**
  * Esegue una query SQL di tipo INSERT, UPDATE o DELETE.
  *
- * Questo metodo crea un nuovo oggetto Statement utilizzando il metodo privato `createStatement`,
+ * Questo metodo crea un nuovo oggetto Statement sulla connessione presa in prestito dal pool,
  * esegue la query SQL fornita, che deve essere di tipo INSERT, UPDATE o DELETE, e non restituisce
  * alcun risultato. L'oggetto Statement viene chiuso automaticamente dopo l'esecuzione della query.
  *
@@ -233,8 +493,51 @@ public class DatabaseManager {
  */
     public void submitInsertQuery(String sql) throws SQLException {
         
-        Statement statement = createStatement();
-        statement.execute(sql);
+        try (PooledConnection connection = borrowConnection()) {
+            connection.countQuery();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+
+
+/**
+ * Esegue una query di tipo INSERT, UPDATE o DELETE costruita come testo.
+ *
+ * @param sql La query SQL da eseguire.
+ * @return Il numero di righe modificate.
+ * @throws SQLException Eccezione sollevata in caso di errori durante l'esecuzione della query.
+ */
+    public int submitUpdateQuery(String sql) throws SQLException {
+        
+        try (PooledConnection connection = borrowConnection()) {
+            connection.countQuery();
+            try (Statement statement = connection.createStatement()) {
+                return statement.executeUpdate(sql);
+            }
+        }
+    }
+
+
+
+/**
+ * Esegue un comando COPY ... FROM STDIN inviando al database le righe lette dal Reader,
+ * nel formato indicato dal comando.
+ *
+ * @param sql Il comando COPY da eseguire.
+ * @param data Le righe da copiare.
+ * @return Il numero di righe copiate.
+ * @throws SQLException Eccezione sollevata se il database rifiuta il comando o una delle righe.
+ * @throws IOException Eccezione sollevata se non è possibile leggere le righe.
+ */
+    public long copyIn(String sql, Reader data) throws SQLException, IOException {
+        
+        try (PooledConnection connection = borrowConnection()) {
+            connection.countQuery();
+            return connection.getConnection().unwrap(PGConnection.class).getCopyAPI().copyIn(sql, data);
+        }
     }
 
 
@@ -310,14 +613,14 @@ public class DatabaseManager {
     
 
 /**
- * Restituisce l'oggetto Connection attualmente utilizzato.
+ * Restituisce il pool di connessioni attualmente utilizzato.
  *
- * Questo metodo restituisce l'oggetto Connection attualmente in uso per la connessione al database.
+ * Questo metodo restituisce il pool da cui vengono prese le connessioni al database, ad esempio per leggerne i contatori.
  *
- * @return L'oggetto Connection attualmente utilizzato, o null se la connessione non è attiva.
+ * @return Il pool di connessioni attualmente utilizzato, o null se la connessione non è attiva.
  */
-    public Connection getConnection(){
-        return connection;
+    public ConnectionPool getPool(){
+        return pool;
     }
 
 
@@ -331,7 +634,30 @@ public class DatabaseManager {
  * @return True se la connessione al database è attiva, altrimenti false.
  */
     public boolean isConnected() {
-        return connection != null;
+        return pool != null;
+    }
+
+
+
+/**
+ * @return La cache dei totali delle ricerche.
+ */
+    public CountCache getCountCache() {
+        return countCache;
+    }
+
+/**
+ * @return Il modo in cui le ricerche ottengono il numero totale di risultati.
+ */
+    public SearchCountMode getSearchCountMode() {
+        return searchCountMode;
+    }
+
+/**
+ * @return La lunghezza sotto la quale il totale di una ricerca per prefisso viene stimato, 0 se viene sempre contato.
+ */
+    public int getApproximateCountPrefix() {
+        return approximateCountPrefix;
     }
 
 }
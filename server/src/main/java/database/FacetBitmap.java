@@ -0,0 +1,470 @@
+package database;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Insieme compresso di numeri interi non negativi, usato come elenco degli elementi che hanno un valore di un facet.
+ *
+ * I numeri sono divisi in blocchi di 65536 in base ai 16 bit più alti; ogni blocco conserva i 16 bit più bassi
+ * in un array ordinato di char se contiene al massimo {@code ARRAY_LIMIT} numeri, altrimenti in una bitmap di 1024 long.
+ * Così un valore con pochi elementi occupa due byte per elemento e uno con molti elementi un bit per numero,
+ * e le intersezioni lavorano un blocco alla volta saltando i blocchi che non sono presenti in entrambi gli insiemi.
+ *
+ * L'insieme viene riempito con {@link #add(int)} in ordine crescente e poi usato solo in lettura:
+ * le operazioni tra insiemi ne creano di nuovi e possono essere eseguite in parallelo.
+ */
+public class FacetBitmap
+{
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int INITIAL_ARRAY = 4;
+
+    private char[] keys = new char[1];
+    private Object[] containers = new Object[1];
+    private int[] cardinalities = new int[1];
+    private int size = 0;
+    private long cardinality = 0;
+    private int last = -1;
+
+
+
+/**
+ * Aggiunge un numero all'insieme. I numeri devono essere aggiunti in ordine crescente; un numero uguale all'ultimo viene ignorato.
+ *
+ * @param value Il numero da aggiungere.
+ * @throws IllegalArgumentException Se il numero è negativo o minore dell'ultimo aggiunto.
+ */
+    public void add(int value)
+    {
+        if(value < 0)
+            throw new IllegalArgumentException("Invalid bitmap value: " + value);
+
+        if(value <= last) {
+            if(value == last)
+                return;
+            throw new IllegalArgumentException("Bitmap values must be added in ascending order: " + value);
+        }
+        last = value;
+
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        if(size == 0 || keys[size - 1] != key)
+            push(key, new char[INITIAL_ARRAY], 0);
+
+        int block = size - 1;
+        Object container = containers[block];
+        int count = cardinalities[block];
+
+        if(container instanceof long[]) {
+            ((long[]) container)[low >>> 6] |= 1L << low;
+        }
+        else if(count == ARRAY_LIMIT) {
+            long[] bitmap = toBitmap((char[]) container, count);
+            bitmap[low >>> 6] |= 1L << low;
+            containers[block] = bitmap;
+        }
+        else {
+            char[] array = (char[]) container;
+            if(count == array.length)
+                containers[block] = array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, count * 2));
+            array[count] = low;
+        }
+        cardinalities[block]++;
+        cardinality++;
+    }
+
+
+
+/**
+ * Riduce gli array dei blocchi alla loro dimensione esatta. Va chiamato quando l'insieme è stato riempito.
+ */
+    public void trim()
+    {
+        for (int i = 0; i < size; i++) {
+            if(containers[i] instanceof char[] && ((char[]) containers[i]).length != cardinalities[i])
+                containers[i] = Arrays.copyOf((char[]) containers[i], cardinalities[i]);
+        }
+        keys = Arrays.copyOf(keys, size);
+        containers = Arrays.copyOf(containers, size);
+        cardinalities = Arrays.copyOf(cardinalities, size);
+    }
+
+
+
+/**
+ * @return Il numero di elementi dell'insieme.
+ */
+    public long cardinality() {
+        return cardinality;
+    }
+
+/**
+ * @return true se l'insieme non contiene elementi.
+ */
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+/**
+ * @return Una stima della memoria occupata dall'insieme in byte.
+ */
+    public long estimateBytes()
+    {
+        long bytes = 48 + 16 + keys.length * 2L + 16 + containers.length * 4L + 16 + cardinalities.length * 4L;
+        for (int i = 0; i < size; i++)
+            bytes += 16 + (containers[i] instanceof char[] ? ((char[]) containers[i]).length * 2L : BITMAP_WORDS * 8L);
+        return bytes;
+    }
+
+
+
+/**
+ * @return Il numero di blocchi di 65536 numeri che contengono almeno un elemento.
+ */
+    public int getBlockCount() {
+        return size;
+    }
+
+
+
+/**
+ * Esegue un'azione per ogni elemento dell'insieme, in ordine crescente.
+ */
+    public void forEach(IntConsumer action)
+    {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            if(containers[i] instanceof char[]) {
+                char[] array = (char[]) containers[i];
+                for (int j = 0; j < cardinalities[i]; j++)
+                    action.accept(high | array[j]);
+            }
+            else {
+                long[] bitmap = (long[]) containers[i];
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        action.accept(high | (word << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Restituisce gli elementi dell'insieme in ordine crescente, saltandone alcuni.
+ *
+ * @param offset Il numero di elementi da saltare.
+ * @param limit Il numero massimo di elementi da restituire.
+ * @return Gli elementi, al massimo limit.
+ */
+    public int[] select(long offset, int limit)
+    {
+        int[] selected = new int[(int) Math.max(0, Math.min(limit, cardinality - offset))];
+        int found = 0;
+
+        for (int i = 0; i < size && found < selected.length; i++) {
+            //i blocchi che precedono la pagina vengono saltati interi
+            if(offset >= cardinalities[i]) {
+                offset -= cardinalities[i];
+                continue;
+            }
+
+            int high = keys[i] << 16;
+            if(containers[i] instanceof char[]) {
+                char[] array = (char[]) containers[i];
+                for (int j = (int) offset; j < cardinalities[i] && found < selected.length; j++)
+                    selected[found++] = high | array[j];
+            }
+            else {
+                long[] bitmap = (long[]) containers[i];
+                for (int word = 0; word < BITMAP_WORDS && found < selected.length; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0 && found < selected.length) {
+                        if(offset > 0)
+                            offset--;
+                        else
+                            selected[found++] = high | (word << 6) | Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+            offset = 0;
+        }
+        return selected;
+    }
+
+
+
+/**
+ * Calcola l'intersezione di due insiemi.
+ *
+ * @return Un nuovo insieme con gli elementi presenti in entrambi.
+ */
+    public static FacetBitmap and(FacetBitmap a, FacetBitmap b)
+    {
+        FacetBitmap result = new FacetBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if(a.keys[i] < b.keys[j]) {
+                i++;
+            }
+            else if(a.keys[i] > b.keys[j]) {
+                j++;
+            }
+            else {
+                Object x = a.containers[i], y = b.containers[j];
+                int nx = a.cardinalities[i], ny = b.cardinalities[j];
+
+                if(x instanceof char[] && y instanceof char[]) {
+                    char[] out = new char[Math.min(nx, ny)];
+                    int count = andArrays((char[]) x, nx, (char[]) y, ny, out);
+                    result.append(a.keys[i], Arrays.copyOf(out, count), count);
+                }
+                else if(x instanceof char[] || y instanceof char[]) {
+                    char[] array = (char[]) (x instanceof char[] ? x : y);
+                    long[] bitmap = (long[]) (x instanceof char[] ? y : x);
+                    int n = x instanceof char[] ? nx : ny;
+                    char[] out = new char[n];
+                    int count = 0;
+                    for (int k = 0; k < n; k++) {
+                        if(contains(bitmap, array[k]))
+                            out[count++] = array[k];
+                    }
+                    result.append(a.keys[i], Arrays.copyOf(out, count), count);
+                }
+                else {
+                    long[] out = new long[BITMAP_WORDS];
+                    int count = 0;
+                    for (int k = 0; k < BITMAP_WORDS; k++) {
+                        out[k] = ((long[]) x)[k] & ((long[]) y)[k];
+                        count += Long.bitCount(out[k]);
+                    }
+                    result.append(a.keys[i], count <= ARRAY_LIMIT ? toArray(out, count) : out, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+
+/**
+ * Conta gli elementi presenti in entrambi gli insiemi senza crearne l'intersezione.
+ *
+ * @return Il numero di elementi comuni.
+ */
+    public static long andCardinality(FacetBitmap a, FacetBitmap b)
+    {
+        long total = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if(a.keys[i] < b.keys[j]) {
+                i++;
+            }
+            else if(a.keys[i] > b.keys[j]) {
+                j++;
+            }
+            else {
+                Object x = a.containers[i], y = b.containers[j];
+                int nx = a.cardinalities[i], ny = b.cardinalities[j];
+
+                if(x instanceof char[] && y instanceof char[]) {
+                    total += andArrays((char[]) x, nx, (char[]) y, ny, null);
+                }
+                else if(x instanceof char[] || y instanceof char[]) {
+                    char[] array = (char[]) (x instanceof char[] ? x : y);
+                    long[] bitmap = (long[]) (x instanceof char[] ? y : x);
+                    int n = x instanceof char[] ? nx : ny;
+                    for (int k = 0; k < n; k++) {
+                        if(contains(bitmap, array[k]))
+                            total++;
+                    }
+                }
+                else {
+                    for (int k = 0; k < BITMAP_WORDS; k++)
+                        total += Long.bitCount(((long[]) x)[k] & ((long[]) y)[k]);
+                }
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+
+
+/**
+ * Calcola l'unione di due insiemi.
+ *
+ * @return Un nuovo insieme con gli elementi presenti in almeno uno dei due.
+ */
+    public static FacetBitmap or(FacetBitmap a, FacetBitmap b)
+    {
+        FacetBitmap result = new FacetBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if(j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.append(a.keys[i], a.containers[i], a.cardinalities[i]);
+                i++;
+            }
+            else if(i == a.size || a.keys[i] > b.keys[j]) {
+                result.append(b.keys[j], b.containers[j], b.cardinalities[j]);
+                j++;
+            }
+            else {
+                Object x = a.containers[i], y = b.containers[j];
+                int nx = a.cardinalities[i], ny = b.cardinalities[j];
+
+                if(x instanceof char[] && y instanceof char[]) {
+                    char[] out = new char[nx + ny];
+                    int count = orArrays((char[]) x, nx, (char[]) y, ny, out);
+                    result.append(a.keys[i], count <= ARRAY_LIMIT ? Arrays.copyOf(out, count) : toBitmap(out, count), count);
+                }
+                else {
+                    long[] out = x instanceof char[] ? ((long[]) y).clone() : ((long[]) x).clone();
+                    if(x instanceof char[] || y instanceof char[]) {
+                        char[] array = (char[]) (x instanceof char[] ? x : y);
+                        int n = x instanceof char[] ? nx : ny;
+                        for (int k = 0; k < n; k++)
+                            out[array[k] >>> 6] |= 1L << array[k];
+                    }
+                    else {
+                        for (int k = 0; k < BITMAP_WORDS; k++)
+                            out[k] |= ((long[]) y)[k];
+                    }
+                    int count = 0;
+                    for (int k = 0; k < BITMAP_WORDS; k++)
+                        count += Long.bitCount(out[k]);
+                    result.append(a.keys[i], out, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+
+    private void append(char key, Object container, int count)
+    {
+        //i blocchi vuoti prodotti dalle intersezioni non vengono conservati
+        if(count > 0)
+            push(key, container, count);
+    }
+
+    private void push(char key, Object container, int count)
+    {
+        if(size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        cardinalities[size] = count;
+        size++;
+        cardinality += count;
+    }
+
+
+
+/**
+ * Interseca due array ordinati. Se uno dei due è molto più corto i suoi elementi vengono cercati
+ * nell'altro con la ricerca binaria, altrimenti i due array vengono scorsi insieme.
+ *
+ * @param out L'array in cui scrivere l'intersezione, oppure null per contarne solo gli elementi.
+ * @return Il numero di elementi comuni.
+ */
+    private static int andArrays(char[] a, int na, char[] b, int nb, char[] out)
+    {
+        if(na > nb)
+            return andArrays(b, nb, a, na, out);
+
+        int count = 0;
+        if(na * 32 < nb) {
+            int from = 0;
+            for (int i = 0; i < na && from < nb; i++) {
+                int found = Arrays.binarySearch(b, from, nb, a[i]);
+                if(found >= 0) {
+                    if(out != null)
+                        out[count] = a[i];
+                    count++;
+                    from = found + 1;
+                }
+                else {
+                    from = -found - 1;
+                }
+            }
+            return count;
+        }
+
+        int i = 0, j = 0;
+        while (i < na && j < nb) {
+            if(a[i] < b[j]) {
+                i++;
+            }
+            else if(a[i] > b[j]) {
+                j++;
+            }
+            else {
+                if(out != null)
+                    out[count] = a[i];
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int orArrays(char[] a, int na, char[] b, int nb, char[] out)
+    {
+        int i = 0, j = 0, count = 0;
+        while (i < na || j < nb) {
+            if(j == nb || (i < na && a[i] < b[j]))
+                out[count++] = a[i++];
+            else if(i == na || a[i] > b[j])
+                out[count++] = b[j++];
+            else {
+                out[count++] = a[i++];
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(long[] bitmap, char value) {
+        return (bitmap[value >>> 6] & (1L << value)) != 0;
+    }
+
+    private static long[] toBitmap(char[] array, int count)
+    {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++)
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int count)
+    {
+        char[] array = new char[count];
+        int found = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                array[found++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,538 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import enumclass.FacetType;
+
+
+/**
+ * Indice in memoria per la ricerca a faccette delle canzoni.
+ *
+ * Per ogni valore di ogni facet (anno di pubblicazione, genere dell'artista, fascia di popolarità ed emozione
+ * con più voti) l'indice conserva un {@link FacetBitmap} con le canzoni che lo hanno. Le canzoni sono numerate
+ * dalla più popolare, quindi gli elementi di un insieme in ordine crescente sono già le canzoni in ordine di popolarità
+ * e una pagina di risultati è formata dai primi elementi dell'intersezione.
+ *
+ * In un filtro i valori dello stesso facet sono in alternativa e facet diversi devono essere tutti soddisfatti.
+ * I conteggi di un facet sono calcolati con i filtri degli altri facet, così indicano quante canzoni si troverebbero
+ * aggiungendo o sostituendo un valore di quel facet. Per contare i facet con molti valori, come i generi, conviene
+ * scorrere le canzoni filtrate invece di intersecare ogni valore: per questo l'indice conserva anche, per ogni canzone,
+ * la posizione dei suoi valori nell'ordine dei valori del facet.
+ *
+ * L'indice non può essere modificato: viene ricostruito insieme agli indici del {@link SearchEngine}.
+ */
+public class FacetIndex
+{
+    //numero massimo di valori restituiti nei conteggi di un facet, i più frequenti
+    public static final int MAX_FACET_VALUES = 50;
+    private static final int POPULARITY_BUCKET = 10;
+    private static final int MAX_POPULARITY = 100;
+    //costo stimato di leggere una canzone scorrendo quelle filtrate, rispetto a un passo di un'intersezione
+    private static final int SCAN_COST = 2;
+    //passi di un'intersezione di un blocco di 65536 canzoni quando entrambi gli insiemi sono bitmap
+    private static final int BLOCK_COST = 1024;
+    private static final char NO_VALUE = Character.MAX_VALUE;
+
+    private final String[] ids;
+    private final EnumMap<FacetType, TreeMap<String, FacetBitmap>> facets;
+    private final EnumMap<FacetType, String[]> names = new EnumMap<>(FacetType.class);
+    private final EnumMap<FacetType, FacetBitmap[]> bitmaps = new EnumMap<>(FacetType.class);
+    //per ogni canzone le posizioni dei suoi valori; starts è null se ogni canzone ha al massimo un valore
+    private final EnumMap<FacetType, int[]> starts = new EnumMap<>(FacetType.class);
+    private final EnumMap<FacetType, char[]> ordinals = new EnumMap<>(FacetType.class);
+    private final EnumMap<FacetType, Long> postings = new EnumMap<>(FacetType.class);
+
+
+
+    private FacetIndex(String[] ids, EnumMap<FacetType, TreeMap<String, FacetBitmap>> facets)
+    {
+        this.ids = ids;
+        this.facets = facets;
+
+        for (FacetType type : FacetType.values()) {
+            FacetBitmap[] values = facets.get(type).values().toArray(new FacetBitmap[0]);
+            names.put(type, facets.get(type).keySet().toArray(new String[0]));
+            bitmaps.put(type, values);
+            long total = 0;
+            for (FacetBitmap bitmap : values)
+                total += bitmap.cardinality();
+            postings.put(type, total);
+            //con troppi valori le posizioni non entrano in un char e il facet viene contato solo con le intersezioni
+            if(values.length >= NO_VALUE)
+                continue;
+
+            int[] counts = new int[ids.length + 1];
+            boolean multiple = false;
+            for (FacetBitmap bitmap : values)
+                bitmap.forEach((element) -> counts[element + 1]++);
+            for (int element = 1; element <= ids.length; element++)
+                multiple |= counts[element] > 1;
+
+            if(!multiple) {
+                char[] single = new char[ids.length];
+                Arrays.fill(single, NO_VALUE);
+                for (int value = 0; value < values.length; value++) {
+                    char ordinal = (char) value;
+                    values[value].forEach((element) -> single[element] = ordinal);
+                }
+                ordinals.put(type, single);
+                continue;
+            }
+
+            for (int element = 0; element < ids.length; element++)
+                counts[element + 1] += counts[element];
+            int[] next = Arrays.copyOf(counts, ids.length);
+            char[] multi = new char[counts[ids.length]];
+            for (int value = 0; value < values.length; value++) {
+                char ordinal = (char) value;
+                values[value].forEach((element) -> multi[next[element]++] = ordinal);
+            }
+            starts.put(type, counts);
+            ordinals.put(type, multi);
+        }
+    }
+
+
+
+/**
+ * Il risultato di una ricerca: il numero totale di canzoni trovate, gli ID della pagina richiesta
+ * dalla più popolare e i conteggi dei valori di ogni facet.
+ */
+    public static class Result
+    {
+        private final long total;
+        private final String[] ids;
+        private final EnumMap<FacetType, LinkedHashMap<String, Long>> counts;
+
+        Result(long total, String[] ids, EnumMap<FacetType, LinkedHashMap<String, Long>> counts) {
+            this.total = total;
+            this.ids = ids;
+            this.counts = counts;
+        }
+
+/**
+ * @return Il numero totale di canzoni che soddisfano il filtro.
+ */
+        public long getTotal() {
+            return total;
+        }
+
+/**
+ * @return Gli ID delle canzoni della pagina, dalla più popolare.
+ */
+        public String[] getIds() {
+            return ids;
+        }
+
+/**
+ * @return Per ogni facet i suoi valori in ordine e il numero di canzoni che si troverebbero scegliendoli.
+ */
+        public EnumMap<FacetType, LinkedHashMap<String, Long>> getCounts() {
+            return counts;
+        }
+    }
+
+
+
+/**
+ * Raccoglie le canzoni del catalogo con i loro valori e costruisce l'indice.
+ */
+    public static class Builder
+    {
+        private final ArrayList<Object[]> songs = new ArrayList<>();
+        private final HashMap<String, ArrayList<String>> genres = new HashMap<>();
+        private final HashMap<String, Object[]> emotions = new HashMap<>();
+
+/**
+ * Aggiunge una canzone.
+ *
+ * @param id L'ID della canzone.
+ * @param popularity La popolarità della canzone, da 0 a 100.
+ * @param releaseDate La data di pubblicazione dell'album, che inizia con l'anno.
+ * @param artistID L'ID dell'artista dell'album.
+ */
+        public void addSong(String id, long popularity, String releaseDate, String artistID) {
+            songs.add(new Object[] {id, popularity, releaseDate, artistID});
+        }
+
+/**
+ * Aggiunge un genere musicale di un artista.
+ */
+        public void addGenre(String artistID, String genre) {
+            genres.computeIfAbsent(artistID, (key) -> new ArrayList<>()).add(genre);
+        }
+
+/**
+ * Aggiunge il riepilogo dei voti di un'emozione di una canzone. L'emozione della canzone è quella con più voti,
+ * a parità di voti quella con la somma dei valori più alta.
+ *
+ * @param songID L'ID della canzone.
+ * @param type Il tipo di emozione.
+ * @param votes Il numero di voti.
+ * @param valueSum La somma dei valori dei voti.
+ */
+        public void addEmotion(String songID, String type, long votes, long valueSum)
+        {
+            if(votes <= 0)
+                return;
+            Object[] best = emotions.get(songID);
+            if(best == null || votes > (Long) best[1] || (votes == (Long) best[1] && valueSum > (Long) best[2])
+                || (votes == (Long) best[1] && valueSum == (Long) best[2] && type.compareTo((String) best[0]) < 0))
+                emotions.put(songID, new Object[] {type, votes, valueSum});
+        }
+
+/**
+ * @return L'indice con le canzoni aggiunte.
+ */
+        public FacetIndex build()
+        {
+            //le canzoni vengono numerate dalla più popolare, a parità di popolarità per ID
+            songs.sort((a, b) -> {
+                int compare = Long.compare((Long) b[1], (Long) a[1]);
+                return compare != 0 ? compare : ((String) a[0]).compareTo((String) b[0]);
+            });
+
+            EnumMap<FacetType, TreeMap<String, FacetBitmap>> facets = new EnumMap<>(FacetType.class);
+            for (FacetType type : FacetType.values())
+                facets.put(type, new TreeMap<>());
+
+            String[] ids = new String[songs.size()];
+            for (int element = 0; element < ids.length; element++) {
+                Object[] song = songs.get(element);
+                ids[element] = (String) song[0];
+
+                add(facets, FacetType.YEAR, getYear((String) song[2]), element);
+                add(facets, FacetType.POPULARITY, getPopularityBucket((Long) song[1]), element);
+                ArrayList<String> artistGenres = genres.get(song[3]);
+                if(artistGenres != null) {
+                    for (String genre : artistGenres)
+                        add(facets, FacetType.GENRE, genre, element);
+                }
+                Object[] emotion = emotions.get(song[0]);
+                if(emotion != null)
+                    add(facets, FacetType.EMOTION, (String) emotion[0], element);
+            }
+
+            for (TreeMap<String, FacetBitmap> values : facets.values()) {
+                for (FacetBitmap bitmap : values.values())
+                    bitmap.trim();
+            }
+            return new FacetIndex(ids, facets);
+        }
+
+        private static void add(EnumMap<FacetType, TreeMap<String, FacetBitmap>> facets, FacetType type, String value, int element) {
+            if(value != null)
+                facets.get(type).computeIfAbsent(value, (key) -> new FacetBitmap()).add(element);
+        }
+    }
+
+
+
+/**
+ * Restituisce l'anno di una data di pubblicazione.
+ *
+ * @param releaseDate La data, nella forma "aaaa", "aaaa-mm" o "aaaa-mm-gg".
+ * @return L'anno, oppure null se la data non inizia con un anno.
+ */
+    public static String getYear(String releaseDate)
+    {
+        if(releaseDate == null || releaseDate.length() < 4)
+            return null;
+        for (int i = 0; i < 4; i++) {
+            if(!Character.isDigit(releaseDate.charAt(i)))
+                return null;
+        }
+        return releaseDate.substring(0, 4);
+    }
+
+/**
+ * Restituisce la fascia di popolarità, ad esempio "30-39"; l'ultima fascia comprende anche 100.
+ *
+ * @param popularity La popolarità, da 0 a 100.
+ * @return Il nome della fascia.
+ */
+    public static String getPopularityBucket(long popularity)
+    {
+        long from = Math.min(MAX_POPULARITY - POPULARITY_BUCKET, Math.max(0, popularity) / POPULARITY_BUCKET * POPULARITY_BUCKET);
+        long to = from + POPULARITY_BUCKET - 1 == MAX_POPULARITY - 1 ? MAX_POPULARITY : from + POPULARITY_BUCKET - 1;
+        return from + "-" + to;
+    }
+
+
+
+/**
+ * Cerca le canzoni che soddisfano il filtro e conta i valori di ogni facet.
+ *
+ * @param filters Per ogni facet i valori ammessi; un facet assente o senza valori non filtra le canzoni.
+ * @param limit Il numero massimo di canzoni della pagina.
+ * @param offset Il numero di canzoni da saltare.
+ * @return Il numero totale di canzoni trovate, la pagina e i conteggi dei valori di ogni facet.
+ */
+    public Result search(Map<FacetType, String[]> filters, long limit, long offset)
+    {
+        EnumMap<FacetType, FacetBitmap> selected = new EnumMap<>(FacetType.class);
+        if(filters != null) {
+            for (Map.Entry<FacetType, String[]> filter : filters.entrySet()) {
+                if(filter.getValue() != null && filter.getValue().length > 0)
+                    selected.put(filter.getKey(), union(facets.get(filter.getKey()), filter.getValue()));
+            }
+        }
+
+        FacetBitmap found = intersect(selected, null);
+        long total = found != null ? found.cardinality() : ids.length;
+        int pageSize = (int) Math.max(0, Math.min(limit, Integer.MAX_VALUE));
+
+        int[] elements;
+        if(found != null) {
+            elements = found.select(offset, pageSize);
+        }
+        else {
+            elements = new int[(int) Math.max(0, Math.min(pageSize, ids.length - offset))];
+            for (int i = 0; i < elements.length; i++)
+                elements[i] = (int) offset + i;
+        }
+
+        String[] page = new String[elements.length];
+        for (int i = 0; i < page.length; i++)
+            page[i] = ids[elements[i]];
+
+        //i facet senza filtro sono contati tra le canzoni trovate, che vengono lette una volta sola per tutti quelli da scorrere
+        EnumMap<FacetType, long[]> all = new EnumMap<>(FacetType.class);
+        ArrayList<FacetType> scanned = new ArrayList<>();
+        for (FacetType type : FacetType.values()) {
+            FacetBitmap base = selected.containsKey(type) ? intersect(selected, type) : found;
+            if(base == found && isScanCheaper(type, base))
+                scanned.add(type);
+            else
+                all.put(type, count(type, base));
+        }
+        if(!scanned.isEmpty())
+            all.putAll(scan(scanned, found));
+
+        EnumMap<FacetType, LinkedHashMap<String, Long>> counts = new EnumMap<>(FacetType.class);
+        for (FacetType type : FacetType.values())
+            counts.put(type, select(type, all.get(type), filters != null ? filters.get(type) : null));
+
+        return new Result(total, page, counts);
+    }
+
+
+
+/**
+ * Stima se contare i valori del facet scorrendo le canzoni indicate costa meno che intersecare ogni valore.
+ * Un'intersezione costa circa quanto la somma dei due insiemi, ma al massimo {@code BLOCK_COST} passi per blocco;
+ * scorrere le canzoni costa {@code SCAN_COST} per canzone più uno per ogni valore letto.
+ */
+    private boolean isScanCheaper(FacetType type, FacetBitmap base)
+    {
+        if(base == null || !ordinals.containsKey(type))
+            return false;
+
+        long size = base.cardinality();
+        long blocks = (long) base.getBlockCount() * BLOCK_COST;
+        long intersections = 0;
+        for (FacetBitmap value : bitmaps.get(type))
+            intersections += Math.min(value.cardinality() + size, blocks);
+
+        long scan = size * SCAN_COST + size * postings.get(type) / Math.max(1, ids.length);
+        return scan < intersections;
+    }
+
+/**
+ * Conta le canzoni di ogni valore di un facet tra quelle indicate, scorrendole o intersecando ogni valore.
+ *
+ * @param base Le canzoni da contare, oppure null per tutte.
+ * @return Il numero di canzoni di ogni valore, nell'ordine dei valori.
+ */
+    private long[] count(FacetType type, FacetBitmap base)
+    {
+        if(isScanCheaper(type, base))
+            return scan(Collections.singletonList(type), base).get(type);
+
+        FacetBitmap[] values = bitmaps.get(type);
+        long[] counts = new long[values.length];
+        for (int value = 0; value < values.length; value++)
+            counts[value] = base != null ? FacetBitmap.andCardinality(base, values[value]) : values[value].cardinality();
+        return counts;
+    }
+
+/**
+ * Conta le canzoni di ogni valore di più facet scorrendo le canzoni indicate.
+ *
+ * @return Per ogni facet il numero di canzoni di ogni valore, nell'ordine dei valori.
+ */
+    private EnumMap<FacetType, long[]> scan(List<FacetType> types, FacetBitmap base)
+    {
+        int count = types.size();
+        long[][] counts = new long[count][];
+        char[][] positions = new char[count][];
+        int[][] first = new int[count][];
+        EnumMap<FacetType, long[]> result = new EnumMap<>(FacetType.class);
+        for (int i = 0; i < count; i++) {
+            counts[i] = new long[bitmaps.get(types.get(i)).length];
+            positions[i] = ordinals.get(types.get(i));
+            first[i] = starts.get(types.get(i));
+            result.put(types.get(i), counts[i]);
+        }
+
+        //le canzoni vengono lette una volta sola in un array, più veloce da scorrere per ogni facet
+        int[] elements = base.select(0, (int) Math.min(Integer.MAX_VALUE, base.cardinality()));
+        for (int i = 0; i < count; i++) {
+            long[] values = counts[i];
+            char[] position = positions[i];
+            if(first[i] == null) {
+                for (int element : elements) {
+                    if(position[element] != NO_VALUE)
+                        values[position[element]]++;
+                }
+            }
+            else {
+                int[] start = first[i];
+                for (int element : elements) {
+                    for (int k = start[element]; k < start[element + 1]; k++)
+                        values[position[k]]++;
+                }
+            }
+        }
+        return result;
+    }
+
+
+
+/**
+ * Sceglie i valori di un facet da restituire con i loro conteggi. Se i valori con almeno una canzone sono più di
+ * {@code MAX_FACET_VALUES} vengono tenuti i più frequenti e quelli scelti nel filtro, nell'ordine dei valori.
+ *
+ * @param all Il numero di canzoni di ogni valore, nell'ordine dei valori.
+ * @param chosen I valori scelti nel filtro di questo facet, oppure null.
+ */
+    private LinkedHashMap<String, Long> select(FacetType type, long[] all, String[] chosen)
+    {
+        String[] values = names.get(type);
+        String[] found = new String[values.length];
+        long[] counts = new long[values.length];
+        int size = 0;
+        for (int value = 0; value < values.length; value++) {
+            if(all[value] > 0) {
+                found[size] = values[value];
+                counts[size] = all[value];
+                size++;
+            }
+        }
+
+        //i valori con tanti elementi quanto il più frequente escluso vengono tenuti nell'ordine dei valori finché c'è posto
+        long threshold = 0;
+        int ties = MAX_FACET_VALUES;
+        if(size > MAX_FACET_VALUES) {
+            long[] sorted = Arrays.copyOf(counts, size);
+            Arrays.sort(sorted);
+            threshold = sorted[size - MAX_FACET_VALUES];
+            for (int i = 0; i < size; i++) {
+                if(counts[i] > threshold)
+                    ties--;
+            }
+        }
+
+        LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if(counts[i] > threshold || (counts[i] == threshold && ties-- > 0))
+                result.put(found[i], counts[i]);
+        }
+        if(chosen != null) {
+            for (String value : chosen) {
+                int position = Arrays.binarySearch(values, value);
+                if(!result.containsKey(value) && position >= 0)
+                    result.put(value, all[position]);
+            }
+        }
+        return result;
+    }
+
+
+
+/**
+ * Interseca gli insiemi scelti, dal più piccolo, escludendo quello di un facet.
+ *
+ * @param excluded Il facet da non considerare, oppure null.
+ * @return L'intersezione, oppure null se non c'è nessun insieme da intersecare.
+ */
+    private static FacetBitmap intersect(EnumMap<FacetType, FacetBitmap> selected, FacetType excluded)
+    {
+        ArrayList<FacetBitmap> bitmaps = new ArrayList<>();
+        for (Map.Entry<FacetType, FacetBitmap> entry : selected.entrySet()) {
+            if(entry.getKey() != excluded)
+                bitmaps.add(entry.getValue());
+        }
+        if(bitmaps.isEmpty())
+            return null;
+
+        bitmaps.sort((a, b) -> Long.compare(a.cardinality(), b.cardinality()));
+        FacetBitmap result = bitmaps.get(0);
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++)
+            result = FacetBitmap.and(result, bitmaps.get(i));
+        return result;
+    }
+
+    private static FacetBitmap union(TreeMap<String, FacetBitmap> values, String[] chosen)
+    {
+        FacetBitmap result = null;
+        for (String value : chosen) {
+            FacetBitmap bitmap = values.get(value);
+            if(bitmap != null)
+                result = result == null ? bitmap : FacetBitmap.or(result, bitmap);
+        }
+        return result != null ? result : new FacetBitmap();
+    }
+
+
+
+/**
+ * @return Il numero di canzoni indicizzate.
+ */
+    public int size() {
+        return ids.length;
+    }
+
+/**
+ * @return Il numero di valori diversi di ogni facet.
+ */
+    public EnumMap<FacetType, Integer> getValueCounts()
+    {
+        EnumMap<FacetType, Integer> counts = new EnumMap<>(FacetType.class);
+        for (FacetType type : FacetType.values())
+            counts.put(type, facets.get(type).size());
+        return counts;
+    }
+
+/**
+ * @return Gli insiemi delle canzoni di ogni valore di un facet, nell'ordine dei valori.
+ */
+    public TreeMap<String, FacetBitmap> getValues(FacetType type) {
+        return facets.get(type);
+    }
+
+/**
+ * @return Una stima della memoria occupata dagli insiemi e dalle posizioni dei valori in byte, senza gli ID delle canzoni.
+ */
+    public long estimateBytes()
+    {
+        long bytes = 0;
+        for (int[] first : starts.values())
+            bytes += 16 + first.length * 4L;
+        for (char[] positions : ordinals.values())
+            bytes += 16 + positions.length * 2L;
+        for (TreeMap<String, FacetBitmap> values : facets.values()) {
+            for (Map.Entry<String, FacetBitmap> value : values.entrySet())
+                bytes += 64 + 40 + value.getKey().length() * 2L + value.getValue().estimateBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,192 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import database.PredefinedSQLCode.Indici;
+import database.PredefinedSQLCode.Operazioni_SQL;
+import database.PredefinedSQLCode.Tabelle;
+import enumclass.IndexState;
+
+
+/**
+ * Crea, verifica e ricostruisce gli indici secondari dichiarati in {@link PredefinedSQLCode#tablesIndexes}.
+ *
+ * Gli indici che richiedono un'estensione di PostgreSQL vengono saltati se l'estensione non è installata
+ * e l'utente del database non ha i permessi per installarla; le altre query continuano a funzionare senza di essi.
+ */
+public class IndexManager
+{
+    private static final RowMapper<IndexInfo> INDEX_INFO = (resultSet) -> new IndexInfo(
+        resultSet.getString("name"),
+        resultSet.getBoolean("valid") ? IndexState.VALID : IndexState.INVALID,
+        resultSet.getLong("size"),
+        resultSet.getLong("scans"));
+
+
+
+/**
+ * Lo stato di un indice nel database.
+ */
+    public static class IndexInfo
+    {
+        private final String name;
+        private final IndexState state;
+        private final long size;
+        private final long scans;
+
+        IndexInfo(String name, IndexState state, long size, long scans) {
+            this.name = name;
+            this.state = state;
+            this.size = size;
+            this.scans = scans;
+        }
+
+        public IndexState getState() {
+            return state;
+        }
+
+    /**
+     * @return La dimensione dell'indice in byte.
+     */
+        public long getSize() {
+            return size;
+        }
+
+    /**
+     * @return Il numero di letture dell'indice dall'ultimo azzeramento delle statistiche di PostgreSQL.
+     */
+        public long getScans() {
+            return scans;
+        }
+    }
+
+
+
+/**
+ * Crea gli indici del catalogo che non esistono ancora.
+ *
+ * @return Gli indici saltati perché l'estensione che richiedono non è disponibile.
+ * @throws SQLException Se la creazione di un indice non riesce.
+ */
+    public static ArrayList<Indici> createIndexes() throws SQLException
+    {
+        DatabaseManager database = DatabaseManager.getInstance();
+        HashMap<String, Boolean> extensions = new HashMap<>();
+        ArrayList<Indici> skipped = new ArrayList<>();
+
+        for (Indici indice : catalog()) {
+            if(!isExtensionAvailable(indice.getExtension(), extensions)) {
+                skipped.add(indice);
+                continue;
+            }
+            database.submitQuery(PredefinedSQLCode.createIndex_Queries.get(indice));
+        }
+        return skipped;
+    }
+
+
+
+/**
+ * Elimina gli indici del catalogo.
+ *
+ * @throws SQLException Se l'eliminazione di un indice non riesce.
+ */
+    public static void dropIndexes() throws SQLException
+    {
+        DatabaseManager database = DatabaseManager.getInstance();
+        for (Indici indice : catalog())
+            database.submitQuery(PredefinedSQLCode.deleteIndex_Queries.get(indice));
+    }
+
+
+
+/**
+ * Elimina e crea di nuovo gli indici del catalogo, così un indice non valido o con una definizione
+ * diversa da quella del catalogo viene sostituito.
+ *
+ * @return Gli indici saltati perché l'estensione che richiedono non è disponibile.
+ * @throws SQLException Se l'eliminazione o la creazione di un indice non riesce.
+ */
+    public static ArrayList<Indici> rebuildIndexes() throws SQLException
+    {
+        dropIndexes();
+        return createIndexes();
+    }
+
+
+
+/**
+ * Restituisce lo stato nel database di ogni indice del catalogo.
+ *
+ * @return Lo stato, la dimensione e il numero di letture di ogni indice, nell'ordine del catalogo.
+ * @throws SQLException Se la lettura del catalogo di PostgreSQL non riesce.
+ */
+    public static LinkedHashMap<Indici, IndexInfo> verifyIndexes() throws SQLException
+    {
+        HashMap<String, IndexInfo> existing = new HashMap<>();
+        for (IndexInfo info : DatabaseManager.getInstance().queryList(QueryTemplate.SCHEMA_INDEXES, INDEX_INFO))
+            existing.put(info.name, info);
+
+        LinkedHashMap<Indici, IndexInfo> result = new LinkedHashMap<>();
+        for (Indici indice : catalog()) {
+            //PostgreSQL salva in minuscolo i nomi non racchiusi tra virgolette
+            IndexInfo info = existing.get(indice.getName().toLowerCase());
+            result.put(indice, info != null ? info : new IndexInfo(indice.getName(), IndexState.MISSING, 0, 0));
+        }
+        return result;
+    }
+
+
+
+/**
+ * @return Gli indici del catalogo, nell'ordine di creazione delle tabelle.
+ */
+    private static ArrayList<Indici> catalog()
+    {
+        ArrayList<Indici> indici = new ArrayList<>();
+        for (Tabelle tabella : Tabelle.values()) {
+            Indici[] tableIndexes = PredefinedSQLCode.tablesIndexes.get(tabella);
+            if(tableIndexes != null) {
+                for (Indici indice : tableIndexes)
+                    indici.add(indice);
+            }
+        }
+        return indici;
+    }
+
+
+
+/**
+ * Verifica che l'estensione sia installata, provando a installarla la prima volta che viene richiesta.
+ *
+ * @param extension Il nome dell'estensione, oppure null.
+ * @param extensions Il risultato delle verifiche già fatte.
+ * @return true se l'estensione è null o è installata.
+ */
+    private static boolean isExtensionAvailable(String extension, HashMap<String, Boolean> extensions) throws SQLException
+    {
+        if(extension == null)
+            return true;
+
+        Boolean available = extensions.get(extension);
+        if(available == null) {
+            DatabaseManager database = DatabaseManager.getInstance();
+            available = database.querySingle(QueryTemplate.EXTENSION_INSTALLED, RowMappers.COUNT, extension) > 0;
+            if(!available) {
+                try {
+                    database.submitQuery(Operazioni_SQL.CREATE_EXTENSION.toString() + " " + extension + ";");
+                    available = true;
+                }
+                catch (SQLException e) {
+                    //serve un utente con i permessi per creare l'estensione
+                    available = false;
+                }
+            }
+            extensions.put(extension, available);
+        }
+        return available;
+    }
+}
@@ -0,0 +1,138 @@
+package database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * Il cursore con cui il client chiede la pagina successiva di un elenco ordinato.
+ *
+ * Il cursore contiene il valore della colonna di ordinamento e l'ID dell'ultimo elemento della pagina, codificati
+ * in una stringa Base64 che il client restituisce senza interpretarla. Le query _AFTER di QueryTemplate
+ * partono dalla riga che segue quella coppia, quindi il costo di una pagina non cresce con la sua posizione
+ * come accade saltando OFFSET righe.
+ */
+public class PageCursor
+{
+    private static final byte LONG = 'L';
+    private static final byte STRING = 'S';
+
+    private Object sortValue;
+    private String id;
+
+
+
+    private PageCursor(Object sortValue, String id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+
+
+/**
+ * Crea il cursore della pagina che segue quella indicata.
+ *
+ * @param page      Gli elementi della pagina, nell'ordine della query.
+ * @param limit     Il numero di elementi richiesti per la pagina.
+ * @param sortValue Restituisce il valore della colonna di ordinamento di un elemento.
+ * @param id        Restituisce l'ID di un elemento.
+ * @return Il cursore codificato, oppure null se la pagina è l'ultima.
+ */
+    public static <T> String next(List<T> page, long limit, Function<T, Object> sortValue, Function<T, String> id)
+    {
+        if(page.isEmpty() || page.size() < limit)
+            return null;
+
+        T last = page.get(page.size() - 1);
+        return encode(sortValue.apply(last), id.apply(last));
+    }
+
+
+
+/**
+ * Codifica il valore di ordinamento e l'ID di un elemento.
+ *
+ * @param sortValue Il valore della colonna di ordinamento, un numero intero o una stringa.
+ * @param id        L'ID dell'elemento.
+ * @return Il cursore codificato.
+ * @throws IllegalArgumentException Se il valore di ordinamento non è un numero intero o una stringa.
+ */
+    public static String encode(Object sortValue, String id)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if(sortValue instanceof Integer || sortValue instanceof Long || sortValue instanceof Short) {
+                out.writeByte(LONG);
+                out.writeLong(((Number) sortValue).longValue());
+            }
+            else if(sortValue instanceof String) {
+                out.writeByte(STRING);
+                out.writeUTF((String) sortValue);
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported cursor value: " + sortValue);
+            }
+            out.writeUTF(id);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+
+
+/**
+ * Decodifica un cursore ricevuto dal client.
+ *
+ * @param cursor Il cursore codificato.
+ * @return Il cursore decodificato.
+ * @throws IllegalArgumentException Se il cursore non è valido.
+ */
+    public static PageCursor decode(String cursor)
+    {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            Object sortValue;
+            switch (in.readByte()) {
+                case LONG:
+                    sortValue = in.readLong();
+                    break;
+                case STRING:
+                    sortValue = in.readUTF();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            String id = in.readUTF();
+
+            if(in.available() > 0)
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            return new PageCursor(sortValue, id);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+
+
+/**
+ * @return Il valore della colonna di ordinamento dell'ultimo elemento della pagina precedente.
+ */
+    public Object getSortValue() {
+        return sortValue;
+    }
+
+/**
+ * @return L'ID dell'ultimo elemento della pagina precedente.
+ */
+    public String getId() {
+        return id;
+    }
+}
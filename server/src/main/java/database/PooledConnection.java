@@ -0,0 +1,278 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+
+/**
+ * Una connessione presa in prestito dal ConnectionPool.
+ *
+ * Il prestito appartiene al thread che lo ha richiesto: se lo stesso thread chiede un'altra connessione prima di
+ * restituire questa riceve lo stesso prestito, così un'operazione che ne chiama altre usa una sola connessione.
+ * La connessione torna al pool quando viene chiuso il prestito più esterno; in quel momento vengono chiusi
+ * anche gli Statement e i ResultSet creati durante il prestito.
+ *
+ * I PreparedStatement delle QueryTemplate restano invece aperti insieme alla connessione fisica e vengono riusati
+ * dai prestiti successivi.
+ */
+public class PooledConnection implements AutoCloseable
+{
+    private ConnectionPool pool;
+    private Connection connection;
+    private ArrayList<Statement> statements = new ArrayList<>();
+    private ArrayList<ResultSet> results = new ArrayList<>();
+    private EnumMap<QueryTemplate, PreparedStatement> prepared = new EnumMap<>(QueryTemplate.class);
+    //l'ultimo ResultSet di ogni PreparedStatement, che si chiude se lo Statement viene eseguito di nuovo
+    private EnumMap<QueryTemplate, ResultSet> preparedResults = new EnumMap<>(QueryTemplate.class);
+    private int depth = 0;
+    //il livello del prestito che ha aperto la transazione in corso, 0 se non ce n'è una
+    private int transactionDepth = 0;
+    private long queries = 0;
+
+    long lastUsed;
+    long borrowedAt;
+    Thread owner;
+    Throwable borrowTrace;
+    boolean leakReported;
+
+
+
+/**
+ * Crea il prestito di una connessione fisica al database.
+ *
+ * @param pool Il pool a cui appartiene la connessione.
+ * @param connection La connessione fisica.
+ */
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.lastUsed = System.nanoTime();
+    }
+
+
+
+/**
+ * Crea uno Statement che verrà chiuso alla restituzione della connessione.
+ *
+ * @return Uno Statement con risultati di tipo scroll insensitive e di sola lettura.
+ * @throws SQLException Se non è possibile creare lo Statement.
+ */
+    public Statement createStatement() throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        statements.add(statement);
+        return statement;
+    }
+
+
+
+/**
+ * Restituisce il PreparedStatement della query, preparandolo solo la prima volta che viene usato su questa connessione.
+ * Se il PreparedStatement della stessa query ha ancora un risultato aperto, ad esempio perché il thread sta
+ * scorrendo quel risultato, viene preparato uno Statement separato, chiuso alla restituzione della connessione.
+ *
+ * @param template La query da eseguire.
+ * @return Il PreparedStatement della query, con i parametri ancora da impostare.
+ * @throws SQLException Se non è possibile preparare la query.
+ */
+    public PreparedStatement prepare(QueryTemplate template) throws SQLException
+    {
+        ResultSet open = preparedResults.get(template);
+        if(open != null && !open.isClosed()) {
+            PreparedStatement statement = connection.prepareStatement(template.getSQL());
+            statements.add(statement);
+            return statement;
+        }
+
+        PreparedStatement statement = prepared.get(template);
+        if(statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(template.getSQL());
+            prepared.put(template, statement);
+            pool.preparedMiss();
+        }
+        else {
+            pool.preparedHit();
+        }
+        return statement;
+    }
+
+
+
+/**
+ * Registra il risultato di una query, che verrà chiuso alla restituzione della connessione.
+ *
+ * @param template La query eseguita.
+ * @param result Il risultato della query.
+ */
+    void track(QueryTemplate template, ResultSet result) {
+        results.add(result);
+        preparedResults.put(template, result);
+    }
+
+
+
+    void countQuery() {
+        queries++;
+    }
+
+
+
+/**
+ * @return Il numero di query eseguite durante il prestito corrente, comprese quelle delle operazioni annidate.
+ */
+    public long getQueryCount() {
+        return queries;
+    }
+
+
+
+/**
+ * Conta gli Statement e i ResultSet del prestito corrente ancora aperti, esclusi i PreparedStatement
+ * delle QueryTemplate che restano aperti insieme alla connessione.
+ *
+ * @return Il numero di risorse del driver ancora aperte.
+ * @throws SQLException Se non è possibile verificare lo stato di una risorsa.
+ */
+    public int getOpenResources() throws SQLException
+    {
+        int open = 0;
+        for (Statement statement : statements) {
+            if(!statement.isClosed())
+                open++;
+        }
+        for (ResultSet result : results) {
+            if(!result.isClosed())
+                open++;
+        }
+        return open;
+    }
+
+
+
+/**
+ * @return Il numero di PreparedStatement delle QueryTemplate tenuti aperti sulla connessione.
+ */
+    public int getPreparedCount() {
+        return prepared.size();
+    }
+
+
+
+/**
+ * Apre una transazione sulla connessione, se il thread non ne ha già una aperta da un'operazione più esterna.
+ * Se il prestito viene restituito senza {@link #commit()} le modifiche della transazione vengono annullate.
+ *
+ * @throws SQLException Se non è possibile disattivare l'autocommit.
+ */
+    public void begin() throws SQLException
+    {
+        if(transactionDepth != 0)
+            return;
+
+        connection.setAutoCommit(false);
+        transactionDepth = depth;
+    }
+
+
+
+/**
+ * Conferma la transazione aperta con {@link #begin()} nello stesso livello del prestito; in un'operazione annidata
+ * non fa niente, così la transazione viene confermata solo dall'operazione che l'ha aperta.
+ *
+ * @throws SQLException Se la conferma della transazione non riesce.
+ */
+    public void commit() throws SQLException
+    {
+        if(transactionDepth != depth)
+            return;
+
+        connection.commit();
+        connection.setAutoCommit(true);
+        transactionDepth = 0;
+    }
+
+
+
+/**
+ * @return La connessione fisica, da non chiudere direttamente.
+ */
+    public Connection getConnection() {
+        return connection;
+    }
+
+
+
+/**
+ * Restituisce il prestito. La connessione torna al pool solo quando viene chiuso il prestito più esterno del thread.
+ */
+    @Override
+    public void close() {
+        if(--depth == 0)
+            pool.release(this);
+    }
+
+
+
+    void enter() {
+        depth++;
+    }
+
+
+
+    //true se il prestito è stato chiesto anche da un'operazione più esterna dello stesso thread
+    boolean isNested() {
+        return depth > 1;
+    }
+
+
+
+    //chiude gli Statement rimasti aperti; restituisce false se la connessione non è riutilizzabile
+    boolean reset()
+    {
+        boolean reusable = true;
+
+        for (ResultSet result : results) {
+            try {
+                result.close();
+            }
+            catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        results.clear();
+        preparedResults.clear();
+        queries = 0;
+        transactionDepth = 0;
+
+        for (Statement statement : statements) {
+            try {
+                statement.close();
+            }
+            catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        statements.clear();
+
+        try {
+            if(!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return reusable && !connection.isClosed();
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+
+
+    void closePhysical() {
+        try {connection.close();} catch (SQLException e) {}
+    }
+}
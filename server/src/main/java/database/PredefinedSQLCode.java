@@ -31,11 +31,15 @@ public class PredefinedSQLCode
     public static final Hashtable<Tabelle, Colonne[]> tablesAttributes;
     public static final Hashtable<Tabelle, Colonne[]> tablesPrimaryKey;
     public static final Hashtable<Tabelle, Object[]> tablesForeignKey;
+    public static final Hashtable<Tabelle, Indici[]> tablesIndexes;
     public static final Hashtable<Tabelle, String> createTable_Queries;
     public static final Hashtable<Tabelle, String> deleteTable_Queries;
+    public static final Hashtable<Indici, String> createIndex_Queries;
+    public static final Hashtable<Indici, String> deleteIndex_Queries;
 
     private static final String ID_SIZE = "(64)";
     private static final String ACCOUNT_ID_SIZE = "(120)";
+    private static final String TRIGRAM = "pg_trgm";
     
    
     public static enum Colonne
@@ -66,6 +70,8 @@ public class PredefinedSQLCode
         CREATION_DATE("Creation_date","VARCHAR",  "(32)",         "NOT NULL"),
         TYPE("Type",                  "VARCHAR",  "(32)",     "NOT NULL"),
         ELEMENT("Element",            "INTEGER",  "",         "NOT NULL"),
+        VOTES("Votes",                "INTEGER",  "",         "NOT NULL"),
+        VALUE_SUM("Value_sum",        "INTEGER",  "",         "NOT NULL"),
         GENERE_MUSICALE("genre",      "VARCHAR",  "(64)",     "NOT NULL"),
         COMMENTO("commento",          "VARCHAR",  "(256)",    ""),
         NICKNAME("nickname",          "VARCHAR",  "(120)",    "NOT NULL"),
@@ -128,6 +134,17 @@ public class PredefinedSQLCode
             return this.type + this.size;
         }
 
+
+    /**
+     * Restituisce la lunghezza massima dei valori della colonna.
+     *
+     * @return La lunghezza indicata nel tipo, ad esempio 64 per VARCHAR(64), oppure -1 se il tipo non ne ha una.
+     */
+        public int getLength(){
+            return this.size.isEmpty() ? -1 : Integer.parseInt(this.size.substring(1, this.size.length() - 1));
+        }
+
+
         @Override
         public String toString() {
             return this.name + " " + this.type + this.size + " " + this.args;
@@ -149,6 +166,8 @@ public class PredefinedSQLCode
         ACCOUNT         ("Account"), 
         //COMMENTO        ("Commento"), 
         EMOZIONE        ("Emozione"), 
+        EMOTION_SUMMARY ("RiepilogoEmozioni", true),
+        EMOTION_TOTALS  ("TotaleEmozioni", true),
         PLAYLIST        ("Playlist"), 
         //PROVINCIA       ("Provincia"), 
         //COMUNE          ("Comune"), 
@@ -156,9 +175,29 @@ public class PredefinedSQLCode
         
         
         private String name;
+        private boolean derived;
        
         private Tabelle(String name){
+            this(name, false);
+        }
+
+        private Tabelle(String name, boolean derived){
             this.name = name;
+            this.derived = derived;
+        }
+
+
+
+    /**
+     * Indica se la tabella contiene solo dati calcolati da altre tabelle.
+     *
+     * Le tabelle derivate non vengono esportate né importate: dopo un'importazione vengono ricostruite
+     * a partire dalle tabelle da cui derivano.
+     *
+     * @return true se la tabella è derivata.
+     */
+        public boolean isDerived(){
+            return this.derived;
         }
 
         @Override
@@ -169,6 +208,94 @@ public class PredefinedSQLCode
 
 
 
+
+/**
+ * Enumerazione che rappresenta gli indici secondari del database.
+ *
+ * Ogni indice ha un nome, la tabella a cui appartiene, il metodo di accesso e l'elenco delle colonne o espressioni
+ * indicizzate, con l'eventuale classe di operatori. Gli indici con il metodo "gin" e la classe gin_trgm_ops richiedono
+ * l'estensione pg_trgm.
+ */
+    public static enum Indici
+    {
+        //ricerca per titolo (LIKE 'chiave%') e ordinamento delle canzoni più popolari
+        SONG_TITLE          ("idx_canzone_title",            Tabelle.SONG,            "btree", Colonne.TITLE.getName() + " varchar_pattern_ops"),
+        SONG_TITLE_TRGM     ("idx_canzone_title_trgm",       Tabelle.SONG,            "gin",   Colonne.TITLE.getName() + " gin_trgm_ops",  TRIGRAM),
+        SONG_POPULARITY     ("idx_canzone_popularity",       Tabelle.SONG,            "btree", Colonne.POPULARITY.getName() + " DESC, " + Colonne.ID.getName() + " DESC"),
+        SONG_ALBUM          ("idx_canzone_album",            Tabelle.SONG,            "btree", Colonne.ALBUM_ID_REF.getName()),
+
+        //album recenti, ricerca per nome e per data di pubblicazione
+        ALBUM_RELEASE_DATE  ("idx_album_release_date",       Tabelle.ALBUM,           "btree", Colonne.RELEASE_DATE.getName() + " DESC, " + Colonne.ID.getName() + " DESC"),
+        ALBUM_DATE_PATTERN  ("idx_album_release_date_pattern", Tabelle.ALBUM,         "btree", Colonne.RELEASE_DATE.getName() + " varchar_pattern_ops"),
+        ALBUM_ELEMENT       ("idx_album_element",            Tabelle.ALBUM,           "btree", Colonne.ELEMENT.getName()),
+        ALBUM_NAME          ("idx_album_name",               Tabelle.ALBUM,           "btree", Colonne.NAME.getName() + " varchar_pattern_ops"),
+        ALBUM_NAME_TRGM     ("idx_album_name_trgm",          Tabelle.ALBUM,           "gin",   Colonne.NAME.getName() + " gin_trgm_ops",   TRIGRAM),
+        ALBUM_ARTIST        ("idx_album_artist",             Tabelle.ALBUM,           "btree", Colonne.ARTIST_ID_REF.getName()),
+
+        //ricerca degli artisti per nome, ordinata per follower
+        ARTIST_NAME         ("idx_artista_name",             Tabelle.ARTIST,          "btree", Colonne.NAME.getName() + " varchar_pattern_ops"),
+        ARTIST_NAME_TRGM    ("idx_artista_name_trgm",        Tabelle.ARTIST,          "gin",   Colonne.NAME.getName() + " gin_trgm_ops",   TRIGRAM),
+        ARTIST_FOLLOWERS    ("idx_artista_followers",        Tabelle.ARTIST,          "btree", Colonne.FOLLOWERS.getName() + " DESC, " + Colonne.ID.getName() + " DESC"),
+
+        //chiavi esterne senza un indice: quelle in testa a una chiave primaria sono già indicizzate
+        EMOTION_SONG        ("idx_emozione_song",            Tabelle.EMOZIONE,        "btree", Colonne.SONG_ID_REF.getName() + ", length(" + Colonne.ID.getName() + "), " + Colonne.ID.getName() + " DESC"),
+        EMOTION_ACCOUNT     ("idx_emozione_account",         Tabelle.EMOZIONE,        "btree", Colonne.ACCOUNT_ID_REF.getName()),
+
+        //ricerca delle canzoni con più emozioni
+        EMOTION_TOTALS_VOTES("idx_totaleemozioni_votes",     Tabelle.EMOTION_TOTALS,  "btree", Colonne.VOTES.getName() + " DESC, " + Colonne.SONG_ID_REF.getName() + " DESC"),
+        PLAYLIST_ACCOUNT    ("idx_playlist_account",         Tabelle.PLAYLIST,        "btree", Colonne.ACCOUNT_ID_REF.getName()),
+        PLAYLIST_SONGS_SONG ("idx_canzoni_playlist_song",    Tabelle.PLAYLIST_SONGS,  "btree", Colonne.SONG_ID_REF.getName()),
+        SONG_AUTORS_SONG    ("idx_autoricanzone_song",       Tabelle.SONG_AUTORS,     "btree", Colonne.SONG_ID_REF.getName());
+
+
+        private String name;
+        private Tabelle table;
+        private String method;
+        private String definition;
+        private String extension;
+
+        private Indici(String name, Tabelle table, String method, String definition) {
+            this(name, table, method, definition, null);
+        }
+
+        private Indici(String name, Tabelle table, String method, String definition, String extension) {
+            this.name = name;
+            this.table = table;
+            this.method = method;
+            this.definition = definition;
+            this.extension = extension;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public Tabelle getTable() {
+            return this.table;
+        }
+
+        public String getMethod() {
+            return this.method;
+        }
+
+        public String getDefinition() {
+            return this.definition;
+        }
+
+    /**
+     * @return Il nome dell'estensione di PostgreSQL richiesta dall'indice, oppure null.
+     */
+        public String getExtension() {
+            return this.extension;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+
 /**
  * Enumerazione che rappresenta diverse operazioni SQL.
  *
@@ -179,6 +306,9 @@ public class PredefinedSQLCode
     {
         CREATE("CREATE TABLE IF NOT EXISTS"),
         DELETE("DROP TABLE IF EXISTS"),
+        CREATE_INDEX("CREATE INDEX IF NOT EXISTS"),
+        DELETE_INDEX("DROP INDEX IF EXISTS"),
+        CREATE_EXTENSION("CREATE EXTENSION IF NOT EXISTS"),
         INSERT("INSERT INTO"),
         CLEAR_DB("SELECT table_name FROM information_schema.tables WHERE table_schema = 'nome_database';"),
         TABLE_KEY("PRIMARY KEY");
@@ -203,10 +333,13 @@ public class PredefinedSQLCode
         //inizilizzazione HashTables
         createTable_Queries = new Hashtable<Tabelle, String>();
         deleteTable_Queries = new Hashtable<Tabelle, String>();
+        createIndex_Queries = new Hashtable<Indici, String>();
+        deleteIndex_Queries = new Hashtable<Indici, String>();
         
         tablesAttributes = new Hashtable<Tabelle, Colonne []>();
         tablesPrimaryKey = new Hashtable<Tabelle, Colonne []>();
         tablesForeignKey = new Hashtable<Tabelle, Object  []>(); 
+        tablesIndexes = new Hashtable<Tabelle, Indici  []>();
 
 
         //======================= [Lista delle colonne] =======================//
@@ -217,6 +350,8 @@ public class PredefinedSQLCode
         tablesAttributes.put(Tabelle.ALBUM,             new Colonne[] {Colonne.ID, Colonne.NAME, Colonne.RELEASE_DATE, Colonne.URL, Colonne.TYPE, Colonne.ELEMENT, Colonne.ARTIST_ID_REF});
         //tablesAttributes.put(Tabelle.COMMENTO,          new Colonne[] {Colonne.ID, Colonne.COMMENTO, Colonne.ACCOUNT_ID_REF, Colonne.EMOZIONE_ID_REF});
         tablesAttributes.put(Tabelle.EMOZIONE,          new Colonne[] {Colonne.ID, Colonne.TYPE, Colonne.VALUE, Colonne.COMMENTO, Colonne.ACCOUNT_ID_REF, Colonne.SONG_ID_REF});
+        tablesAttributes.put(Tabelle.EMOTION_SUMMARY,   new Colonne[] {Colonne.SONG_ID_REF, Colonne.TYPE, Colonne.VOTES, Colonne.VALUE_SUM});
+        tablesAttributes.put(Tabelle.EMOTION_TOTALS,    new Colonne[] {Colonne.SONG_ID_REF, Colonne.VOTES});
         tablesAttributes.put(Tabelle.PLAYLIST,          new Colonne[] {Colonne.ID, Colonne.NAME, Colonne.CREATION_DATE, Colonne.ACCOUNT_ID_REF});
         tablesAttributes.put(Tabelle.ACCOUNT,           new Colonne[] {Colonne.NAME, Colonne.NICKNAME, Colonne.SURNAME, Colonne.FISCAL_CODE, Colonne.EMAIL, Colonne.PASSWORD,Colonne.RESIDENCE_ID_REF});
         //tablesAttributes.put(Tabelle.COMUNE,            new Colonne[] {Colonne.NAME, Colonne.CAP});
@@ -237,6 +372,8 @@ public class PredefinedSQLCode
         tablesPrimaryKey.put(Tabelle.ALBUM,             new Colonne[] {Colonne.ID});
         //tablesPrimaryKey.put(Tabelle.COMMENTO,          new Colonne[] {Colonne.ID});
         tablesPrimaryKey.put(Tabelle.EMOZIONE,          new Colonne[] {Colonne.ID});
+        tablesPrimaryKey.put(Tabelle.EMOTION_SUMMARY,   new Colonne[] {Colonne.SONG_ID_REF, Colonne.TYPE});
+        tablesPrimaryKey.put(Tabelle.EMOTION_TOTALS,    new Colonne[] {Colonne.SONG_ID_REF});
         tablesPrimaryKey.put(Tabelle.PLAYLIST,          new Colonne[] {Colonne.ID});
         tablesPrimaryKey.put(Tabelle.ACCOUNT,           new Colonne[] {Colonne.NICKNAME}); //, Colonne.EMAIL
         //tablesPrimaryKey.put(Tabelle.COMUNE,            new Colonne[] {Colonne.NAME});
@@ -274,6 +411,8 @@ public class PredefinedSQLCode
             new Triplet<Colonne, Tabelle, Colonne> (Colonne.ACCOUNT_ID_REF, Tabelle.ACCOUNT, Colonne.NICKNAME)
         });
         
+        tablesForeignKey.put(Tabelle.EMOTION_SUMMARY, new Object[] { new Triplet<Colonne, Tabelle, Colonne> (Colonne.SONG_ID_REF, Tabelle.SONG, Colonne.ID)});
+        tablesForeignKey.put(Tabelle.EMOTION_TOTALS,  new Object[] { new Triplet<Colonne, Tabelle, Colonne> (Colonne.SONG_ID_REF, Tabelle.SONG, Colonne.ID)});
         tablesForeignKey.put(Tabelle.ALBUM_IMAGES,  new Object[] { new Triplet<Colonne, Tabelle, Colonne> (Colonne.ID, Tabelle.ALBUM, Colonne.ID)});
         tablesForeignKey.put(Tabelle.ARTIST_IMAGES, new Object[] { new Triplet<Colonne, Tabelle, Colonne> (Colonne.ID, Tabelle.ARTIST, Colonne.ID)});
         tablesForeignKey.put(Tabelle.SONG,          new Object[] { new Triplet<Colonne, Tabelle, Colonne> (Colonne.ALBUM_ID_REF, Tabelle.ALBUM, Colonne.ID)});
@@ -285,10 +424,27 @@ public class PredefinedSQLCode
 
         //Triplet<NomiColonne, NomiTabelle,NomiColonne> s = new Triplet<NomiColonne, NomiTabelle,NomiColonne>
 
+
+
+        //======================= [Lista degli indici] =======================//
+        tablesIndexes.put(Tabelle.SONG,             new Indici[] {Indici.SONG_TITLE, Indici.SONG_TITLE_TRGM, Indici.SONG_POPULARITY, Indici.SONG_ALBUM});
+        tablesIndexes.put(Tabelle.ALBUM,            new Indici[] {Indici.ALBUM_RELEASE_DATE, Indici.ALBUM_DATE_PATTERN, Indici.ALBUM_ELEMENT, Indici.ALBUM_NAME, Indici.ALBUM_NAME_TRGM, Indici.ALBUM_ARTIST});
+        tablesIndexes.put(Tabelle.ARTIST,           new Indici[] {Indici.ARTIST_NAME, Indici.ARTIST_NAME_TRGM, Indici.ARTIST_FOLLOWERS});
+        tablesIndexes.put(Tabelle.EMOZIONE,         new Indici[] {Indici.EMOTION_SONG, Indici.EMOTION_ACCOUNT});
+        tablesIndexes.put(Tabelle.EMOTION_TOTALS,   new Indici[] {Indici.EMOTION_TOTALS_VOTES});
+        tablesIndexes.put(Tabelle.PLAYLIST,         new Indici[] {Indici.PLAYLIST_ACCOUNT});
+        tablesIndexes.put(Tabelle.PLAYLIST_SONGS,   new Indici[] {Indici.PLAYLIST_SONGS_SONG});
+        tablesIndexes.put(Tabelle.SONG_AUTORS,      new Indici[] {Indici.SONG_AUTORS_SONG});
+
         for(Tabelle nomeTabella: Tabelle.values()) {
             deleteTable_Queries.put(nomeTabella,Operazioni_SQL.DELETE.toString() + " " + nomeTabella + " CASCADE;");
             createTable_Queries.put(nomeTabella, QueryBuilder.createTable_query_creator(nomeTabella));
         }
+
+        for(Indici indice: Indici.values()) {
+            deleteIndex_Queries.put(indice, Operazioni_SQL.DELETE_INDEX.toString() + " " + indice + ";");
+            createIndex_Queries.put(indice, QueryBuilder.createIndex_query_creator(indice));
+        }
         
         
         //elenco delle hashTable
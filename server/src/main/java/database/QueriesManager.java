@@ -1,32 +1,35 @@
 package database;
 
 import java.lang.reflect.Array;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.Semaphore;
-
-import org.apache.commons.codec.digest.DigestUtils;
+import java.util.function.Function;
 
 import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Indici;
 import database.PredefinedSQLCode.Tabelle;
+import enumclass.FacetType;
+import enumclass.SearchCountMode;
 import objects.Account;
 import objects.Album;
 import objects.Artist;
 import objects.Emotion;
 import objects.MyImage;
 import objects.Playlist;
-import objects.Residenze;
 import objects.Song;
 import server.Terminal;
+import utility.IdGenerator;
 
 
 
@@ -34,29 +37,15 @@ import server.Terminal;
  * Questa classe gestisce le query al database e fornisce metodi
  * per recuperare e manipolare dati come oggetti Java.
  */
+//il prestito della connessione non viene usato direttamente: serve solo a far eseguire le query del metodo sulla stessa connessione
+@SuppressWarnings("try")
 public class QueriesManager 
 {
+    //il valore di MODE che chiede la ricerca approssimata a canzoni, album e artisti
+    public static final int FUZZY_SEARCH_MODE = 3;
+
     private static DatabaseManager database = DatabaseManager.getInstance();
     private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    private static double generate_ID_from_Time_last_call = System.currentTimeMillis();
-
-
-
-/**
- * Genera un ID univoco basato sul timestamp corrente utilizzando l'algoritmo SHA-256.
- *
- * Questo metodo genera un ID univoco utilizzando il timestamp corrente, garantendo che ogni chiamata successiva
- * avrà un timestamp diverso, evitando collisioni. L'ID è ottenuto applicando l'algoritmo di hashing SHA-256
- * alla rappresentazione esadecimale del timestamp corrente convertito in stringa.
- *
- * @return Un ID univoco generato basato sul timestamp corrente.
- */
-    public synchronized static String generate_ID_from_Time() {
-        while(System.currentTimeMillis() - QueriesManager.generate_ID_from_Time_last_call < 1000);
-        generate_ID_from_Time_last_call = System.currentTimeMillis();
-
-        return DigestUtils.sha256Hex(Long.toHexString(new Date().getTime()).toUpperCase());
-	}
 
 
 
@@ -76,102 +65,99 @@ public class QueriesManager
 
 
 /**
- * Crea una HashMap di colonne e valori da un ResultSet per il costruttore di una classe.
- *
- * Questo metodo prende un ResultSet e una tabella specificata, e restituisce una HashMap che associa
- * le colonne della tabella ai loro valori corrispondenti nel ResultSet. La HashMap viene utilizzata
- * per il costruttore di una classe rappresentante la tabella.
+ * Esegue una query che restituisce canzoni e aggiunge a ognuna le immagini del proprio album.
  *
- * @param resultSet Il ResultSet contenente i dati della query.
- * @param tabella   La tabella specificata per la quale ottenere la HashMap.
- * @return Una HashMap che associa le colonne della tabella ai loro valori corrispondenti nel ResultSet.
- * @throws SQLException Se si verifica un errore durante l'accesso al ResultSet.
+ * @param template La query delle canzoni.
+ * @param params   I parametri della query.
+ * @return Una lista di oggetti Song costruiti dalle righe del risultato.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione delle query o la costruzione degli oggetti Song.
  */
-    private static HashMap<Colonne, Object> getHashMap_for_ClassConstructor(ResultSet resultSet, Tabelle tabella) throws SQLException {
-        Colonne[] coll = PredefinedSQLCode.tablesAttributes.get(tabella);
-        HashMap<Colonne, Object> table = new HashMap<>();
-        
-
-        for (Colonne colonna : coll) {
-            table.put(colonna, resultSet.getObject(colonna.getName()));
+    private static ArrayList<Song> getSongs(QueryTemplate template, Object... params) throws SQLException 
+    {
+        try (PooledConnection connection = database.borrowConnection()) {
+            ArrayList<Song> result = database.queryList(template, RowMappers.SONG, params);
+            addSongsImages(result);
+            return result;
         }
-        return table;
     }
 
 
 
 /**
- * Crea una mappa di costruttori per le classi associate alle tabelle specificate da un ResultSet.
+ * Esegue la query di una pagina di ricerca e ottiene il numero totale di elementi che soddisfano lo stesso predicato.
  *
- * Questo metodo prende un ResultSet e un elenco di tabelle specificate, e restituisce una HashMap che associa
- * ogni tabella ai suoi dati corrispondenti nel ResultSet. La struttura della HashMap esterna utilizza le tabelle come chiavi,
- * e ognuna di queste ha una HashMap interna che associa le colonne della tabella ai loro valori corrispondenti nel ResultSet.
- * Questa HashMap viene utilizzata per costruire oggetti delle classi associate alle tabelle.
+ * Il totale viene letto dalla cache dei conteggi, se presente. Altrimenti, se la chiave di ricerca è più corta
+ * della lunghezza impostata con DatabaseManager.setSearchCountParametre, il totale viene stimato dal planner;
+ * negli altri casi viene contato, nella stessa query della pagina se il modo è SINGLE_PASS e la query _COUNTED
+ * è indicata, oppure con la query di conteggio.
  *
- * @param resultSet Il ResultSet contenente i dati della query.
- * @param tabelle   Un elenco di tabelle specificate per le quali ottenere le HashMap.
- * @return Una HashMap che associa le tabelle ai loro dati corrispondenti nel ResultSet.
- * @throws SQLException Se si verifica un errore durante l'accesso al ResultSet.
+ * @param page         La lista a cui aggiungere gli elementi della pagina.
+ * @param mapper       Il mapper degli elementi.
+ * @param pageQuery    La query della pagina.
+ * @param countedQuery La variante _COUNTED della query della pagina, con gli stessi parametri, oppure null: le pagine
+ *                     chieste con un cursore non la usano, perché conterebbe solo gli elementi successivi al cursore.
+ * @param pageParams   I parametri della query della pagina.
+ * @param countQuery   La query di conteggio con lo stesso predicato.
+ * @param countParams  I parametri della query di conteggio: la chiave di ricerca, se presente, è il primo.
+ * @return Il numero totale di elementi, esatto o stimato.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione delle query.
  */
-    private static HashMap<Tabelle,HashMap<Colonne, Object>> getHashMaps_for_ClassConstructor(ResultSet resultSet, Tabelle... tabelle) throws SQLException 
+    private static <T> long searchPage(ArrayList<T> page, RowMapper<T> mapper, QueryTemplate pageQuery, QueryTemplate countedQuery, Object[] pageParams, QueryTemplate countQuery, Object... countParams) throws SQLException 
     {
-        HashMap<Tabelle,HashMap<Colonne, Object>> constructorsMap = new HashMap<>();
-        ResultSetMetaData rsmd = resultSet.getMetaData();
-        
-        int offset = 1;
-
-        for (Tabelle tabella : tabelle) {
-            Colonne[] coll = PredefinedSQLCode.tablesAttributes.get(tabella);
-            HashMap<Colonne, Object> table = new HashMap<>();
-            
-            //fra tutte le colonne che compongono il mio oggetto
-            for(int i = 0; i < coll.length;i++) 
-            {
-                //guardo che nome ha la colonna i-esima
-                String currentColumName = rsmd.getColumnLabel(offset).toLowerCase();
-                
-                //cerco se quella colonna mi serve
-                for (Colonne colonna : coll) {
-                    if(colonna.getName().toLowerCase().equals(currentColumName)) {
-                        //System.out.println(tabella + ": " + colonna + " -> " + resultSet.getObject(offset));
-                        table.put(colonna, resultSet.getObject(offset++));
-                        break;
-                    }
-                }
-            }
-            constructorsMap.put(tabella, table);
+        CountCache counts = database.getCountCache();
+        Long total = counts.get(countQuery, countParams);
+
+        if(total != null) {
+            page.addAll(database.queryList(pageQuery, mapper, pageParams));
+            return total;
+        }
+
+        //le chiavi molto corte corrispondono a gran parte del catalogo: contarle costa quanto leggerlo tutto
+        int approximatePrefix = database.getApproximateCountPrefix();
+        if(approximatePrefix > 0 && countParams.length > 0 && countParams[0] instanceof String && ((String) countParams[0]).length() - 1 < approximatePrefix) {
+            page.addAll(database.queryList(pageQuery, mapper, pageParams));
+            total = Math.max(database.estimateRows(countQuery, countParams), page.size());
+        }
+        else if(countedQuery != null && database.getSearchCountMode() == SearchCountMode.SINGLE_PASS) {
+            total = database.queryPage(countedQuery, mapper, page, pageParams);
+
+            //una pagina oltre l'ultimo elemento non ha righe da cui leggere il totale
+            if(total < 0)
+                total = database.querySingle(countQuery, RowMappers.COUNT, countParams);
+        }
+        else {
+            page.addAll(database.queryList(pageQuery, mapper, pageParams));
+            total = database.querySingle(countQuery, RowMappers.COUNT, countParams);
         }
-        return constructorsMap;
+
+        counts.put(countQuery, total, countParams);
+        return total;
     }
 
 
 
 /**
- * Costruisce oggetti Song da un ResultSet e restituisce una lista di essi.
+ * Legge gli elementi di una pagina trovata dal {@link SearchEngine} e li restituisce nell'ordine della ricerca.
  *
- * Questo metodo prende un ResultSet contenente dati relativi alle canzoni, costruisce oggetti Song
- * utilizzando la HashMap associata alla tabella SONG e restituisce una lista di questi oggetti.
- * Opzionalmente, chiude il ResultSet automaticamente se autoClose è impostato su true.
- *
- * @param resultSet Il ResultSet contenente i dati delle canzoni.
- * @param autoClose Indica se chiudere automaticamente il ResultSet dopo la costruzione degli oggetti Song.
- * @return Una lista di oggetti Song costruiti dal ResultSet.
- * @throws SQLException Se si verifica un errore durante l'accesso al ResultSet o la costruzione degli oggetti Song.
+ * @param template La query che legge gli elementi, con un unico parametro per l'array degli ID.
+ * @param mapper Il RowMapper degli elementi.
+ * @param id Restituisce l'ID di un elemento.
+ * @param IDs Gli ID della pagina, nell'ordine della ricerca.
+ * @return Gli elementi della pagina; quelli eliminati dal database dopo la costruzione dell'indice non sono presenti.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
-    private static ArrayList<Song> buildSongObjects_From_resultSet(ResultSet resultSet, boolean autoClose) throws SQLException 
+    private static <T> ArrayList<T> getByIDs_inOrder(QueryTemplate template, RowMapper<T> mapper, Function<T, String> id, String[] IDs) throws SQLException 
     {
-        ArrayList<Song> result = new ArrayList<Song>();
-
-        while (resultSet.next()) { 
-            Song song = new Song(getHashMap_for_ClassConstructor(resultSet, Tabelle.SONG));
-            song.addImages(getAlbumImages_by_ID(song.getAlbumId()));
-            result.add(song);    
+        HashMap<String, T> elements = new HashMap<>();
+        for (T element : database.queryList(template, mapper, (Object) IDs))
+            elements.put(id.apply(element), element);
+
+        ArrayList<T> result = new ArrayList<>(IDs.length);
+        for (String ID : IDs) {
+            T element = elements.get(ID);
+            if(element != null)
+                result.add(element);
         }
-
-        if(autoClose) {
-            resultSet.close();
-        }
-
         return result;
     }
     
@@ -188,22 +174,8 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione dell'oggetto Account.
  */
     public static Account getAccountByEmail(String Email) throws SQLException {
-        ResultSet resultSet = database.submitQuery(QueryBuilder.getAccountByEmail_query(Email));
-
-        System.out.println(resultSet.getFetchSize());
-    
-        if (resultSet.next()) { 
-
-            HashMap<Tabelle,HashMap<Colonne, Object>> data = getHashMaps_for_ClassConstructor(resultSet, Tabelle.ACCOUNT, Tabelle.RESIDENZA);
-            
-            Residenze residenze = new Residenze(data.get(Tabelle.RESIDENZA));
-            Account account = new Account(data.get(Tabelle.ACCOUNT), residenze);
-            
-            return account;    
-        } 
-        else {
-            //Terminal.getInstance().printQueryln("nessun elemento trovato");
-            return null;
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.querySingle(QueryTemplate.ACCOUNT_BY_EMAIL, RowMappers.ACCOUNT, Email);
         }
     }
 
@@ -220,17 +192,8 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione dell'oggetto Account.
  */
     public static Account getAccountByNickname(String nickname) throws SQLException {
-        ResultSet resultSet = database.submitQuery(QueryBuilder.getAccountByNickname_query(nickname));
-        
-        if (resultSet.next()) { 
-            HashMap<Tabelle,HashMap<Colonne, Object>> data = getHashMaps_for_ClassConstructor(resultSet, Tabelle.ACCOUNT, Tabelle.RESIDENZA);
-            Residenze residenze = new Residenze(data.get(Tabelle.RESIDENZA));
-            Account account = new Account(data.get(Tabelle.ACCOUNT), residenze);
-            
-            return account;    
-        } 
-        else {
-            return null;
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.querySingle(QueryTemplate.ACCOUNT_BY_NICKNAME, RowMappers.ACCOUNT, nickname);
         }
     }
 
@@ -247,15 +210,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti MyImage.
  */
     public static ArrayList<MyImage> getAlbumImages_by_ID(String ID) throws SQLException {
-
-        ArrayList<MyImage> result = new ArrayList<MyImage>();
-        ResultSet resultSet = database.submitQuery(QueryBuilder.getAlbumImages_by_ID(ID));
-
-        while (resultSet.next()) { 
-            result.add(new MyImage(getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM_IMAGES)));
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.ALBUM_IMAGES, RowMappers.IMAGE, ID);
         }
-
-        return result; 
     }
 
 
@@ -271,15 +228,89 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti MyImage.
  */
     public static ArrayList<MyImage> getArtistImages_by_ID(String ID) throws SQLException {
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.ARTIST_IMAGES, RowMappers.IMAGE, ID);
+        }
+    }
 
-        ArrayList<MyImage> result = new ArrayList<MyImage>();
-        ResultSet resultSet = database.submitQuery(QueryBuilder.getArtistImages_by_ID(ID));
 
-        while (resultSet.next()) { 
-            result.add(new MyImage(getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM_IMAGES)));
-        }
 
-        return result; 
+/**
+ * Ottiene con una sola query le immagini di tutti gli album o gli artisti indicati.
+ *
+ * Le pagine di risultati contengono fino a decine di elementi: invece di eseguire una query per ciascuno,
+ * gli ID vengono passati insieme come array e le immagini vengono raggruppate in memoria.
+ *
+ * @param template La query delle immagini, con un unico parametro per l'array degli ID.
+ * @param IDs Gli ID degli album o degli artisti, anche ripetuti.
+ * @return Le immagini di ogni ID; gli ID senza immagini non sono presenti.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti MyImage.
+ */
+    private static HashMap<String, ArrayList<MyImage>> getImages_by_IDs(QueryTemplate template, Collection<String> IDs) throws SQLException 
+    {
+        HashMap<String, ArrayList<MyImage>> result = new HashMap<>();
+        if(IDs.isEmpty())
+            return result;
+
+        String[] distinct = new LinkedHashSet<String>(IDs).toArray(new String[0]);
+        for (MyImage image : database.queryList(template, RowMappers.IMAGE, (Object) distinct))
+            result.computeIfAbsent(image.getId(), (id) -> new ArrayList<MyImage>()).add(image);
+
+        return result;
+    }
+
+
+
+/**
+ * Aggiunge alle canzoni le immagini dei rispettivi album, caricandole con una sola query.
+ *
+ * @param songs Le canzoni a cui aggiungere le immagini.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+ */
+    private static void addSongsImages(ArrayList<Song> songs) throws SQLException {
+        ArrayList<String> IDs = new ArrayList<String>(songs.size());
+        for (Song song : songs)
+            IDs.add(song.getAlbumId());
+
+        HashMap<String, ArrayList<MyImage>> images = getImages_by_IDs(QueryTemplate.ALBUM_IMAGES_BY_IDS, IDs);
+        for (Song song : songs)
+            song.addImages(images.getOrDefault(song.getAlbumId(), new ArrayList<MyImage>()));
+    }
+
+
+
+/**
+ * Aggiunge agli album le rispettive immagini, caricandole con una sola query.
+ *
+ * @param albums Gli album a cui aggiungere le immagini.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+ */
+    private static void addAlbumsImages(ArrayList<Album> albums) throws SQLException {
+        ArrayList<String> IDs = new ArrayList<String>(albums.size());
+        for (Album album : albums)
+            IDs.add(album.getID());
+
+        HashMap<String, ArrayList<MyImage>> images = getImages_by_IDs(QueryTemplate.ALBUM_IMAGES_BY_IDS, IDs);
+        for (Album album : albums)
+            album.addImages(images.getOrDefault(album.getID(), new ArrayList<MyImage>()));
+    }
+
+
+
+/**
+ * Aggiunge agli artisti le rispettive immagini, caricandole con una sola query.
+ *
+ * @param artists Gli artisti a cui aggiungere le immagini.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+ */
+    private static void addArtistsImages(ArrayList<Artist> artists) throws SQLException {
+        ArrayList<String> IDs = new ArrayList<String>(artists.size());
+        for (Artist artist : artists)
+            IDs.add(artist.getID());
+
+        HashMap<String, ArrayList<MyImage>> images = getImages_by_IDs(QueryTemplate.ARTIST_IMAGES_BY_IDS, IDs);
+        for (Artist artist : artists)
+            artist.addImages(images.getOrDefault(artist.getID(), new ArrayList<MyImage>()));
     }
 
 
@@ -296,26 +327,19 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione delle query o l'inserimento dei dati.
  */
     public static void addAccount_and_addResidence(HashMap<Colonne, Object> colonne_account, HashMap<Colonne, Object> colonne_residenza) throws SQLException {
+        try (PooledConnection connection = database.borrowConnection()) {
+            String residence_id = database.querySingle(QueryTemplate.RESIDENCE_ID, RowMappers.ID, colonne_residenza.get(Colonne.VIA_PIAZZA), colonne_residenza.get(Colonne.CIVIC_NUMER), colonne_residenza.get(Colonne.COUNCIL_NAME), colonne_residenza.get(Colonne.PROVINCE_NAME));
+
+            //aggiungo la resistenza se non esiste
+            if(residence_id == null) {
+               residence_id = IdGenerator.nextId();
+               colonne_residenza.put(Colonne.ID, residence_id);
+               database.submitInsertQuery(QueryBuilder.insert_query_creator(Tabelle.RESIDENZA, colonne_residenza));
+            }
 
-        String query = QueryBuilder.getResidenceId_Query((String)colonne_residenza.get(Colonne.VIA_PIAZZA), (int)colonne_residenza.get(Colonne.CIVIC_NUMER), (String)colonne_residenza.get(Colonne.COUNCIL_NAME), (String)colonne_residenza.get(Colonne.PROVINCE_NAME));
-        String residence_id = "";
-
-        ResultSet resultSet = database.submitQuery(query);
-
-        //aggiungo la resistenza se non esiste
-        if(resultSet.next() == true) {
-            residence_id = resultSet.getString(Colonne.ID.getName());
-            resultSet.close();
-        }
-        else  {
-           resultSet.close(); 
-           residence_id = generate_ID_from_Time();
-           colonne_residenza.put(Colonne.ID, residence_id);
-           database.submitInsertQuery(QueryBuilder.insert_query_creator(Tabelle.RESIDENZA, colonne_residenza));
+            colonne_account.put(Colonne.RESIDENCE_ID_REF, residence_id);
+            database.submitInsertQuery(QueryBuilder.insert_query_creator(Tabelle.ACCOUNT, colonne_account));
         }
-
-        colonne_account.put(Colonne.RESIDENCE_ID_REF, residence_id);
-        database.submitInsertQuery(QueryBuilder.insert_query_creator(Tabelle.ACCOUNT, colonne_account));
     }
 
 
@@ -333,35 +357,35 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
  */
     public static ArrayList<Song> getTopPopularSongs(long limit, long offset) throws SQLException {
-
-        /*
-        * SELECT * FROM Canzone c JOIN immaginialbums on immaginialbums.id = c.id_album  
-            WHERE immaginialbums.image_size = '300x300' ORDER BY c.popularity DESC limit 10;
-        * 
-        */
-        
-        ArrayList<Song> result = new ArrayList<Song>();
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM Canzone c ORDER BY c.popularity DESC ");
-        sb.append("LIMIT " + limit + " OFFSET " + offset + ";");
+        return getSongs(QueryTemplate.POPULAR_SONGS, limit, offset);
+    }
 
 
-        ResultSet resultSet = database.submitQuery(sb.toString());
 
-        while (resultSet.next()) { 
-            Song song = new Song(getHashMap_for_ClassConstructor(resultSet, Tabelle.SONG));
-            result.add(song);    
+/**
+ * Ottiene una pagina delle canzoni popolari e il cursore della pagina successiva.
+ *
+ * Se il cursore è indicato la pagina inizia dopo l'ultima canzone della pagina che lo ha restituito e l'offset
+ * viene ignorato; altrimenti la pagina inizia dopo {@code offset} canzoni.
+ *
+ * @param limit  Il numero massimo di canzoni da restituire.
+ * @param offset Il numero di canzoni da saltare se il cursore è null.
+ * @param after  Il cursore restituito con la pagina precedente, oppure null.
+ * @return Un array contenente la lista di canzoni e il cursore della pagina successiva, null se la pagina è l'ultima.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
+ * @throws IllegalArgumentException Se il cursore non è valido.
+ */
+    public static Object[] getTopPopularSongs_and_cursor(long limit, long offset, String after) throws SQLException 
+    {
+        ArrayList<Song> result;
+        if(after == null) {
+            result = getSongs(QueryTemplate.POPULAR_SONGS, limit, offset);
         }
-
-        resultSet.close();
-
-        for (Song song : result) {
-            song.addImages(getAlbumImages_by_ID(song.getAlbumId()));
+        else {
+            PageCursor cursor = PageCursor.decode(after);
+            result = getSongs(QueryTemplate.POPULAR_SONGS_AFTER, cursor.getSortValue(), cursor.getId(), limit);
         }
-
-
-        return result; 
+        return new Object[] {result, PageCursor.next(result, limit, Song::getPopularity, Song::getId)};
     }
 
 
@@ -381,75 +405,136 @@ public class QueriesManager
  */
     public static ArrayList<Album> getRecentPublischedAlbum(long limit, long offset, int threshold) throws SQLException 
     {
-        ArrayList<Album> result = new ArrayList<Album>();
-        String query = QueryBuilder.getRecentPublischedAlbum_query(limit, offset, threshold);
-        
-        
-            ResultSet resultSet = database.submitQuery(query);
-            while (resultSet.next()) { 
-                
-                //creo un album
-                Album album = new Album(getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM));
-                result.add(album);
-                //System.out.println(album);
-            } 
-            resultSet.close();
-        
-            
-        for (Album album : result) {
-            album.addImages(getAlbumImages_by_ID(album.getID()));
-
-            //creo ed eseguo la query per ottenere tutte le canzoni dell'album
-            /*
-            String albums_song_query = QueryBuilder.getSongs_by_AlbumID_query(album.getID());
-            ResultSet songResultSet = database.submitQuery(albums_song_query);
-            
-            while(songResultSet.next()) {
-                String song_id = songResultSet.getString(Colonne.ID.getName());
-                album.addSongID(song_id);
-            }
-            songResultSet.close();
-            */
-            
-        }      
+        try (PooledConnection connection = database.borrowConnection()) {
+            ArrayList<Album> result = database.queryList(QueryTemplate.RECENT_ALBUMS, RowMappers.ALBUM, threshold, limit, offset);
+            addAlbumsImages(result);
+            return result;
+        }
+    }
 
 
-        return result;
+
+/**
+ * Ottiene una pagina degli album pubblicati recentemente e il cursore della pagina successiva.
+ *
+ * Se il cursore è indicato la pagina inizia dopo l'ultimo album della pagina che lo ha restituito e l'offset
+ * viene ignorato; altrimenti la pagina inizia dopo {@code offset} album.
+ *
+ * @param limit     Il numero massimo di album da restituire.
+ * @param offset    Il numero di album da saltare se il cursore è null.
+ * @param after     Il cursore restituito con la pagina precedente, oppure null.
+ * @param threshold La soglia di pubblicazione degli album.
+ * @return Un array contenente la lista di album e il cursore della pagina successiva, null se la pagina è l'ultima.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Album.
+ * @throws IllegalArgumentException Se il cursore non è valido.
+ */
+    public static Object[] getRecentPublischedAlbum_and_cursor(long limit, long offset, String after, int threshold) throws SQLException 
+    {
+        if(after == null) {
+            ArrayList<Album> result = getRecentPublischedAlbum(limit, offset, threshold);
+            return new Object[] {result, PageCursor.next(result, limit, Album::getReleaseDate, Album::getID)};
+        }
+
+        try (PooledConnection connection = database.borrowConnection()) {
+            PageCursor cursor = PageCursor.decode(after);
+            ArrayList<Album> result = database.queryList(QueryTemplate.RECENT_ALBUMS_AFTER, RowMappers.ALBUM, threshold, cursor.getSortValue(), cursor.getId(), limit);
+            addAlbumsImages(result);
+            return new Object[] {result, PageCursor.next(result, limit, Album::getReleaseDate, Album::getID)};
+        }
     }
 
+
 /**
  * Cerca tutte le canzoni che contengono nel titolo la parola passata come parametro e restituisce anche il numero di elementi
+ * e il cursore della pagina successiva. La ricerca per titolo usa il {@link SearchEngine} quando è pronto e ordina
+ * le canzoni per pertinenza e popolarità; altrimenti, come le altre ricerche, le canzoni trovate sono ordinate per titolo.
+ * La ricerca approssimata trova anche i titoli con errori di battitura o parole mancanti; se il SearchEngine
+ * non è pronto viene eseguita la ricerca per titolo.
  * @param search_key la parola da cercare nel titolo delle canzoni
  * @param limit numero di record massimi che si vuole avere come risultato
- * @param offset numero di record da saltare
- * @return una lista di Song che contengono nel titolo la parola passata come parametro
+ * @param offset numero di record da saltare se il cursore è null
+ * @param after il cursore restituito con la pagina precedente, oppure null; la ricerca per emozioni e quella approssimata lo ignorano
+ * @param mode 0 per titolo, 1 per data, 2 per numero di emozioni, {@link #FUZZY_SEARCH_MODE} per la ricerca approssimata
+ * @return il numero di elementi, una lista di Song che contengono nel titolo la parola passata come parametro
+ *         e il cursore della pagina successiva, null se la pagina è l'ultima o se la ricerca è per emozioni o approssimata
  * @throws SQLException
+ * @throws IllegalArgumentException se il cursore non è valido
  */
-    public static Object[] searchSong_and_countElement(String search_key, long limit, long offset, int mode) throws SQLException 
+    public static Object[] searchSong_and_countElement(String search_key, long limit, long offset, String after, int mode) throws SQLException 
     {
-        
-        ArrayList<Song> pageElement = new ArrayList<Song>();
-        long total_element = 0;
-
-        String query = QueryBuilder.getSongSearch_query(search_key, limit, offset, mode);
-        ResultSet resultSet1 = database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            ArrayList<Song> pageElement = new ArrayList<Song>();
+            long total_element;
+            String next = null;
+
+            SearchIndex.Hits hits = null;
+            if(mode == FUZZY_SEARCH_MODE) {
+                hits = SearchEngine.fuzzySearchSongs(search_key, limit, offset);
+                mode = 0;
+            }
+            if(hits == null && mode == 0)
+                hits = SearchEngine.searchSongs(search_key, limit, offset, after);
+            if(hits != null) {
+                pageElement = getByIDs_inOrder(QueryTemplate.SONGS_BY_IDS, RowMappers.SONG, Song::getId, hits.getIds());
+                addSongsImages(pageElement);
+                return new Object[] {hits.getTotal(), pageElement, hits.getNext()};
+            }
 
-        while (resultSet1.next()) { 
-            Song song = new Song(getHashMap_for_ClassConstructor(resultSet1, Tabelle.SONG));
-            song.addImages(getAlbumImages_by_ID(song.getAlbumId()));
-            pageElement.add(song);    
+            //la ricerca per emozioni ordina le canzoni più commentate e non usa la chiave di ricerca né il cursore
+            if(mode == 2) {
+                total_element = searchPage(pageElement, RowMappers.SONG, QueryTemplate.SEARCH_SONGS_BY_EMOTIONS, QueryTemplate.SEARCH_SONGS_BY_EMOTIONS_COUNTED,
+                    new Object[] {limit, offset}, QueryTemplate.COUNT_SONGS_BY_EMOTIONS);
+            }
+            else {
+                QueryTemplate countQuery = mode == 1 ? QueryTemplate.COUNT_SONGS_BY_DATE : QueryTemplate.COUNT_SONGS_BY_TITLE;
+                if(after == null) {
+                    total_element = searchPage(pageElement, RowMappers.SONG,
+                        mode == 1 ? QueryTemplate.SEARCH_SONGS_BY_DATE : QueryTemplate.SEARCH_SONGS_BY_TITLE,
+                        mode == 1 ? QueryTemplate.SEARCH_SONGS_BY_DATE_COUNTED : QueryTemplate.SEARCH_SONGS_BY_TITLE_COUNTED,
+                        new Object[] {search_key + "%", limit, offset}, countQuery, search_key + "%");
+                }
+                else {
+                    PageCursor cursor = PageCursor.decode(after);
+                    total_element = searchPage(pageElement, RowMappers.SONG,
+                        mode == 1 ? QueryTemplate.SEARCH_SONGS_BY_DATE_AFTER : QueryTemplate.SEARCH_SONGS_BY_TITLE_AFTER, null,
+                        new Object[] {search_key + "%", cursor.getSortValue(), cursor.getId(), limit}, countQuery, search_key + "%");
+                }
+                next = PageCursor.next(pageElement, limit, Song::getTitle, Song::getId);
+            }
+            addSongsImages(pageElement);
+    
+            return new Object[] {total_element, pageElement, next}; 
         }
+    }
 
-        resultSet1.close();
-      
-        String query_result = QueryBuilder.getSongSearch_Count_query(search_key, mode);
-        ResultSet resultSet2 = database.submitQuery(query_result);
 
-        resultSet2.next();
-        total_element = (long) resultSet2.getObject("count");
-        resultSet2.close();
-    
-        return new Object[] {total_element, pageElement}; 
+
+/**
+ * Cerca le canzoni con la ricerca a faccette: anno di pubblicazione, genere dell'artista, fascia di popolarità
+ * ed emozione con più voti. I valori dello stesso facet sono in alternativa, facet diversi devono essere tutti soddisfatti.
+ * Le canzoni sono ordinate dalla più popolare e vengono restituiti anche i conteggi dei valori di ogni facet,
+ * calcolati con i filtri degli altri facet.
+ * @param filters per ogni facet i valori ammessi; i facet assenti non filtrano le canzoni
+ * @param limit numero di record massimi che si vuole avere come risultato
+ * @param offset numero di record da saltare
+ * @return il numero di elementi, una lista di Song e una HashMap che associa al nome di ogni facet
+ *         una HashMap con il numero di canzoni di ogni suo valore
+ * @throws SQLException se l'indice a faccette deve essere costruito e la lettura del catalogo non riesce
+ */
+    public static Object[] facetSearch(EnumMap<FacetType, String[]> filters, long limit, long offset) throws SQLException 
+    {
+        FacetIndex.Result result = SearchEngine.facetSearch(filters, limit, offset);
+
+        ArrayList<Song> pageElement;
+        try (PooledConnection connection = database.borrowConnection()) {
+            pageElement = getByIDs_inOrder(QueryTemplate.SONGS_BY_IDS, RowMappers.SONG, Song::getId, result.getIds());
+            addSongsImages(pageElement);
+        }
+
+        HashMap<String, Object> counts = new HashMap<>();
+        for (FacetType type : result.getCounts().keySet())
+            counts.put(type.toString(), new HashMap<String, Object>(result.getCounts().get(type)));
+        return new Object[] {result.getTotal(), pageElement, counts};
     }
 
 
@@ -462,8 +547,7 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
  */
     public static ArrayList<Song> searchSongByIDs(String[] IDs) throws SQLException {
-        String query = QueryBuilder.getSongByID_query(IDs);
-        return buildSongObjects_From_resultSet(database.submitQuery(query), true);
+        return getSongs(QueryTemplate.SONGS_BY_IDS, (Object) IDs);
     }
 
 
@@ -476,47 +560,52 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
  */
     public static ArrayList<Song> getAlbumSongs(String albumID) throws SQLException {
-        String query = QueryBuilder.getAlbumSongs_query(albumID);
-        return buildSongObjects_From_resultSet(database.submitQuery(query), true);
+        return getSongs(QueryTemplate.ALBUM_SONGS, albumID);
     }
 
 
 
 /**
  * Esegue una ricerca degli album in base ai criteri specificati.
+ * Se il {@link SearchEngine} è pronto gli album sono ordinati per pertinenza e popolarità, altrimenti per data di pubblicazione.
  *
  * @param search La stringa di ricerca per gli album.
  * @param limit  Il numero massimo di album da restituire.
- * @param offset Il numero di album da saltare prima di iniziare a restituire risultati.
- * @return Un array contenente il numero totale di elementi trovati e una lista di oggetti Album corrispondenti ai criteri specificati.
+ * @param offset Il numero di album da saltare se il cursore è null.
+ * @param after  Il cursore restituito con la pagina precedente, oppure null; la ricerca approssimata lo ignora.
+ * @param mode   0 per la ricerca per nome, {@link #FUZZY_SEARCH_MODE} per la ricerca approssimata, che tollera errori
+ *               di battitura e parole mancanti ed è eseguita per nome se il SearchEngine non è pronto.
+ * @return Un array contenente il numero totale di elementi trovati, una lista di oggetti Album corrispondenti ai criteri specificati
+ *         e il cursore della pagina successiva, null se la pagina è l'ultima o se la ricerca è approssimata.
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Album.
+ * @throws IllegalArgumentException Se il cursore non è valido.
  */
-    public static Object[] searchAlbum(String search, long limit, long offset) throws SQLException {
-        ArrayList<Album> result = new ArrayList<Album>();
-
-        String query = QueryBuilder.getAlbumSearch_query(search, limit, offset);
-        ResultSet resultSet = database.submitQuery(query);
-
-        while (resultSet.next()) { 
-            Album album = new Album(getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM));
-            album.addImages(getAlbumImages_by_ID(album.getID()));
-            result.add(album);    
-        }
-
-        resultSet.close();
-
-        /*for (Album album : result) {
-            album.addImages(getAlbumImages_by_ID(album.getID()));
-        }*/
-
-        String query_result = QueryBuilder.getAlbumSearch_Count_query(search);
-        ResultSet resultSet2 = database.submitQuery(query_result);
+    public static Object[] searchAlbum(String search, long limit, long offset, String after, int mode) throws SQLException {
+        try (PooledConnection connection = database.borrowConnection()) {
+            SearchIndex.Hits hits = mode == FUZZY_SEARCH_MODE ? SearchEngine.fuzzySearchAlbums(search, limit, offset) : null;
+            if(hits == null)
+                hits = SearchEngine.searchAlbums(search, limit, offset, after);
+            if(hits != null) {
+                ArrayList<Album> result = getByIDs_inOrder(QueryTemplate.ALBUMS_BY_IDS, RowMappers.ALBUM, Album::getID, hits.getIds());
+                addAlbumsImages(result);
+                return new Object[] {hits.getTotal(), result, hits.getNext()};
+            }
 
-        resultSet2.next();
-        long total_element = (long) resultSet2.getObject("count");
-        resultSet2.close();
+            ArrayList<Album> result = new ArrayList<Album>();
+            long total_element;
+            if(after == null) {
+                total_element = searchPage(result, RowMappers.ALBUM, QueryTemplate.SEARCH_ALBUMS, QueryTemplate.SEARCH_ALBUMS_COUNTED,
+                    new Object[] {search + "%", limit, offset}, QueryTemplate.COUNT_ALBUMS, search + "%");
+            }
+            else {
+                PageCursor cursor = PageCursor.decode(after);
+                total_element = searchPage(result, RowMappers.ALBUM, QueryTemplate.SEARCH_ALBUMS_AFTER, null,
+                    new Object[] {search + "%", cursor.getSortValue(), cursor.getId(), limit}, QueryTemplate.COUNT_ALBUMS, search + "%");
+            }
+            addAlbumsImages(result);
     
-        return new Object[] {total_element, result}; 
+            return new Object[] {total_element, result, PageCursor.next(result, limit, Album::getReleaseDate, Album::getID)}; 
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -533,8 +622,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void addPlaylist(String accountID, String playlistName) throws SQLException  {
-        String query = QueryBuilder.addPlaylist_query(accountID, playlistName, getCurrentDate(), generate_ID_from_Time());
-        database.submitInsertQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.executeUpdate(QueryTemplate.ADD_PLAYLIST, IdGenerator.nextId(), playlistName, getCurrentDate(), accountID);
+        }
     }
 
 
@@ -547,16 +637,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static String[] getPlaylistSongsID(String playlistID) throws SQLException {
-        String query = QueryBuilder.getPlaylistSongsID_query(playlistID);
-        ResultSet resultSet = database.submitQuery(query);
-        String[] output = new String[resultSet.getFetchSize()];
-        int offset = 0;
-
-        while (resultSet.next()) { 
-            output[offset++] = resultSet.getString(Colonne.ID.getName());  
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.PLAYLIST_SONGS_ID, RowMappers.ID, playlistID).toArray(new String[0]);
         }
-
-        return output;
     }
 
 
@@ -569,17 +652,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Playlist.
  */
     public static Object getAccountsPlaylists(String accountID) throws SQLException {
-        String query = QueryBuilder.getAccountsPlaylists_query(accountID);
-        ResultSet resultSet = database.submitQuery(query);
-        ArrayList<Playlist> list = new ArrayList<Playlist>();
-
-        while (resultSet.next()) { 
-            Playlist playlist = new Playlist(getHashMap_for_ClassConstructor(resultSet, Tabelle.PLAYLIST));
-            //playlist.setSongsID(getPlaylistSongsID(playlist.getId()));
-            list.add(playlist); 
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.ACCOUNT_PLAYLISTS, RowMappers.PLAYLIST, accountID);
         }
-
-        return list;
     }
 
 
@@ -593,8 +668,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void addSongToPlaylist(String accountID, String playlistID, String songID) throws SQLException {
-        String query = QueryBuilder.addSongToPlaylist_query(playlistID, songID);
-        database.submitInsertQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.executeUpdate(QueryTemplate.ADD_SONG_PLAYLIST, playlistID, songID);
+        }
     }
 
 
@@ -608,8 +684,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void removeSongFromPlaylist (String accountID, String playlistID, String songID) throws SQLException {
-        String query = QueryBuilder.removeSongFromPlaylist_query(playlistID, songID);
-        database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.executeUpdate(QueryTemplate.REMOVE_SONG_PLAYLIST, playlistID, songID);
+        }
     }
 
 
@@ -623,27 +700,104 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void renamePlaylist(String accountID, String playlistID, String newName) throws SQLException {
-        String query = QueryBuilder.renamePlaylist_query(playlistID, newName);
-        database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.executeUpdate(QueryTemplate.RENAME_PLAYLIST, newName, playlistID);
+        }
     }
 
 /**
- * Funnzione per crecre un nuovo commento
+ * Funnzione per crecre un nuovo commento.
+ * Nella stessa transazione aggiunge il voto al riepilogo delle emozioni della canzone.
  * @throws SQLException
  */
     public static void addEmotion(HashMap<Colonne, Object> ColonneValore) throws SQLException {
-        String query = QueryBuilder.insert_query_creator(PredefinedSQLCode.Tabelle.EMOZIONE, ColonneValore);
-        database.submitQuery(query);
+        String songID = (String) ColonneValore.get(Colonne.SONG_ID_REF);
+        String type = (String) ColonneValore.get(Colonne.TYPE);
+        int value = ((Number) ColonneValore.get(Colonne.VALUE)).intValue();
+
+        try (PooledConnection connection = database.borrowConnection()) {
+            connection.begin();
+            database.executeUpdate(QueryTemplate.ADD_EMOTION, ColonneValore.get(Colonne.ID), type, value,
+                ColonneValore.get(Colonne.COMMENTO), ColonneValore.get(Colonne.ACCOUNT_ID_REF), songID);
+            database.executeUpdate(QueryTemplate.ADD_EMOTION_SUMMARY, songID, type, value);
+            database.executeUpdate(QueryTemplate.ADD_EMOTION_TOTAL, songID);
+            connection.commit();
+        }
+        database.getCountCache().invalidate(QueryTemplate.COUNT_SONGS_BY_EMOTIONS);
     }
         
 /**
- * Eliminare un commento
+ * Eliminare un commento.
+ * Nella stessa transazione toglie il voto dal riepilogo delle emozioni della canzone.
  * @throws SQLException
  */
     public static void deleteEmotion(String emotionID) throws SQLException{
-        
-        String query = QueryBuilder.deleteQueryCreator_by_primaryKey(Tabelle.EMOZIONE, emotionID);
-        database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            connection.begin();
+            Emotion removed = database.querySingle(QueryTemplate.DELETE_EMOTION, RowMappers.EMOTION, emotionID);
+            if(removed != null) {
+                database.executeUpdate(QueryTemplate.REMOVE_EMOTION_SUMMARY, removed.getEmotionValue(), removed.getID_Song(), removed.getEmotionType());
+                database.executeUpdate(QueryTemplate.REMOVE_EMOTION_TOTAL, removed.getID_Song());
+            }
+            connection.commit();
+        }
+        database.getCountCache().invalidate(QueryTemplate.COUNT_SONGS_BY_EMOTIONS);
+    }
+
+
+
+/**
+ * Ottiene il riepilogo delle emozioni di una canzone: il numero di voti e la somma dei valori per ogni tipo di emozione.
+ *
+ * @param songID L'ID della canzone.
+ * @return Una HashMap che associa a ogni tipo di emozione votato un array con il numero di voti e la somma dei valori.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+ */
+    public static HashMap<String, long[]> getSongEmotionSummary(String songID) throws SQLException 
+    {
+        ArrayList<Object[]> rows;
+        try (PooledConnection connection = database.borrowConnection()) {
+            rows = database.queryList(QueryTemplate.SONG_EMOTION_SUMMARY, (resultSet) -> new Object[] {
+                resultSet.getString(Colonne.TYPE.getName()),
+                new long[] {resultSet.getLong(Colonne.VOTES.getName()), resultSet.getLong(Colonne.VALUE_SUM.getName())}
+            }, songID);
+        }
+
+        HashMap<String, long[]> summary = new HashMap<>();
+        for (Object[] row : rows)
+            summary.put((String) row[0], (long[]) row[1]);
+        return summary;
+    }
+
+
+
+/**
+ * Ricalcola il riepilogo delle emozioni di tutte le canzoni a partire dalla tabella delle emozioni.
+ *
+ * Serve per i database creati prima del riepilogo o modificati senza passare dal server. Durante il ricalcolo
+ * la tabella delle emozioni è bloccata in scrittura, così nessun voto viene perso.
+ *
+ * @return Il numero di canzoni con almeno un'emozione.
+ * @throws SQLException Se si verifica un errore durante il ricalcolo; in questo caso il riepilogo precedente resta invariato.
+ */
+    public static int rebuildEmotionSummaries() throws SQLException 
+    {
+        int songs;
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.submitQuery(PredefinedSQLCode.createTable_Queries.get(Tabelle.EMOTION_SUMMARY));
+            database.submitQuery(PredefinedSQLCode.createTable_Queries.get(Tabelle.EMOTION_TOTALS));
+            database.submitQuery(PredefinedSQLCode.createIndex_Queries.get(Indici.EMOTION_TOTALS_VOTES));
+
+            connection.begin();
+            database.executeUpdate(QueryTemplate.LOCK_EMOTIONS);
+            database.executeUpdate(QueryTemplate.CLEAR_EMOTION_SUMMARY);
+            database.executeUpdate(QueryTemplate.CLEAR_EMOTION_TOTALS);
+            database.executeUpdate(QueryTemplate.REBUILD_EMOTION_SUMMARY);
+            songs = database.executeUpdate(QueryTemplate.REBUILD_EMOTION_TOTALS);
+            connection.commit();
+        }
+        database.getCountCache().invalidate(QueryTemplate.COUNT_SONGS_BY_EMOTIONS);
+        return songs;
     }
 
     
@@ -657,15 +811,42 @@ public class QueriesManager
  */
     public static Object getSongEmotion(String songID) throws SQLException 
     {
-        String query = QueryBuilder.getSongEmotion_query(songID);
-        ResultSet resultSet = database.submitQuery(query);
-        ArrayList<Emotion> list = new ArrayList<Emotion>();
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.SONG_EMOTIONS, RowMappers.EMOTION, songID);
+        }
+    }
+
+
 
-        while (resultSet.next()) { 
-            Emotion playlist = new Emotion(getHashMap_for_ClassConstructor(resultSet, Tabelle.EMOZIONE));
-            list.add(playlist); 
+/**
+ * Ottiene una pagina delle emozioni con un commento di una canzone e il cursore della pagina successiva.
+ *
+ * Le emozioni sono ordinate dalla più recente: prima quelle con gli ID di {@link utility.IdGenerator}, che sono ordinati
+ * nel tempo, poi quelle con i vecchi ID SHA-256, in un ordine stabile ma non cronologico.
+ * Se il cursore è indicato la pagina inizia dopo l'ultima emozione della pagina che lo ha restituito e l'offset
+ * viene ignorato; altrimenti la pagina inizia dopo {@code offset} emozioni.
+ *
+ * @param songID L'ID della canzone.
+ * @param limit  Il numero massimo di emozioni da restituire.
+ * @param offset Il numero di emozioni da saltare se il cursore è null.
+ * @param after  Il cursore restituito con la pagina precedente, oppure null.
+ * @return Un array contenente la lista di emozioni e il cursore della pagina successiva, null se la pagina è l'ultima.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Emotion.
+ * @throws IllegalArgumentException Se il cursore non è valido.
+ */
+    public static Object[] getSongComments(String songID, long limit, long offset, String after) throws SQLException 
+    {
+        ArrayList<Emotion> result;
+        try (PooledConnection connection = database.borrowConnection()) {
+            if(after == null) {
+                result = database.queryList(QueryTemplate.SONG_COMMENTS, RowMappers.EMOTION, songID, limit, offset);
+            }
+            else {
+                PageCursor cursor = PageCursor.decode(after);
+                result = database.queryList(QueryTemplate.SONG_COMMENTS_AFTER, RowMappers.EMOTION, songID, cursor.getId(), cursor.getId(), cursor.getId(), limit);
+            }
         }
-        return list;
+        return new Object[] {result, PageCursor.next(result, limit, Emotion::getID, Emotion::getID)};
     }
 
 
@@ -679,15 +860,9 @@ public class QueriesManager
  */
     public static Object getAccountEmotions(String accountID) throws SQLException 
     {
-        String query = QueryBuilder.getAccountEmotions(accountID);
-        ResultSet resultSet = database.submitQuery(query);
-        ArrayList<Emotion> list = new ArrayList<Emotion>();
-
-        while (resultSet.next()) { 
-            Emotion playlist = new Emotion(getHashMap_for_ClassConstructor(resultSet, Tabelle.EMOZIONE));
-            list.add(playlist); 
+        try (PooledConnection connection = database.borrowConnection()) {
+            return database.queryList(QueryTemplate.ACCOUNT_EMOTIONS, RowMappers.EMOTION, accountID);
         }
-        return list;
     }
 
 
@@ -700,8 +875,9 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void deletePlaylist(String accountID, String playlistID) throws SQLException {
-        String query = QueryBuilder.deletePlaylist_query(playlistID);
-        database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            database.executeUpdate(QueryTemplate.DELETE_PLAYLIST, playlistID);
+        }
     }
 
 
@@ -713,8 +889,15 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
  */
     public static void deleteAccount(String accountID) throws SQLException {
-        String query = QueryBuilder.deleteAccount_query(accountID);
-        database.submitQuery(query);
+        try (PooledConnection connection = database.borrowConnection()) {
+            //le emozioni dell'account vengono eliminate a cascata: prima si tolgono i loro voti dal riepilogo
+            connection.begin();
+            database.executeUpdate(QueryTemplate.REMOVE_ACCOUNT_EMOTION_SUMMARY, accountID);
+            database.executeUpdate(QueryTemplate.REMOVE_ACCOUNT_EMOTION_TOTAL, accountID);
+            database.executeUpdate(QueryTemplate.DELETE_ACCOUNT, accountID);
+            connection.commit();
+        }
+        database.getCountCache().invalidate(QueryTemplate.COUNT_SONGS_BY_EMOTIONS);
     }
 
 
@@ -727,19 +910,7 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
  */
     public static ArrayList<Song> getArtistSong(String artistID) throws SQLException {
-        String query = QueryBuilder.getArtistSong_query(artistID);
-        ArrayList<Song> result = new ArrayList<Song>();
-
-        ResultSet resultSet = database.submitQuery(query);
-        while (resultSet.next()) { 
-            Song song = new Song(getHashMap_for_ClassConstructor(resultSet, Tabelle.SONG));
-            //album.addImages(getAlbumImages_by_ID(album.getID()));
-            
-            song.addImages(getAlbumImages_by_ID(song.getAlbumId()));
-            result.add(song);    
-        }
-
-        return result;
+        return getSongs(QueryTemplate.ARTIST_SONGS, artistID);
     }
 
 
@@ -752,54 +923,58 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione dell'oggetto Artist.
  */
     public static Artist getArtistByID(String ID) throws SQLException {
+        try (PooledConnection connection = database.borrowConnection()) {
+            Artist artist = database.querySingle(QueryTemplate.ARTIST_BY_ID, RowMappers.ARTIST, ID);
+            if(artist != null)
+                artist.addImages(getArtistImages_by_ID(artist.getID()));
 
-        String query = QueryBuilder.getArtistByID_query(ID);
-        ResultSet resultSet = database.submitQuery(query);
-
-        if(!resultSet.next())
-            return null;
-
-        Artist artist = new Artist(getHashMap_for_ClassConstructor(resultSet, Tabelle.ARTIST));
-        artist.addImages(getArtistImages_by_ID(artist.getID()));
-
-        return artist;
-    
+            return artist;
+        }
     }
 
 
 
 /**
  * Cerca gli artisti che corrispondono alla chiave specificata.
+ * Se il {@link SearchEngine} è pronto gli artisti sono ordinati per pertinenza e follower, altrimenti solo per follower.
  *
  * @param key   La chiave di ricerca per gli artisti.
  * @param limit Il limite di risultati restituiti.
- * @param offset L'offset per la paginazione dei risultati.
- * @return Un array contenente il totale degli elementi e un'istanza di ArrayList con oggetti Artist che corrispondono alla ricerca.
+ * @param offset L'offset per la paginazione dei risultati, usato se il cursore è null.
+ * @param after Il cursore restituito con la pagina precedente, oppure null; la ricerca approssimata lo ignora.
+ * @param mode 0 per la ricerca per nome, {@link #FUZZY_SEARCH_MODE} per la ricerca approssimata, che tollera errori
+ *             di battitura e parole mancanti ed è eseguita per nome se il SearchEngine non è pronto.
+ * @return Un array contenente il totale degli elementi, un'istanza di ArrayList con oggetti Artist che corrispondono alla ricerca
+ *         e il cursore della pagina successiva, null se la pagina è l'ultima o se la ricerca è approssimata.
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Artist.
+ * @throws IllegalArgumentException Se il cursore non è valido.
  */
-    public static Object[] searchArtists(String key, long limit, long offset) throws SQLException {
-        String query = QueryBuilder.searchArtist_query(key, limit, offset);
-        ArrayList<Artist> result = new ArrayList<Artist>();
-
-        ResultSet resultSet = database.submitQuery(query);
-        while (resultSet.next()) { 
-            Artist artist = new Artist(getHashMap_for_ClassConstructor(resultSet, Tabelle.ARTIST));
-            //album.addImages(getAlbumImages_by_ID(album.getID()));
-            
-            artist.addImages(getArtistImages_by_ID(artist.getID()));
-            
-            result.add(artist);    
-        }
-
-        String query_result = QueryBuilder.searchArtist_Count_query(key);
-        ResultSet resultSet2 = database.submitQuery(query_result);
+    public static Object[] searchArtists(String key, long limit, long offset, String after, int mode) throws SQLException {
+        try (PooledConnection connection = database.borrowConnection()) {
+            SearchIndex.Hits hits = mode == FUZZY_SEARCH_MODE ? SearchEngine.fuzzySearchArtists(key, limit, offset) : null;
+            if(hits == null)
+                hits = SearchEngine.searchArtists(key, limit, offset, after);
+            if(hits != null) {
+                ArrayList<Artist> result = getByIDs_inOrder(QueryTemplate.ARTISTS_BY_IDS, RowMappers.ARTIST, Artist::getID, hits.getIds());
+                addArtistsImages(result);
+                return new Object[] {hits.getTotal(), result, hits.getNext()};
+            }
 
-        resultSet2.next();
-        long total_element = (long) resultSet2.getObject("count");
-        resultSet2.close();
+            ArrayList<Artist> result = new ArrayList<Artist>();
+            long total_element;
+            if(after == null) {
+                total_element = searchPage(result, RowMappers.ARTIST, QueryTemplate.SEARCH_ARTISTS, QueryTemplate.SEARCH_ARTISTS_COUNTED,
+                    new Object[] {key + "%", limit, offset}, QueryTemplate.COUNT_ARTISTS, key + "%");
+            }
+            else {
+                PageCursor cursor = PageCursor.decode(after);
+                total_element = searchPage(result, RowMappers.ARTIST, QueryTemplate.SEARCH_ARTISTS_AFTER, null,
+                    new Object[] {key + "%", cursor.getSortValue(), cursor.getId(), limit}, QueryTemplate.COUNT_ARTISTS, key + "%");
+            }
+            addArtistsImages(result);
 
-        resultSet.close();
-        return new Object[] {total_element, result};
+            return new Object[] {total_element, result, PageCursor.next(result, limit, Artist::getFollowers, Artist::getID)};
+        }
     }
 
 
@@ -812,8 +987,7 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione degli oggetti Song.
  */
     public static ArrayList<Song> getPlaylistSong(String playlistID) throws SQLException {
-        String query = QueryBuilder.getPlaylistSong_query(playlistID);
-        return buildSongObjects_From_resultSet(database.submitQuery(query), true);
+        return getSongs(QueryTemplate.PLAYLIST_SONGS, playlistID);
     }
 
 
@@ -826,18 +1000,26 @@ public class QueriesManager
  * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la costruzione dell'oggetto Album.
  */
     public static Album getAlbumByID(String ID) throws SQLException {
-        String query = QueryBuilder.getAlbumByID_query(ID);
-        ResultSet resultSet = database.submitQuery(query);
-        
+        try (PooledConnection connection = database.borrowConnection()) {
+            Album album = database.querySingle(QueryTemplate.ALBUM_BY_ID, RowMappers.ALBUM, ID);
+            if(album != null)
+                album.addImages(getAlbumImages_by_ID(album.getID()));
 
-        if(!resultSet.next())
-            return null;
-        
-        Album album = new Album(getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM));
-        album.addImages(getAlbumImages_by_ID(album.getID()));
-        resultSet.close();
+            return album;
+        }
+    }
 
-        return album;
+
+
+/**
+ * Restituisce l'ID più grande generato da {@link IdGenerator} salvato nel database, da cui il generatore
+ * deve proseguire all'avvio del server.
+ *
+ * @return L'ID, oppure null se il database non contiene ID generati.
+ * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+ */
+    public static String getLastGeneratedId() throws SQLException {
+        return database.querySingle(QueryTemplate.LAST_GENERATED_ID, RowMappers.ID);
     }
 
     
@@ -11,6 +11,7 @@ import java.util.HashMap;
 import org.javatuples.Triplet;
 
 import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Indici;
 import database.PredefinedSQLCode.Tabelle;
 import objects.Album;
 import server.Terminal;
@@ -145,6 +146,19 @@ public class QueryBuilder
     }
 
 
+
+/**
+ * Questa funzione restituisce una stringa che rappresenta la query SQL per la realizzazione dell'indice specificato.
+ * @param indice l'indice da creare
+ * @return stringa che rappresenta la query SQL
+ */
+    protected static String createIndex_query_creator(Indici indice) {
+        return Operazioni_SQL.CREATE_INDEX.toString() + " " + indice + " ON " + indice.getTable()
+            + " USING " + indice.getMethod() + " (" + indice.getDefinition() + ");";
+    }
+
+
+
 /**
  * Questa funzione genera la query per inserire un elemento in una tabella
  * @param tableName Nome della tabella
@@ -368,6 +382,129 @@ public class QueryBuilder
 
 
 
+/**
+ * Restituisce il nome della tabella di appoggio in cui il caricamento con COPY scrive le righe della tabella indicata.
+ *
+ * @param tableName La tabella da caricare.
+ * @return Il nome della tabella di appoggio.
+ */
+    public static String stagingTableName(Tabelle tableName) {
+        return tableName.toString() + "_staging";
+    }
+
+
+
+/**
+ * Crea la query che crea la tabella di appoggio del caricamento con COPY, con le stesse colonne della tabella
+ * indicata ma senza vincoli: le righe duplicate o con una chiave esterna mancante vengono scartate solo quando
+ * passano nella tabella. La tabella è UNLOGGED perché il suo contenuto serve solo fino alla fine del caricamento.
+ *
+ * @param tableName La tabella da caricare.
+ * @return La query CREATE TABLE della tabella di appoggio.
+ */
+    public static String createStagingTable_query_creator(Tabelle tableName) 
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CREATE UNLOGGED TABLE ");
+        sb.append(stagingTableName(tableName));
+        sb.append(" AS SELECT ");
+        appendColumns(sb, PredefinedSQLCode.tablesAttributes.get(tableName), "");
+        sb.append(" FROM ");
+        sb.append(tableName);
+        sb.append(" WITH NO DATA;");
+
+        printQuery(sb);
+        return sb.toString();
+    }
+
+
+
+/**
+ * Crea la query che elimina la tabella di appoggio del caricamento con COPY, se esiste.
+ *
+ * @param tableName La tabella caricata.
+ * @return La query DROP TABLE della tabella di appoggio.
+ */
+    public static String dropStagingTable_query_creator(Tabelle tableName) {
+        return Operazioni_SQL.DELETE.toString() + " " + stagingTableName(tableName) + ";";
+    }
+
+
+
+/**
+ * Crea il comando COPY che riceve dal client le righe della tabella di appoggio, nel formato testo di PostgreSQL:
+ * una riga per linea con i valori separati da tabulazioni, nell'ordine delle colonne della tabella.
+ *
+ * @param tableName La tabella da caricare.
+ * @return Il comando COPY ... FROM STDIN.
+ */
+    public static String copyQuery(Tabelle tableName) 
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("COPY ");
+        sb.append(stagingTableName(tableName));
+        sb.append(" (");
+        appendColumns(sb, PredefinedSQLCode.tablesAttributes.get(tableName), "");
+        sb.append(") FROM STDIN");
+
+        printQuery(sb);
+        return sb.toString();
+    }
+
+
+
+/**
+ * Crea la query che inserisce nella tabella le righe della sua tabella di appoggio. Come le INSERT del caricamento
+ * riga per riga, le cui eccezioni per i duplicati e per le chiavi esterne vengono ignorate, la query scarta le righe
+ * con una chiave già presente e quelle che riferiscono un elemento che non esiste.
+ *
+ * @param tableName La tabella da caricare.
+ * @return La query INSERT ... SELECT.
+ */
+    public static String mergeStagingTable_query_creator(Tabelle tableName) 
+    {
+        Colonne[] colonne = PredefinedSQLCode.tablesAttributes.get(tableName);
+        Object[] foreignKey = PredefinedSQLCode.tablesForeignKey.get(tableName);
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(Operazioni_SQL.INSERT.toString() + " ");
+        sb.append(tableName);
+        sb.append(" (");
+        appendColumns(sb, colonne, "");
+        sb.append(") SELECT ");
+        appendColumns(sb, colonne, "s.");
+        sb.append(" FROM ");
+        sb.append(stagingTableName(tableName));
+        sb.append(" s");
+
+        if(foreignKey != null) {
+            String separator = " WHERE ";
+            for(Object reference: foreignKey) {
+                Triplet<Colonne, Tabelle,Colonne> temp = (Triplet<Colonne, Tabelle,Colonne>) reference;
+                sb.append(separator);
+                sb.append("EXISTS (SELECT 1 FROM " + temp.getValue1() + " r WHERE r." + temp.getValue2().getName() + " = s." + temp.getValue0().getName() + ")");
+                separator = " AND ";
+            }
+        }
+        sb.append(" ON CONFLICT DO NOTHING;");
+
+        printQuery(sb);
+        return sb.toString();
+    }
+
+
+
+    private static void appendColumns(StringBuilder sb, Colonne[] colonne, String prefix) {
+        for (int i = 0; i < colonne.length; i++) {
+            if(i > 0)
+                sb.append(", ");
+            sb.append(prefix);
+            sb.append(colonne[i].getName());
+        }
+    }
+
+
+
 /**
  * Crea e restituisce una stringa di query di eliminazione SQL per una tabella specifica
  * utilizzando le chiavi primarie.
@@ -524,96 +661,8 @@ public class QueryBuilder
     
 
 
-    //================================================ SINGOLI ELEMENTI =================================================//
-
-
-
     //================================================ LISTE DI ELEMENTI =================================================//
 
-/**
- * Crea e restituisce una stringa di query SQL per ottenere l'ID di una residenza in base agli attributi specificati.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare l'ID di una residenza
- * in base alla via, al numero civico, al comune e alla provincia specificati.
- *
- * @param via       Nome della via o piazza della residenza.
- * @param numero    Numero civico della residenza.
- * @param comune    Nome del comune della residenza.
- * @param provincia Nome della provincia della residenza.
- * @return          Stringa della query SQL generata per ottenere l'ID della residenza.
- */
-    public static String getResidenceId_Query(String via, int numero, String comune, String provincia) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT ");
-        sb.append(PredefinedSQLCode.Colonne.ID.getName());
-        sb.append(" FROM  ");
-        sb.append(PredefinedSQLCode.Tabelle.RESIDENZA);
-        sb.append(" WHERE  ");
-        sb.append(PredefinedSQLCode.Colonne.VIA_PIAZZA.getName() + " = '" + via + "'");
-        sb.append(" AND ");
-        sb.append(PredefinedSQLCode.Colonne.CIVIC_NUMER.getName() + " = '" + numero + "'");
-        sb.append(" AND ");
-        sb.append(PredefinedSQLCode.Colonne.COUNCIL_NAME.getName() + " = '" + comune + "'");
-        sb.append(" AND ");
-        sb.append(PredefinedSQLCode.Colonne.PROVINCE_NAME.getName() + " = '" + provincia + "'");
-    
-        printQuery(sb);
-        return sb.toString();
-    }
-
-    
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere un account in base all'indirizzo email specificato.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutti i campi da
- * una tabella di account e la relativa residenza in base all'indirizzo email fornito.
- *
- * @param Email Indirizzo email dell'account da cercare.
- * @return      Stringa della query SQL generata per ottenere l'account in base all'indirizzo email.
- */
-    public static String getAccountByEmail_query(String Email) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM ");
-        sb.append(Tabelle.ACCOUNT);
-        sb.append(" a JOIN ");
-        sb.append(Tabelle.RESIDENZA);
-        sb.append(" r ON a." + Colonne.RESIDENCE_ID_REF.getName() + " = r." + Colonne.ID.getName());
-        sb.append(" WHERE ");
-        sb.append(Colonne.EMAIL.getName() + " = '" + Email + "';");
-
-        printQuery(sb);
-        return sb.toString();
-
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere un account in base al nickname specificato.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutti i campi da
- * una tabella di account e la relativa residenza in base al nickname fornito.
- *
- * @param nickname Nickname dell'account da cercare.
- * @return         Stringa della query SQL generata per ottenere l'account in base al nickname.
- */
-    public static String getAccountByNickname_query(String nickname) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM ");
-        sb.append(Tabelle.ACCOUNT);
-        sb.append(" a JOIN ");
-        sb.append(Tabelle.RESIDENZA);
-        sb.append(" r ON a." + Colonne.RESIDENCE_ID_REF.getName() + " = r." + Colonne.ID.getName());
-        sb.append(" WHERE ");
-        sb.append(" a." + Colonne.NICKNAME.getName() + " = '" + nickname + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-   
-
 /**
  * Crea e restituisce una stringa di query SQL per ottenere i generi musicali di un artista.
  *
@@ -632,143 +681,11 @@ public class QueryBuilder
     
     
 
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le canzoni di un determinato album.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella delle canzoni
- * in base all'ID dell'album specificato.
- *
- * @param albumID ID dell'album per il quale si desiderano ottenere le canzoni.
- * @return        Stringa della query SQL generata per ottenere le canzoni di un determinato album.
- */
-    public static String getSongs_by_AlbumID_query(String albumID) {
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT c.* FROM  " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM + " a ON c.ID_Album = a.ID WHERE a.ID = \'" + albumID + "\'");
-        
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le immagini di un album dato il suo ID.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella delle immagini dell'album
- * in base all'ID specificato.
- *
- * @param ID ID dell'album per il quale si desiderano ottenere le immagini.
- * @return   Stringa della query SQL generata per ottenere le immagini di un album.
- */
-    public static String getAlbumImages_by_ID(String ID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + PredefinedSQLCode.Tabelle.ALBUM_IMAGES.toString());
-        sb.append(" WHERE " + PredefinedSQLCode.Colonne.ID.getName() + " = '" + ID +"';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le immagini di un artista dato il suo ID.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella delle immagini dell'artista
- * in base all'ID specificato.
- *
- * @param ID ID dell'artista per il quale si desiderano ottenere le immagini.
- * @return   Stringa della query SQL generata per ottenere le immagini di un artista.
- */
-    public static String getArtistImages_by_ID(String ID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + PredefinedSQLCode.Tabelle.ARTIST_IMAGES.toString());
-        sb.append(" WHERE " + PredefinedSQLCode.Colonne.ID.getName() + " = '" + ID +"';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-   
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le informazioni delle canzoni dato un array di ID.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella delle canzoni
- * in base agli ID specificati nell'array.
- *
- * @param IDs Array di ID delle canzoni per le quali si desiderano ottenere le informazioni.
- * @return    Stringa della query SQL generata per ottenere le informazioni delle canzoni dato un array di ID.
- */
-    public static String getSongByID_query(String[] IDs) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + PredefinedSQLCode.Tabelle.SONG.toString());
-        sb.append(" WHERE " );
-
-        for (int i = 0; i < IDs.length; i++) {
-            sb.append(PredefinedSQLCode.Colonne.ID.getName() + " = '" + IDs[i] + (i < IDs.length - 1 ? "' OR " : "';"));
-        } 
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le informazioni delle canzoni di un determinato album.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella delle canzoni
- * in base all'ID dell'album specificato.
- *
- * @param ID ID dell'album per il quale si desiderano ottenere le informazioni delle canzoni.
- * @return   Stringa della query SQL generata per ottenere le informazioni delle canzoni di un determinato album.
- */
-    public static String getAlbumSongs_query(String ID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + PredefinedSQLCode.Tabelle.SONG.toString());
-        sb.append(" WHERE " + PredefinedSQLCode.Colonne.ALBUM_ID_REF.getName() + " = '" + ID +"';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-
-
-    //================================================ OPERAZIONI PARTICOLARI =================================================//
-/**
- * Crea e restituisce una stringa di query SQL per ottenere gli album recentemente pubblicati.
- *
- * Questo metodo genera dinamicamente una query SQL per selezionare tutte le colonne della tabella degli album
- * in base a un criterio di pubblicazione recente, con un limite e un offset specificati.
- *
- * @param limit     Limite di risultati da restituire.
- * @param offset    Offset per la query per paginazione.
- * @param threshold Soglia minima per la pubblicazione dell'album.
- * @return          Stringa della query SQL generata per ottenere gli album recentemente pubblicati.
- */
-    public static String getRecentPublischedAlbum_query(long limit, long offset, int threshold) {
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM ");
-        sb.append(Tabelle.ALBUM + " a WHERE ");
-        sb.append(" a." + Colonne.ID.getName() + " IN (SELECT "+ Colonne.ID.getName());
-        sb.append(" FROM ");  
-        sb.append(Tabelle.ALBUM); 
-        sb.append(" WHERE " + Colonne.ELEMENT.getName() + " >= " + threshold + " ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC) ");      
-        sb.append(" ORDER BY a." + Colonne.RELEASE_DATE.getName() + " DESC LIMIT " + limit + " OFFSET " + offset + ";");
-        
-        printQuery(sb);
-        return sb.toString();
-
-    }
-
-
     //================================================ OPERAZIONI DI RICERCA =================================================//
 /**
+ * Le query dei servizi usano le QueryTemplate; questo metodo costruisce ancora il testo completo della ricerca
+ * ed è usato dal benchmark per confrontare le due modalità.
+ *
  * Crea e restituisce una stringa di query SQL per cercare canzoni in base a un criterio specifico.
  *
  * Questo metodo genera dinamicamente una query SQL per cercare canzoni in base al tipo di ricerca specificato
@@ -890,415 +807,6 @@ public class QueryBuilder
 
 
 
-/**
- * Crea e restituisce una stringa di query SQL per cercare album in base a un criterio di ricerca.
- *
- * Questo metodo genera dinamicamente una query SQL per cercare album in base al nome dell'album con un limite e un offset specificati.
- *
- * @param search La stringa da cercare nella ricerca degli album.
- * @param limit  Limite di risultati da restituire.
- * @param offset Offset per la query per paginazione.
- * @return       Stringa della query SQL generata per cercare gli album.
- */
-    public static String getAlbumSearch_query(String search, long limit, long offset) 
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * ");
-        sb.append("FROM " + Tabelle.ALBUM + " ");
-        sb.append("WHERE " + Colonne.NAME.getName() + " LIKE '" + search + "%'");
-        sb.append(" ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC");
-        sb.append(" LIMIT " + limit + " OFFSET " + offset + ";");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere il conteggio degli album in base a un criterio di ricerca.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere il conteggio degli album in base al nome dell'album.
- *
- * @param search La stringa da cercare nella ricerca degli album.
- * @return       Stringa della query SQL generata per ottenere il conteggio degli album.
- */
-    public static String getAlbumSearch_Count_query(String search) 
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT count(*) ");
-        sb.append("FROM " + Tabelle.ALBUM + " ");
-        sb.append("WHERE " + Colonne.NAME.getName() + " LIKE '" + search + "%';");
-        //sb.append(" ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC;");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere un artista in base all'ID specificato.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere un artista in base all'ID dell'artista.
- *
- * @param id L'ID dell'artista da cercare.
- * @return   Stringa della query SQL generata per ottenere un artista.
- */
-    public static String getArtistByID_query(String id) {
-       StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * ");
-        sb.append("FROM " + Tabelle.ARTIST + " ");
-        sb.append("WHERE " + Colonne.ID.getName() + " = '" + id + "';");
-        
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per cercare artisti in base a un criterio di ricerca.
- *
- * Questo metodo genera dinamicamente una query SQL per cercare artisti in base al nome dell'artista con un limite e un offset specificati.
- *
- * @param search La stringa da cercare nella ricerca degli artisti.
- * @param limit  Limite di risultati da restituire.
- * @param offset Offset per la query per paginazione.
- * @return       Stringa della query SQL generata per cercare gli artisti.
- */
-    public static String searchArtist_query(String search, long limit, long offset) {
-       StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * ");
-        sb.append(" FROM " + Tabelle.ARTIST);
-        sb.append(" WHERE " + Colonne.NAME.getName() + " LIKE '" + search + "%'");
-        sb.append(" ORDER BY " + Colonne.FOLLOWERS.getName() + " DESC");
-        sb.append(" LIMIT " + limit + " OFFSET " + offset + ";");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere il conteggio degli artisti in base a un criterio di ricerca.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere il conteggio degli artisti in base al nome dell'artista.
- *
- * @param search La stringa da cercare nella ricerca degli artisti.
- * @return       Stringa della query SQL generata per ottenere il conteggio degli artisti.
- */
-    public static String searchArtist_Count_query(String search) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT count(*)");
-        sb.append(" FROM " + Tabelle.ARTIST);
-        sb.append(" WHERE " + Colonne.NAME.getName() + " LIKE '" + search + "%';");
-        //sb.append(" ORDER BY " + Colonne.FOLLOWERS.getName() + " DESC;");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    // OPERAZIONI SULLE PLAYLIST
-    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-/**
- * Crea e restituisce una stringa di query SQL per aggiungere una playlist nel database.
- *
- * Questo metodo genera dinamicamente una query SQL per inserire una nuova playlist nel database.
- *
- * @param accountID    L'ID dell'account associato alla playlist.
- * @param playlistName Il nome della playlist da aggiungere.
- * @param date         La data di creazione della playlist.
- * @param ID           L'ID univoco della playlist.
- * @return             Stringa della query SQL generata per aggiungere una playlist.
- */
-    public static String addPlaylist_query(String accountID,String playlistName, String date, String ID)
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO " + Tabelle.PLAYLIST + " (");
-        sb.append(Colonne.ID.getName() + ", ");
-        sb.append(Colonne.NAME.getName() + ", ");
-        sb.append(Colonne.CREATION_DATE.getName() + ", ");
-        sb.append(Colonne.ACCOUNT_ID_REF.getName());
-        sb.append(") VALUES (");
-        sb.append("'" + ID + "', ");
-        sb.append("'" + playlistName + "', ");
-        sb.append("'" + date + "', ");
-        sb.append("'" + accountID + "');");
-        
-        printQuery(sb);
-        return sb.toString();
-    }
-
-    
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere gli ID delle canzoni in una determinata playlist.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere gli ID delle canzoni presenti in una specifica playlist.
- *
- * @param playlistID L'ID della playlist per cui ottenere gli ID delle canzoni.
- * @return           Stringa della query SQL generata per ottenere gli ID delle canzoni di una playlist.
- */
-    public static String getPlaylistSongsID_query(String playlistID) 
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT " + Tabelle.SONG + "." + Colonne.ID.getName());
-        sb.append(" FROM " + Tabelle.SONG);
-        sb.append(" JOIN " + Tabelle.PLAYLIST_SONGS);
-        sb.append(" ON " + Tabelle.SONG + "." + Colonne.ID.getName() + " = " + Tabelle.PLAYLIST_SONGS + "." + Colonne.SONG_ID_REF.getName());
-        sb.append(" WHERE " + Tabelle.PLAYLIST_SONGS + "." + Colonne.PLAYLIST_ID_REF.getName() + " = '" + playlistID + "';");
-        
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le playlist di un account specifico.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere tutte le playlist associate a un account.
- *
- * @param accountID L'ID dell'account per cui ottenere le playlist.
- * @return           Stringa della query SQL generata per ottenere le playlist di un account.
- */
-    public static String getAccountsPlaylists_query(String accountID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.PLAYLIST + " WHERE " + Colonne.ACCOUNT_ID_REF.getName() + " = '" + accountID + "';");
-        
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per aggiungere una canzone a una playlist.
- *
- * Questo metodo genera dinamicamente una query SQL per inserire una relazione tra una playlist e una canzone nel database.
- *
- * @param playlistID L'ID della playlist a cui aggiungere la canzone.
- * @param songID     L'ID della canzone da aggiungere alla playlist.
- * @return           Stringa della query SQL generata per aggiungere una canzone a una playlist.
- */
-    public static String addSongToPlaylist_query(String playlistID, String songID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO " + Tabelle.PLAYLIST_SONGS + " (");
-        sb.append(Colonne.PLAYLIST_ID_REF.getName() + ", ");
-        sb.append(Colonne.SONG_ID_REF.getName() + ") VALUES (");
-        sb.append("'" + playlistID + "', ");
-        sb.append("'" + songID + "');");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per rimuovere una canzone da una playlist.
- *
- * Questo metodo genera dinamicamente una query SQL per rimuovere una relazione tra una playlist e una canzone nel database.
- *
- * @param playlistID L'ID della playlist da cui rimuovere la canzone.
- * @param songID     L'ID della canzone da rimuovere dalla playlist.
- * @return           Stringa della query SQL generata per rimuovere una canzone da una playlist.
- */
-    public static String removeSongFromPlaylist_query(String playlistID, String songID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("DELETE FROM " + Tabelle.PLAYLIST_SONGS + " WHERE ");
-        sb.append(Colonne.PLAYLIST_ID_REF.getName() + " = '" + playlistID + "' AND ");
-        sb.append(Colonne.SONG_ID_REF.getName() + " = '" + songID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per rinominare una playlist.
- *
- * Questo metodo genera dinamicamente una query SQL per aggiornare il nome di una playlist nel database.
- *
- * @param playlistID L'ID della playlist da rinominare.
- * @param newName    Il nuovo nome da assegnare alla playlist.
- * @return           Stringa della query SQL generata per rinominare una playlist.
- */
-    public static String renamePlaylist_query(String playlistID, String newName) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("UPDATE " + Tabelle.PLAYLIST + " SET ");
-        sb.append(Colonne.NAME.getName() + " = '" + newName + "' WHERE ");
-        sb.append(Colonne.ID.getName() + " = '" + playlistID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-   
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le emozioni associate a una canzone.
- *
- * Questo metodo genera dinamicamente una query SQL per recuperare le emozioni associate a una specifica canzone.
- *
- * @param songID L'ID della canzone per cui ottenere le emozioni.
- * @return        Stringa della query SQL generata per ottenere le emozioni di una canzone.
- */
-    public static String getSongEmotion_query(String songID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE ");
-        sb.append(Colonne.SONG_ID_REF.getName() + " = '" + songID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per eliminare una playlist dal database.
- *
- * Questo metodo genera dinamicamente una query SQL per eliminare una playlist dal database.
- *
- * @param playlistID L'ID della playlist da eliminare.
- * @return           Stringa della query SQL generata per eliminare una playlist.
- */
-    public static String deletePlaylist_query(String playlistID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("DELETE FROM " + Tabelle.PLAYLIST + " WHERE ");
-        sb.append(Colonne.ID.getName() + " = '" + playlistID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per eliminare un account dal database.
- *
- * Questo metodo genera dinamicamente una query SQL per eliminare un account dal database.
- *
- * @param accountID L'ID dell'account da eliminare.
- * @return           Stringa della query SQL generata per eliminare un account.
- */
-    public static String deleteAccount_query(String accountID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("DELETE FROM " + Tabelle.ACCOUNT + " WHERE ");
-        sb.append(Colonne.NICKNAME.getName() + " = '" + accountID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le canzoni di un determinato artista.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere tutte le canzoni di un artista specifico.
- *
- * @param artistID L'ID dell'artista per cui ottenere le canzoni.
- * @return         Stringa della query SQL generata per ottenere le canzoni di un artista.
- */
-    public static String getArtistSong_query(String artistID) {
-        StringBuilder sb = new StringBuilder();
-        //sb.append("SELECT * FROM " + Tabelle.SONG + " WHERE ");
-        //sb.append(Colonne.ARTIST_ID_REF.getName() + " = '" + artistID + "';");
-
-        //select c.* from canzone c join album a on c.id_album = a.id where a.id_artist = '3TqjDuqT3xvg7YlNh4JWp5'
-        sb.append("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM + " a ");
-        sb.append("ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName());
-        sb.append(" WHERE a." + Colonne.ARTIST_ID_REF.getName() + " = '" + artistID + "';");
-
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le canzoni di una playlist.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere tutte le canzoni associate a una specifica playlist.
- *
- * @param playlistID L'ID della playlist per cui ottenere le canzoni.
- * @return           Stringa della query SQL generata per ottenere le canzoni di una playlist.
- */
-    public static String getPlaylistSong_query(String playlistID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.SONG + " WHERE ");
-        sb.append(Colonne.ID.getName() + " IN (SELECT " + Colonne.SONG_ID_REF.getName() + " FROM " + Tabelle.PLAYLIST_SONGS + " WHERE ");
-        sb.append(Colonne.PLAYLIST_ID_REF.getName() + " = '" + playlistID + "');");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le informazioni di un album tramite l'ID.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere le informazioni di un album specifico usando l'ID.
- *
- * @param ID L'ID dell'album per cui ottenere le informazioni.
- * @return   Stringa della query SQL generata per ottenere le informazioni di un album.
- */
-    public static String getAlbumByID_query(String ID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.ALBUM + " WHERE ");
-        sb.append(Colonne.ID.getName() + " = '" + ID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere gli album di un determinato artista.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere tutti gli album di un artista specifico.
- *
- * @param artistID L'ID dell'artista per cui ottenere gli album.
- * @return         Stringa della query SQL generata per ottenere gli album di un artista.
- */
-    public static String getArtistAlbum_query(String artistID) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.ALBUM + " WHERE ");
-        sb.append(Colonne.ARTIST_ID_REF.getName() + " = '" + artistID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
-
-
-/**
- * Crea e restituisce una stringa di query SQL per ottenere le emozioni associate a un account.
- *
- * Questo metodo genera dinamicamente una query SQL per ottenere le emozioni associate a un account specifico.
- *
- * @param accountID L'ID dell'account per cui ottenere le emozioni.
- * @return          Stringa della query SQL generata per ottenere le emozioni di un account.
- */
-    public static String getAccountEmotions(String accountID)
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE ");
-        sb.append(Colonne.ACCOUNT_ID_REF.getName() + " = '" + accountID + "';");
-
-        printQuery(sb);
-        return sb.toString();
-    }
-
     /*=======================================[Utility]=======================================*/
 /**
  * Crea e restituisce una stringa di query SQL per modificare la dimensione di una colonna in una tabella.
@@ -0,0 +1,238 @@
+package database;
+
+import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Tabelle;
+import utility.IdGenerator;
+
+/**
+ * Le query usate dai servizi del server, scritte una sola volta con i parametri indicati da '?'.
+ *
+ * Ogni connessione del pool prepara una query la prima volta che la esegue e riusa lo stesso PreparedStatement
+ * nelle esecuzioni successive, così PostgreSQL non deve analizzare e pianificare di nuovo il testo a ogni chiamata.
+ * I valori vengono passati come parametri e non vengono mai inseriti nel testo della query.
+ *
+ * Le query di una pagina ordinano sempre anche per ID, così l'ordine è stabile. Le varianti _AFTER continuano
+ * dall'ultimo elemento della pagina precedente, indicato da un {@link PageCursor}, invece di saltare OFFSET righe.
+ * Le varianti _COUNTED aggiungono a ogni riga la colonna {@link #TOTAL} con il numero di righe che soddisfano
+ * il predicato, così la pagina e il totale di una ricerca si ottengono con una sola query.
+ */
+public enum QueryTemplate
+{
+    //account
+    RESIDENCE_ID("SELECT " + Colonne.ID.getName() + " FROM " + Tabelle.RESIDENZA
+        + " WHERE " + Colonne.VIA_PIAZZA.getName() + " = ? AND " + Colonne.CIVIC_NUMER.getName() + " = ?"
+        + " AND " + Colonne.COUNCIL_NAME.getName() + " = ? AND " + Colonne.PROVINCE_NAME.getName() + " = ?"),
+    ACCOUNT_BY_EMAIL("SELECT * FROM " + Tabelle.ACCOUNT + " a JOIN " + Tabelle.RESIDENZA
+        + " r ON a." + Colonne.RESIDENCE_ID_REF.getName() + " = r." + Colonne.ID.getName()
+        + " WHERE " + Colonne.EMAIL.getName() + " = ?"),
+    ACCOUNT_BY_NICKNAME("SELECT * FROM " + Tabelle.ACCOUNT + " a JOIN " + Tabelle.RESIDENZA
+        + " r ON a." + Colonne.RESIDENCE_ID_REF.getName() + " = r." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.NICKNAME.getName() + " = ?"),
+    DELETE_ACCOUNT("DELETE FROM " + Tabelle.ACCOUNT + " WHERE " + Colonne.NICKNAME.getName() + " = ?"),
+
+    //immagini
+    ALBUM_IMAGES("SELECT * FROM " + Tabelle.ALBUM_IMAGES + " WHERE " + Colonne.ID.getName() + " = ?"),
+    ARTIST_IMAGES("SELECT * FROM " + Tabelle.ARTIST_IMAGES + " WHERE " + Colonne.ID.getName() + " = ?"),
+    ALBUM_IMAGES_BY_IDS("SELECT * FROM " + Tabelle.ALBUM_IMAGES + " WHERE " + Colonne.ID.getName() + " = ANY(?)"),
+    ARTIST_IMAGES_BY_IDS("SELECT * FROM " + Tabelle.ARTIST_IMAGES + " WHERE " + Colonne.ID.getName() + " = ANY(?)"),
+
+    //canzoni
+    SONGS_BY_IDS("SELECT * FROM " + Tabelle.SONG + " WHERE " + Colonne.ID.getName() + " = ANY(?)"),
+    ALBUM_SONGS("SELECT * FROM " + Tabelle.SONG + " WHERE " + Colonne.ALBUM_ID_REF.getName() + " = ?"),
+    ARTIST_SONGS("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.ARTIST_ID_REF.getName() + " = ?"),
+    POPULAR_SONGS("SELECT * FROM " + Tabelle.SONG + " c"
+        + " ORDER BY c." + Colonne.POPULARITY.getName() + " DESC, c." + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    POPULAR_SONGS_AFTER("SELECT * FROM " + Tabelle.SONG + " c"
+        + " WHERE (c." + Colonne.POPULARITY.getName() + ", c." + Colonne.ID.getName() + ") < (?, ?)"
+        + " ORDER BY c." + Colonne.POPULARITY.getName() + " DESC, c." + Colonne.ID.getName() + " DESC LIMIT ?"),
+    SEARCH_SONGS_BY_TITLE("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE c." + Colonne.TITLE.getName() + " LIKE ?"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ? OFFSET ?"),
+    SEARCH_SONGS_BY_TITLE_AFTER("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE c." + Colonne.TITLE.getName() + " LIKE ?"
+        + " AND (c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + ") > (?, ?)"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ?"),
+    SEARCH_SONGS_BY_DATE("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.RELEASE_DATE.getName() + " LIKE ?"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ? OFFSET ?"),
+    SEARCH_SONGS_BY_DATE_AFTER("SELECT c.* FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.RELEASE_DATE.getName() + " LIKE ?"
+        + " AND (c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + ") > (?, ?)"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ?"),
+    SEARCH_SONGS_BY_TITLE_COUNTED("SELECT c.*, count(*) OVER() AS " + QueryTemplate.TOTAL + " FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE c." + Colonne.TITLE.getName() + " LIKE ?"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ? OFFSET ?"),
+    SEARCH_SONGS_BY_DATE_COUNTED("SELECT c.*, count(*) OVER() AS " + QueryTemplate.TOTAL + " FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.RELEASE_DATE.getName() + " LIKE ?"
+        + " ORDER BY c." + Colonne.TITLE.getName() + ", c." + Colonne.ID.getName() + " LIMIT ? OFFSET ?"),
+    SEARCH_SONGS_BY_EMOTIONS("SELECT c.* FROM " + Tabelle.EMOTION_TOTALS + " t JOIN " + Tabelle.SONG
+        + " c ON c." + Colonne.ID.getName() + " = t." + Colonne.SONG_ID_REF.getName()
+        + " WHERE t." + Colonne.VOTES.getName() + " > 0"
+        + " ORDER BY t." + Colonne.VOTES.getName() + " DESC, t." + Colonne.SONG_ID_REF.getName() + " DESC LIMIT ? OFFSET ?"),
+    SEARCH_SONGS_BY_EMOTIONS_COUNTED("SELECT c.*, count(*) OVER() AS " + QueryTemplate.TOTAL + " FROM " + Tabelle.EMOTION_TOTALS + " t JOIN " + Tabelle.SONG
+        + " c ON c." + Colonne.ID.getName() + " = t." + Colonne.SONG_ID_REF.getName()
+        + " WHERE t." + Colonne.VOTES.getName() + " > 0"
+        + " ORDER BY t." + Colonne.VOTES.getName() + " DESC, t." + Colonne.SONG_ID_REF.getName() + " DESC LIMIT ? OFFSET ?"),
+    COUNT_SONGS_BY_TITLE("SELECT count(c.*) FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE c." + Colonne.TITLE.getName() + " LIKE ?"),
+    COUNT_SONGS_BY_DATE("SELECT count(c.*) FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM
+        + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " WHERE a." + Colonne.RELEASE_DATE.getName() + " LIKE ?"),
+    COUNT_SONGS_BY_EMOTIONS("SELECT count(*) FROM " + Tabelle.EMOTION_TOTALS + " WHERE " + Colonne.VOTES.getName() + " > 0"),
+    PLAYLIST_SONGS("SELECT * FROM " + Tabelle.SONG + " WHERE " + Colonne.ID.getName()
+        + " IN (SELECT " + Colonne.SONG_ID_REF.getName() + " FROM " + Tabelle.PLAYLIST_SONGS
+        + " WHERE " + Colonne.PLAYLIST_ID_REF.getName() + " = ?)"),
+
+    //album
+    ALBUM_BY_ID("SELECT * FROM " + Tabelle.ALBUM + " WHERE " + Colonne.ID.getName() + " = ?"),
+    ALBUMS_BY_IDS("SELECT * FROM " + Tabelle.ALBUM + " WHERE " + Colonne.ID.getName() + " = ANY(?)"),
+    RECENT_ALBUMS("SELECT * FROM " + Tabelle.ALBUM + " a WHERE a." + Colonne.ELEMENT.getName() + " >= ?"
+        + " ORDER BY a." + Colonne.RELEASE_DATE.getName() + " DESC, a." + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    RECENT_ALBUMS_AFTER("SELECT * FROM " + Tabelle.ALBUM + " a WHERE a." + Colonne.ELEMENT.getName() + " >= ?"
+        + " AND (a." + Colonne.RELEASE_DATE.getName() + ", a." + Colonne.ID.getName() + ") < (?, ?)"
+        + " ORDER BY a." + Colonne.RELEASE_DATE.getName() + " DESC, a." + Colonne.ID.getName() + " DESC LIMIT ?"),
+    SEARCH_ALBUMS("SELECT * FROM " + Tabelle.ALBUM + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    SEARCH_ALBUMS_AFTER("SELECT * FROM " + Tabelle.ALBUM + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " AND (" + Colonne.RELEASE_DATE.getName() + ", " + Colonne.ID.getName() + ") < (?, ?)"
+        + " ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ?"),
+    SEARCH_ALBUMS_COUNTED("SELECT *, count(*) OVER() AS " + QueryTemplate.TOTAL + " FROM " + Tabelle.ALBUM + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " ORDER BY " + Colonne.RELEASE_DATE.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    COUNT_ALBUMS("SELECT count(*) FROM " + Tabelle.ALBUM + " WHERE " + Colonne.NAME.getName() + " LIKE ?"),
+
+    //artisti
+    ARTIST_BY_ID("SELECT * FROM " + Tabelle.ARTIST + " WHERE " + Colonne.ID.getName() + " = ?"),
+    ARTISTS_BY_IDS("SELECT * FROM " + Tabelle.ARTIST + " WHERE " + Colonne.ID.getName() + " = ANY(?)"),
+    SEARCH_ARTISTS("SELECT * FROM " + Tabelle.ARTIST + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " ORDER BY " + Colonne.FOLLOWERS.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    SEARCH_ARTISTS_AFTER("SELECT * FROM " + Tabelle.ARTIST + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " AND (" + Colonne.FOLLOWERS.getName() + ", " + Colonne.ID.getName() + ") < (?, ?)"
+        + " ORDER BY " + Colonne.FOLLOWERS.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ?"),
+    SEARCH_ARTISTS_COUNTED("SELECT *, count(*) OVER() AS " + QueryTemplate.TOTAL + " FROM " + Tabelle.ARTIST + " WHERE " + Colonne.NAME.getName() + " LIKE ?"
+        + " ORDER BY " + Colonne.FOLLOWERS.getName() + " DESC, " + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    COUNT_ARTISTS("SELECT count(*) FROM " + Tabelle.ARTIST + " WHERE " + Colonne.NAME.getName() + " LIKE ?"),
+
+    //indice di ricerca in memoria: ID, nome e peso di ogni elemento
+    SEARCH_INDEX_SONGS("SELECT c." + Colonne.ID.getName() + ", c." + Colonne.TITLE.getName() + ", c." + Colonne.POPULARITY.getName()
+        + " FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()),
+    SEARCH_INDEX_ALBUMS("SELECT a." + Colonne.ID.getName() + ", a." + Colonne.NAME.getName() + ", coalesce(max(c." + Colonne.POPULARITY.getName() + "), 0)"
+        + " FROM " + Tabelle.ALBUM + " a LEFT JOIN " + Tabelle.SONG + " c ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()
+        + " GROUP BY a." + Colonne.ID.getName() + ", a." + Colonne.NAME.getName()),
+    SEARCH_INDEX_ARTISTS("SELECT " + Colonne.ID.getName() + ", " + Colonne.NAME.getName() + ", " + Colonne.FOLLOWERS.getName() + " FROM " + Tabelle.ARTIST),
+
+    //indice della ricerca a faccette: canzoni con data e artista dell'album, generi degli artisti, voti delle emozioni
+    FACET_INDEX_SONGS("SELECT c." + Colonne.ID.getName() + ", c." + Colonne.POPULARITY.getName() + ", a." + Colonne.RELEASE_DATE.getName() + ", a." + Colonne.ARTIST_ID_REF.getName()
+        + " FROM " + Tabelle.SONG + " c JOIN " + Tabelle.ALBUM + " a ON c." + Colonne.ALBUM_ID_REF.getName() + " = a." + Colonne.ID.getName()),
+    FACET_INDEX_GENRES("SELECT " + Colonne.ID.getName() + ", " + Colonne.GENERE_MUSICALE.getName() + " FROM " + Tabelle.GENERI_ARTISTA),
+    FACET_INDEX_EMOTIONS("SELECT " + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ", " + Colonne.VOTES.getName() + ", " + Colonne.VALUE_SUM.getName()
+        + " FROM " + Tabelle.EMOTION_SUMMARY + " WHERE " + Colonne.VOTES.getName() + " > 0"),
+
+    //playlist
+    ADD_PLAYLIST("INSERT INTO " + Tabelle.PLAYLIST + " (" + Colonne.ID.getName() + ", " + Colonne.NAME.getName() + ", "
+        + Colonne.CREATION_DATE.getName() + ", " + Colonne.ACCOUNT_ID_REF.getName() + ") VALUES (?, ?, ?, ?)"),
+    ACCOUNT_PLAYLISTS("SELECT * FROM " + Tabelle.PLAYLIST + " WHERE " + Colonne.ACCOUNT_ID_REF.getName() + " = ?"),
+    PLAYLIST_SONGS_ID("SELECT " + Tabelle.SONG + "." + Colonne.ID.getName() + " FROM " + Tabelle.SONG
+        + " JOIN " + Tabelle.PLAYLIST_SONGS + " ON " + Tabelle.SONG + "." + Colonne.ID.getName() + " = " + Tabelle.PLAYLIST_SONGS + "." + Colonne.SONG_ID_REF.getName()
+        + " WHERE " + Tabelle.PLAYLIST_SONGS + "." + Colonne.PLAYLIST_ID_REF.getName() + " = ?"),
+    ADD_SONG_PLAYLIST("INSERT INTO " + Tabelle.PLAYLIST_SONGS + " (" + Colonne.PLAYLIST_ID_REF.getName() + ", " + Colonne.SONG_ID_REF.getName() + ") VALUES (?, ?)"),
+    REMOVE_SONG_PLAYLIST("DELETE FROM " + Tabelle.PLAYLIST_SONGS + " WHERE " + Colonne.PLAYLIST_ID_REF.getName() + " = ? AND " + Colonne.SONG_ID_REF.getName() + " = ?"),
+    RENAME_PLAYLIST("UPDATE " + Tabelle.PLAYLIST + " SET " + Colonne.NAME.getName() + " = ? WHERE " + Colonne.ID.getName() + " = ?"),
+    DELETE_PLAYLIST("DELETE FROM " + Tabelle.PLAYLIST + " WHERE " + Colonne.ID.getName() + " = ?"),
+
+    //emozioni
+    SONG_EMOTIONS("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ?"),
+    ACCOUNT_EMOTIONS("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.ACCOUNT_ID_REF.getName() + " = ?"),
+    //i commenti con gli ID di IdGenerator (16 caratteri, ordinati nel tempo) vengono prima, dal più recente;
+    //seguono quelli con i vecchi ID SHA-256 (64 caratteri), che non hanno un ordine cronologico
+    SONG_COMMENTS("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ? AND " + Colonne.COMMENTO.getName() + " <> ''"
+        + " ORDER BY length(" + Colonne.ID.getName() + "), " + Colonne.ID.getName() + " DESC LIMIT ? OFFSET ?"),
+    SONG_COMMENTS_AFTER("SELECT * FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ? AND " + Colonne.COMMENTO.getName() + " <> ''"
+        + " AND (length(" + Colonne.ID.getName() + ") > length(?) OR (length(" + Colonne.ID.getName() + ") = length(?) AND " + Colonne.ID.getName() + " < ?))"
+        + " ORDER BY length(" + Colonne.ID.getName() + "), " + Colonne.ID.getName() + " DESC LIMIT ?"),
+    ADD_EMOTION("INSERT INTO " + Tabelle.EMOZIONE + " (" + Colonne.ID.getName() + ", " + Colonne.TYPE.getName() + ", " + Colonne.VALUE.getName() + ", "
+        + Colonne.COMMENTO.getName() + ", " + Colonne.ACCOUNT_ID_REF.getName() + ", " + Colonne.SONG_ID_REF.getName() + ") VALUES (?, ?, ?, ?, ?, ?)"),
+    DELETE_EMOTION("DELETE FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.ID.getName() + " = ? RETURNING *"),
+
+    //riepilogo delle emozioni: voti e somma dei valori per canzone e tipo, e voti totali per canzone
+    SONG_EMOTION_SUMMARY("SELECT * FROM " + Tabelle.EMOTION_SUMMARY + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ? AND " + Colonne.VOTES.getName() + " > 0"),
+    ADD_EMOTION_SUMMARY("INSERT INTO " + Tabelle.EMOTION_SUMMARY + " (" + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ", "
+        + Colonne.VOTES.getName() + ", " + Colonne.VALUE_SUM.getName() + ") VALUES (?, ?, 1, ?)"
+        + " ON CONFLICT (" + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ") DO UPDATE SET "
+        + Colonne.VOTES.getName() + " = " + Tabelle.EMOTION_SUMMARY + "." + Colonne.VOTES.getName() + " + 1, "
+        + Colonne.VALUE_SUM.getName() + " = " + Tabelle.EMOTION_SUMMARY + "." + Colonne.VALUE_SUM.getName() + " + EXCLUDED." + Colonne.VALUE_SUM.getName()),
+    ADD_EMOTION_TOTAL("INSERT INTO " + Tabelle.EMOTION_TOTALS + " (" + Colonne.SONG_ID_REF.getName() + ", " + Colonne.VOTES.getName() + ") VALUES (?, 1)"
+        + " ON CONFLICT (" + Colonne.SONG_ID_REF.getName() + ") DO UPDATE SET "
+        + Colonne.VOTES.getName() + " = " + Tabelle.EMOTION_TOTALS + "." + Colonne.VOTES.getName() + " + 1"),
+    REMOVE_EMOTION_SUMMARY("UPDATE " + Tabelle.EMOTION_SUMMARY + " SET " + Colonne.VOTES.getName() + " = " + Colonne.VOTES.getName() + " - 1, "
+        + Colonne.VALUE_SUM.getName() + " = " + Colonne.VALUE_SUM.getName() + " - ?"
+        + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ? AND " + Colonne.TYPE.getName() + " = ?"),
+    REMOVE_EMOTION_TOTAL("UPDATE " + Tabelle.EMOTION_TOTALS + " SET " + Colonne.VOTES.getName() + " = " + Colonne.VOTES.getName() + " - 1"
+        + " WHERE " + Colonne.SONG_ID_REF.getName() + " = ?"),
+    REMOVE_ACCOUNT_EMOTION_SUMMARY("UPDATE " + Tabelle.EMOTION_SUMMARY + " r SET " + Colonne.VOTES.getName() + " = r." + Colonne.VOTES.getName() + " - e.votes, "
+        + Colonne.VALUE_SUM.getName() + " = r." + Colonne.VALUE_SUM.getName() + " - e.value_sum"
+        + " FROM (SELECT " + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ", count(*) AS votes, sum(" + Colonne.VALUE.getName() + ") AS value_sum"
+        + " FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.ACCOUNT_ID_REF.getName() + " = ?"
+        + " GROUP BY " + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ") e"
+        + " WHERE r." + Colonne.SONG_ID_REF.getName() + " = e." + Colonne.SONG_ID_REF.getName() + " AND r." + Colonne.TYPE.getName() + " = e." + Colonne.TYPE.getName()),
+    REMOVE_ACCOUNT_EMOTION_TOTAL("UPDATE " + Tabelle.EMOTION_TOTALS + " t SET " + Colonne.VOTES.getName() + " = t." + Colonne.VOTES.getName() + " - e.votes"
+        + " FROM (SELECT " + Colonne.SONG_ID_REF.getName() + ", count(*) AS votes"
+        + " FROM " + Tabelle.EMOZIONE + " WHERE " + Colonne.ACCOUNT_ID_REF.getName() + " = ?"
+        + " GROUP BY " + Colonne.SONG_ID_REF.getName() + ") e"
+        + " WHERE t." + Colonne.SONG_ID_REF.getName() + " = e." + Colonne.SONG_ID_REF.getName()),
+    LOCK_EMOTIONS("LOCK TABLE " + Tabelle.EMOZIONE + " IN SHARE MODE"),
+    CLEAR_EMOTION_SUMMARY("DELETE FROM " + Tabelle.EMOTION_SUMMARY),
+    CLEAR_EMOTION_TOTALS("DELETE FROM " + Tabelle.EMOTION_TOTALS),
+    REBUILD_EMOTION_SUMMARY("INSERT INTO " + Tabelle.EMOTION_SUMMARY + " (" + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ", "
+        + Colonne.VOTES.getName() + ", " + Colonne.VALUE_SUM.getName() + ")"
+        + " SELECT " + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName() + ", count(*), sum(" + Colonne.VALUE.getName() + ")"
+        + " FROM " + Tabelle.EMOZIONE + " GROUP BY " + Colonne.SONG_ID_REF.getName() + ", " + Colonne.TYPE.getName()),
+    REBUILD_EMOTION_TOTALS("INSERT INTO " + Tabelle.EMOTION_TOTALS + " (" + Colonne.SONG_ID_REF.getName() + ", " + Colonne.VOTES.getName() + ")"
+        + " SELECT " + Colonne.SONG_ID_REF.getName() + ", count(*)"
+        + " FROM " + Tabelle.EMOZIONE + " GROUP BY " + Colonne.SONG_ID_REF.getName()),
+
+    //diagnostica: le query preparate da PostgreSQL nella sessione della connessione
+    SERVER_PREPARED_STATEMENTS("SELECT count(*) FROM pg_prepared_statements"),
+
+    //indici: gli indici dello schema corrente con il loro stato, la dimensione e il numero di letture
+    SCHEMA_INDEXES("SELECT c.relname AS name, i.indisvalid AS valid, pg_relation_size(c.oid) AS size, coalesce(s.idx_scan, 0) AS scans"
+        + " FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+        + " LEFT JOIN pg_stat_user_indexes s ON s.indexrelid = i.indexrelid"
+        + " WHERE c.relnamespace = current_schema()::regnamespace"),
+    EXTENSION_INSTALLED("SELECT count(*) FROM pg_extension WHERE extname = ?"),
+
+    //l'ID più grande generato da IdGenerator tra le tabelle che lo usano; i vecchi ID SHA-256 sono più lunghi
+    LAST_GENERATED_ID("SELECT max(" + Colonne.ID.getName() + ") AS " + Colonne.ID.getName() + " FROM ("
+        + "SELECT " + Colonne.ID.getName() + " FROM " + Tabelle.EMOZIONE + " WHERE length(" + Colonne.ID.getName() + ") = " + IdGenerator.ID_LENGTH
+        + " UNION ALL SELECT " + Colonne.ID.getName() + " FROM " + Tabelle.PLAYLIST + " WHERE length(" + Colonne.ID.getName() + ") = " + IdGenerator.ID_LENGTH
+        + " UNION ALL SELECT " + Colonne.ID.getName() + " FROM " + Tabelle.RESIDENZA + " WHERE length(" + Colonne.ID.getName() + ") = " + IdGenerator.ID_LENGTH
+        + ") generated"),
+    SAMPLE_PLAYLIST("SELECT * FROM " + Tabelle.PLAYLIST + " LIMIT 1");
+
+
+    /** La colonna con il numero totale di righe nelle query _COUNTED. */
+    public static final String TOTAL = "total";
+
+    private String sql;
+
+    private QueryTemplate(String sql) {
+        this.sql = sql;
+    }
+
+
+
+/**
+ * @return Il testo SQL della query, con un '?' per ogni parametro.
+ */
+    public String getSQL() {
+        return sql;
+    }
+}
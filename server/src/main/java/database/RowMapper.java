@@ -0,0 +1,41 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+
+/**
+ * Converte la riga corrente di un ResultSet in un oggetto.
+ *
+ * Il mapper legge solo la riga su cui è posizionato il ResultSet: lo scorrimento e la chiusura
+ * del risultato sono gestiti da DatabaseManager, che chiama {@link #bind(ResultSetMetaData)} una sola volta
+ * per risultato e usa il mapper restituito per tutte le righe.
+ *
+ * @param <T> Il tipo dell'oggetto costruito.
+ */
+@FunctionalInterface
+public interface RowMapper<T>
+{
+/**
+ * Costruisce l'oggetto corrispondente alla riga corrente.
+ *
+ * @param resultSet Il ResultSet posizionato sulla riga da leggere.
+ * @return L'oggetto costruito dalla riga.
+ * @throws SQLException Se si verifica un errore durante la lettura delle colonne.
+ */
+    T map(ResultSet resultSet) throws SQLException;
+
+
+
+/**
+ * Prepara il mapper per le colonne di un risultato, ad esempio cercando una volta sola la posizione di ogni colonna.
+ *
+ * @param metaData La descrizione delle colonne del risultato.
+ * @return Il mapper da usare per tutte le righe del risultato; quello predefinito restituisce se stesso.
+ * @throws SQLException Se una colonna richiesta non è presente nel risultato.
+ */
+    default RowMapper<T> bind(ResultSetMetaData metaData) throws SQLException {
+        return this;
+    }
+}
@@ -0,0 +1,208 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Tabelle;
+import objects.Account;
+import objects.Album;
+import objects.Artist;
+import objects.Emotion;
+import objects.MyImage;
+import objects.Playlist;
+import objects.Residenze;
+import objects.Song;
+
+
+/**
+ * I RowMapper degli oggetti restituiti dalle query del server.
+ *
+ * Ogni mapper costruisce un oggetto dalla riga corrente usando le colonne della tabella indicate in
+ * PredefinedSQLCode.tablesAttributes. I metodi che costruiscono una HashMap per riga restano disponibili
+ * per i costruttori delle classi in objects che la ricevono.
+ */
+public class RowMappers
+{
+    public static final RowMapper<Song> SONG = new IndexedMapper<>((resultSet, c) -> new Song(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getString(c[2]),
+        resultSet.getLong(c[3]), resultSet.getInt(c[4]), resultSet.getString(c[5])), Tabelle.SONG);
+
+    public static final RowMapper<Album> ALBUM = new IndexedMapper<>((resultSet, c) -> new Album(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getString(c[2]), resultSet.getString(c[3]),
+        resultSet.getString(c[4]), resultSet.getInt(c[5]), resultSet.getString(c[6])), Tabelle.ALBUM);
+
+    public static final RowMapper<Artist> ARTIST = new IndexedMapper<>((resultSet, c) -> new Artist(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getString(c[2]),
+        resultSet.getLong(c[3]), resultSet.getInt(c[4])), Tabelle.ARTIST);
+
+    public static final RowMapper<Emotion> EMOTION = new IndexedMapper<>((resultSet, c) -> new Emotion(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getInt(c[2]),
+        resultSet.getString(c[3]), resultSet.getString(c[5]), resultSet.getString(c[4])), Tabelle.EMOZIONE);
+
+    public static final RowMapper<Playlist> PLAYLIST = new IndexedMapper<>((resultSet, c) -> new Playlist(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getString(c[2]), resultSet.getString(c[3])), Tabelle.PLAYLIST);
+
+    //le immagini degli artisti hanno le stesse colonne di quelle degli album
+    public static final RowMapper<MyImage> IMAGE = new IndexedMapper<>((resultSet, c) -> new MyImage(
+        resultSet.getString(c[2]), resultSet.getString(c[0]), resultSet.getString(c[1])), Tabelle.ALBUM_IMAGES);
+
+    public static final RowMapper<Account> ACCOUNT = new IndexedMapper<>((resultSet, c) -> new Account(
+        resultSet.getString(c[0]), resultSet.getString(c[1]), resultSet.getString(c[2]), resultSet.getString(c[3]),
+        resultSet.getString(c[4]), resultSet.getString(c[5]), resultSet.getString(c[6]),
+        new Residenze(resultSet.getString(c[7]), resultSet.getString(c[8]), resultSet.getInt(c[9]),
+            resultSet.getString(c[10]), resultSet.getString(c[11]), resultSet.getString(c[12]))), Tabelle.ACCOUNT, Tabelle.RESIDENZA);
+
+    public static final RowMapper<String> ID = (resultSet) -> resultSet.getString(Colonne.ID.getName());
+    public static final RowMapper<Long> COUNT = (resultSet) -> resultSet.getLong("count");
+
+
+
+    //costruisce un oggetto dalla riga corrente leggendo le colonne alle posizioni indicate
+    private interface IndexedBuilder<T> {
+        T build(ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+
+
+/**
+ * Mapper che cerca le colonne delle tabelle una sola volta per risultato e poi legge ogni riga per posizione,
+ * con i getter tipizzati del ResultSet e senza costruire una HashMap per riga.
+ *
+ * Le colonne sono cercate per nome, nell'ordine di PredefinedSQLCode.tablesAttributes; con più tabelle
+ * le colonne di ciascuna sono cercate dopo quelle della tabella precedente, come nelle query con JOIN.
+ */
+    private static class IndexedMapper<T> implements RowMapper<T>
+    {
+        private IndexedBuilder<T> builder;
+        private Tabelle[] tables;
+
+        IndexedMapper(IndexedBuilder<T> builder, Tabelle... tables) {
+            this.builder = builder;
+            this.tables = tables;
+        }
+
+        @Override
+        public RowMapper<T> bind(ResultSetMetaData metaData) throws SQLException {
+            int[] columns = resolveColumns(metaData, tables);
+            return (resultSet) -> builder.build(resultSet, columns);
+        }
+
+        //usato solo se il mapper non è stato preparato per il risultato
+        @Override
+        public T map(ResultSet resultSet) throws SQLException {
+            return builder.build(resultSet, resolveColumns(resultSet.getMetaData(), tables));
+        }
+    }
+
+
+
+/**
+ * Cerca la posizione delle colonne delle tabelle indicate in un risultato.
+ *
+ * @param metaData La descrizione delle colonne del risultato.
+ * @param tabelle  Le tabelle presenti nel risultato, nell'ordine delle loro colonne.
+ * @return Le posizioni delle colonne, nell'ordine di PredefinedSQLCode.tablesAttributes per ogni tabella.
+ * @throws SQLException Se una colonna non è presente nel risultato.
+ */
+    static int[] resolveColumns(ResultSetMetaData metaData, Tabelle... tabelle) throws SQLException 
+    {
+        int count = 0;
+        for (Tabelle tabella : tabelle)
+            count += PredefinedSQLCode.tablesAttributes.get(tabella).length;
+
+        int[] columns = new int[count];
+        int next = 0;
+        int offset = 1;
+
+        for (Tabelle tabella : tabelle) {
+            int last = offset;
+            for (Colonne colonna : PredefinedSQLCode.tablesAttributes.get(tabella)) {
+                int index = offset;
+                while(index <= metaData.getColumnCount() && !metaData.getColumnLabel(index).equalsIgnoreCase(colonna.getName()))
+                    index++;
+
+                if(index > metaData.getColumnCount())
+                    throw new SQLException("Column " + colonna.getName() + " of " + tabella + " not found in the result");
+
+                columns[next++] = index;
+                last = Math.max(last, index);
+            }
+            offset = last + 1;
+        }
+        return columns;
+    }
+
+
+
+/**
+ * Crea una HashMap di colonne e valori da un ResultSet per il costruttore di una classe.
+ *
+ * Questo metodo prende un ResultSet e una tabella specificata, e restituisce una HashMap che associa
+ * le colonne della tabella ai loro valori corrispondenti nel ResultSet. La HashMap viene utilizzata
+ * per il costruttore di una classe rappresentante la tabella.
+ *
+ * @param resultSet Il ResultSet contenente i dati della query.
+ * @param tabella   La tabella specificata per la quale ottenere la HashMap.
+ * @return Una HashMap che associa le colonne della tabella ai loro valori corrispondenti nel ResultSet.
+ * @throws SQLException Se si verifica un errore durante l'accesso al ResultSet.
+ */
+    public static HashMap<Colonne, Object> getHashMap_for_ClassConstructor(ResultSet resultSet, Tabelle tabella) throws SQLException {
+        Colonne[] coll = PredefinedSQLCode.tablesAttributes.get(tabella);
+        HashMap<Colonne, Object> table = new HashMap<>();
+        
+
+        for (Colonne colonna : coll) {
+            table.put(colonna, resultSet.getObject(colonna.getName()));
+        }
+        return table;
+    }
+
+
+
+/**
+ * Crea una mappa di costruttori per le classi associate alle tabelle specificate da un ResultSet.
+ *
+ * Questo metodo prende un ResultSet e un elenco di tabelle specificate, e restituisce una HashMap che associa
+ * ogni tabella ai suoi dati corrispondenti nel ResultSet. La struttura della HashMap esterna utilizza le tabelle come chiavi,
+ * e ognuna di queste ha una HashMap interna che associa le colonne della tabella ai loro valori corrispondenti nel ResultSet.
+ * Questa HashMap viene utilizzata per costruire oggetti delle classi associate alle tabelle.
+ *
+ * @param resultSet Il ResultSet contenente i dati della query.
+ * @param tabelle   Un elenco di tabelle specificate per le quali ottenere le HashMap.
+ * @return Una HashMap che associa le tabelle ai loro dati corrispondenti nel ResultSet.
+ * @throws SQLException Se si verifica un errore durante l'accesso al ResultSet.
+ */
+    public static HashMap<Tabelle,HashMap<Colonne, Object>> getHashMaps_for_ClassConstructor(ResultSet resultSet, Tabelle... tabelle) throws SQLException 
+    {
+        HashMap<Tabelle,HashMap<Colonne, Object>> constructorsMap = new HashMap<>();
+        ResultSetMetaData rsmd = resultSet.getMetaData();
+        
+        int offset = 1;
+
+        for (Tabelle tabella : tabelle) {
+            Colonne[] coll = PredefinedSQLCode.tablesAttributes.get(tabella);
+            HashMap<Colonne, Object> table = new HashMap<>();
+            
+            //fra tutte le colonne che compongono il mio oggetto
+            for(int i = 0; i < coll.length;i++) 
+            {
+                //guardo che nome ha la colonna i-esima
+                String currentColumName = rsmd.getColumnLabel(offset).toLowerCase();
+                
+                //cerco se quella colonna mi serve
+                for (Colonne colonna : coll) {
+                    if(colonna.getName().toLowerCase().equals(currentColumName)) {
+                        //System.out.println(tabella + ": " + colonna + " -> " + resultSet.getObject(offset));
+                        table.put(colonna, resultSet.getObject(offset++));
+                        break;
+                    }
+                }
+            }
+            constructorsMap.put(tabella, table);
+        }
+        return constructorsMap;
+    }
+}
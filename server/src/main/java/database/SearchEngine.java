@@ -0,0 +1,412 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import enumclass.FacetType;
+import enumclass.SuggestionType;
+
+
+/**
+ * Ricerca in memoria di canzoni, album e artisti per nome.
+ *
+ * Contiene un {@link SearchIndex} per ogni tipo di elemento, costruito leggendo il catalogo dal database.
+ * Le canzoni e gli album sono ordinati, a parità di pertinenza, per popolarità (quella della canzone più popolare
+ * per gli album), gli artisti per numero di follower. Finché gli indici non sono stati costruiti, o se la ricerca
+ * in memoria è disattivata, i metodi di ricerca restituiscono null e QueriesManager esegue le query SQL.
+ * La ricerca approssimata è limitata da un tempo massimo, oltre il quale restituisce i risultati trovati fino a quel momento.
+ * Insieme agli indici viene costruito il {@link SuggestTrie} usato per completare i nomi mentre vengono scritti
+ * e il {@link FacetIndex} della ricerca a faccette delle canzoni, che non ha una versione SQL e viene quindi
+ * usato anche se la ricerca in memoria è disattivata.
+ */
+public class SearchEngine
+{
+    public static final int DEFAULT_FUZZY_BUDGET = 50;
+
+    private static volatile boolean enabled = true;
+    private static volatile long fuzzyBudget = DEFAULT_FUZZY_BUDGET * 1000000L;
+    private static volatile SearchIndex songs;
+    private static volatile SearchIndex albums;
+    private static volatile SearchIndex artists;
+    private static volatile SuggestTrie suggestions;
+    private static volatile FacetIndex facets;
+
+    private static DatabaseManager database = DatabaseManager.getInstance();
+
+
+
+    private SearchEngine() {}
+
+
+
+/**
+ * Attiva o disattiva la ricerca in memoria. Gli indici già costruiti vengono conservati.
+ *
+ * @param enabled true per servire le ricerche dagli indici.
+ */
+    public static void setEnabled(boolean enabled) {
+        SearchEngine.enabled = enabled;
+    }
+
+/**
+ * Imposta il tempo massimo di una ricerca approssimata.
+ *
+ * @param milliseconds Il tempo massimo in millisecondi, almeno 1.
+ * @throws IllegalArgumentException Se il tempo non è positivo.
+ */
+    public static void setFuzzyBudget(int milliseconds) {
+        if(milliseconds <= 0)
+            throw new IllegalArgumentException("Invalid fuzzy search budget: " + milliseconds);
+        fuzzyBudget = milliseconds * 1000000L;
+    }
+
+/**
+ * @return Il tempo massimo di una ricerca approssimata in millisecondi.
+ */
+    public static int getFuzzyBudget() {
+        return (int) (fuzzyBudget / 1000000L);
+    }
+
+/**
+ * @return true se la ricerca in memoria è attiva.
+ */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+/**
+ * @return true se la ricerca in memoria è attiva e gli indici sono stati costruiti.
+ */
+    public static boolean isReady() {
+        return enabled && songs != null && albums != null && artists != null;
+    }
+
+
+
+/**
+ * Costruisce da capo gli indici leggendo il catalogo dal database. Fino al termine le ricerche
+ * continuano a usare gli indici precedenti, se presenti.
+ *
+ * @return Il numero di elementi indicizzati.
+ * @throws SQLException Se la lettura del catalogo non riesce; in questo caso gli indici precedenti restano invariati.
+ */
+    public static int build() throws SQLException
+    {
+        ArrayList<Object[]> songRows = load(QueryTemplate.SEARCH_INDEX_SONGS);
+        ArrayList<Object[]> albumRows = load(QueryTemplate.SEARCH_INDEX_ALBUMS);
+        ArrayList<Object[]> artistRows = load(QueryTemplate.SEARCH_INDEX_ARTISTS);
+
+        SearchIndex newSongs = new SearchIndex();
+        SearchIndex newAlbums = new SearchIndex();
+        SearchIndex newArtists = new SearchIndex();
+        int count = addAll(newSongs, songRows) + addAll(newAlbums, albumRows) + addAll(newArtists, artistRows);
+        SuggestTrie newSuggestions = createSuggestions(songRows, albumRows, artistRows);
+        FacetIndex newFacets = createFacets();
+
+        songs = newSongs;
+        albums = newAlbums;
+        artists = newArtists;
+        suggestions = newSuggestions;
+        facets = newFacets;
+        return count;
+    }
+
+
+
+/**
+ * Aggiunge agli indici gli elementi del catalogo che non contengono ancora e aggiorna i pesi di quelli presenti,
+ * poi ricostruisce il trie dei suggerimenti e l'indice a faccette, che non possono essere modificati.
+ * Va chiamato dopo che il Loader ha aggiunto elementi al catalogo; se gli indici non sono mai stati costruiti li costruisce.
+ *
+ * @return Il numero di elementi aggiunti.
+ * @throws SQLException Se la lettura del catalogo non riesce.
+ */
+    public static int update() throws SQLException
+    {
+        if(songs == null || albums == null || artists == null)
+            return build();
+
+        ArrayList<Object[]> songRows = load(QueryTemplate.SEARCH_INDEX_SONGS);
+        ArrayList<Object[]> albumRows = load(QueryTemplate.SEARCH_INDEX_ALBUMS);
+        ArrayList<Object[]> artistRows = load(QueryTemplate.SEARCH_INDEX_ARTISTS);
+
+        int count = addAll(songs, songRows) + addAll(albums, albumRows) + addAll(artists, artistRows);
+        suggestions = createSuggestions(songRows, albumRows, artistRows);
+        facets = createFacets();
+        return count;
+    }
+
+
+
+/**
+ * Elimina gli indici. Le ricerche usano le query SQL fino alla prossima costruzione.
+ */
+    public static void clear() {
+        songs = null;
+        albums = null;
+        artists = null;
+        suggestions = null;
+        facets = null;
+    }
+
+
+
+/**
+ * @return Il numero di elementi indicizzati per canzoni, album e artisti.
+ */
+    public static int[] getSizes() {
+        SearchIndex[] indexes = {songs, albums, artists};
+        int[] sizes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            sizes[i] = indexes[i] != null ? indexes[i].size() : 0;
+        return sizes;
+    }
+
+/**
+ * @return Il numero di parole diverse indicizzate per canzoni, album e artisti.
+ */
+    public static int[] getWordCounts() {
+        SearchIndex[] indexes = {songs, albums, artists};
+        int[] counts = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            counts[i] = indexes[i] != null ? indexes[i].getWordCount() : 0;
+        return counts;
+    }
+
+
+
+/**
+ * Cerca le canzoni per titolo.
+ *
+ * @param key La chiave di ricerca.
+ * @param limit Il numero massimo di canzoni della pagina.
+ * @param offset Il numero di canzoni da saltare se il cursore è null.
+ * @param after Il cursore restituito con la pagina precedente, oppure null.
+ * @return Il risultato della ricerca, oppure null se la ricerca deve essere eseguita con SQL.
+ * @throws IllegalArgumentException Se il cursore non è valido.
+ */
+    public static SearchIndex.Hits searchSongs(String key, long limit, long offset, String after) {
+        return search(songs, key, limit, offset, after);
+    }
+
+/**
+ * Cerca gli album per nome.
+ *
+ * @see #searchSongs(String, long, long, String)
+ */
+    public static SearchIndex.Hits searchAlbums(String key, long limit, long offset, String after) {
+        return search(albums, key, limit, offset, after);
+    }
+
+/**
+ * Cerca gli artisti per nome.
+ *
+ * @see #searchSongs(String, long, long, String)
+ */
+    public static SearchIndex.Hits searchArtists(String key, long limit, long offset, String after) {
+        return search(artists, key, limit, offset, after);
+    }
+
+
+
+/**
+ * Cerca le canzoni con un titolo simile alla chiave, tollerando errori di battitura e parole mancanti.
+ *
+ * @param key La chiave di ricerca.
+ * @param limit Il numero massimo di canzoni della pagina.
+ * @param offset Il numero di canzoni da saltare.
+ * @return Il risultato della ricerca, oppure null se gli indici non sono pronti.
+ */
+    public static SearchIndex.Hits fuzzySearchSongs(String key, long limit, long offset) {
+        return fuzzySearch(songs, key, limit, offset);
+    }
+
+/**
+ * Cerca gli album con un nome simile alla chiave.
+ *
+ * @see #fuzzySearchSongs(String, long, long)
+ */
+    public static SearchIndex.Hits fuzzySearchAlbums(String key, long limit, long offset) {
+        return fuzzySearch(albums, key, limit, offset);
+    }
+
+/**
+ * Cerca gli artisti con un nome simile alla chiave.
+ *
+ * @see #fuzzySearchSongs(String, long, long)
+ */
+    public static SearchIndex.Hits fuzzySearchArtists(String key, long limit, long offset) {
+        return fuzzySearch(artists, key, limit, offset);
+    }
+
+
+
+    private static SearchIndex.Hits fuzzySearch(SearchIndex index, String key, long limit, long offset)
+    {
+        if(!enabled || index == null)
+            return null;
+        return index.fuzzySearch(key, limit, offset, System.nanoTime() + fuzzyBudget);
+    }
+
+    private static SearchIndex.Hits search(SearchIndex index, String key, long limit, long offset, String after)
+    {
+        if(!enabled || index == null)
+            return null;
+
+        //un cursore creato da una query SQL, prima che l'indice fosse pronto, continua con SQL
+        PageCursor cursor = after != null ? PageCursor.decode(after) : null;
+        if(cursor != null && !SearchIndex.isIndexCursor(cursor))
+            return null;
+
+        return index.search(key, limit, offset, cursor);
+    }
+
+
+
+/**
+ * Restituisce i nomi di canzoni, album e artisti che iniziano con il testo scritto, dai più popolari.
+ *
+ * @param prefix Il testo scritto finora.
+ * @param limit Il numero massimo di suggerimenti, al massimo {@link SuggestTrie#MAX_SUGGESTIONS}.
+ * @return I nomi suggeriti, i loro tipi e gli ID degli elementi; nessun suggerimento se la ricerca
+ *         in memoria è disattivata o il trie non è ancora stato costruito.
+ */
+    public static Object[] suggest(String prefix, int limit)
+    {
+        SuggestTrie trie = suggestions;
+        if(!enabled || trie == null)
+            return new Object[] {new String[0], new String[0], new String[0]};
+        return trie.suggest(prefix, limit);
+    }
+
+/**
+ * @return Il trie dei suggerimenti, oppure null se non è stato costruito.
+ */
+    public static SuggestTrie getSuggestions() {
+        return suggestions;
+    }
+
+/**
+ * Ricostruisce solo il trie dei suggerimenti leggendo il catalogo dal database.
+ *
+ * @return Il nuovo trie.
+ * @throws SQLException Se la lettura del catalogo non riesce.
+ */
+    public static SuggestTrie buildSuggestions() throws SQLException
+    {
+        suggestions = null;
+        SuggestTrie trie = createSuggestions(load(QueryTemplate.SEARCH_INDEX_SONGS), load(QueryTemplate.SEARCH_INDEX_ALBUMS), load(QueryTemplate.SEARCH_INDEX_ARTISTS));
+        suggestions = trie;
+        return trie;
+    }
+
+
+
+/**
+ * Cerca le canzoni che soddisfano i filtri a faccette, dalla più popolare, e conta i valori di ogni facet.
+ * Se l'indice a faccette non è ancora stato costruito viene costruito prima di eseguire la ricerca.
+ *
+ * @param filters Per ogni facet i valori ammessi.
+ * @param limit Il numero massimo di canzoni della pagina.
+ * @param offset Il numero di canzoni da saltare.
+ * @return Il risultato della ricerca.
+ * @throws SQLException Se l'indice deve essere costruito e la lettura del catalogo non riesce.
+ */
+    public static FacetIndex.Result facetSearch(Map<FacetType, String[]> filters, long limit, long offset) throws SQLException
+    {
+        FacetIndex index = facets;
+        if(index == null)
+            index = getOrBuildFacets();
+        return index.search(filters, limit, offset);
+    }
+
+/**
+ * @return L'indice a faccette, oppure null se non è stato costruito.
+ */
+    public static FacetIndex getFacets() {
+        return facets;
+    }
+
+/**
+ * Ricostruisce solo l'indice a faccette leggendo il catalogo dal database.
+ *
+ * @return Il nuovo indice.
+ * @throws SQLException Se la lettura del catalogo non riesce.
+ */
+    public static FacetIndex buildFacets() throws SQLException
+    {
+        facets = null;
+        FacetIndex index = createFacets();
+        facets = index;
+        return index;
+    }
+
+    private static synchronized FacetIndex getOrBuildFacets() throws SQLException
+    {
+        //un'altra richiesta può averlo costruito mentre questa aspettava
+        if(facets == null)
+            facets = createFacets();
+        return facets;
+    }
+
+
+
+/**
+ * Crea il trie dei suggerimenti. I pesi dei tre tipi hanno scale diverse (popolarità e follower), quindi ogni peso
+ * viene portato tra 0 e 1 in scala logaritmica rispetto al peso massimo del suo tipo.
+ */
+    private static SuggestTrie createSuggestions(ArrayList<Object[]> songRows, ArrayList<Object[]> albumRows, ArrayList<Object[]> artistRows)
+    {
+        SuggestTrie.Builder builder = new SuggestTrie.Builder();
+        addSuggestions(builder, SuggestionType.SONG, songRows);
+        addSuggestions(builder, SuggestionType.ALBUM, albumRows);
+        addSuggestions(builder, SuggestionType.ARTIST, artistRows);
+        return builder.build();
+    }
+
+    private static void addSuggestions(SuggestTrie.Builder builder, SuggestionType type, ArrayList<Object[]> rows)
+    {
+        long max = 1;
+        for (Object[] row : rows)
+            max = Math.max(max, (Long) row[2]);
+
+        double scale = Math.log1p(max);
+        for (Object[] row : rows)
+            builder.add(type, (String) row[0], (String) row[1], (float) (Math.log1p(Math.max(0, (Long) row[2])) / scale));
+    }
+
+
+
+    //il prestito serve solo a leggere le tre query sulla stessa connessione
+    @SuppressWarnings("try")
+    private static FacetIndex createFacets() throws SQLException
+    {
+        FacetIndex.Builder builder = new FacetIndex.Builder();
+        try (PooledConnection connection = database.borrowConnection()) {
+            for (Object[] row : database.queryList(QueryTemplate.FACET_INDEX_SONGS, (resultSet) -> new Object[] {resultSet.getString(1), resultSet.getLong(2), resultSet.getString(3), resultSet.getString(4)}))
+                builder.addSong((String) row[0], (Long) row[1], (String) row[2], (String) row[3]);
+            for (Object[] row : database.queryList(QueryTemplate.FACET_INDEX_GENRES, (resultSet) -> new Object[] {resultSet.getString(1), resultSet.getString(2)}))
+                builder.addGenre((String) row[0], (String) row[1]);
+            for (Object[] row : database.queryList(QueryTemplate.FACET_INDEX_EMOTIONS, (resultSet) -> new Object[] {resultSet.getString(1), resultSet.getString(2), resultSet.getLong(3), resultSet.getLong(4)}))
+                builder.addEmotion((String) row[0], (String) row[1], (Long) row[2], (Long) row[3]);
+        }
+        return builder.build();
+    }
+
+
+
+    private static ArrayList<Object[]> load(QueryTemplate template) throws SQLException {
+        return database.queryList(template, (resultSet) -> new Object[] {resultSet.getString(1), resultSet.getString(2), resultSet.getLong(3)});
+    }
+
+    private static int addAll(SearchIndex index, ArrayList<Object[]> rows)
+    {
+        int added = 0;
+        for (Object[] row : rows) {
+            if(index.add((String) row[0], (String) row[1], (Long) row[2]))
+                added++;
+        }
+        return added;
+    }
+}
@@ -0,0 +1,659 @@
+package database;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Indice invertito in memoria sui nomi di un tipo di elemento del catalogo.
+ *
+ * Ogni nome viene diviso in parole, convertite in minuscolo e senza accenti; per ogni parola l'indice conserva
+ * l'elenco ordinato degli elementi che la contengono. Una ricerca trova gli elementi in cui ogni parola della chiave
+ * è l'inizio di una parola del nome, e li ordina per pertinenza e poi per peso (popolarità o follower):
+ * prima i nomi che iniziano con la chiave, poi quelli che contengono tutte le parole intere, infine gli altri.
+ *
+ * La ricerca approssimata tollera gli errori di battitura e le parole mancanti: le parole dell'indice vicine a quelle
+ * della chiave vengono trovate attraverso i trigrammi in comune e valutate con la distanza di modifica, e gli elementi
+ * sono ordinati per somiglianza combinata con il peso.
+ *
+ * Gli elementi vengono solo aggiunti: un elemento già presente aggiorna il peso ma non il nome.
+ * Le ricerche possono essere eseguite in parallelo tra loro e con le aggiunte.
+ */
+public class SearchIndex
+{
+    //bit sempre presente nel rango, distingue i cursori dell'indice da quelli delle query SQL
+    static final long RANK_MARKER = 1L << 62;
+    private static final int TIER_SHIFT = 56;
+    private static final long MAX_WEIGHT = (1L << TIER_SHIFT) - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final String[] NO_WORDS = new String[0];
+
+    //somiglianza di una parola della chiave con una parola del nome
+    private static final float EXACT_SCORE = 1.0f;
+    private static final float PREFIX_SCORE = 0.9f;
+    private static final float[] TYPO_SCORES = {1.0f, 0.7f, 0.5f};
+    private static final float PREFIX_TYPO_PENALTY = 0.1f;
+    //quanto conta il peso rispetto alla somiglianza nella ricerca approssimata
+    private static final double WEIGHT_FACTOR = 0.15;
+    private static final int MAX_CANDIDATE_WORDS = 512;
+    private static final char GRAM_PADDING = '$';
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Integer> positions = new HashMap<>();
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final ArrayList<Postings> vocabulary = new ArrayList<>();
+    private final HashMap<String, Postings> grams = new HashMap<>();
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] weights = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private long maxWeight = 0;
+
+
+
+    private static class Postings
+    {
+        private final String word;
+        private final int id;
+        private int[] elements = new int[2];
+        private int size = 0;
+
+        Postings() {
+            this(null, -1);
+        }
+
+        Postings(String word, int id) {
+            this.word = word;
+            this.id = id;
+        }
+
+        void add(int element) {
+            //le parole ripetute nello stesso nome vengono aggiunte una volta sola
+            if(size > 0 && elements[size - 1] == element)
+                return;
+            if(size == elements.length)
+                elements = Arrays.copyOf(elements, size * 2);
+            elements[size++] = element;
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < size; i++)
+                set.set(elements[i]);
+        }
+    }
+
+
+
+/**
+ * Il risultato di una ricerca: il numero totale di elementi trovati, gli ID della pagina richiesta
+ * nell'ordine di pertinenza e il cursore della pagina successiva.
+ */
+    public static class Hits
+    {
+        private final long total;
+        private final String[] ids;
+        private final String next;
+
+        private final boolean complete;
+
+        Hits(long total, String[] ids, String next) {
+            this(total, ids, next, true);
+        }
+
+        Hits(long total, String[] ids, String next, boolean complete) {
+            this.total = total;
+            this.ids = ids;
+            this.next = next;
+            this.complete = complete;
+        }
+
+/**
+ * @return Il numero totale di elementi che corrispondono alla chiave.
+ */
+        public long getTotal() {
+            return total;
+        }
+
+/**
+ * @return Gli ID degli elementi della pagina, dal più pertinente.
+ */
+        public String[] getIds() {
+            return ids;
+        }
+
+/**
+ * @return Il cursore della pagina successiva, oppure null se la pagina è l'ultima.
+ */
+        public String getNext() {
+            return next;
+        }
+
+/**
+ * @return false se la ricerca approssimata è stata interrotta perché ha superato il tempo a disposizione.
+ */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+
+
+/**
+ * Aggiunge un elemento all'indice, oppure ne aggiorna il peso se è già presente.
+ *
+ * @param id L'ID dell'elemento.
+ * @param name Il nome su cui cercare.
+ * @param weight Il peso usato per ordinare gli elementi con la stessa pertinenza, maggiore per i più popolari.
+ * @return true se l'elemento è stato aggiunto, false se era già presente.
+ */
+    public boolean add(String id, String name, long weight)
+    {
+        String[] tokens = tokenize(name);
+
+        lock.writeLock().lock();
+        try {
+            maxWeight = Math.max(maxWeight, weight);
+            Integer position = positions.get(id);
+            if(position != null) {
+                weights[position] = weight;
+                return false;
+            }
+
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+
+            int element = size++;
+            ids[element] = id;
+            names[element] = String.join(" ", tokens);
+            weights[element] = weight;
+            positions.put(id, element);
+
+            for (String token : tokens) {
+                Postings postings = words.get(token);
+                if(postings == null) {
+                    postings = addWord(token);
+                }
+                postings.add(element);
+            }
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+
+/**
+ * Cerca gli elementi che corrispondono alla chiave e restituisce una pagina ordinata per pertinenza e peso.
+ *
+ * @param key La chiave di ricerca; se non contiene parole corrispondono tutti gli elementi.
+ * @param limit Il numero massimo di elementi della pagina.
+ * @param offset Il numero di elementi da saltare se il cursore è null.
+ * @param after Il cursore restituito con la pagina precedente, oppure null.
+ * @return Il numero totale di elementi trovati, la pagina e il cursore della pagina successiva.
+ * @throws IllegalArgumentException Se il cursore non è stato creato dall'indice.
+ */
+    public Hits search(String key, long limit, long offset, PageCursor after)
+    {
+        if(after != null && !isIndexCursor(after))
+            throw new IllegalArgumentException("Invalid cursor for the search index");
+
+        String[] tokens = tokenize(key);
+        String prefix = String.join(" ", tokens);
+        int pageSize = (int) Math.min(Integer.MAX_VALUE - 1, limit + (after == null ? offset : 0));
+
+        lock.readLock().lock();
+        try {
+            BitSet found = new BitSet(size);
+            BitSet exact = new BitSet(size);
+            found.set(0, size);
+            exact.set(0, size);
+
+            for (String token : tokens) {
+                BitSet prefixed = new BitSet(size);
+                for (Postings postings : words.subMap(token, true, token + Character.MAX_VALUE, false).values())
+                    postings.addTo(prefixed);
+                found.and(prefixed);
+
+                BitSet whole = new BitSet(size);
+                Postings postings = words.get(token);
+                if(postings != null)
+                    postings.addTo(whole);
+                exact.and(whole);
+
+                if(found.isEmpty())
+                    break;
+            }
+
+            //gli elementi migliori trovati finora, con in testa il peggiore
+            PriorityQueue<long[]> best = new PriorityQueue<>(Math.max(1, Math.min(pageSize, 1024)), (a, b) -> compare(a[0], (int) a[1], b[0], (int) b[1]));
+            long afterRank = after != null ? (Long) after.getSortValue() : 0;
+
+            for (int element = found.nextSetBit(0); element >= 0; element = found.nextSetBit(element + 1)) {
+                long rank = RANK_MARKER | (tier(element, prefix, exact) << TIER_SHIFT) | Math.max(0, Math.min(weights[element], MAX_WEIGHT));
+
+                if(after != null && compare(rank, ids[element], afterRank, after.getId()) >= 0)
+                    continue;
+                if(best.size() < pageSize) {
+                    best.add(new long[] {rank, element});
+                }
+                else if(pageSize > 0 && compare(rank, element, best.peek()[0], (int) best.peek()[1]) > 0) {
+                    best.poll();
+                    best.add(new long[] {rank, element});
+                }
+            }
+
+            long[][] sorted = best.toArray(new long[0][]);
+            Arrays.sort(sorted, (a, b) -> compare(b[0], (int) b[1], a[0], (int) a[1]));
+
+            int skip = (int) Math.min(sorted.length, after == null ? offset : 0);
+            String[] page = new String[sorted.length - skip];
+            for (int i = 0; i < page.length; i++)
+                page[i] = ids[(int) sorted[skip + i][1]];
+
+            String next = null;
+            if(page.length > 0 && page.length >= limit)
+                next = PageCursor.encode(sorted[sorted.length - 1][0], page[page.length - 1]);
+
+            return new Hits(found.cardinality(), page, next);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+
+/**
+ * Cerca gli elementi il cui nome somiglia alla chiave, tollerando errori di battitura e parole mancanti.
+ *
+ * Per ogni parola della chiave vengono cercate le parole dell'indice uguali, quelle che iniziano con l'ultima parola
+ * e quelle con una distanza di modifica di al massimo 1 (parole fino a 5 lettere) o 2; un elemento viene trovato se
+ * somiglia almeno a metà delle parole della chiave. Gli elementi sono ordinati per somiglianza media e peso.
+ * Se la ricerca supera il tempo a disposizione viene interrotta e restituisce gli elementi trovati e ordinati fino a quel momento.
+ *
+ * @param key La chiave di ricerca; se non contiene parole la ricerca è quella esatta.
+ * @param limit Il numero massimo di elementi della pagina.
+ * @param offset Il numero di elementi da saltare.
+ * @param deadline L'istante, in nanosecondi di {@link System#nanoTime()}, entro cui la ricerca deve terminare.
+ * @return Il numero di elementi trovati e la pagina; la ricerca approssimata non restituisce cursori.
+ */
+    public Hits fuzzySearch(String key, long limit, long offset, long deadline)
+    {
+        String[] tokens = new LinkedHashSet<>(Arrays.asList(tokenize(key))).toArray(NO_WORDS);
+        if(tokens.length == 0)
+            return search(key, limit, offset, null);
+
+        int pageSize = (int) Math.min(Integer.MAX_VALUE - 1, limit + offset);
+
+        lock.readLock().lock();
+        try {
+            //per ogni elemento trovato la somiglianza migliore con ogni parola della chiave
+            HashMap<Integer, float[]> matches = new HashMap<>();
+            boolean complete = true;
+
+            for (int i = 0; i < tokens.length && complete; i++) {
+                HashMap<Postings, Float> candidates = findWords(tokens[i], i == tokens.length - 1, deadline);
+                if(candidates == null) {
+                    complete = false;
+                    break;
+                }
+
+                for (Map.Entry<Postings, Float> candidate : candidates.entrySet()) {
+                    Postings postings = candidate.getKey();
+                    float score = candidate.getValue();
+                    for (int p = 0; p < postings.size; p++) {
+                        float[] scores = matches.computeIfAbsent(postings.elements[p], (element) -> new float[tokens.length]);
+                        scores[i] = Math.max(scores[i], score);
+                    }
+                    if(System.nanoTime() > deadline) {
+                        complete = false;
+                        break;
+                    }
+                }
+            }
+
+            int required = (tokens.length + 1) / 2;
+            double weightScale = Math.log1p(Math.max(1, maxWeight));
+            long total = 0;
+            PriorityQueue<double[]> best = new PriorityQueue<>(Math.max(1, Math.min(pageSize, 1024)), (a, b) -> compareFuzzy(a, b));
+
+            int ranked = 0;
+            for (Map.Entry<Integer, float[]> match : matches.entrySet()) {
+                if(++ranked % 4096 == 0 && System.nanoTime() > deadline) {
+                    complete = false;
+                    break;
+                }
+
+                int matched = 0;
+                double similarity = 0;
+                for (float score : match.getValue()) {
+                    if(score > 0)
+                        matched++;
+                    similarity += score;
+                }
+                if(matched < required)
+                    continue;
+
+                int element = match.getKey();
+                double rank = similarity / tokens.length + WEIGHT_FACTOR * Math.log1p(Math.max(0, weights[element])) / weightScale;
+                total++;
+
+                if(best.size() < pageSize) {
+                    best.add(new double[] {rank, element});
+                }
+                else if(pageSize > 0 && compareFuzzy(new double[] {rank, element}, best.peek()) > 0) {
+                    best.poll();
+                    best.add(new double[] {rank, element});
+                }
+            }
+
+            double[][] sorted = best.toArray(new double[0][]);
+            Arrays.sort(sorted, (a, b) -> compareFuzzy(b, a));
+
+            int skip = (int) Math.min(sorted.length, offset);
+            String[] page = new String[sorted.length - skip];
+            for (int i = 0; i < page.length; i++)
+                page[i] = ids[(int) sorted[skip + i][1]];
+
+            return new Hits(total, page, null, complete);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+
+/**
+ * @return Il numero di elementi nell'indice.
+ */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * @return Il numero di parole diverse nell'indice.
+ */
+    public int getWordCount() {
+        lock.readLock().lock();
+        try {
+            return words.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+
+/**
+ * Verifica se un cursore è stato creato dall'indice e non da una query SQL.
+ *
+ * @param cursor Il cursore decodificato.
+ * @return true se il cursore è stato creato dall'indice.
+ */
+    static boolean isIndexCursor(PageCursor cursor) {
+        return cursor.getSortValue() instanceof Long && ((Long) cursor.getSortValue() & RANK_MARKER) != 0;
+    }
+
+
+
+/**
+ * Divide un testo in parole minuscole e senza accenti. Tutti i caratteri che non sono lettere o cifre separano le parole.
+ *
+ * @param text Il testo da dividere.
+ * @return Le parole del testo, nell'ordine in cui compaiono.
+ */
+    static String[] tokenize(String text)
+    {
+        if(text == null || text.isEmpty())
+            return NO_WORDS;
+
+        //la scomposizione separa gli accenti dalle lettere; i testi ASCII non ne hanno bisogno
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++)
+            ascii = text.charAt(i) < 128;
+        if(!ascii)
+            text = Normalizer.normalize(text, Normalizer.Form.NFD);
+
+        ArrayList<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+
+            if(Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            }
+            else if(word.length() > 0) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if(word.length() > 0)
+            tokens.add(word.toString());
+
+        return tokens.toArray(NO_WORDS);
+    }
+
+
+/**
+ * Trova le parole dell'indice simili a una parola della chiave e ne calcola la somiglianza.
+ * Le parole candidate per gli errori di battitura sono quelle con abbastanza trigrammi in comune con la parola cercata,
+ * poi filtrate con la distanza di modifica. Vengono conservate le {@code MAX_CANDIDATE_WORDS} parole più simili.
+ *
+ * @param token La parola della chiave.
+ * @param last true se è l'ultima parola della chiave, che può essere ancora incompleta.
+ * @param deadline L'istante entro cui la ricerca deve terminare.
+ * @return Le parole trovate con la loro somiglianza, oppure null se il tempo a disposizione è finito.
+ */
+    private HashMap<Postings, Float> findWords(String token, boolean last, long deadline)
+    {
+        HashMap<Postings, Float> found = new HashMap<>();
+
+        Postings exact = words.get(token);
+        if(exact != null)
+            found.put(exact, EXACT_SCORE);
+
+        if(last) {
+            for (Postings postings : words.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                found.put(postings, PREFIX_SCORE);
+                if(found.size() % 256 == 0 && System.nanoTime() > deadline)
+                    return null;
+            }
+        }
+
+        //le parole corte vengono cercate solo per intero o per prefisso
+        int maxDistance = token.length() <= 2 ? 0 : token.length() <= 5 ? 1 : 2;
+        if(maxDistance > 0) {
+            String[] tokenGrams = grams(token, last);
+            HashMap<Integer, Integer> shared = new HashMap<>();
+            for (String gram : tokenGrams) {
+                Postings postings = grams.get(gram);
+                if(postings != null) {
+                    for (int i = 0; i < postings.size; i++)
+                        shared.merge(postings.elements[i], 1, Integer::sum);
+                }
+                if(System.nanoTime() > deadline)
+                    return null;
+            }
+
+            //ogni modifica cambia al massimo tre trigrammi
+            int minShared = Math.max(1, tokenGrams.length - 3 * maxDistance);
+            int checked = 0;
+            for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+                if(++checked % 1024 == 0 && System.nanoTime() > deadline)
+                    return null;
+                if(entry.getValue() < minShared)
+                    continue;
+
+                Postings postings = vocabulary.get(entry.getKey());
+                if(found.containsKey(postings))
+                    continue;
+
+                float score = typoScore(token, postings.word, maxDistance, last);
+                if(score > 0)
+                    found.put(postings, score);
+            }
+        }
+
+        if(found.size() <= MAX_CANDIDATE_WORDS)
+            return found;
+
+        //con troppe parole si tengono le più simili e, a parità, le più frequenti
+        ArrayList<Map.Entry<Postings, Float>> sorted = new ArrayList<>(found.entrySet());
+        sorted.sort((a, b) -> {
+            int result = Float.compare(b.getValue(), a.getValue());
+            return result != 0 ? result : Integer.compare(b.getKey().size, a.getKey().size);
+        });
+        HashMap<Postings, Float> kept = new HashMap<>();
+        for (Map.Entry<Postings, Float> entry : sorted.subList(0, MAX_CANDIDATE_WORDS))
+            kept.put(entry.getKey(), entry.getValue());
+        return kept;
+    }
+
+
+
+/**
+ * Calcola la somiglianza di una parola dell'indice con una parola della chiave che contiene errori di battitura.
+ * Se la parola della chiave è l'ultima viene confrontata anche con l'inizio della parola dell'indice.
+ *
+ * @return La somiglianza, oppure 0 se la distanza supera quella massima.
+ */
+    private static float typoScore(String token, String word, int maxDistance, boolean last)
+    {
+        if(Math.abs(word.length() - token.length()) <= maxDistance) {
+            int distance = distance(token, word, word.length(), maxDistance);
+            if(distance <= maxDistance)
+                return TYPO_SCORES[distance];
+        }
+
+        if(last && word.length() > token.length()) {
+            int best = maxDistance + 1;
+            for (int length = Math.max(1, token.length() - maxDistance); length <= Math.min(word.length(), token.length() + maxDistance); length++)
+                best = Math.min(best, distance(token, word, length, maxDistance));
+            if(best <= maxDistance)
+                return TYPO_SCORES[best] - PREFIX_TYPO_PENALTY;
+        }
+        return 0;
+    }
+
+
+
+/**
+ * Calcola la distanza di modifica tra una parola e l'inizio di un'altra: inserimenti, cancellazioni, sostituzioni
+ * e scambi di lettere vicine.
+ *
+ * @param length Il numero di lettere di b da confrontare.
+ * @param max La distanza massima che interessa.
+ * @return La distanza, oppure {@code max + 1} se è maggiore di max.
+ */
+    static int distance(String a, String b, int length, int max)
+    {
+        if(Math.abs(a.length() - length) > max)
+            return max + 1;
+
+        int[] previous2 = new int[length + 1];
+        int[] previous = new int[length + 1];
+        int[] current = new int[length + 1];
+        for (int j = 0; j <= length; j++)
+            previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= length; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    current[j] = Math.min(current[j], previous2[j - 2] + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if(rowMin > max)
+                return max + 1;
+
+            int[] swap = previous2;
+            previous2 = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[length], max + 1);
+    }
+
+
+
+/**
+ * Divide una parola nei trigrammi usati per trovare le parole simili, segnando l'inizio e la fine della parola.
+ *
+ * @param word La parola.
+ * @param open true per non segnare la fine, così i trigrammi corrispondono anche alle parole più lunghe.
+ * @return I trigrammi della parola.
+ */
+    private static String[] grams(String word, boolean open)
+    {
+        String padded = GRAM_PADDING + word + (open ? "" : String.valueOf(GRAM_PADDING));
+        if(padded.length() <= 3)
+            return new String[] {padded};
+
+        String[] result = new String[padded.length() - 2];
+        for (int i = 0; i < result.length; i++)
+            result[i] = padded.substring(i, i + 3);
+        return result;
+    }
+
+
+
+    private Postings addWord(String word)
+    {
+        Postings postings = new Postings(word, vocabulary.size());
+        words.put(word, postings);
+        vocabulary.add(postings);
+        for (String gram : grams(word, false))
+            grams.computeIfAbsent(gram, (g) -> new Postings()).add(postings.id);
+        return postings;
+    }
+
+
+
+    private long tier(int element, String prefix, BitSet exact)
+    {
+        if(names[element].startsWith(prefix))
+            return 2;
+        return exact.get(element) ? 1 : 0;
+    }
+
+    private int compare(long rankA, int elementA, long rankB, int elementB) {
+        return compare(rankA, ids[elementA], rankB, ids[elementB]);
+    }
+
+    private int compareFuzzy(double[] a, double[] b) {
+        int result = Double.compare(a[0], b[0]);
+        return result != 0 ? result : ids[(int) a[1]].compareTo(ids[(int) b[1]]);
+    }
+
+    private static int compare(long rankA, String idA, long rankB, String idB) {
+        int result = Long.compare(rankA, rankB);
+        return result != 0 ? result : idA.compareTo(idB);
+    }
+}
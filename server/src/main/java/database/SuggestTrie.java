@@ -0,0 +1,372 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import enumclass.SuggestionType;
+
+
+/**
+ * Trie compresso e immutabile dei nomi di canzoni, album e artisti, usato per completare il testo mentre viene scritto.
+ *
+ * I nomi vengono normalizzati come nel {@link SearchIndex} e ordinati; ogni nodo rappresenta una parte di nome
+ * condivisa da tutti i nomi sotto di esso e conserva già ordinati i {@code MAX_SUGGESTIONS} elementi con il punteggio
+ * più alto, così un completamento costa solo la discesa lungo il prefisso. I nodi sono memorizzati in array di interi:
+ * le etichette sono posizioni nel testo di tutti i nomi e i figli di un nodo sono contigui e ordinati per primo carattere.
+ *
+ * Anche i nomi e gli ID sono memorizzati in un unico array di caratteri, senza un oggetto String per elemento.
+ * Lo stesso nome con lo stesso tipo compare una volta sola, con l'elemento che ha il punteggio più alto.
+ * Per aggiungere elementi si costruisce un nuovo trie con il {@link Builder}.
+ */
+public class SuggestTrie
+{
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final SuggestionType[] TYPES = SuggestionType.values();
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    //gli elementi, nell'ordine dei nomi normalizzati: il nome i è names[nameStart[i] .. nameStart[i + 1])
+    private final int size;
+    private final char[] names;
+    private final int[] nameStart;
+    private final char[] ids;
+    private final int[] idStart;
+    private final byte[] types;
+    private final float[] scores;
+    private final char[] keys;
+
+    //i nodi
+    private int[] labelStart = new int[16];
+    private int[] labelLength = new int[16];
+    private int[] firstChild = new int[16];
+    private int[] childCount = new int[16];
+    private int[] topStart = new int[16];
+    private byte[] topCount = new byte[16];
+    private int nodeCount = 0;
+
+    //i migliori elementi di ogni nodo, dal punteggio più alto
+    private int[] tops = new int[64];
+    private int topSize = 0;
+
+
+
+/**
+ * Raccoglie gli elementi da inserire nel trie.
+ */
+    public static class Builder
+    {
+        private final ArrayList<String> texts = new ArrayList<>();
+        private final ArrayList<String> ids = new ArrayList<>();
+        private final ArrayList<String> keys = new ArrayList<>();
+        private final ArrayList<SuggestionType> types = new ArrayList<>();
+        private final ArrayList<Float> scores = new ArrayList<>();
+        private final HashMap<String, Integer> positions = new HashMap<>();
+
+/**
+ * Aggiunge un elemento. Se un elemento dello stesso tipo ha lo stesso nome normalizzato resta quello con il punteggio più alto.
+ *
+ * @param type Il tipo dell'elemento.
+ * @param id L'ID dell'elemento.
+ * @param text Il nome da suggerire.
+ * @param score Il punteggio, maggiore per gli elementi da suggerire prima.
+ * @return Questo builder.
+ */
+        public Builder add(SuggestionType type, String id, String text, float score)
+        {
+            String key = String.join(" ", SearchIndex.tokenize(text));
+            if(key.isEmpty())
+                return this;
+
+            //il separatore è minore di ogni carattere dei nomi, così le chiavi si ordinano come i nomi
+            String entry = key + KEY_SEPARATOR + type.ordinal();
+            Integer position = positions.get(entry);
+            if(position == null) {
+                positions.put(entry, texts.size());
+                texts.add(text);
+                ids.add(id);
+                keys.add(key);
+                types.add(type);
+                scores.add(score);
+            }
+            else if(score > scores.get(position)) {
+                texts.set(position, text);
+                ids.set(position, id);
+                scores.set(position, score);
+            }
+            return this;
+        }
+
+/**
+ * @return Il trie con gli elementi aggiunti.
+ */
+        public SuggestTrie build() {
+            return new SuggestTrie(this);
+        }
+    }
+
+
+
+    private SuggestTrie(Builder builder)
+    {
+        size = builder.texts.size();
+        String[] order = builder.positions.keySet().toArray(new String[0]);
+        Arrays.sort(order);
+
+        nameStart = new int[size + 1];
+        idStart = new int[size + 1];
+        types = new byte[size];
+        scores = new float[size];
+        int[] keyStart = new int[size + 1];
+        StringBuilder allNames = new StringBuilder();
+        StringBuilder allIds = new StringBuilder();
+        StringBuilder allKeys = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            int element = builder.positions.get(order[i]);
+            nameStart[i] = allNames.length();
+            allNames.append(builder.texts.get(element));
+            idStart[i] = allIds.length();
+            allIds.append(builder.ids.get(element));
+            keyStart[i] = allKeys.length();
+            allKeys.append(builder.keys.get(element));
+            types[i] = (byte) builder.types.get(element).ordinal();
+            scores[i] = builder.scores.get(element);
+        }
+        nameStart[size] = allNames.length();
+        idStart[size] = allIds.length();
+        keyStart[size] = allKeys.length();
+        names = toArray(allNames);
+        ids = toArray(allIds);
+        keys = toArray(allKeys);
+
+        int root = allocateNodes(1);
+        if(size > 0)
+            fill(root, 0, size, 0, keyStart);
+
+        labelStart = Arrays.copyOf(labelStart, nodeCount);
+        labelLength = Arrays.copyOf(labelLength, nodeCount);
+        firstChild = Arrays.copyOf(firstChild, nodeCount);
+        childCount = Arrays.copyOf(childCount, nodeCount);
+        topStart = Arrays.copyOf(topStart, nodeCount);
+        topCount = Arrays.copyOf(topCount, nodeCount);
+        tops = Arrays.copyOf(tops, topSize);
+    }
+
+
+
+/**
+ * Restituisce i nomi che iniziano con il prefisso, dal punteggio più alto.
+ *
+ * @param prefix Il testo scritto finora.
+ * @param limit Il numero massimo di suggerimenti, al massimo {@code MAX_SUGGESTIONS}.
+ * @return Un array con i nomi suggeriti, i loro tipi e gli ID degli elementi, tre array di String della stessa lunghezza.
+ */
+    public Object[] suggest(String prefix, int limit)
+    {
+        String key = String.join(" ", SearchIndex.tokenize(prefix));
+        int node = nodeCount > 0 ? find(key) : -1;
+        int count = node < 0 ? 0 : Math.min(Math.max(0, limit), topCount[node]);
+
+        String[] resultTexts = new String[count];
+        String[] resultTypes = new String[count];
+        String[] resultIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            int element = tops[topStart[node] + i];
+            resultTexts[i] = new String(names, nameStart[element], nameStart[element + 1] - nameStart[element]);
+            resultTypes[i] = TYPES[types[element]].name();
+            resultIds[i] = new String(ids, idStart[element], idStart[element + 1] - idStart[element]);
+        }
+        return new Object[] {resultTexts, resultTypes, resultIds};
+    }
+
+
+
+/**
+ * @return Il numero di nomi nel trie.
+ */
+    public int size() {
+        return size;
+    }
+
+/**
+ * @return Il numero di nodi del trie.
+ */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+/**
+ * Calcola la memoria occupata dagli array del trie.
+ *
+ * @return La memoria in byte.
+ */
+    public long estimateBytes()
+    {
+        //caratteri di nomi, ID e nomi normalizzati, poi posizioni, tipo e punteggio di ogni elemento
+        long bytes = 2L * (names.length + ids.length + keys.length) + 13L * size;
+        //i nodi e le liste dei migliori elementi
+        bytes += 21L * nodeCount + 4L * tops.length;
+        return bytes + 14L * ARRAY_OVERHEAD;
+    }
+
+
+
+/**
+ * Riempie un nodo con i nomi tra le posizioni lo e hi, che hanno in comune i primi start caratteri,
+ * creando i figli e calcolando i migliori elementi.
+ */
+    private void fill(int node, int lo, int hi, int start, int[] keyStart)
+    {
+        //i nomi sono ordinati, quindi il prefisso comune al primo e all'ultimo è comune a tutti
+        int end = start;
+        int firstLength = keyStart[lo + 1] - keyStart[lo];
+        int lastLength = keyStart[hi] - keyStart[hi - 1];
+        while (end < firstLength && end < lastLength && keys[keyStart[lo] + end] == keys[keyStart[hi - 1] + end])
+            end++;
+
+        labelStart[node] = keyStart[lo] + start;
+        labelLength[node] = end - start;
+
+        //i nomi che finiscono nel nodo vengono prima degli altri
+        int i = lo;
+        while (i < hi && keyStart[i + 1] - keyStart[i] == end)
+            i++;
+        int terminals = i;
+
+        int groups = 0;
+        for (int j = i; j < hi; j++) {
+            if(j == i || keys[keyStart[j] + end] != keys[keyStart[j - 1] + end])
+                groups++;
+        }
+        int children = allocateNodes(groups);
+        firstChild[node] = children;
+        childCount[node] = groups;
+
+        int child = children;
+        for (int groupStart = i; groupStart < hi; child++) {
+            char c = keys[keyStart[groupStart] + end];
+            int groupEnd = groupStart + 1;
+            while (groupEnd < hi && keys[keyStart[groupEnd] + end] == c)
+                groupEnd++;
+            fill(child, groupStart, groupEnd, end, keyStart);
+            groupStart = groupEnd;
+        }
+
+        //i migliori elementi del nodo sono tra quelli che finiscono qui e i migliori dei figli
+        int[] best = new int[MAX_SUGGESTIONS];
+        int count = 0;
+        for (int t = lo; t < terminals; t++)
+            count = insert(best, count, t);
+        for (int c = children; c < children + groups; c++) {
+            //le liste dei figli sono ordinate: appena un elemento non entra non entrano neanche i successivi
+            for (int t = 0; t < topCount[c]; t++) {
+                int element = tops[topStart[c] + t];
+                if(count == best.length && !isBetter(element, best[count - 1]))
+                    break;
+                count = insert(best, count, element);
+            }
+        }
+
+        if(topSize + count > tops.length)
+            tops = Arrays.copyOf(tops, Math.max(tops.length * 2, topSize + count));
+        topStart[node] = topSize;
+        topCount[node] = (byte) count;
+        System.arraycopy(best, 0, tops, topSize, count);
+        topSize += count;
+    }
+
+
+
+/**
+ * Inserisce un elemento nella lista ordinata dei migliori, se il suo punteggio è abbastanza alto.
+ * A parità di punteggio viene prima l'elemento con il nome normalizzato minore.
+ *
+ * @return Il nuovo numero di elementi della lista.
+ */
+    private int insert(int[] best, int count, int element)
+    {
+        int position = count;
+        while (position > 0 && isBetter(element, best[position - 1]))
+            position--;
+        if(position >= best.length)
+            return count;
+
+        int moved = Math.min(count, best.length - 1) - position;
+        System.arraycopy(best, position, best, position + 1, moved);
+        best[position] = element;
+        return Math.min(count + 1, best.length);
+    }
+
+    private boolean isBetter(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static char[] toArray(StringBuilder builder) {
+        char[] result = new char[builder.length()];
+        builder.getChars(0, result.length, result, 0);
+        return result;
+    }
+
+
+
+    private int allocateNodes(int count)
+    {
+        if(nodeCount + count > labelStart.length) {
+            int capacity = Math.max(labelStart.length * 2, nodeCount + count);
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelLength = Arrays.copyOf(labelLength, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            topStart = Arrays.copyOf(topStart, capacity);
+            topCount = Arrays.copyOf(topCount, capacity);
+        }
+        int first = nodeCount;
+        nodeCount += count;
+        return first;
+    }
+
+
+
+/**
+ * Scende nel trie lungo il prefisso.
+ *
+ * @return Il nodo sotto cui si trovano tutti i nomi che iniziano con il prefisso, oppure -1 se non ce ne sono.
+ */
+    private int find(String prefix)
+    {
+        int node = 0;
+        int matched = 0;
+        while (true) {
+            int start = labelStart[node];
+            int length = labelLength[node];
+            for (int k = 0; k < length && matched < prefix.length(); k++, matched++) {
+                if(keys[start + k] != prefix.charAt(matched))
+                    return -1;
+            }
+            if(matched == prefix.length())
+                return node;
+
+            node = findChild(node, prefix.charAt(matched));
+            if(node < 0)
+                return -1;
+        }
+    }
+
+    private int findChild(int node, char c)
+    {
+        int lo = firstChild[node];
+        int hi = lo + childCount[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char first = keys[labelStart[mid]];
+            if(first < c)
+                lo = mid + 1;
+            else if(first > c)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,20 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta i facet della ricerca a faccette delle canzoni.
+ * Il nome del valore è quello usato nei filtri inviati dal client e nei conteggi restituiti.
+ */
+public enum FacetType
+{
+    //anno di pubblicazione dell'album della canzone
+    YEAR,
+
+    //generi musicali dell'artista dell'album
+    GENRE,
+
+    //fascia di popolarità della canzone, di ampiezza 10
+    POPULARITY,
+
+    //emozione con più voti della canzone
+    EMOTION;
+}
@@ -0,0 +1,16 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta lo stato nel database di un indice del catalogo.
+ */
+public enum IndexState
+{
+    //l'indice esiste e può essere usato dalle query
+    VALID,
+
+    //l'indice esiste ma non viene usato, ad esempio dopo una creazione interrotta
+    INVALID,
+
+    //l'indice non esiste
+    MISSING;
+}
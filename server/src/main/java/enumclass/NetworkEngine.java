@@ -0,0 +1,43 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta i motori di rete con cui il server può accettare e servire i client.
+ * Il valore testuale è quello utilizzato nel file delle impostazioni.
+ */
+public enum NetworkEngine
+{
+    //un thread dedicato per ogni client connesso
+    THREAD_PER_CONNECTION("thread"),
+
+    //pochi thread di I/O basati su Selector e SocketChannel non bloccanti
+    NIO_SELECTOR("nio");
+
+
+    private String text;
+
+    NetworkEngine(String str) {
+        this.text = str;
+    }
+
+
+    /**
+     * Restituisce il motore di rete associato alla stringa specificata.
+     * Se la stringa non corrisponde a nessun motore viene restituito {@code THREAD_PER_CONNECTION}.
+     *
+     * @param str Il nome del motore (ad esempio "thread" o "nio").
+     * @return Il motore di rete corrispondente.
+     */
+    public static NetworkEngine fromString(String str)
+    {
+        for (NetworkEngine engine : values()) {
+            if(engine.text.equalsIgnoreCase(str) || engine.name().equalsIgnoreCase(str))
+                return engine;
+        }
+        return THREAD_PER_CONNECTION;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -33,7 +33,10 @@ public enum QueryParameter
     ARTIST_ID("ID_Artista"),
     EMOZIONE("Emozione"),
     VAL_EMOZIONE("Val_Emozione"),
-    MODE("Mode");
+    MODE("Mode"),
+    CURSOR("Cursor"),
+    REQUESTS("Requests"),
+    FACETS("Facets");
 
 
     private String text;
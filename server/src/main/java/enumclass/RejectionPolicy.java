@@ -0,0 +1,47 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta cosa fare con una richiesta quando la coda dei comandi del server è piena.
+ * Il valore testuale è quello utilizzato nel file delle impostazioni.
+ */
+public enum RejectionPolicy
+{
+    //risponde subito al client che il server è occupato
+    BUSY_RESPONSE("busy"),
+
+    //esegue il comando sul thread che ha letto il pacchetto, rallentando solo quel client;
+    //solo con il motore a un thread per connessione, con il motore NIO si comporta come BUSY_RESPONSE
+    CALLER_RUNS("caller"),
+
+    //scarta la richiesta più vecchia in coda (rispondendo "server busy") e accoda quella nuova
+    DISCARD_OLDEST("oldest");
+
+
+    private String text;
+
+    RejectionPolicy(String str) {
+        this.text = str;
+    }
+
+
+    /**
+     * Restituisce la politica associata alla stringa specificata.
+     * Se la stringa non corrisponde a nessuna politica viene restituito {@code BUSY_RESPONSE}.
+     *
+     * @param str Il nome della politica (ad esempio "busy", "caller" o "oldest").
+     * @return La politica corrispondente.
+     */
+    public static RejectionPolicy fromString(String str)
+    {
+        for (RejectionPolicy policy : values()) {
+            if(policy.text.equalsIgnoreCase(str) || policy.name().equalsIgnoreCase(str))
+                return policy;
+        }
+        return BUSY_RESPONSE;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,43 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta il modo in cui le ricerche ottengono il numero totale di risultati.
+ * Il valore testuale è quello utilizzato nel file delle impostazioni.
+ */
+public enum SearchCountMode
+{
+    //la pagina e il totale con due query distinte sullo stesso predicato
+    SEPARATE("separate"),
+
+    //la pagina e il totale con una sola query, che aggiunge a ogni riga COUNT(*) OVER()
+    SINGLE_PASS("single_pass");
+
+
+    private String text;
+
+    SearchCountMode(String str) {
+        this.text = str;
+    }
+
+
+    /**
+     * Restituisce il modo associato alla stringa specificata.
+     * Se la stringa non corrisponde a nessun modo viene restituito {@code SINGLE_PASS}.
+     *
+     * @param str Il nome del modo (ad esempio "separate" o "single_pass").
+     * @return Il modo corrispondente.
+     */
+    public static SearchCountMode fromString(String str)
+    {
+        for (SearchCountMode mode : values()) {
+            if(mode.text.equalsIgnoreCase(str) || mode.name().equalsIgnoreCase(str))
+                return mode;
+        }
+        return SINGLE_PASS;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
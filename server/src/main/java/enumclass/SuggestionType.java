@@ -0,0 +1,12 @@
+package enumclass;
+
+/**
+ * Enumerazione che rappresenta il tipo di elemento di un suggerimento del servizio SUGGEST.
+ * Il nome del valore è quello inviato al client insieme al suggerimento.
+ */
+public enum SuggestionType
+{
+    SONG,
+    ALBUM,
+    ARTIST;
+}
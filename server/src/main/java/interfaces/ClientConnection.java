@@ -0,0 +1,17 @@
+package interfaces;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Questa interfaccia rappresenta la connessione con un singolo client, indipendentemente dal motore di rete
+ * che la gestisce (un thread per connessione oppure Selector NIO).
+ */
+public interface ClientConnection
+{
+    public String getClientIP();
+    public void writeOnSocket(String Id, Object data) throws IOException;
+    public boolean isRunning();
+    public void stopRunning();
+    public AtomicInteger getPendingRequests();
+}
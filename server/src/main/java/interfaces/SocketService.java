@@ -50,6 +50,8 @@ public interface SocketService
     //Emozioni
     /////////////////////////////////////////////////////////////////////////////////
     public Object getSongEmotion(HashMap<String, Object> argsTable) throws Exception;
+    public Object getSongEmotionSummary(HashMap<String, Object> argsTable) throws Exception;
+    public Object getSongComments(HashMap<String, Object> argsTable) throws Exception;
     public Object addEmotion(final HashMap<String, Object> argsTable) throws Exception;
     public Object deleteEmotion(final HashMap<String, Object> argsTable) throws Exception;
     public Object getAccountEmotion(final HashMap<String, Object> argsTable) throws Exception;
@@ -61,5 +63,7 @@ public interface SocketService
     public Object searchSongs(HashMap<String, Object> argsTable) throws Exception;
     public Object searchAlbums(HashMap<String, Object> argsTable) throws Exception;
     public Object searchArtists(HashMap<String, Object> argsTable) throws Exception;
+    public Object suggest(HashMap<String, Object> argsTable) throws Exception;
+    public Object facetSearch(HashMap<String, Object> argsTable) throws Exception;
     
 }
@@ -1,6 +1,7 @@
 module application.client {
     
     requires java.sql;
+    requires java.sql.rowset;
     requires org.apache.commons.codec;
     requires transitive javatuples;
     requires java.rmi;
@@ -15,6 +16,7 @@ module application.client {
     requires java.base;
     requires java.naming;
     requires java.management;
+    requires jdk.management;
 
     requires jline;
     requires com.opencsv;
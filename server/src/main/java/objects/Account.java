@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 
@@ -231,4 +234,47 @@ public class Account implements Serializable{
     public void setResidenzaId(String residenzaId) {
         this.residenzaId = residenzaId;
     }
+
+
+
+/**
+ * Costruisce l'account leggendolo dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public Account(DataInputStream in) throws IOException
+    {
+        this.name = BinaryProtocol.readString(in);
+        this.nickname = BinaryProtocol.readString(in);
+        this.surname = BinaryProtocol.readString(in);
+        this.fiscalCode = BinaryProtocol.readString(in);
+        this.email = BinaryProtocol.readString(in);
+        this.password = BinaryProtocol.readString(in);
+        this.residenzaId = BinaryProtocol.readString(in);
+        if(in.readBoolean())
+            this.residenza = new Residenze(in);
+    }
+
+
+
+/**
+ * Scrive l'account nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, nickname);
+        BinaryProtocol.writeString(out, surname);
+        BinaryProtocol.writeString(out, fiscalCode);
+        BinaryProtocol.writeString(out, email);
+        BinaryProtocol.writeString(out, password);
+        BinaryProtocol.writeString(out, residenzaId);
+        out.writeBoolean(residenza != null);
+        if(residenza != null)
+            residenza.writeBinary(out);
+    }
 }
@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -21,6 +24,14 @@ public class Artist implements Serializable
 
     private HashMap <String, MyImage> images = new HashMap <String, MyImage>();
 
+    public Artist(String id, String name, String spotifyURL, long followers, int popularity) {
+        this.id = id;
+        this.name = name;
+        this.spotifyURL = spotifyURL;
+        this.followers = followers;
+        this.popularity = popularity;
+    }
+
     public Artist(HashMap<Colonne, Object> table) {
         this.id = (String) table.get(Colonne.ID);
         this.name = (String) table.get(Colonne.NAME);
@@ -44,6 +55,28 @@ public class Artist implements Serializable
 
 
 
+/**
+ * Restituisce il nome dell'artista.
+ *
+ * @return Il nome dell'artista.
+ */
+    public String getName() {
+        return name;
+    }
+
+
+
+/**
+ * Restituisce il numero di follower dell'artista.
+ *
+ * @return Il numero di follower.
+ */
+    public long getFollowers() {
+        return followers;
+    }
+
+
+
 /**
  * Aggiunge una lista di immagini all'oggetto.
  *
@@ -59,4 +92,39 @@ public class Artist implements Serializable
         }
     }
 
+
+
+/**
+ * Costruisce l'artista leggendolo dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public Artist(DataInputStream in) throws IOException
+    {
+        this.id = BinaryProtocol.readString(in);
+        this.name = BinaryProtocol.readString(in);
+        this.spotifyURL = BinaryProtocol.readString(in);
+        this.followers = BinaryProtocol.readVarLong(in);
+        this.popularity = (int) BinaryProtocol.readVarLong(in);
+        BinaryProtocol.readImages(in, images);
+    }
+
+
+
+/**
+ * Scrive l'artista nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, spotifyURL);
+        BinaryProtocol.writeVarLong(out, followers);
+        BinaryProtocol.writeVarLong(out, popularity);
+        BinaryProtocol.writeImages(out, images);
+    }
 }
@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 
@@ -23,6 +26,15 @@ public class Emotion implements Serializable
     private String ID_Account;
 
 
+    public Emotion(String ID, String emotionType, int emotionValue, String comment, String ID_Song, String ID_Account) {
+        this.ID = ID;
+        this.emotionType = emotionType;
+        this.emotionValue = emotionValue;
+        this.comment = comment;
+        this.ID_Song = ID_Song;
+        this.ID_Account = ID_Account;
+    }
+
     public Emotion(HashMap<Colonne, Object> table) {
         
         this.ID = (String) table.get(Colonne.ID);
@@ -36,8 +48,96 @@ public class Emotion implements Serializable
         this.ID_Account = (String) table.get(Colonne.ACCOUNT_ID_REF);  
     }
 
-    
 
-    
 
+/**
+ * Restituisce l'ID dell'emozione.
+ *
+ * @return L'ID dell'emozione.
+ */
+    public String getID() {
+        return ID;
+    }
+
+
+
+/**
+ * Restituisce il tipo dell'emozione.
+ *
+ * @return Il nome del tipo di emozione.
+ */
+    public String getEmotionType() {
+        return emotionType;
+    }
+
+
+
+/**
+ * Restituisce il valore dell'emozione.
+ *
+ * @return Il valore assegnato all'emozione.
+ */
+    public int getEmotionValue() {
+        return emotionValue;
+    }
+
+
+
+/**
+ * Restituisce il commento dell'emozione.
+ *
+ * @return Il commento, eventualmente vuoto.
+ */
+    public String getComment() {
+        return comment;
+    }
+
+
+
+/**
+ * Restituisce l'ID della canzone a cui è associata l'emozione.
+ *
+ * @return L'ID della canzone.
+ */
+    public String getID_Song() {
+        return ID_Song;
+    }
+
+
+
+/**
+ * Costruisce l'emozione leggendola dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public Emotion(DataInputStream in) throws IOException
+    {
+        this.ID = BinaryProtocol.readString(in);
+        this.emotionType = BinaryProtocol.readString(in);
+        this.emotionValue = (int) BinaryProtocol.readVarLong(in);
+        this.emotionDate = BinaryProtocol.readString(in);
+        this.comment = BinaryProtocol.readString(in);
+        this.ID_Song = BinaryProtocol.readString(in);
+        this.ID_Account = BinaryProtocol.readString(in);
+    }
+
+
+
+/**
+ * Scrive l'emozione nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, ID);
+        BinaryProtocol.writeString(out, emotionType);
+        BinaryProtocol.writeVarLong(out, emotionValue);
+        BinaryProtocol.writeString(out, emotionDate);
+        BinaryProtocol.writeString(out, comment);
+        BinaryProtocol.writeString(out, ID_Song);
+        BinaryProtocol.writeString(out, ID_Account);
+    }
 }
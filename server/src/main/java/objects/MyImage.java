@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 
@@ -70,8 +73,33 @@ public class MyImage implements Serializable
         return url;
     }
 
-    
 
-    
-    
+
+/**
+ * Costruisce l'immagine leggendola dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public MyImage(DataInputStream in) throws IOException
+    {
+        this.size = BinaryProtocol.readString(in);
+        this.id = BinaryProtocol.readString(in);
+        this.url = BinaryProtocol.readString(in);
+    }
+
+
+
+/**
+ * Scrive l'immagine nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, size);
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, url);
+    }
 }
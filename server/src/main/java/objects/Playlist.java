@@ -1,7 +1,11 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import database.PredefinedSQLCode.Colonne;
@@ -19,6 +23,13 @@ public class Playlist implements Serializable{
     private String userID;
     private String[] songsID;
     
+    public Playlist(String id, String name, String data, String userID) {
+        this.id = id;
+        this.name = name;
+        this.data = data;
+        this.userID = userID;
+    }
+
     public Playlist(HashMap<Colonne, Object> table) {
 
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
@@ -119,5 +130,46 @@ public class Playlist implements Serializable{
         this.songsID = songsID;
     }
 
-    
+
+
+/**
+ * Costruisce la playlist leggendola dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public Playlist(DataInputStream in) throws IOException
+    {
+        this.id = BinaryProtocol.readString(in);
+        this.name = BinaryProtocol.readString(in);
+        this.data = BinaryProtocol.readString(in);
+        this.userID = BinaryProtocol.readString(in);
+        int count = BinaryProtocol.readCount(in);
+        if(count > 0) {
+            ArrayList<String> songs = new ArrayList<>(BinaryProtocol.initialCapacity(count - 1));
+            for (int i = 0; i < count - 1; i++)
+                songs.add(BinaryProtocol.readString(in));
+            this.songsID = songs.toArray(new String[0]);
+        }
+    }
+
+
+
+/**
+ * Scrive la playlist nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, id);
+        BinaryProtocol.writeString(out, name);
+        BinaryProtocol.writeString(out, data);
+        BinaryProtocol.writeString(out, userID);
+        BinaryProtocol.writeLength(out, songsID == null ? 0 : songsID.length + 1);
+        if(songsID != null)
+            for (String value : songsID)
+                BinaryProtocol.writeString(out, value);
+    }
 }
@@ -1,5 +1,8 @@
 package objects;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 
@@ -27,6 +30,11 @@ public class Residenze implements Serializable {
         this.councilName = councilName;
     }
 
+    public Residenze(String ID, String viaPiazza, int civicNumber, String provinceName, String councilName, String cap) {
+        this(ID, viaPiazza, civicNumber, provinceName, councilName);
+        this.cap = cap;
+    }
+
     public Residenze(HashMap<Colonne, Object> table) 
     {
         this.ID = (String) table.get(Colonne.ID);
@@ -177,5 +185,40 @@ public class Residenze implements Serializable {
     public void setCouncilName(String councilName) {
         this.councilName = councilName;
     }
-    
+
+
+
+/**
+ * Costruisce la residenza leggendola dal formato del protocollo binario.
+ *
+ * @param in Lo stream da cui leggere.
+ * @throws IOException Se si verifica un errore durante la lettura.
+ */
+    public Residenze(DataInputStream in) throws IOException
+    {
+        this.ID = BinaryProtocol.readString(in);
+        this.viaPiazza = BinaryProtocol.readString(in);
+        this.civicNumber = (int) BinaryProtocol.readVarLong(in);
+        this.provinceName = BinaryProtocol.readString(in);
+        this.councilName = BinaryProtocol.readString(in);
+        this.cap = BinaryProtocol.readString(in);
+    }
+
+
+
+/**
+ * Scrive la residenza nel formato del protocollo binario.
+ *
+ * @param out Lo stream su cui scrivere.
+ * @throws IOException Se si verifica un errore durante la scrittura.
+ */
+    public void writeBinary(DataOutputStream out) throws IOException
+    {
+        BinaryProtocol.writeString(out, ID);
+        BinaryProtocol.writeString(out, viaPiazza);
+        BinaryProtocol.writeVarLong(out, civicNumber);
+        BinaryProtocol.writeString(out, provinceName);
+        BinaryProtocol.writeString(out, councilName);
+        BinaryProtocol.writeString(out, cap);
+    }
 }
@@ -20,14 +20,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import Parser.JsonParser;
+import database.ConnectionPool;
+import database.CountCache;
 import database.DatabaseManager;
+import database.PooledConnection;
 import database.PredefinedSQLCode;
 import database.QueriesManager;
 import database.QueryBuilder;
+import database.SearchEngine;
 import database.PredefinedSQLCode.Colonne;
 import database.PredefinedSQLCode.Tabelle;
+import enumclass.NetworkEngine;
+import enumclass.RejectionPolicy;
+import enumclass.SearchCountMode;
 import utility.AsciiArtGenerator;
 import utility.AsciiArtGenerator.ASCII_STYLE;
+import utility.IdGenerator;
 import utility.OS_utility;
 
 
@@ -53,7 +61,31 @@ public class App //extends JFrame
         DATABASE_PW("Pw_database"    , "admin"),
         DATABASE_USER("User_database", "postgres"),
         DATABASE_NAME("Name_database", "EmotionalSongs"),
-        AUTO_START("Auto_Start"      , false);
+        AUTO_START("Auto_Start"      , false),
+        NETWORK_ENGINE("Network_engine", NetworkEngine.THREAD_PER_CONNECTION.toString()),
+        NIO_IO_THREADS("Nio_io_threads", 2),
+        WORKER_THREADS("Worker_threads", CommandsDispatcher.DEFAULT_WORKERS),
+        WORKER_QUEUE_DEPTH("Worker_queue_depth", CommandsDispatcher.DEFAULT_QUEUE_DEPTH),
+        WORKER_REJECTION_POLICY("Worker_rejection_policy", RejectionPolicy.BUSY_RESPONSE.toString()),
+        MAX_REQUESTS_PER_CONNECTION("Max_requests_per_connection", CommandsDispatcher.DEFAULT_MAX_REQUESTS_PER_CONNECTION),
+        COMPRESSION_THRESHOLD("Compression_threshold", ComunicationManager.DEFAULT_COMPRESSION_THRESHOLD),
+        RESULT_CACHE_SIZE("Result_cache_size_mb", ResultCache.DEFAULT_SIZE_MB),
+        CATALOG_CACHE_TTL("Catalog_cache_ttl_seconds", ResultCache.DEFAULT_CATALOG_TTL),
+        USER_CACHE_TTL("User_cache_ttl_seconds", ResultCache.DEFAULT_USER_TTL),
+        DB_POOL_MIN_SIZE("Db_pool_min_size", ConnectionPool.DEFAULT_MIN_SIZE),
+        DB_POOL_MAX_SIZE("Db_pool_max_size", ConnectionPool.DEFAULT_MAX_SIZE),
+        DB_POOL_BORROW_TIMEOUT("Db_pool_borrow_timeout_ms", ConnectionPool.DEFAULT_BORROW_TIMEOUT),
+        DB_POOL_LEAK_THRESHOLD("Db_pool_leak_threshold_ms", ConnectionPool.DEFAULT_LEAK_THRESHOLD),
+        //-1: non impostato, viene usato il nodo 0
+        NODE_ID("Node_id", -1),
+        SEARCH_COUNT_MODE("Search_count_mode", SearchCountMode.SINGLE_PASS.toString()),
+        COUNT_CACHE_TTL("Count_cache_ttl_seconds", CountCache.DEFAULT_TTL),
+        APPROXIMATE_COUNT_PREFIX("Approximate_count_prefix", 0),
+        MEMORY_SEARCH("Memory_search", true),
+        FUZZY_SEARCH_BUDGET("Fuzzy_search_budget_ms", SearchEngine.DEFAULT_FUZZY_BUDGET),
+        LOADER_TRANSFORM_THREADS("Loader_transform_threads", ImportPipeline.DEFAULT_TRANSFORM_THREADS),
+        LOADER_WRITE_THREADS("Loader_write_threads", ImportPipeline.DEFAULT_WRITE_THREADS),
+        LOADER_QUEUE_SIZE("Loader_queue_size", ImportPipeline.DEFAULT_QUEUE_SIZE);
 
         private String s;
         private Object defoultValue;
@@ -76,6 +108,29 @@ public class App //extends JFrame
     private String DB_user;
     private String DB_name;
     private boolean autoRun = false;
+    private NetworkEngine networkEngine = NetworkEngine.THREAD_PER_CONNECTION;
+    private int nioIoThreads;
+    private int workerThreads;
+    private int workerQueueDepth;
+    private RejectionPolicy workerRejectionPolicy = RejectionPolicy.BUSY_RESPONSE;
+    private int maxRequestsPerConnection;
+    private int compressionThreshold;
+    private int resultCacheSize;
+    private int catalogCacheTtl;
+    private int userCacheTtl;
+    private int poolMinSize;
+    private int poolMaxSize;
+    private int poolBorrowTimeout;
+    private int poolLeakThreshold;
+    private int nodeId;
+    private SearchCountMode searchCountMode = SearchCountMode.SINGLE_PASS;
+    private int countCacheTtl;
+    private int approximateCountPrefix;
+    private boolean memorySearch = true;
+    private int fuzzySearchBudget;
+    private int loaderTransformThreads;
+    private int loaderWriteThreads;
+    private int loaderQueueSize;
     
     public DatabaseManager database = null;
     private boolean databaseConnected = false;
@@ -148,6 +203,50 @@ public class App //extends JFrame
 
 
 
+/**
+ * Restituisce il numero di thread di I/O configurati per il motore di rete NIO.
+ *
+ * @return Il numero di thread di I/O.
+ */
+    public int getNioIoThreads() {
+        return nioIoThreads;
+    }
+
+
+
+/**
+ * Restituisce il numero di thread dello stadio di trasformazione della pipeline di importazione del Loader.
+ *
+ * @return Il numero di thread di trasformazione.
+ */
+    public int getLoaderTransformThreads() {
+        return loaderTransformThreads;
+    }
+
+
+
+/**
+ * Restituisce il numero di thread dello stadio di scrittura della pipeline di importazione del Loader.
+ *
+ * @return Il numero di thread di scrittura.
+ */
+    public int getLoaderWriteThreads() {
+        return loaderWriteThreads;
+    }
+
+
+
+/**
+ * Restituisce la dimensione delle code che collegano gli stadi della pipeline di importazione del Loader.
+ *
+ * @return La dimensione delle code, in lotti di elementi.
+ */
+    public int getLoaderQueueSize() {
+        return loaderQueueSize;
+    }
+
+
+
 /**
  * Imposta la connessione al database utilizzando i parametri configurati.
  */
@@ -155,7 +254,30 @@ public class App //extends JFrame
     {
         database = DatabaseManager.getInstance();
         database.setConnectionParametre(this.DB_name, this.DB_IP, this.DB_port, this.DB_user, DB_password);
+        database.setPoolParametre(this.poolMinSize, this.poolMaxSize, this.poolBorrowTimeout, this.poolLeakThreshold);
+        database.setSearchCountParametre(this.searchCountMode, this.countCacheTtl, this.approximateCountPrefix);
+        SearchEngine.setEnabled(this.memorySearch);
+        try {
+            SearchEngine.setFuzzyBudget(this.fuzzySearchBudget);
+        }
+        catch (IllegalArgumentException e) {
+            terminal.printErrorln(e.getMessage() + ", using " + SearchEngine.getFuzzyBudget() + " ms");
+        }
 
+        //server diversi collegati allo stesso database devono usare ID di nodo diversi
+        if(this.nodeId == -1) {
+            IdGenerator.setNodeId(0);
+            if(!isLocalDatabase())
+                terminal.printErrorln("Node_id is not set, using node 0: every server sharing this database must have a different Node_id");
+        }
+        else {
+            try {
+                IdGenerator.setNodeId(this.nodeId);
+            }
+            catch (IllegalArgumentException e) {
+                terminal.printErrorln(e.getMessage() + ", using node " + IdGenerator.getNodeId());
+            }
+        }
         
         terminal.printInfoln("Database connection attempt on URL: " + Terminal.Color.CYAN_BOLD_BRIGHT + database.getURL() + Terminal.Color.RESET);
 
@@ -164,11 +286,13 @@ public class App //extends JFrame
             if(database.testConnection() && database.connect()) {
                 terminal.printSuccesln("Database found and connection established");
 
-                if(this.DB_IP.toLowerCase().equals("localhost") || this.DB_IP.startsWith("127.")) {
+                if(isLocalDatabase()) {
                     terminal.printInfoln("Database IP: " + ComunicationManager.getMachineIP());
                 }
 
                 databaseConnected = database.isConnected();
+                advanceIdGenerator();
+                buildSearchEngine();
             }
             else {
                 terminal.printErrorln(Terminal.Color.RED_BOLD_BRIGHT + "Database not responding" + Terminal.Color.RESET);
@@ -183,6 +307,59 @@ public class App //extends JFrame
 
 
 
+/**
+ * Fa proseguire il generatore di ID dopo l'ultimo ID salvato nel database, così un riavvio rapido
+ * o un orologio spostato indietro non ripetono ID già usati.
+ */
+    private void advanceIdGenerator() 
+    {
+        try {
+            String lastId = QueriesManager.getLastGeneratedId();
+            if(lastId != null)
+                IdGenerator.advancePast(IdGenerator.parse(lastId));
+        }
+        catch (SQLException | NumberFormatException e) {
+            terminal.printErrorln("Unable to read the last generated ID: " + e.getMessage());
+        }
+    }
+
+
+
+/**
+ * @return true se il database è sulla stessa macchina del server.
+ */
+    private boolean isLocalDatabase() {
+        return this.DB_IP.toLowerCase().equals("localhost") || this.DB_IP.startsWith("127.");
+    }
+
+
+
+/**
+ * Costruisce in un thread separato gli indici della ricerca in memoria, se è attiva.
+ * Nel frattempo le ricerche vengono eseguite con le query SQL.
+ */
+    private void buildSearchEngine() 
+    {
+        if(!this.memorySearch)
+            return;
+
+        SearchEngine.clear();
+        Thread builder = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                int elements = SearchEngine.build();
+                terminal.printSuccesln("Search index built: " + elements + " elements in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+            catch (SQLException e) {
+                terminal.printErrorln("Unable to build the search index, searches will use the database: " + e.getMessage());
+            }
+        }, "SearchIndexBuilder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+
+
 /**
  * Verifica se la connessione al database è attiva.
  *
@@ -264,6 +441,31 @@ public class App //extends JFrame
         this.DB_name = node.get(JsonDataName.DATABASE_NAME.toString()).asText();
         this.autoRun = node.get(JsonDataName.AUTO_START.toString()).asBoolean();
 
+        //impostazioni aggiunte successivamente: se mancano nel file uso i valori predefiniti
+        this.networkEngine = NetworkEngine.fromString(node.path(JsonDataName.NETWORK_ENGINE.toString()).asText((String) JsonDataName.NETWORK_ENGINE.defoultValue));
+        this.nioIoThreads = node.path(JsonDataName.NIO_IO_THREADS.toString()).asInt((Integer) JsonDataName.NIO_IO_THREADS.defoultValue);
+        this.workerThreads = node.path(JsonDataName.WORKER_THREADS.toString()).asInt((Integer) JsonDataName.WORKER_THREADS.defoultValue);
+        this.workerQueueDepth = node.path(JsonDataName.WORKER_QUEUE_DEPTH.toString()).asInt((Integer) JsonDataName.WORKER_QUEUE_DEPTH.defoultValue);
+        this.workerRejectionPolicy = RejectionPolicy.fromString(node.path(JsonDataName.WORKER_REJECTION_POLICY.toString()).asText((String) JsonDataName.WORKER_REJECTION_POLICY.defoultValue));
+        this.maxRequestsPerConnection = node.path(JsonDataName.MAX_REQUESTS_PER_CONNECTION.toString()).asInt((Integer) JsonDataName.MAX_REQUESTS_PER_CONNECTION.defoultValue);
+        this.compressionThreshold = node.path(JsonDataName.COMPRESSION_THRESHOLD.toString()).asInt((Integer) JsonDataName.COMPRESSION_THRESHOLD.defoultValue);
+        this.resultCacheSize = node.path(JsonDataName.RESULT_CACHE_SIZE.toString()).asInt((Integer) JsonDataName.RESULT_CACHE_SIZE.defoultValue);
+        this.catalogCacheTtl = node.path(JsonDataName.CATALOG_CACHE_TTL.toString()).asInt((Integer) JsonDataName.CATALOG_CACHE_TTL.defoultValue);
+        this.userCacheTtl = node.path(JsonDataName.USER_CACHE_TTL.toString()).asInt((Integer) JsonDataName.USER_CACHE_TTL.defoultValue);
+        this.poolMinSize = node.path(JsonDataName.DB_POOL_MIN_SIZE.toString()).asInt((Integer) JsonDataName.DB_POOL_MIN_SIZE.defoultValue);
+        this.poolMaxSize = node.path(JsonDataName.DB_POOL_MAX_SIZE.toString()).asInt((Integer) JsonDataName.DB_POOL_MAX_SIZE.defoultValue);
+        this.poolBorrowTimeout = node.path(JsonDataName.DB_POOL_BORROW_TIMEOUT.toString()).asInt((Integer) JsonDataName.DB_POOL_BORROW_TIMEOUT.defoultValue);
+        this.poolLeakThreshold = node.path(JsonDataName.DB_POOL_LEAK_THRESHOLD.toString()).asInt((Integer) JsonDataName.DB_POOL_LEAK_THRESHOLD.defoultValue);
+        this.nodeId = node.path(JsonDataName.NODE_ID.toString()).asInt((Integer) JsonDataName.NODE_ID.defoultValue);
+        this.searchCountMode = SearchCountMode.fromString(node.path(JsonDataName.SEARCH_COUNT_MODE.toString()).asText((String) JsonDataName.SEARCH_COUNT_MODE.defoultValue));
+        this.countCacheTtl = node.path(JsonDataName.COUNT_CACHE_TTL.toString()).asInt((Integer) JsonDataName.COUNT_CACHE_TTL.defoultValue);
+        this.approximateCountPrefix = node.path(JsonDataName.APPROXIMATE_COUNT_PREFIX.toString()).asInt((Integer) JsonDataName.APPROXIMATE_COUNT_PREFIX.defoultValue);
+        this.memorySearch = node.path(JsonDataName.MEMORY_SEARCH.toString()).asBoolean((Boolean) JsonDataName.MEMORY_SEARCH.defoultValue);
+        this.fuzzySearchBudget = node.path(JsonDataName.FUZZY_SEARCH_BUDGET.toString()).asInt((Integer) JsonDataName.FUZZY_SEARCH_BUDGET.defoultValue);
+        this.loaderTransformThreads = node.path(JsonDataName.LOADER_TRANSFORM_THREADS.toString()).asInt((Integer) JsonDataName.LOADER_TRANSFORM_THREADS.defoultValue);
+        this.loaderWriteThreads = node.path(JsonDataName.LOADER_WRITE_THREADS.toString()).asInt((Integer) JsonDataName.LOADER_WRITE_THREADS.defoultValue);
+        this.loaderQueueSize = node.path(JsonDataName.LOADER_QUEUE_SIZE.toString()).asInt((Integer) JsonDataName.LOADER_QUEUE_SIZE.defoultValue);
+
         terminal.printSuccesln("Loading completed");
 
     }
@@ -287,6 +489,29 @@ public class App //extends JFrame
         this.DB_name = (String) JsonDataName.DATABASE_NAME.defoultValue;
         this.port = (Integer) JsonDataName.SERVER_PORT.defoultValue;
         this.autoRun = (Boolean) JsonDataName.AUTO_START.defoultValue;
+        this.networkEngine = NetworkEngine.fromString((String) JsonDataName.NETWORK_ENGINE.defoultValue);
+        this.nioIoThreads = (Integer) JsonDataName.NIO_IO_THREADS.defoultValue;
+        this.workerThreads = (Integer) JsonDataName.WORKER_THREADS.defoultValue;
+        this.workerQueueDepth = (Integer) JsonDataName.WORKER_QUEUE_DEPTH.defoultValue;
+        this.workerRejectionPolicy = RejectionPolicy.fromString((String) JsonDataName.WORKER_REJECTION_POLICY.defoultValue);
+        this.maxRequestsPerConnection = (Integer) JsonDataName.MAX_REQUESTS_PER_CONNECTION.defoultValue;
+        this.compressionThreshold = (Integer) JsonDataName.COMPRESSION_THRESHOLD.defoultValue;
+        this.resultCacheSize = (Integer) JsonDataName.RESULT_CACHE_SIZE.defoultValue;
+        this.catalogCacheTtl = (Integer) JsonDataName.CATALOG_CACHE_TTL.defoultValue;
+        this.userCacheTtl = (Integer) JsonDataName.USER_CACHE_TTL.defoultValue;
+        this.poolMinSize = (Integer) JsonDataName.DB_POOL_MIN_SIZE.defoultValue;
+        this.poolMaxSize = (Integer) JsonDataName.DB_POOL_MAX_SIZE.defoultValue;
+        this.poolBorrowTimeout = (Integer) JsonDataName.DB_POOL_BORROW_TIMEOUT.defoultValue;
+        this.poolLeakThreshold = (Integer) JsonDataName.DB_POOL_LEAK_THRESHOLD.defoultValue;
+        this.nodeId = (Integer) JsonDataName.NODE_ID.defoultValue;
+        this.searchCountMode = SearchCountMode.fromString((String) JsonDataName.SEARCH_COUNT_MODE.defoultValue);
+        this.countCacheTtl = (Integer) JsonDataName.COUNT_CACHE_TTL.defoultValue;
+        this.approximateCountPrefix = (Integer) JsonDataName.APPROXIMATE_COUNT_PREFIX.defoultValue;
+        this.memorySearch = (Boolean) JsonDataName.MEMORY_SEARCH.defoultValue;
+        this.fuzzySearchBudget = (Integer) JsonDataName.FUZZY_SEARCH_BUDGET.defoultValue;
+        this.loaderTransformThreads = (Integer) JsonDataName.LOADER_TRANSFORM_THREADS.defoultValue;
+        this.loaderWriteThreads = (Integer) JsonDataName.LOADER_WRITE_THREADS.defoultValue;
+        this.loaderQueueSize = (Integer) JsonDataName.LOADER_QUEUE_SIZE.defoultValue;
 
         //JsonParser.writeJsonFile(FILE_SETTINGS_PATH, data);
         //loadSettings();
@@ -310,6 +535,29 @@ public class App //extends JFrame
         ((ObjectNode) data).put(JsonDataName.DATABASE_USER.toString(), this.DB_user);
         ((ObjectNode) data).put(JsonDataName.DATABASE_NAME.toString(), this.DB_name);
         ((ObjectNode) data).put(JsonDataName.AUTO_START.toString()   , this.autoRun);
+        ((ObjectNode) data).put(JsonDataName.NETWORK_ENGINE.toString(), this.networkEngine.toString());
+        ((ObjectNode) data).put(JsonDataName.NIO_IO_THREADS.toString(), this.nioIoThreads);
+        ((ObjectNode) data).put(JsonDataName.WORKER_THREADS.toString(), this.workerThreads);
+        ((ObjectNode) data).put(JsonDataName.WORKER_QUEUE_DEPTH.toString(), this.workerQueueDepth);
+        ((ObjectNode) data).put(JsonDataName.WORKER_REJECTION_POLICY.toString(), this.workerRejectionPolicy.toString());
+        ((ObjectNode) data).put(JsonDataName.MAX_REQUESTS_PER_CONNECTION.toString(), this.maxRequestsPerConnection);
+        ((ObjectNode) data).put(JsonDataName.COMPRESSION_THRESHOLD.toString(), this.compressionThreshold);
+        ((ObjectNode) data).put(JsonDataName.RESULT_CACHE_SIZE.toString(), this.resultCacheSize);
+        ((ObjectNode) data).put(JsonDataName.CATALOG_CACHE_TTL.toString(), this.catalogCacheTtl);
+        ((ObjectNode) data).put(JsonDataName.USER_CACHE_TTL.toString(), this.userCacheTtl);
+        ((ObjectNode) data).put(JsonDataName.DB_POOL_MIN_SIZE.toString(), this.poolMinSize);
+        ((ObjectNode) data).put(JsonDataName.DB_POOL_MAX_SIZE.toString(), this.poolMaxSize);
+        ((ObjectNode) data).put(JsonDataName.DB_POOL_BORROW_TIMEOUT.toString(), this.poolBorrowTimeout);
+        ((ObjectNode) data).put(JsonDataName.DB_POOL_LEAK_THRESHOLD.toString(), this.poolLeakThreshold);
+        ((ObjectNode) data).put(JsonDataName.NODE_ID.toString(), this.nodeId);
+        ((ObjectNode) data).put(JsonDataName.SEARCH_COUNT_MODE.toString(), this.searchCountMode.toString());
+        ((ObjectNode) data).put(JsonDataName.COUNT_CACHE_TTL.toString(), this.countCacheTtl);
+        ((ObjectNode) data).put(JsonDataName.APPROXIMATE_COUNT_PREFIX.toString(), this.approximateCountPrefix);
+        ((ObjectNode) data).put(JsonDataName.MEMORY_SEARCH.toString(), this.memorySearch);
+        ((ObjectNode) data).put(JsonDataName.FUZZY_SEARCH_BUDGET.toString(), this.fuzzySearchBudget);
+        ((ObjectNode) data).put(JsonDataName.LOADER_TRANSFORM_THREADS.toString(), this.loaderTransformThreads);
+        ((ObjectNode) data).put(JsonDataName.LOADER_WRITE_THREADS.toString(), this.loaderWriteThreads);
+        ((ObjectNode) data).put(JsonDataName.LOADER_QUEUE_SIZE.toString(), this.loaderQueueSize);
 
         JsonParser.writeJsonFile(FILE_SETTINGS_PATH, data);
     }
@@ -324,13 +572,42 @@ public class App //extends JFrame
     public void runServer() throws RemoteException {
 
         if(server == null) {
-           server = new ComunicationManager(this.port);
+           CommandsDispatcher dispatcher = new CommandsDispatcher(this.workerThreads, this.workerQueueDepth, this.workerRejectionPolicy, this.maxRequestsPerConnection);
+           server = new ComunicationManager(this.port, this.networkEngine, this.nioIoThreads, dispatcher);
+           server.setCompressionThreshold(this.compressionThreshold);
+           server.configureResultCache(this.resultCacheSize, this.catalogCacheTtl, this.userCacheTtl);
            server.start();
         }
     }
 
     
 
+/**
+ * Stampa sul terminale i contatori del server, se è in esecuzione.
+ */
+    public void printServerStatistics() {
+        if(server != null && server.isAlive()) {
+            server.printStatistics();
+        }
+        else {
+            terminal.printErrorln("The server is not running");
+        }
+    }
+
+
+
+/**
+ * Svuota la cache delle letture del server, se è in esecuzione.
+ * Va chiamato dopo che il Loader ha modificato il catalogo.
+ */
+    public void clearServerCache() {
+        if(server != null) {
+            server.clearResultCache();
+        }
+    }
+
+
+
 /**
  * Arresta il server di comunicazione.
  */
@@ -406,8 +683,8 @@ public class App //extends JFrame
                 e.printStackTrace();
             }
             
-            try {
-                resultSet = db.getConnection().getMetaData().getColumns(null, null, table.toString().toLowerCase(), null);
+            try (PooledConnection connection = db.borrowConnection()) {
+                resultSet = connection.getConnection().getMetaData().getColumns(null, null, table.toString().toLowerCase(), null);
                 
                 //ottengo le colonne che ho nel database
                 existingColumns.clear();
@@ -468,6 +745,7 @@ public class App //extends JFrame
                     loader.addColum(tabella, colonna);
                 } 
             }
+            clearServerCache();
         }
 
         //editColumSize(PredefinedSQLCode.Colonne.ID);
@@ -0,0 +1,73 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import interfaces.ClientConnection;
+
+
+/**
+ * Raccoglie i risultati delle sotto-richieste di un pacchetto BATCH.
+ * Le sotto-richieste vengono eseguite in parallelo dai worker del CommandsDispatcher e ognuna consegna qui il proprio risultato:
+ * l'ultima a terminare invia al client un'unica risposta con tutti i risultati, nello stesso ordine delle richieste.
+ * Nessun worker resta in attesa delle altre sotto-richieste.
+ */
+class BatchResponse
+{
+    private String id;
+    private ClientConnection connection;
+    private Object[] results;
+    private AtomicInteger remaining;
+    private Terminal terminal;
+
+
+
+/**
+ * Costruisce il raccoglitore dei risultati di un BATCH.
+ * Il BATCH occupa una sola delle richieste in corso della connessione, rilasciata quando viene inviata la risposta.
+ *
+ * @param id L'identificativo del pacchetto BATCH.
+ * @param size Il numero di sotto-richieste.
+ * @param connection La connessione da cui è arrivato il pacchetto.
+ */
+    public BatchResponse(String id, int size, ClientConnection connection) {
+        this.id = id;
+        this.connection = connection;
+        this.results = new Object[size];
+        this.remaining = new AtomicInteger(size);
+        this.terminal = Terminal.getInstance();
+    }
+
+
+
+/**
+ * Salva il risultato di una sotto-richiesta e, se era l'ultima, invia la risposta al client.
+ *
+ * @param index La posizione della sotto-richiesta nel BATCH.
+ * @param result Il risultato, oppure l'eccezione che ne ha impedito l'esecuzione.
+ */
+    public void complete(int index, Object result)
+    {
+        results[index] = result;
+
+        //decrementAndGet garantisce che tutti i risultati scritti dagli altri worker siano visibili
+        if(remaining.decrementAndGet() != 0)
+            return;
+
+        connection.getPendingRequests().decrementAndGet();
+        try {
+            connection.writeOnSocket(id, results);
+        }
+        catch (Exception e) {
+            terminal.printErrorln(e.getMessage());
+        }
+    }
+
+
+
+/**
+ * @return Il numero di sotto-richieste del BATCH.
+ */
+    public int size() {
+        return results.length;
+    }
+}
@@ -0,0 +1,174 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import enumclass.ServerServicesName;
+import objects.BinaryProtocol;
+import objects.Packet;
+
+
+/**
+ * Client minimale usato dai benchmark, che parla con il server usando uno dei protocolli del client dell'applicazione:
+ * la serializzazione Java oppure il protocollo binario.
+ */
+class BenchmarkClient
+{
+    private Socket socket;
+    private ObjectOutputStream outputStream;
+    private ObjectInputStream inputStream;
+    private int requestCounter = 0;
+
+    private boolean binary;
+    private BinaryProtocol protocol;
+    private DataOutputStream binaryOutput;
+    private DataInputStream binaryInput;
+
+
+
+/**
+ * Apre la connessione con un server locale usando la serializzazione Java.
+ *
+ * @param port La porta del server.
+ * @throws IOException Se non è possibile connettersi.
+ */
+    public BenchmarkClient(int port) throws IOException {
+        this(port, false);
+    }
+
+
+
+/**
+ * Apre la connessione con un server locale.
+ *
+ * @param port La porta del server.
+ * @param binary true per usare il protocollo binario, false per la serializzazione Java.
+ * @throws IOException Se non è possibile connettersi o l'handshake fallisce.
+ */
+    public BenchmarkClient(int port, boolean binary) throws IOException {
+        this(port, binary, 0);
+    }
+
+
+
+/**
+ * Apre la connessione con un server locale.
+ *
+ * @param port La porta del server.
+ * @param binary true per usare il protocollo binario, false per la serializzazione Java.
+ * @param features Le funzionalità del protocollo binario da proporre al server, ad esempio la compressione.
+ * @throws IOException Se non è possibile connettersi o l'handshake fallisce.
+ */
+    public BenchmarkClient(int port, boolean binary, int features) throws IOException 
+    {
+        this.socket = new Socket("127.0.0.1", port);
+        this.socket.setTcpNoDelay(true);
+        this.binary = binary;
+
+        if(binary) {
+            this.protocol = new BinaryProtocol();
+            this.binaryOutput = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.binaryInput = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            BinaryProtocol.writeHandshake(binaryOutput, BinaryProtocol.VERSION, features);
+            binaryOutput.flush();
+            BinaryProtocol.readFeatures(binaryInput, BinaryProtocol.readHandshake(binaryInput));
+        }
+        else {
+            this.outputStream = new ObjectOutputStream(socket.getOutputStream());
+            this.outputStream.flush();
+            this.inputStream = new ObjectInputStream(socket.getInputStream());
+        }
+    }
+
+
+
+/**
+ * Invia un PING e attende la risposta.
+ *
+ * @return Il tempo impiegato, in nanosecondi.
+ * @throws IOException Se la connessione si interrompe.
+ * @throws ClassNotFoundException Se la risposta non può essere deserializzata.
+ */
+    public long ping() throws IOException, ClassNotFoundException
+    {
+        long start = System.nanoTime();
+        send(ServerServicesName.PING);
+        receive();
+        return System.nanoTime() - start;
+    }
+
+
+
+/**
+ * Invia un comando senza attendere la risposta.
+ *
+ * @param command Il comando da inviare.
+ * @param parameters Le coppie chiave, valore dei parametri.
+ * @throws IOException Se la connessione si interrompe.
+ */
+    public void send(ServerServicesName command, Object... parameters) throws IOException {
+        send(Integer.toString(requestCounter++), command, parameters);
+    }
+
+
+
+/**
+ * Invia un comando con l'identificativo indicato senza attendere la risposta.
+ * Il server ripete l'identificativo nella risposta, quindi un identificativo lungo produce una risposta lunga.
+ *
+ * @param id L'identificativo del pacchetto.
+ * @param command Il comando da inviare.
+ * @param parameters Le coppie chiave, valore dei parametri.
+ * @throws IOException Se la connessione si interrompe.
+ */
+    public void send(String id, ServerServicesName command, Object... parameters) throws IOException
+    {
+        if(binary) {
+            protocol.writeRequest(binaryOutput, id, command.name(), parameters);
+            binaryOutput.flush();
+            return;
+        }
+
+        Packet packet = new Packet();
+        packet.id = id;
+        packet.command = command.name();
+        packet.parameters = parameters;
+
+        outputStream.writeObject(packet);
+        outputStream.flush();
+    }
+
+
+
+/**
+ * Attende la prossima risposta del server.
+ *
+ * @return Il risultato contenuto nella risposta.
+ * @throws IOException Se la connessione si interrompe.
+ * @throws ClassNotFoundException Se la risposta non può essere deserializzata.
+ */
+    public Object receive() throws IOException, ClassNotFoundException
+    {
+        if(binary)
+            return BinaryProtocol.readResponse(binaryInput)[1];
+
+        inputStream.readObject();
+        return inputStream.readObject();
+    }
+
+
+
+/**
+ * Chiude la connessione.
+ */
+    public void close() {
+        try {socket.close();} catch (IOException e) {}
+    }
+}
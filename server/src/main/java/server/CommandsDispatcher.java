@@ -0,0 +1,350 @@
+package server;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enumclass.QueryParameter;
+import enumclass.RejectionPolicy;
+import enumclass.ServerServicesName;
+import interfaces.ClientConnection;
+import objects.Packet;
+
+
+/**
+ * La classe CommandsDispatcher esegue i comandi ricevuti da tutti i client su un pool di worker condiviso e limitato.
+ * La coda dei comandi ha una profondità massima e ogni connessione può avere al massimo un certo numero
+ * di comandi in esecuzione o in attesa: le richieste oltre i limiti ricevono subito una risposta "server busy".
+ * Le sotto-richieste di un pacchetto BATCH vengono eseguite in parallelo come comandi indipendenti.
+ */
+class CommandsDispatcher
+{
+    public static final int DEFAULT_WORKERS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final int DEFAULT_QUEUE_DEPTH = 256;
+    public static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 32;
+    public static final int MAX_BATCH_SIZE = 64;
+
+    private ThreadPoolExecutor executor;
+    private RejectionPolicy policy;
+    private int queueDepth;
+    private int maxRequestsPerConnection;
+
+    private AtomicLong rejectedByQueue = new AtomicLong(0);
+    private AtomicLong rejectedByConnectionLimit = new AtomicLong(0);
+    private AtomicLong batches = new AtomicLong(0);
+    private AtomicLong batchedRequests = new AtomicLong(0);
+
+
+
+/**
+ * Costruisce un dispatcher con i valori predefiniti.
+ */
+    public CommandsDispatcher() {
+        this(DEFAULT_WORKERS, DEFAULT_QUEUE_DEPTH, RejectionPolicy.BUSY_RESPONSE, DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+    }
+
+
+
+/**
+ * Costruisce un dispatcher con un pool di worker limitato.
+ *
+ * @param workers Il numero di worker che eseguono i comandi.
+ * @param queueDepth Il numero massimo di comandi in attesa di un worker.
+ * @param policy Cosa fare con un comando quando la coda è piena.
+ * @param maxRequestsPerConnection Il numero massimo di comandi in esecuzione o in attesa per ogni connessione.
+ */
+    public CommandsDispatcher(int workers, int queueDepth, RejectionPolicy policy, int maxRequestsPerConnection)
+    {
+        this.policy = policy;
+        this.queueDepth = Math.max(1, queueDepth);
+        this.maxRequestsPerConnection = Math.max(1, maxRequestsPerConnection);
+
+        final AtomicInteger workerIndex = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(
+            Math.max(1, workers), Math.max(1, workers),
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(this.queueDepth),
+            (r) -> {
+                Thread t = new Thread(r, "Commands-Worker-" + workerIndex.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            },
+            new RejectionHandler());
+    }
+
+
+
+/**
+ * Esegue il comando contenuto nel pacchetto.
+ * PING e DISCONNECT non accedono al database e vengono gestiti subito dal thread chiamante,
+ * così un server sotto carico continua a rispondere ai controlli di connessione dei client.
+ *
+ * @param packet Il pacchetto ricevuto.
+ * @param connection La connessione da cui è arrivato il pacchetto.
+ * @param manager Il ComunicationManager che esegue i servizi.
+ */
+    public void dispatch(Packet packet, ClientConnection connection, ComunicationManager manager)
+    {
+        if(ServerServicesName.BATCH.name().equals(packet.command)) {
+            dispatchBatch(packet, connection, manager);
+            return;
+        }
+
+        CommandsExecutor task = new CommandsExecutor(packet, connection, manager);
+
+        if(ServerServicesName.PING.name().equals(packet.command) || ServerServicesName.DISCONNECT.name().equals(packet.command)) {
+            task.run();
+            return;
+        }
+
+        //limite di richieste per connessione
+        if(connection.getPendingRequests().incrementAndGet() > maxRequestsPerConnection) {
+            connection.getPendingRequests().decrementAndGet();
+            rejectedByConnectionLimit.incrementAndGet();
+            task.replyServerBusy();
+            return;
+        }
+        task.setCounted();
+
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            //il dispatcher è stato chiuso
+            task.replyServerBusy();
+        }
+    }
+
+
+
+/**
+ * Esegue un pacchetto BATCH: ogni sotto-richiesta diventa un comando indipendente sul pool di worker
+ * e i risultati vengono inviati al client in un'unica risposta.
+ * Il BATCH conta come una sola richiesta per il limite della connessione; una sotto-richiesta che non trova posto
+ * nella coda ha come risultato "server busy", come una richiesta singola.
+ *
+ * @param packet Il pacchetto BATCH, con il parametro REQUESTS: un array di {@code Object[] {comando, parametri}}.
+ * @param connection La connessione da cui è arrivato il pacchetto.
+ * @param manager Il ComunicationManager che esegue i servizi.
+ */
+    private void dispatchBatch(Packet packet, ClientConnection connection, ComunicationManager manager)
+    {
+        Object[] requests;
+        try {
+            requests = parseBatch(packet);
+        }
+        catch (InvalidParameterException e) {
+            try {connection.writeOnSocket(packet.id, e);} catch (Exception k) {}
+            return;
+        }
+
+        if(connection.getPendingRequests().incrementAndGet() > maxRequestsPerConnection) {
+            connection.getPendingRequests().decrementAndGet();
+            rejectedByConnectionLimit.incrementAndGet();
+            new CommandsExecutor(packet, connection, manager).replyServerBusy();
+            return;
+        }
+
+        batches.incrementAndGet();
+        batchedRequests.addAndGet(requests.length);
+
+        if(requests.length == 0) {
+            connection.getPendingRequests().decrementAndGet();
+            try {connection.writeOnSocket(packet.id, new Object[0]);} catch (Exception k) {}
+            return;
+        }
+
+        BatchResponse batch = new BatchResponse(packet.id, requests.length, connection);
+
+        for (int i = 0; i < requests.length; i++) {
+            Object[] request = (Object[]) requests[i];
+
+            Packet subPacket = new Packet();
+            subPacket.id = packet.id + "." + i;
+            subPacket.command = (String) request[0];
+            subPacket.parameters = (Object[]) request[1];
+
+            CommandsExecutor task = new CommandsExecutor(subPacket, connection, manager, batch, i);
+
+            if(ServerServicesName.PING.name().equals(subPacket.command)) {
+                task.run();
+                continue;
+            }
+
+            try {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                task.replyServerBusy();
+            }
+        }
+    }
+
+
+
+    //verifica la struttura del BATCH e restituisce le sotto-richieste
+    private Object[] parseBatch(Packet packet) throws InvalidParameterException
+    {
+        Object[] requests = null;
+
+        if(packet.parameters != null)
+            for (int i = 0; i + 1 < packet.parameters.length; i += 2)
+                if(QueryParameter.REQUESTS.name().equals(packet.parameters[i]) && packet.parameters[i + 1] instanceof Object[])
+                    requests = (Object[]) packet.parameters[i + 1];
+
+        if(requests == null)
+            throw new InvalidParameterException("BATCH without " + QueryParameter.REQUESTS.name());
+        if(requests.length > MAX_BATCH_SIZE)
+            throw new InvalidParameterException("BATCH too large: " + requests.length + " requests (max " + MAX_BATCH_SIZE + ")");
+
+        for (Object request : requests) {
+            if(!(request instanceof Object[]) || ((Object[]) request).length != 2)
+                throw new InvalidParameterException("BATCH request must be {command, parameters}");
+
+            Object[] pair = (Object[]) request;
+            if(!(pair[0] instanceof String) || (pair[1] != null && !(pair[1] instanceof Object[])))
+                throw new InvalidParameterException("BATCH request must be {command, parameters}");
+        }
+        return requests;
+    }
+
+
+
+/**
+ * Gestisce i comandi che non trovano posto nella coda secondo la politica configurata.
+ * Con CALLER_RUNS il comando viene eseguito solo dal thread che legge la connessione del client, cioè con il motore
+ * a un thread per connessione; con il motore NIO il chiamante è un decoder condiviso da tutte le connessioni,
+ * che non deve eseguire query, e il client riceve "server busy" come con BUSY_RESPONSE.
+ */
+    private class RejectionHandler implements RejectedExecutionHandler
+    {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor)
+        {
+            CommandsExecutor task = (CommandsExecutor) r;
+
+            if(executor.isShutdown()) {
+                task.replyServerBusy();
+                return;
+            }
+
+            switch (policy)
+            {
+                case CALLER_RUNS -> {
+                    if(Thread.currentThread() instanceof ConnectionHandler) {
+                        task.run();
+                    }
+                    else {
+                        rejectedByQueue.incrementAndGet();
+                        task.replyServerBusy();
+                    }
+                }
+                case DISCARD_OLDEST -> {
+                    CommandsExecutor oldest = (CommandsExecutor) executor.getQueue().poll();
+                    if(oldest != null) {
+                        rejectedByQueue.incrementAndGet();
+                        oldest.replyServerBusy();
+                    }
+                    executor.execute(task);
+                }
+                default -> {
+                    rejectedByQueue.incrementAndGet();
+                    task.replyServerBusy();
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Ferma i worker, scartando i comandi ancora in coda.
+ */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+
+/**
+ * @return Il numero di comandi in attesa di un worker.
+ */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+/**
+ * @return La capacità massima della coda dei comandi.
+ */
+    public int getQueueCapacity() {
+        return queueDepth;
+    }
+
+/**
+ * @return Il numero di worker che stanno eseguendo un comando.
+ */
+    public int getActiveWorkers() {
+        return executor.getActiveCount();
+    }
+
+/**
+ * @return Il numero massimo di worker.
+ */
+    public int getMaxWorkers() {
+        return executor.getMaximumPoolSize();
+    }
+
+/**
+ * @return Il numero di comandi completati.
+ */
+    public long getCompletedCommands() {
+        return executor.getCompletedTaskCount();
+    }
+
+/**
+ * @return Il numero di comandi rifiutati perché la coda era piena.
+ */
+    public long getRejectedByQueue() {
+        return rejectedByQueue.get();
+    }
+
+/**
+ * @return Il numero di comandi rifiutati per il limite di richieste per connessione.
+ */
+    public long getRejectedByConnectionLimit() {
+        return rejectedByConnectionLimit.get();
+    }
+
+/**
+ * @return Il numero di pacchetti BATCH ricevuti.
+ */
+    public long getBatches() {
+        return batches.get();
+    }
+
+/**
+ * @return Il numero totale di sotto-richieste ricevute nei pacchetti BATCH.
+ */
+    public long getBatchedRequests() {
+        return batchedRequests.get();
+    }
+
+/**
+ * @return La politica applicata quando la coda è piena.
+ */
+    public RejectionPolicy getPolicy() {
+        return policy;
+    }
+
+/**
+ * @return Il numero massimo di richieste in corso per ogni connessione.
+ */
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+}
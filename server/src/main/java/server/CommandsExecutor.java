@@ -0,0 +1,181 @@
+package server;
+
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.HashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import enumclass.ServerServicesName;
+import interfaces.ClientConnection;
+import objects.Packet;
+
+
+
+/**
+ * La classe CommandsExecutor gestisce l'esecuzione dei comandi ricevuti dal client.
+ * Ogni istanza di questa classe rappresenta un comando specifico, eseguito da uno dei worker del CommandsDispatcher,
+ * e la risposta viene scritta sulla connessione da cui è arrivato il pacchetto, qualunque sia il motore di rete che la gestisce.
+ * Se il comando è una sotto-richiesta di un BATCH, il risultato viene invece consegnato al relativo {@link BatchResponse}.
+ */
+class CommandsExecutor implements Runnable {
+
+    private Packet packet;
+    private ClientConnection connection;
+    private ComunicationManager manager;
+    private Terminal terminal;
+
+    //true se il comando è conteggiato tra le richieste in corso della connessione
+    private boolean counted = false;
+
+    //BATCH di cui il comando fa parte, null se è una richiesta singola
+    private BatchResponse batch;
+    private int batchIndex;
+    private boolean replied = false;
+
+    public CommandsExecutor(Packet packet, ClientConnection connection, ComunicationManager manager) {
+        this.packet = packet;
+        this.connection = connection;
+        this.manager = manager;
+        this.terminal = Terminal.getInstance();
+    }
+
+
+
+/**
+ * Costruisce l'esecutore di una sotto-richiesta di un BATCH.
+ *
+ * @param packet La sotto-richiesta.
+ * @param connection La connessione da cui è arrivato il BATCH.
+ * @param manager Il ComunicationManager che esegue i servizi.
+ * @param batch Il BATCH a cui consegnare il risultato.
+ * @param batchIndex La posizione della sotto-richiesta nel BATCH.
+ */
+    public CommandsExecutor(Packet packet, ClientConnection connection, ComunicationManager manager, BatchResponse batch, int batchIndex) {
+        this(packet, connection, manager);
+        this.batch = batch;
+        this.batchIndex = batchIndex;
+    }
+
+
+/**
+ * Segna il comando come conteggiato tra le richieste in corso della connessione:
+ * il contatore verrà decrementato al termine dell'esecuzione o in caso di rifiuto.
+ */
+    public void setCounted() {
+        this.counted = true;
+    }
+
+
+
+/**
+ * Risponde al client che il server è troppo occupato per eseguire il comando.
+ * L'eccezione inviata fa parte della libreria standard, quindi il client la può deserializzare.
+ */
+    public void replyServerBusy() {
+        releaseConnectionSlot();
+        try {
+            reply(new RejectedExecutionException("server busy"));
+        } 
+        catch (Exception e) {
+            terminal.printErrorln(e.getMessage());
+        }
+    }
+
+
+
+    //invia il risultato al client oppure lo consegna al BATCH di cui il comando fa parte
+    private void reply(Object result) throws IOException
+    {
+        if(batch == null) {
+            connection.writeOnSocket(packet.id, result);
+            return;
+        }
+
+        synchronized(this) {
+            if(replied) return;
+            replied = true;
+        }
+        batch.complete(batchIndex, result);
+    }
+
+
+
+    private synchronized void releaseConnectionSlot() {
+        if(counted) {
+            counted = false;
+            connection.getPendingRequests().decrementAndGet();
+        }
+    }
+
+
+
+    @Override
+    public void run() {
+        try {
+            ServerServicesName action = ServerServicesName.valueOf(packet.command);
+            HashMap<String, Object> params = new HashMap<>();
+
+            if(action == null)
+                throw new InvalidParameterException("unknown socket function \""+ packet.command +"\"");
+
+            switch (action)
+            {
+                //se termino la connessiuone
+                case BATCH -> {
+                    throw new IllegalArgumentException("BATCH cannot be nested");
+                }
+                case DISCONNECT -> {
+                    if(batch != null)
+                        throw new IllegalArgumentException("DISCONNECT is not allowed in a BATCH");
+
+                    synchronized(connection) {
+                        if(!connection.isRunning()) return;
+                        connection.writeOnSocket(packet.id, true);
+                        connection.stopRunning();
+                    }
+                }
+                case PING -> {
+                    //new Thread(() -> {Terminal.getInstance().printInfoln("ping with " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET);}).start();
+                    reply(true);
+                }
+
+                default -> {
+
+                    if(packet.parameters == null)
+                        throw new InvalidParameterException("packet.parameters is null");
+
+                    int parametreCount = packet.parameters.length;
+
+                    //riordino i dati e verifico la loro validità
+                    for(int i = 0; i < parametreCount - (parametreCount % 2); i+=2) {
+                        if(!(packet.parameters[i+0] instanceof String))
+                            throw new IllegalArgumentException("packet.parameters key must be a String object");
+
+                        params.put((String)packet.parameters[i+0], (Object)packet.parameters[i+1]);
+                    }
+
+                    Object result = manager.executeServerServiceFunction(action, params, connection.getClientIP());
+                    reply(result);
+                }
+            }
+        }
+        catch (InvalidParameterException e) {
+            terminal.printErrorln(e.getMessage());
+            try {reply(e);} catch (Exception k) {terminal.printErrorln(k.getMessage());}
+        }
+        catch (IllegalArgumentException e) {
+            terminal.printErrorln(e.getMessage());
+            try {reply(e);} catch (Exception k) {terminal.printErrorln(k.getMessage());}
+        }
+        catch (Exception e) {
+            terminal.printError(e.getMessage());
+        }
+        finally {
+            releaseConnectionSlot();
+
+            //il BATCH attende un risultato da ogni sotto-richiesta, anche da quelle fallite
+            if(batch != null)
+                try {reply(new Exception("command " + packet.command + " failed"));} catch (Exception k) {}
+        }
+    }
+}
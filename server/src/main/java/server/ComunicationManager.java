@@ -16,6 +16,7 @@ import java.rmi.server.RemoteServer;
 import java.rmi.server.ServerNotActiveException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Queue;
@@ -26,14 +27,24 @@ import java.util.regex.Pattern;
 import org.apache.commons.codec.digest.DigestUtils;
 import Exceptions.InvalidEmailException;
 import Exceptions.InvalidPasswordException;
+import database.ConnectionPool;
+import database.DatabaseManager;
 import database.QueriesManager;
+import database.SearchEngine;
+import database.SuggestTrie;
 import database.PredefinedSQLCode.Colonne;
+import enumclass.FacetType;
+import enumclass.NetworkEngine;
 import enumclass.QueryParameter;
 import enumclass.ServerServicesName;
+import interfaces.ClientConnection;
 import interfaces.SocketService;
 import objects.Account;
 import objects.Album;
+import objects.BinaryProtocol;
+import objects.Packet;
 import objects.Song;
+import utility.IdGenerator;
 import utility.TimeFormatter;
 import utility.WaithingAnimationThread;
 
@@ -51,8 +62,19 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 	private HashMap<QueryParameter, Colonne> QueryParametre_to_Colonne = new HashMap<>();
 
 	private Terminal terminal;
-	private boolean exit = false;
+	private volatile boolean exit = false;
 	private int port;
+	private NetworkEngine engine;
+	private int ioThreads;
+	private ServerSocket server = null;
+	private NioSelectorEngine selectorEngine = null;
+	private CommandsDispatcher dispatcher;
+	private RequestCoalescer coalescer = new RequestCoalescer();
+	private ResultCache resultCache = new ResultCache();
+	private boolean connectionLogging = true;
+	private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
 
 /**
  * Costruisce un nuovo oggetto ComunicationManager con la porta specificata.
@@ -61,8 +83,24 @@ public class ComunicationManager extends Thread implements SocketService, Serial
  * @throws RemoteException se si verifica un errore durante la configurazione del server RMI.
  */
 	public ComunicationManager(int port) throws RemoteException {
+		this(port, NetworkEngine.THREAD_PER_CONNECTION, 2, new CommandsDispatcher());
+	}
+
+/**
+ * Costruisce un nuovo oggetto ComunicationManager con la porta e il motore di rete specificati.
+ * 
+ * @param port la porta su cui il server ascolterà le richieste.
+ * @param engine il motore di rete con cui accettare e servire i client.
+ * @param ioThreads il numero di thread di I/O utilizzati dal motore NIO.
+ * @param dispatcher il pool di worker che esegue i comandi dei client.
+ * @throws RemoteException se si verifica un errore durante la configurazione del server RMI.
+ */
+	public ComunicationManager(int port, NetworkEngine engine, int ioThreads, CommandsDispatcher dispatcher) throws RemoteException {
 		this.terminal = Terminal.getInstance();
 		this.port = port;
+		this.engine = engine;
+		this.ioThreads = ioThreads;
+		this.dispatcher = dispatcher;
 		//setDaemon(true);
 		setPriority(MAX_PRIORITY);
 
@@ -82,6 +120,8 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		serverFunctions.put(ServerServicesName.SEARCH_SONGS, this::searchSongs);
 		serverFunctions.put(ServerServicesName.GET_SONG_BY_IDS, this::getSongByIDs);
 		serverFunctions.put(ServerServicesName.GET_ALBUM_SONGS, this::getAlbumsSongs);
+		serverFunctions.put(ServerServicesName.SUGGEST, this::suggest);
+		serverFunctions.put(ServerServicesName.FACET_SEARCH, this::facetSearch);
 		
 		
 		/////////////////////////////////////////////////////////////
@@ -121,6 +161,8 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		serverFunctions.put(ServerServicesName.ADD_EMOTION, this::addEmotion);
 		serverFunctions.put(ServerServicesName.REMOVE_EMOTION, this::deleteEmotion);
 		serverFunctions.put(ServerServicesName.GET_SONG_EMOTION, this::getSongEmotion);
+		serverFunctions.put(ServerServicesName.GET_SONG_EMOTION_SUMMARY, this::getSongEmotionSummary);
+		serverFunctions.put(ServerServicesName.GET_COMMENTS_SONG, this::getSongComments);
 		serverFunctions.put(ServerServicesName.GET_ACCOUNT_EMOTIONS, this::getAccountEmotion);
 		
 		
@@ -137,16 +179,16 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		/////////////////////////////////////////////////////////////
 		//SONGs
 		////////////////////////////////////////////////////////////
-		functionParametreKeys.put(ServerServicesName.GET_MOST_POPULAR_SONGS, 		new String[]{QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString()});
-		functionParametreKeys.put(ServerServicesName.SEARCH_SONGS, 					new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.MODE.toString()}); 
+		functionParametreKeys.put(ServerServicesName.GET_MOST_POPULAR_SONGS, 		new String[]{QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString()});
+		functionParametreKeys.put(ServerServicesName.SEARCH_SONGS, 					new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString(), QueryParameter.MODE.toString()}); 
 		functionParametreKeys.put(ServerServicesName.GET_SONG_BY_IDS, 				new String[]{QueryParameter.ID.toString()});
 		
 		
 		/////////////////////////////////////////////////////////////
 		//ALBUMs
 		////////////////////////////////////////////////////////////
-		functionParametreKeys.put(ServerServicesName.GET_RECENT_PUPLISCED_ALBUMS, 	new String[]{QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.THRESHOLD.toString()}); 
-		functionParametreKeys.put(ServerServicesName.SEARCH_ALBUMS, 				new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString()}); 
+		functionParametreKeys.put(ServerServicesName.GET_RECENT_PUPLISCED_ALBUMS, 	new String[]{QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString(), QueryParameter.THRESHOLD.toString()}); 
+		functionParametreKeys.put(ServerServicesName.SEARCH_ALBUMS, 				new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString(), QueryParameter.MODE.toString()}); 
 		functionParametreKeys.put(ServerServicesName.GET_ALBUM_SONGS, 				new String[]{QueryParameter.ALBUM_ID.toString()}); 
 		functionParametreKeys.put(ServerServicesName.GET_ALBUM_BY_ID, 				new String[]{QueryParameter.ID.toString()});
 		
@@ -157,7 +199,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		functionParametreKeys.put(ServerServicesName.GET_ARTIST_BY_ID, 				new String[]{QueryParameter.ARTIST_ID.toString()});
 		functionParametreKeys.put(ServerServicesName.GET_ARTIST_ALBUMS, 			new String[]{QueryParameter.ARTIST_ID.toString()});
 		functionParametreKeys.put(ServerServicesName.GET_ARTIST_SONGS, 				new String[]{QueryParameter.ARTIST_ID.toString()});
-		functionParametreKeys.put(ServerServicesName.SEARCH_ARTISTS, 				new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString()});
+		functionParametreKeys.put(ServerServicesName.SEARCH_ARTISTS, 				new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString(), QueryParameter.MODE.toString()});
 
 
 
@@ -180,11 +222,14 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		functionParametreKeys.put(ServerServicesName.GET_COMMENTS_SONG_FOR_ACCOUNT, new String[]{QueryParameter.ACCOUNT_ID.toString(), QueryParameter.SONG_ID.toString()});
 		functionParametreKeys.put(ServerServicesName.DELETE_PLAYLIST, 				new String[]{QueryParameter.ACCOUNT_ID.toString(), QueryParameter.PLAYLIST_ID.toString()});
 		functionParametreKeys.put(ServerServicesName.GET_SONG_EMOTION, 				new String[]{QueryParameter.SONG_ID.toString()});
+		functionParametreKeys.put(ServerServicesName.GET_SONG_EMOTION_SUMMARY, 		new String[]{QueryParameter.SONG_ID.toString()});
 		functionParametreKeys.put(ServerServicesName.GET_ACCOUNT_EMOTIONS, 			new String[]{QueryParameter.ACCOUNT_ID.toString()});
 
 		
 		
-		functionParametreKeys.put(ServerServicesName.GET_COMMENTS_SONG, 			new String[]{QueryParameter.SONG_ID.toString()});
+		functionParametreKeys.put(ServerServicesName.GET_COMMENTS_SONG, 			new String[]{QueryParameter.SONG_ID.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString(), QueryParameter.CURSOR.toString()});
+		functionParametreKeys.put(ServerServicesName.SUGGEST, 						new String[]{QueryParameter.SEARCH_STRING.toString(), QueryParameter.LIMIT.toString()});
+		functionParametreKeys.put(ServerServicesName.FACET_SEARCH, 					new String[]{QueryParameter.FACETS.toString(), QueryParameter.LIMIT.toString(), QueryParameter.OFFSET.toString()});
 		
 
 		try {
@@ -208,6 +253,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			functionName.put(ServerServicesName.GET_COMMENTS_SONG, "getSongComments");
 			functionName.put(ServerServicesName.GET_ACCOUNT_EMOTIONS, "getAccountComments");
 			functionName.put(ServerServicesName.GET_SONG_EMOTION, "getSongEmotion");
+			functionName.put(ServerServicesName.GET_SONG_EMOTION_SUMMARY, "getSongEmotionSummary");
 			functionName.put(ServerServicesName.DELETE_PLAYLIST, "deletePlaylist");
 			functionName.put(ServerServicesName.DELETE_ACCOUNT, "deleteAccount");
 			functionName.put(ServerServicesName.GET_ARTIST_SONGS, "getArtistSongs");
@@ -216,6 +262,8 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			functionName.put(ServerServicesName.GET_ARTIST_ALBUMS, "getArtistAlbums");
 			functionName.put(ServerServicesName.SEARCH_ARTISTS, "searchArtist");
 			functionName.put(ServerServicesName.GET_ARTIST_BY_ID, "getArtistByID");
+			functionName.put(ServerServicesName.SUGGEST, "suggest");
+			functionName.put(ServerServicesName.FACET_SEARCH, "facetSearch");
 		}
 		catch(Exception e) {
 			e.printStackTrace();
@@ -249,7 +297,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			
 
 		if(addID_colum)
-			ColonneValore.put(Colonne.ID, QueriesManager.generate_ID_from_Time());
+			ColonneValore.put(Colonne.ID, IdGenerator.nextId());
 
 		return ColonneValore;
 	}
@@ -279,7 +327,24 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		try {
 			//printFunctionArgs(function, clientIP);	
 			
-			Object output =  function.apply(params);
+			//le letture identiche in corso nello stesso momento condividono una sola esecuzione
+			//i risultati del catalogo e dei dati degli utenti vengono prima cercati nella cache
+			Object output;
+			if(resultCache.isCacheable(name)) {
+				output = resultCache.execute(name, params, () -> coalescer.execute(name, params, function));
+			}
+			else if(coalescer.isCoalescable(name)) {
+				output = coalescer.execute(name, params, function);
+			}
+			else {
+				try {
+					output = function.apply(params);
+				}
+				finally {
+					resultCache.invalidate(name, params);
+					coalescer.writeCompleted();
+				}
+			}
 
 			if(output instanceof SQLException) {
 				System.out.println((SQLException) output);
@@ -329,13 +394,11 @@ public class ComunicationManager extends Thread implements SocketService, Serial
  */
 	public void run() 
 	{
-		ServerSocket server = null;
 		String IP = getMachineIP();
 
 
 		
 
-
 		terminal.printInfoln("Start comunication inizilization");
 		terminal.startWaithing(Terminal.MessageType.INFO + " Starting server...");
 		try {Thread.sleep(ThreadLocalRandom.current().nextInt(400, 1000));} catch (Exception e) {}
@@ -353,13 +416,11 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 
 		
 		terminal.printInfoln("Start SOCKET configuration:");
-		terminal.printInfoln("ServerSocket creation on port " + port);
+		terminal.printInfoln("ServerSocket creation on port " + port + " (network engine: " + Terminal.Color.CYAN_BOLD_BRIGHT + engine + Terminal.Color.RESET + ")");
 		
 		try {Thread.sleep(ThreadLocalRandom.current().nextInt(400, 1000));} catch (Exception e) {}
 		try {
-			server = new ServerSocket(port);
-			server.setSoTimeout(500);
-
+			openEngine();
 			//IP = server.getInetAddress()
 		} 
 		catch (Exception e) {
@@ -374,12 +435,54 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		terminal.printSuccesln(Terminal.Color.GREEN_BOLD_BRIGHT + "Server initialization complete" + Terminal.Color.RESET);
 		terminal.printSeparator();
 		terminal.printInfoln("Server listening on "+ Terminal.Color.MAGENTA + IP + " : " + port + Terminal.Color.RESET);
-		terminal.printInfoln("press ENTER to stop the server");
+		terminal.printInfoln("press ENTER to stop the server, type \"stats\" to see the server counters");
 		terminal.setAddTime(true);
 		terminal.startWaithing(Terminal.MessageType.INFO + " Server Running", WaithingAnimationThread.Animation.DOTS);
 		terminal.printLine();
 
-			
+		serveEngine();
+		
+		terminal.printInfoln("Closing Server...");
+		closeEngine();
+		
+		terminal.printInfoln("server is close: " + isEngineClosed());
+		terminal.stopWaithing();
+		terminal.setAddTime(false);	
+	}
+
+
+
+/**
+ * Apre il socket del server con il motore di rete configurato.
+ *
+ * @return La porta su cui il server è in ascolto.
+ * @throws IOException Se non è possibile aprire il socket sulla porta richiesta.
+ */
+	int openEngine() throws IOException 
+	{
+		if(engine == NetworkEngine.NIO_SELECTOR) {
+			selectorEngine = new NioSelectorEngine(this, ioThreads);
+			return selectorEngine.bind(port);
+		}
+
+		server = new ServerSocket(port);
+		server.setSoTimeout(500);
+		return server.getLocalPort();
+	}
+
+
+
+/**
+ * Accetta le connessioni dei client finché il server non viene fermato.
+ * Con il motore classico ogni client viene servito da un proprio ConnectionHandler.
+ */
+	void serveEngine() 
+	{
+		if(selectorEngine != null) {
+			selectorEngine.acceptConnections();
+			return;
+		}
+
 		while (!exit) 
 		{
 			try {
@@ -388,11 +491,14 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 				if(clientSocket == null) 
 					continue;
 
-				terminal.printInfoln("Connection established with: " + Terminal.Color.MAGENTA + clientSocket.getInetAddress().getHostAddress() + Terminal.Color.RESET);
+				if(connectionLogging)
+					terminal.printInfoln("Connection established with: " + Terminal.Color.MAGENTA + clientSocket.getInetAddress().getHostAddress() + Terminal.Color.RESET);
 				
 				ConnectionHandler connectionHandler = new ConnectionHandler(clientSocket, this);
+				synchronized(clientsThread) {
+					clientsThread.add(connectionHandler);
+				}
 				connectionHandler.start();
-				clientsThread.add(connectionHandler);
 			
 			} 
 			catch (java.io.InterruptedIOException e) {
@@ -404,12 +510,28 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			}
 
 		}	
-		
-		terminal.printInfoln("Closing Server...");
+	}
+
+
+
+/**
+ * Chiude tutte le connessioni con i client e il socket del server.
+ */
+	@SuppressWarnings("unchecked")
+	void closeEngine() 
+	{
+		if(selectorEngine != null) {
+			selectorEngine.close();
+			dispatcher.shutdown();
+			return;
+		}
 
 		//faccio una copia per evitare errori
-		ArrayList<ConnectionHandler> temp = (ArrayList<ConnectionHandler>) clientsThread.clone();
-		for(ConnectionHandler client : clientsThread)
+		ArrayList<ConnectionHandler> temp;
+		synchronized(clientsThread) {
+			temp = (ArrayList<ConnectionHandler>) clientsThread.clone();
+		}
+		for(ConnectionHandler client : temp)
 			client.terminate();
 
 		if(temp.size() > 0)
@@ -427,25 +549,168 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		catch (IOException e) {
 			terminal.printErrorln(e.toString());
 			e.printStackTrace();
-			return;
 		}
-		
-		terminal.printInfoln("server is close: " + server.isClosed());
-		terminal.stopWaithing();
-		terminal.setAddTime(false);	
+		dispatcher.shutdown();
 	}
 
-	public void terminate() {
+
+
+/**
+ * Passa un pacchetto ricevuto da un client al pool di worker che esegue i comandi.
+ *
+ * @param packet Il pacchetto ricevuto.
+ * @param connection La connessione da cui è arrivato il pacchetto.
+ */
+	void dispatchPacket(Packet packet, ClientConnection connection) {
+		dispatcher.dispatch(packet, connection, this);
+	}
+
+
+
+/**
+ * Stampa sul terminale i contatori del server in esecuzione.
+ */
+	public void printStatistics() 
+	{
+		terminal.printInfoln("Network engine: " + Terminal.Color.CYAN_BOLD_BRIGHT + engine + Terminal.Color.RESET 
+			+ "  clients: " + (selectorEngine != null ? selectorEngine.getConnectionsCount() : clientsThread.size()));
+		terminal.printInfoln("Command workers: active " + dispatcher.getActiveWorkers() + "/" + dispatcher.getMaxWorkers() 
+			+ "  queue " + dispatcher.getQueueDepth() + "/" + dispatcher.getQueueCapacity() 
+			+ "  completed " + dispatcher.getCompletedCommands());
+		terminal.printInfoln("Rejected commands: queue full " + dispatcher.getRejectedByQueue() + " (policy: " + dispatcher.getPolicy() + ")"
+			+ "  per-connection limit " + dispatcher.getRejectedByConnectionLimit() + " (max " + dispatcher.getMaxRequestsPerConnection() + ")");
+		terminal.printInfoln("Batches: " + dispatcher.getBatches() + "  sub-requests " + dispatcher.getBatchedRequests());
+
+		long reads = coalescer.getRequests();
+		terminal.printInfoln("Read coalescing: requests " + reads + "  executed " + coalescer.getExecutions() 
+			+ "  merged " + coalescer.getMerged() + String.format(" (%.1f%%)", reads == 0 ? 0.0 : coalescer.getMerged() * 100.0 / reads));
+
+		terminal.printInfoln("Result cache: entries " + resultCache.getEntriesCount() 
+			+ "  size " + resultCache.getUsedBytes() / 1024 + "/" + resultCache.getMaxBytes() / 1024 + " KB");
+		for (ServerServicesName service : resultCache.getServices()) {
+			long hits = resultCache.getHits(service);
+			long lookups = hits + resultCache.getMisses(service);
+			if(lookups == 0)
+				continue;
+
+			terminal.printInfoln(String.format("  %-30s hits %d/%d (%.1f%%)  evicted %d  expired %d  invalidated %d",
+				service, hits, lookups, hits * 100.0 / lookups,
+				resultCache.getEvictions(service), resultCache.getExpirations(service), resultCache.getInvalidations(service)));
+		}
+
+		ConnectionPool pool = DatabaseManager.getInstance().getPool();
+		if(pool != null) {
+			long borrows = pool.getBorrows();
+			terminal.printInfoln("Database pool: active " + pool.getActive() + "  idle " + pool.getIdle() 
+				+ "  size " + pool.getMinSize() + "-" + pool.getMaxSize() + "  waiting " + pool.getWaiting()
+				+ "  borrows " + borrows + "  wait avg " + TimeFormatter.formatTime(borrows == 0 ? 0 : pool.getTotalWaitNanos() / (double) borrows)
+				+ " max " + TimeFormatter.formatTime(pool.getMaxWaitNanos()) + "  timeouts " + pool.getTimeouts()
+				+ "  opened " + pool.getCreated() + "  invalid " + pool.getValidationFailures() + "  leaks " + pool.getLeaks()
+				+ "  prepared " + pool.getPreparedMisses() + " reused " + pool.getPreparedHits());
+		}
+
+		long compressed = BinaryProtocol.getCompressedFrames();
+		long original = BinaryProtocol.getUncompressedBytes();
+		long reduced = BinaryProtocol.getCompressedBytes();
+		terminal.printInfoln("Compression: " + (compressionThreshold > 0 ? "frames >= " + compressionThreshold + " bytes" : "disabled")
+			+ "  compressed " + compressed + "  not reduced " + BinaryProtocol.getIncompressibleFrames()
+			+ "  bytes " + original + " -> " + reduced + String.format(" (ratio %.2fx)", reduced == 0 ? 0.0 : (double) original / reduced)
+			+ "  cpu " + TimeFormatter.formatTime(BinaryProtocol.getCompressionNanos())
+			+ (compressed == 0 ? "" : " (" + TimeFormatter.formatTime(BinaryProtocol.getCompressionNanos() / (double) compressed) + "/frame)"));
+	}
+
+
+
+/**
+ * Verifica se il socket del server è stato chiuso.
+ *
+ * @return true se il socket è chiuso, false altrimenti.
+ */
+	boolean isEngineClosed() {
+		if(selectorEngine != null)
+			return selectorEngine.isClosed();
+		return server == null || server.isClosed();
+	}
+
+
+
+/**
+ * Ferma l'accettazione di nuove connessioni senza interrompere il thread chiamante.
+ */
+	void stopEngine() {
 		this.exit = true;
+		if(selectorEngine != null)
+			selectorEngine.stopAccepting();
+	}
+
+	public void terminate() {
+		stopEngine();
 		Thread.currentThread().interrupt();
 	}
 
 	protected void removeClientSocket(ConnectionHandler connectionHandler) {
-		this.clientsThread.remove(connectionHandler);
-		new Thread(() -> {
-			terminal.printInfoln("host disconected: " + Terminal.Color.MAGENTA + connectionHandler.getSocket().getInetAddress().getHostAddress() + Terminal.Color.RESET);
-		}).start();
+		synchronized(clientsThread) {
+			this.clientsThread.remove(connectionHandler);
+		}
+		if(connectionLogging)
+			new Thread(() -> {
+				terminal.printInfoln("host disconected: " + Terminal.Color.MAGENTA + connectionHandler.getSocket().getInetAddress().getHostAddress() + Terminal.Color.RESET);
+			}).start();
+	}
+
+
+
+/**
+ * Abilita o disabilita la stampa sul terminale delle connessioni e delle richieste dei client.
+ *
+ * @param enabled true per stampare connessioni e richieste, false altrimenti.
+ */
+	void setConnectionLogging(boolean enabled) {
+		this.connectionLogging = enabled;
+	}
+
+	boolean isConnectionLoggingEnabled() {
+		return connectionLogging;
+	}
+
+
+
+/**
+ * Imposta la dimensione minima delle risposte da comprimere per i client che usano il protocollo binario
+ * e accettano la compressione. Vale per le connessioni aperte dopo la chiamata.
+ *
+ * @param threshold La dimensione minima in byte, 0 per disabilitare la compressione.
+ */
+	public void setCompressionThreshold(int threshold) {
+		this.compressionThreshold = Math.max(0, threshold);
+	}
+
+	int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+
+
+/**
+ * Imposta la memoria e la durata dei risultati salvati nella cache delle letture.
+ *
+ * @param sizeMB La memoria massima in megabyte, 0 per disabilitare la cache.
+ * @param catalogTtl La durata dei risultati del catalogo, in secondi.
+ * @param userTtl La durata dei risultati con i dati degli utenti, in secondi.
+ */
+	public void configureResultCache(int sizeMB, int catalogTtl, int userTtl) {
+		resultCache.configure(sizeMB, catalogTtl, userTtl);
+	}
+
+
+
+/**
+ * Svuota la cache delle letture. Va chiamato quando il catalogo viene modificato fuori dai servizi del server.
+ */
+	public void clearResultCache() {
+		resultCache.clear();
 	}
+
 // ==================================== UTILITY ====================================//
 /**
  * Restituisce l'indirizzo IPv4 privato della macchina.
@@ -766,15 +1031,16 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 /**
  * Recupera le canzoni più popolari dal sistema utilizzando i parametri forniti.
  *
- * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri LIMIT e OFFSET necessari
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri LIMIT, OFFSET e CURSOR necessari
  * per recuperare le canzoni più popolari. Utilizza questi parametri per eseguire una query al sistema
- * e ottenere le canzoni più popolari in base ai criteri specificati.
- * Restituisce una lista di canzoni se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- * o un'eccezione che è stata catturata durante l'esecuzione.
+ * e ottenere le canzoni più popolari in base ai criteri specificati: se CURSOR non è null la pagina continua
+ * quella che lo ha restituito e OFFSET viene ignorato.
+ * Restituisce la lista di canzoni e il cursore della pagina successiva se l'operazione è riuscita, altrimenti
+ * restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  *
- * @param argsTable La tabella di argomenti contenente i parametri LIMIT e OFFSET per il recupero delle canzoni più popolari.
- * @return Una lista di canzoni più popolari se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- *         o un'eccezione che è stata catturata durante l'esecuzione.
+ * @param argsTable La tabella di argomenti contenente i parametri LIMIT, OFFSET e CURSOR per il recupero delle canzoni più popolari.
+ * @return Un array con la lista di canzoni più popolari e il cursore della pagina successiva se l'operazione è riuscita,
+ *         altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  * @throws NullPointerException Se uno dei parametri nella tabella 'argsTable' è null.
  */
 	@Override
@@ -782,7 +1048,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 	public Object getMostPopularSongs(final HashMap<String, Object> argsTable) 
 	{
 		try {
-			return QueriesManager.getTopPopularSongs((long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()));
+			return QueriesManager.getTopPopularSongs_and_cursor((long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()), (String)argsTable.get(QueryParameter.CURSOR.toString()));
 		} 
 		catch (Exception e) {
 			return e;
@@ -794,14 +1060,15 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 /**
  * Esegue una ricerca di canzoni nel sistema utilizzando i parametri forniti.
  *
- * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri SEARCH_STRING, LIMIT, OFFSET e MODE
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri SEARCH_STRING, LIMIT, OFFSET, CURSOR e MODE
  * necessari per eseguire una ricerca di canzoni nel sistema. Utilizza questi parametri per eseguire una query
- * e ottenere i risultati della ricerca.
- * Restituisce un array di oggetti contenenti le informazioni sulla ricerca e il conteggio totale degli elementi
- * se l'operazione è riuscita, altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
+ * e ottenere i risultati della ricerca; se CURSOR non è null la pagina continua quella che lo ha restituito.
+ * Restituisce un array di oggetti contenenti il conteggio totale degli elementi, i risultati della ricerca e il cursore
+ * della pagina successiva se l'operazione è riuscita, altrimenti restituisce una stringa di errore o un'eccezione
+ * che è stata catturata durante l'esecuzione.
  *
- * @param argsTable La tabella di argomenti contenente i parametri SEARCH_STRING, LIMIT, OFFSET e MODE per la ricerca delle canzoni.
- * @return Un array di oggetti contenenti i risultati della ricerca e il conteggio totale degli elementi
+ * @param argsTable La tabella di argomenti contenente i parametri SEARCH_STRING, LIMIT, OFFSET, CURSOR e MODE per la ricerca delle canzoni.
+ * @return Un array di oggetti contenenti il conteggio totale degli elementi, i risultati della ricerca e il cursore della pagina successiva
  *         se l'operazione è riuscita, altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  * @throws NullPointerException Se uno dei parametri nella tabella 'argsTable' è null.
  */
@@ -813,9 +1080,10 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			String key = (String)argsTable.get(QueryParameter.SEARCH_STRING.toString());
 			long limit = (long)argsTable.get(QueryParameter.LIMIT.toString());
 			long offset = (long)argsTable.get(QueryParameter.OFFSET.toString());
+			String cursor = (String)argsTable.get(QueryParameter.CURSOR.toString());
 			int mode = (int)argsTable.get(QueryParameter.MODE.toString());
 
-            Object[] result = QueriesManager.searchSong_and_countElement(key, limit, offset, mode);
+            Object[] result = QueriesManager.searchSong_and_countElement(key, limit, offset, cursor, mode);
 		
 			
 			return result;
@@ -830,15 +1098,15 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 /**
  * Recupera gli album più recentemente pubblicati nel sistema utilizzando i parametri forniti.
  *
- * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri LIMIT, OFFSET e THRESHOLD
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri LIMIT, OFFSET, CURSOR e THRESHOLD
  * necessari per ottenere gli album più recentemente pubblicati. Utilizza questi parametri per eseguire una query
- * e restituire gli album che soddisfano i criteri specificati.
- * Restituisce un'ArrayList di oggetti Album se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- * o un'eccezione che è stata catturata durante l'esecuzione.
+ * e restituire gli album che soddisfano i criteri specificati; se CURSOR non è null la pagina continua quella che lo ha restituito.
+ * Restituisce un'ArrayList di oggetti Album e il cursore della pagina successiva se l'operazione è riuscita, altrimenti
+ * restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  *
- * @param argsTable La tabella di argomenti contenente i parametri LIMIT, OFFSET e THRESHOLD per il recupero degli album più recentemente pubblicati.
- * @return Un'ArrayList di oggetti Album se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- *         o un'eccezione che è stata catturata durante l'esecuzione.
+ * @param argsTable La tabella di argomenti contenente i parametri LIMIT, OFFSET, CURSOR e THRESHOLD per il recupero degli album più recentemente pubblicati.
+ * @return Un array con l'ArrayList di oggetti Album e il cursore della pagina successiva se l'operazione è riuscita,
+ *         altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  * @throws NullPointerException Se uno dei parametri nella tabella 'argsTable' è null.
  */
 	@Override
@@ -846,8 +1114,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 	public Object getRecentPublischedAlbum(final HashMap<String, Object> argsTable) 
 	{
 		try {
-			ArrayList<Album> result = QueriesManager.getRecentPublischedAlbum((long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()), (int)argsTable.get(QueryParameter.THRESHOLD.toString()));
-			return result;
+			return QueriesManager.getRecentPublischedAlbum_and_cursor((long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()), (String)argsTable.get(QueryParameter.CURSOR.toString()), (int)argsTable.get(QueryParameter.THRESHOLD.toString()));
 		}
 		catch (Exception e) {
 			return e;
@@ -859,15 +1126,16 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 /**
  * Esegue una ricerca di album nel sistema utilizzando i parametri forniti.
  *
- * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri SEARCH_STRING, LIMIT e OFFSET
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente i parametri SEARCH_STRING, LIMIT, OFFSET, CURSOR e MODE
  * necessari per eseguire una ricerca di album nel sistema. Utilizza questi parametri per eseguire una query
- * e ottenere i risultati della ricerca.
- * Restituisce un'ArrayList di oggetti Album se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- * o un'eccezione che è stata catturata durante l'esecuzione.
+ * e ottenere i risultati della ricerca; se CURSOR non è null la pagina continua quella che lo ha restituito.
+ * MODE sceglie tra la ricerca per nome (0) e quella approssimata ({@link QueriesManager#FUZZY_SEARCH_MODE}).
+ * Restituisce il numero totale di album, un'ArrayList di oggetti Album e il cursore della pagina successiva se l'operazione
+ * è riuscita, altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  *
- * @param argsTable La tabella di argomenti contenente i parametri SEARCH_STRING, LIMIT e OFFSET per la ricerca degli album.
- * @return Un'ArrayList di oggetti Album se l'operazione è riuscita, altrimenti restituisce una stringa di errore
- *         o un'eccezione che è stata catturata durante l'esecuzione.
+ * @param argsTable La tabella di argomenti contenente i parametri SEARCH_STRING, LIMIT, OFFSET, CURSOR e MODE per la ricerca degli album.
+ * @return Un array con il numero totale di album, l'ArrayList di oggetti Album e il cursore della pagina successiva
+ *         se l'operazione è riuscita, altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  * @throws NullPointerException Se uno dei parametri nella tabella 'argsTable' è null.
  */
 	@Override
@@ -875,7 +1143,7 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 	public Object searchAlbums(final HashMap<String, Object> argsTable) 
 	{
         try {
-            return QueriesManager.searchAlbum((String)argsTable.get(QueryParameter.SEARCH_STRING.toString()), (long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()));
+            return QueriesManager.searchAlbum((String)argsTable.get(QueryParameter.SEARCH_STRING.toString()), (long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()), (String)argsTable.get(QueryParameter.CURSOR.toString()), (int)argsTable.get(QueryParameter.MODE.toString()));
 		} 
 		catch (Exception e) {
 			return e;
@@ -1098,13 +1366,15 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 /**
  * Esegue una ricerca degli artisti nel sistema utilizzando una stringa chiave di ricerca, un limite e uno spostamento.
  *
- * Questo metodo accetta una tabella di argomenti (HashMap) contenente una stringa chiave di ricerca, un limite e uno spostamento.
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente una stringa chiave di ricerca, un limite, uno spostamento,
+ * il cursore della pagina precedente, che se non è null sostituisce lo spostamento, e il modo della ricerca,
+ * per nome (0) o approssimata ({@link QueriesManager#FUZZY_SEARCH_MODE}).
  * Utilizza questi parametri per eseguire una ricerca degli artisti tramite il gestore delle query del sistema.
- * Restituisce un array di oggetti Artist e un numero totale di elementi se l'operazione è riuscita,
- * altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
+ * Restituisce un array di oggetti Artist, un numero totale di elementi e il cursore della pagina successiva se l'operazione
+ * è riuscita, altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  *
- * @param argsTable La tabella di argomenti contenente la stringa chiave di ricerca, il limite e lo spostamento.
- * @return Un array di oggetti Artist e un numero totale di elementi se l'operazione è riuscita,
+ * @param argsTable La tabella di argomenti contenente la stringa chiave di ricerca, il limite, lo spostamento, il cursore e il modo.
+ * @return Un array di oggetti Artist, un numero totale di elementi e il cursore della pagina successiva se l'operazione è riuscita,
  *         altrimenti restituisce una stringa di errore o un'eccezione che è stata catturata durante l'esecuzione.
  * @throws NullPointerException Se il parametro 'argsTable' o uno dei suoi valori associati a 'QueryParameter.SEARCH_STRING',
  *         'QueryParameter.LIMIT' o 'QueryParameter.OFFSET' è null.
@@ -1115,8 +1385,10 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 			String key = (String)argsTable.get(QueryParameter.SEARCH_STRING.toString());
 			long limit = (long)argsTable.get(QueryParameter.LIMIT.toString());
 			long offset = (long)argsTable.get(QueryParameter.OFFSET.toString());
+			String cursor = (String)argsTable.get(QueryParameter.CURSOR.toString());
+			int mode = (int)argsTable.get(QueryParameter.MODE.toString());
 
-            Object[] result = QueriesManager.searchArtists(key, limit, offset);
+            Object[] result = QueriesManager.searchArtists(key, limit, offset, cursor, mode);
 
 			return result;
 		} 
@@ -1127,6 +1399,65 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 
 
 
+/**
+ * Restituisce i nomi di canzoni, album e artisti che iniziano con il testo scritto nel campo di ricerca.
+ *
+ * Questo metodo accetta una tabella di argomenti (HashMap) contenente il testo scritto (SEARCH_STRING) e il numero
+ * massimo di suggerimenti (LIMIT). I suggerimenti vengono letti dal trie in memoria del SearchEngine, senza query
+ * al database, e sono ordinati per popolarità.
+ *
+ * @param argsTable La tabella di argomenti contenente il testo scritto e il numero massimo di suggerimenti.
+ * @return Un array con tre array di String: i nomi suggeriti, il tipo di ogni elemento (SONG, ALBUM o ARTIST)
+ *         e il suo ID, oppure l'eccezione catturata durante l'esecuzione.
+ */
+	@Override
+	public Object suggest(final HashMap<String, Object> argsTable) {
+		try {
+			String key = (String)argsTable.get(QueryParameter.SEARCH_STRING.toString());
+			long limit = (long)argsTable.get(QueryParameter.LIMIT.toString());
+
+			return SearchEngine.suggest(key, (int) Math.min(limit, SuggestTrie.MAX_SUGGESTIONS));
+		} 
+		catch (Exception e) {
+			return e;
+		}
+	}
+
+
+
+/**
+ * Cerca le canzoni con la ricerca a faccette.
+ *
+ * La tabella di argomenti contiene in FACETS una HashMap che associa al nome di un facet (FacetType) un array
+ * con i valori ammessi, e i parametri LIMIT e OFFSET della pagina.
+ *
+ * @param argsTable La tabella di argomenti contenente i filtri FACETS e i parametri LIMIT e OFFSET.
+ * @return Un array con il numero totale di canzoni trovate, la lista di oggetti Song dalla più popolare e i conteggi
+ *         dei valori di ogni facet, oppure l'eccezione catturata durante l'esecuzione, anche se un facet non esiste.
+ */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object facetSearch(final HashMap<String, Object> argsTable) {
+		try {
+			HashMap<String, Object> facets = (HashMap<String, Object>)argsTable.get(QueryParameter.FACETS.toString());
+			long limit = (long)argsTable.get(QueryParameter.LIMIT.toString());
+			long offset = (long)argsTable.get(QueryParameter.OFFSET.toString());
+
+			EnumMap<FacetType, String[]> filters = new EnumMap<>(FacetType.class);
+			if(facets != null) {
+				for (String name : facets.keySet())
+					filters.put(FacetType.valueOf(name), (String[])facets.get(name));
+			}
+
+			return QueriesManager.facetSearch(filters, limit, offset);
+		} 
+		catch (Exception e) {
+			return e;
+		}
+	}
+
+
+
 /**
  * Recupera gli artisti dal sistema utilizzando gli ID forniti.
  *
@@ -1340,6 +1671,68 @@ public class ComunicationManager extends Thread implements SocketService, Serial
 		} 
 	}
 
+
+
+/**
+ * Recupera il riepilogo delle emozioni di una canzone, letto dalla tabella aggiornata a ogni voto.
+ *
+ * @param argsTable La tabella di argomenti contenente l'ID della canzone.
+ * @return Un array con il numero totale di voti e una HashMap che associa a ogni tipo di emozione votato
+ *         un array con il numero di voti e il valore medio, oppure l'eccezione catturata durante l'esecuzione.
+ */
+	@Override
+	public Object getSongEmotionSummary(final HashMap<String, Object> argsTable) {
+		try {
+			return createEmotionSummary(QueriesManager.getSongEmotionSummary((String)argsTable.get(QueryParameter.SONG_ID.toString())));
+		} 
+		catch (Exception e) {
+			return e;     
+		} 
+	}
+
+
+
+/**
+ * Costruisce la risposta del servizio GET_SONG_EMOTION_SUMMARY.
+ *
+ * @param summary Una HashMap che associa a ogni tipo di emozione votato il numero di voti e la somma dei valori.
+ * @return Un array con il numero totale di voti e una HashMap che associa a ogni tipo di emozione
+ *         un array con il numero di voti e il valore medio.
+ */
+	static Object[] createEmotionSummary(HashMap<String, long[]> summary) {
+		HashMap<String, Object> result = new HashMap<>();
+		long total = 0;
+
+		for (String type : summary.keySet()) {
+			long[] values = summary.get(type);
+			result.put(type, new Object[] {values[0], (double) values[1] / values[0]});
+			total += values[0];
+		}
+		return new Object[] {total, result};
+	}
+
+
+
+
+/**
+ * Recupera una pagina dei commenti di una canzone, cioè delle sue emozioni con un commento.
+ *
+ * Se CURSOR non è null la pagina continua quella che lo ha restituito e OFFSET viene ignorato.
+ *
+ * @param argsTable La tabella di argomenti contenente l'ID della canzone e i parametri LIMIT, OFFSET e CURSOR.
+ * @return Un array con la lista di emozioni e il cursore della pagina successiva se l'operazione è riuscita,
+ *         altrimenti l'eccezione catturata durante l'esecuzione.
+ */
+	@Override
+	public Object getSongComments(final HashMap<String, Object> argsTable) {
+		try {
+			return QueriesManager.getSongComments((String)argsTable.get(QueryParameter.SONG_ID.toString()), (long)argsTable.get(QueryParameter.LIMIT.toString()), (long)argsTable.get(QueryParameter.OFFSET.toString()), (String)argsTable.get(QueryParameter.CURSOR.toString()));
+		} 
+		catch (Exception e) {
+			return e;     
+		} 
+	}
+
 	
 
 /**
@@ -1,12 +1,21 @@
 package server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.security.InvalidParameterException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import enumclass.ServerServicesName;
+import interfaces.ClientConnection;
+import objects.BinaryProtocol;
 import objects.Packet;
 
 import java.io.ObjectOutputStream;
@@ -16,15 +25,34 @@ import java.io.ObjectOutputStream;
  * La classe ConnectionHandler gestisce la comunicazione con un client attraverso un socket.
  * Ogni istanza di questa classe viene creata per gestire la connessione con un singolo client.
  */
-public class ConnectionHandler extends Thread {
+public class ConnectionHandler extends Thread implements ClientConnection {
+
+    //risposte in attesa di essere scritte oltre le quali il client è considerato bloccato
+    private static final int MAX_PENDING_RESPONSES = 1024;
+    //numero massimo di risposte scritte con un solo flush
+    private static final int MAX_RESPONSES_PER_FLUSH = 64;
+    //tempo massimo concesso al ResponseWriter per inviare le risposte in coda quando la connessione si chiude
+    private static final long WRITER_DRAIN_TIMEOUT_MS = 2000;
+    //accodato dopo l'ultima risposta: il ResponseWriter la invia e termina
+    private static final Object[] END_OF_RESPONSES = new Object[0];
 
     private Socket clientSocket;
     private Terminal terminal;
     private ObjectInputStream inputStream;
     private ObjectOutputStream outputStream;
+
+    //stream usati se il client ha scelto il protocollo binario
+    private boolean binary = false;
+    private DataInputStream binaryInput;
+    private DataOutputStream binaryOutput;
+    private BinaryProtocol protocol = new BinaryProtocol();
     
     private ComunicationManager manager;
     private boolean run = true;
+    private AtomicInteger pendingRequests = new AtomicInteger(0);
+
+    private LinkedBlockingQueue<Object[]> outbound = new LinkedBlockingQueue<>(MAX_PENDING_RESPONSES);
+    private ResponseWriter writer;
 
 
 
@@ -46,96 +74,141 @@ public class ConnectionHandler extends Thread {
 
 
 /**
- * La classe CommandsExecutor gestisce l'esecuzione dei comandi ricevuti dal client.
- * Ogni istanza di questa classe viene creata per eseguire un comando specifico.
+ * Accoda la risposta nella coda di uscita di questo client, senza attendere la scrittura sul socket.
+ * Le risposte vengono scritte dal ResponseWriter della connessione, quindi un client lento non blocca
+ * i worker né le risposte destinate agli altri client.
+ * Se il client non legge le risposte e la coda si riempie, la connessione viene chiusa.
+ *
+ * @param Id L'identificativo del pacchetto a cui si sta rispondendo.
+ * @param data Il risultato da inviare al client.
+ * @throws IOException Se la connessione viene chiusa perché il client non legge le risposte.
  */
-    private class CommandsExecutor extends Thread {
+    @Override
+    public void writeOnSocket(String Id, Object data) throws IOException 
+    {
+        if(clientSocket.isClosed())
+            return;
+
+        if(!outbound.offer(new Object[] {Id, data})) {
+            if(manager.isConnectionLoggingEnabled())
+                terminal.printErrorln("Host: " + getClientIP() + " is not reading responses, connection closed");
+            terminate();
+            throw new IOException("client too slow");
+        }
+    }
 
-        private Packet packet;
-        private String clientIP;
 
-        public CommandsExecutor(Packet packet, String clientIP) {
-            this.packet = packet;
-            this.clientIP = clientIP;
-        }
 
-        private void writeOnSocket(String Id, Object data) throws IOException 
-        {
-            synchronized(ConnectionHandler.class) {
-                if(!clientSocket.isClosed()) {
-                    outputStream.writeObject(Id);
-                    outputStream.writeObject(data);    
-                }
-            }      
+/**
+ * Thread che scrive sul socket le risposte accodate per questo client.
+ * Tutte le risposte presenti in coda vengono serializzate nel buffer dello stream e inviate con un unico flush.
+ * Il thread termina dopo aver inviato le risposte che precedono {@code END_OF_RESPONSES}.
+ */
+    private class ResponseWriter extends Thread
+    {
+        public ResponseWriter() {
+            super("Writer-" + ConnectionHandler.this.getName());
+            setDaemon(true);
         }
 
-
         @Override
-        public void run() {
+        public void run()
+        {
+            ArrayList<Object[]> responses = new ArrayList<>(MAX_RESPONSES_PER_FLUSH);
             try {
-                ServerServicesName action = ServerServicesName.valueOf(packet.command);
-                HashMap<String, Object> params = new HashMap<>();
-
-                if(action == null)
-                    throw new InvalidParameterException("unknown socket function \""+ packet.command +"\"");
-
-                switch (action) 
+                boolean end = false;
+                while(!end && !clientSocket.isClosed()) 
                 {
-                    //se termino la connessiuone
-                    case DISCONNECT -> {
-                        synchronized(ConnectionHandler.class) {
-                            if(!run) return;
-                            writeOnSocket(packet.id, true);
-                            run = false;
+                    responses.add(outbound.take());
+                    outbound.drainTo(responses, MAX_RESPONSES_PER_FLUSH - 1);
+
+                    for (Object[] response : responses) {
+                        if(response == END_OF_RESPONSES) {
+                            end = true;
+                            break;
                         }
-                    }
-                    case PING -> {
-                        //new Thread(() -> {Terminal.getInstance().printInfoln("ping with " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET);}).start();
-                        writeOnSocket(packet.id, true);
-                    }
-                    
-                    default -> {
-
-                        if(packet.parameters == null)
-                            throw new InvalidParameterException("packet.parameters is null");
-                        
-                        int parametreCount = packet.parameters.length;
-                    
-                        //riordino i dati e verifico la loro validità
-                        for(int i = 0; i < parametreCount - (parametreCount % 2); i+=2) {
-                            if(!(packet.parameters[i+0] instanceof String))
-                                throw new IllegalArgumentException("packet.parameters key must be a String object");
-                            
-                            params.put((String)packet.parameters[i+0], (Object)packet.parameters[i+1]);
+                        if(binary) {
+                            protocol.writeResponse(binaryOutput, (String) response[0], response[1]);
+                        }
+                        else {
+                            outputStream.writeObject(response[0]);
+                            outputStream.writeObject(response[1]);
                         }
-
-                        Object result = manager.executeServerServiceFunction(action, params, clientIP);
-                        writeOnSocket(packet.id, result);
                     }
+
+                    if(binary)
+                        binaryOutput.flush();
+                    else
+                        outputStream.flush();
+                    responses.clear();
                 }
-            } 
-            catch (InvalidParameterException e) {
-                terminal.printErrorln(e.getMessage());
-                try {writeOnSocket(packet.id, e);} catch (Exception k) {terminal.printErrorln(k.getMessage());}
             }
-            catch (IllegalArgumentException e) {
-                terminal.printErrorln(e.getMessage());
-                try {writeOnSocket(packet.id, e);} catch (Exception k) {terminal.printErrorln(k.getMessage());}
+            catch (InterruptedException e) {
+                //connessione terminata
             }
-            catch (Exception e) {
-                terminal.printError(e.getMessage());
+            catch (IOException e) {
+                //il client ha chiuso la connessione, il ConnectionHandler se ne accorgerà in lettura
+                try {clientSocket.close();} catch (IOException k) {}
             }
         }
     }
 
 
 
+/**
+ * Restituisce l'indirizzo IP del client associato a questo gestore di connessione.
+ *
+ * @return L'indirizzo IP del client.
+ */
+    @Override
+    public String getClientIP() {
+        return clientSocket.getInetAddress().getHostAddress();
+    }
+
+
+
+/**
+ * Verifica se il gestore di connessione è ancora in ascolto di pacchetti.
+ *
+ * @return true se la connessione è attiva, false altrimenti.
+ */
+    @Override
+    public boolean isRunning() {
+        return run;
+    }
+
+
+
+/**
+ * Interrompe la lettura di nuovi pacchetti dal client, ad esempio dopo una richiesta di disconnessione.
+ */
+    @Override
+    public void stopRunning() {
+        run = false;
+    }
+
+
+
+
+/**
+ * Restituisce il contatore dei comandi di questo client in esecuzione o in attesa di un worker.
+ *
+ * @return Il contatore delle richieste in corso.
+ */
+    @Override
+    public AtomicInteger getPendingRequests() {
+        return pendingRequests;
+    }
+
+
+
 /**
  * Implementa il comportamento del gestore di connessione durante l'esecuzione del thread.
  *
- * Durante l'esecuzione del thread, il metodo inizializza gli stream di input e output del socket del client,
- * quindi entra in un ciclo while che ascolta continuamente per pacchetti dal client. Per ogni pacchetto ricevuto,
- * crea un nuovo oggetto `CommandsExecutor` e lo avvia come thread per eseguire i comandi associati al pacchetto.
+ * Durante l'esecuzione del thread, il metodo riconosce il protocollo usato dal client (binario o serializzazione Java),
+ * inizializza gli stream di input e output del socket del client e avvia il ResponseWriter,
+ * quindi entra in un ciclo while che ascolta continuamente per pacchetti dal client. Ogni pacchetto ricevuto
+ * viene passato al CommandsDispatcher, che lo esegue su uno dei suoi worker o risponde "server busy" se è sovraccarico.
  * Inoltre, stampa un messaggio informativo nel terminale riguardante la richiesta del client.
  *
  * Se si verifica un'eccezione durante l'esecuzione, stampa un messaggio di errore nel terminale.
@@ -144,30 +217,58 @@ public class ConnectionHandler extends Thread {
     @Override
     public void run() 
     {
+        boolean disconnected = false;
         try {
             final String clientIP = clientSocket.getInetAddress().getHostAddress();
-            inputStream = new ObjectInputStream(clientSocket.getInputStream());
-            outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
+            InputStream socketInput = new BufferedInputStream(clientSocket.getInputStream());
+            OutputStream socketOutput = new BufferedOutputStream(clientSocket.getOutputStream());
+
+            //i primi byte indicano se il client usa il protocollo binario o la serializzazione Java
+            socketInput.mark(2);
+            binary = BinaryProtocol.isBinaryHandshake(socketInput.read(), socketInput.read());
+            socketInput.reset();
+
+            if(binary) {
+                binaryInput = new DataInputStream(socketInput);
+                binaryOutput = new DataOutputStream(socketOutput);
+
+                protocol.acceptHandshake(binaryInput, binaryOutput, manager.getCompressionThreshold());
+                binaryOutput.flush();
+            }
+            else {
+                inputStream = new ObjectInputStream(socketInput);
+                outputStream = new ObjectOutputStream(socketOutput);
+                outputStream.flush();
+            }
+
+            writer = new ResponseWriter();
+            writer.start();
 
             while(run) 
             {
-                final Packet packet = (Packet) inputStream.readObject(); 
+                final Packet packet = binary ? BinaryProtocol.readRequest(binaryInput) : (Packet) inputStream.readObject(); 
 
-                new CommandsExecutor(packet, clientIP).start();
+                if(manager.isConnectionLoggingEnabled())
+                    terminal.printInfoln("Host: " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET + "  request: " + Terminal.Color.CYAN_BOLD_BRIGHT + packet.command + Terminal.Color.RESET);
 
-                new Thread(() -> {
-                    Terminal.getInstance().printInfoln("Host: " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET + "  request: " + Terminal.Color.CYAN_BOLD_BRIGHT + ServerServicesName.valueOf(packet.command) + Terminal.Color.RESET);
-                }).start();
+                manager.dispatchPacket(packet, this);
 
                 //Terminal.getInstance().printInfoln("ping response with " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET);
             }
+            disconnected = true;
         } 
         catch (Exception e) {
-            new Thread(() -> {
-                terminal.printErrorln(e.getMessage());
-            }).start();
+            if(manager.isConnectionLoggingEnabled())
+                new Thread(() -> {
+                    terminal.printErrorln(e.getMessage());
+                }).start();
         }
         finally {
+            //se la connessione si è interrotta le risposte in coda non possono più essere inviate
+            if(writer != null && disconnected)
+                stopWriter();
+            else if(writer != null)
+                writer.interrupt();
             if(clientSocket != null)
                 try {clientSocket.close();} catch (IOException e) {e.printStackTrace();}
             manager.removeClientSocket(this);
@@ -176,6 +277,25 @@ public class ConnectionHandler extends Thread {
 
 
 
+/**
+ * Chiede al ResponseWriter di inviare le risposte ancora in coda, ad esempio la conferma di una disconnessione,
+ * e lo aspetta al massimo per {@code WRITER_DRAIN_TIMEOUT_MS} prima che il socket venga chiuso.
+ * Se il writer non termina in tempo viene interrotto.
+ */
+    private void stopWriter()
+    {
+        try {
+            if(writer.isAlive() && outbound.offer(END_OF_RESPONSES, WRITER_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                writer.join(WRITER_DRAIN_TIMEOUT_MS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+    }
+
+
+
 /**
  * Restituisce il socket del client associato a questo gestore di connessione.
  *
@@ -0,0 +1,145 @@
+package server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import enumclass.NetworkEngine;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark di scalabilità delle connessioni: per ogni motore di rete avvia un server locale su una porta libera,
+ * apre un numero crescente di client e misura il tempo di connessione, i thread usati dal server
+ * e la latenza delle richieste PING (che non accedono al database).
+ */
+class ConnectionScalingBenchmark
+{
+    private static final int CLIENT_THREADS = 8;
+    private static final int PINGS_PER_CONNECTION = 5;
+
+    private Terminal terminal;
+    private int[] connectionSteps;
+    private int ioThreads;
+
+
+
+/**
+ * Costruisce il benchmark.
+ *
+ * @param connectionSteps Il numero di client da connettere a ogni passo.
+ * @param ioThreads Il numero di thread di I/O da usare con il motore NIO.
+ */
+    public ConnectionScalingBenchmark(int[] connectionSteps, int ioThreads) {
+        this.terminal = Terminal.getInstance();
+        this.connectionSteps = connectionSteps;
+        this.ioThreads = ioThreads;
+    }
+
+
+
+/**
+ * Esegue il benchmark su tutti i motori di rete e stampa una riga di risultati per ogni passo.
+ */
+    public void run()
+    {
+        terminal.printInfoln(String.format("%-8s %8s %12s %10s %12s %12s %14s", "engine", "clients", "connect", "threads", "p50", "p99", "ping/s"));
+
+        for (NetworkEngine engine : NetworkEngine.values()) {
+            for (int connections : connectionSteps) {
+                try {
+                    measure(engine, connections);
+                }
+                catch (Exception e) {
+                    terminal.printErrorln(engine + " with " + connections + " clients failed: " + e);
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Misura un singolo passo del benchmark.
+ *
+ * @param engine Il motore di rete da misurare.
+ * @param connections Il numero di client da connettere.
+ * @throws Exception Se non è possibile avviare il server di prova.
+ */
+    private void measure(NetworkEngine engine, int connections) throws Exception
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int baseThreads = threads.getThreadCount();
+
+        ComunicationManager manager = new ComunicationManager(0, engine, ioThreads, new CommandsDispatcher());
+        manager.setConnectionLogging(false);
+        int port = manager.openEngine();
+
+        Thread acceptor = new Thread(manager::serveEngine, "Benchmark-" + engine);
+        acceptor.start();
+
+        ArrayList<BenchmarkClient> clients = new ArrayList<>();
+        double start = System.nanoTime();
+
+        for (int i = 0; i < connections; i++) {
+            try {
+                clients.add(new BenchmarkClient(port));
+            }
+            catch (IOException e) {
+                //tipicamente il limite di file aperti del sistema
+                terminal.printErrorln(engine + ": only " + clients.size() + " clients connected (" + e.getMessage() + ")");
+                break;
+            }
+        }
+
+        double connectTime = System.nanoTime() - start;
+        int serverThreads = threads.getThreadCount() - baseThreads;
+
+        final long[] latencies = new long[clients.size() * PINGS_PER_CONNECTION];
+        final AtomicInteger count = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENT_THREADS);
+
+        start = System.nanoTime();
+        for (int t = 0; t < CLIENT_THREADS; t++) {
+            final int first = t;
+            pool.execute(() -> {
+                for (int p = 0; p < PINGS_PER_CONNECTION; p++) {
+                    for (int i = first; i < clients.size(); i += CLIENT_THREADS) {
+                        try {
+                            latencies[count.getAndIncrement()] = clients.get(i).ping();
+                        }
+                        catch (Exception e) {
+                            count.decrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        double pingTime = System.nanoTime() - start;
+
+        for (BenchmarkClient client : clients)
+            client.close();
+
+        manager.stopEngine();
+        acceptor.join();
+        manager.closeEngine();
+
+        int samples = count.get();
+        terminal.printInfoln(String.format("%-8s %8d %12s %10d %12s %12s %14.0f",
+            engine,
+            clients.size(),
+            TimeFormatter.formatTime(connectTime),
+            serverThreads,
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, samples, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, samples, 99)),
+            BenchmarkStats.throughput(samples, pingTime)));
+    }
+}
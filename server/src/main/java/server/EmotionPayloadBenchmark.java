@@ -0,0 +1,157 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import database.PageCursor;
+import database.PredefinedSQLCode.Colonne;
+import objects.BinaryProtocol;
+import objects.Emotion;
+
+
+/**
+ * Confronto della dimensione delle risposte usate per mostrare le emozioni di una canzone.
+ *
+ * Su una canzone sintetica con {@code EMOTIONS} emozioni commentate confronta la risposta di GET_SONG_EMOTION,
+ * che contiene tutte le emozioni, con quella di GET_SONG_EMOTION_SUMMARY e con la prima pagina di GET_COMMENTS_SONG,
+ * le due richieste che ora servono al client per il grafico e per i commenti. Per ogni risposta stampa i byte
+ * con la serializzazione Java e con il protocollo binario, senza e con compressione, e il tempo di codifica e decodifica.
+ */
+class EmotionPayloadBenchmark
+{
+    private static final int EMOTIONS = 10000;
+    private static final int PAGE = 20;
+    private static final int ITERATIONS = 20;
+    private static final String[] TYPES = {"AMAZEMENT", "SOLEMNITY", "TENDERNESS", "NOSTALGIA", "CALMNESS", "POWER", "JOY", "TENSION", "SADNESS"};
+    private static final String[] WORDS = {"la", "canzone", "mi", "ricorda", "estate", "bellissima", "ritmo", "voce", "testo",
+        "sempre", "quando", "ascolto", "questo", "pezzo", "emozione", "forte", "album", "migliore", "chitarra", "finale"};
+
+    private Terminal terminal;
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public EmotionPayloadBenchmark() {
+        this.terminal = Terminal.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        ArrayList<Emotion> emotions = createEmotions();
+
+        HashMap<String, long[]> summary = new HashMap<>();
+        for (Emotion emotion : emotions) {
+            long[] values = summary.computeIfAbsent(emotion.getEmotionType(), (type) -> new long[2]);
+            values[0]++;
+            values[1] += emotion.getEmotionValue();
+        }
+
+        List<Emotion> page = emotions.subList(0, PAGE);
+        Object[] comments = {new ArrayList<>(page), PageCursor.next(page, PAGE, Emotion::getID, Emotion::getID)};
+
+        terminal.printInfoln(EMOTIONS + " emotions on one song, comments of " + averageComment(emotions) + " characters on average");
+        terminal.printInfoln(String.format("%-26s %12s %12s %12s %12s", "response", "java B", "binary B", "deflate B", "binary ms"));
+        measure("GET_SONG_EMOTION", emotions);
+        measure("GET_SONG_EMOTION_SUMMARY", ComunicationManager.createEmotionSummary(summary));
+        measure("GET_COMMENTS_SONG (" + PAGE + ")", comments);
+    }
+
+
+
+/**
+ * Misura la dimensione di una risposta e il tempo medio per codificarla e decodificarla con il protocollo binario.
+ *
+ * @param name Il nome della risposta.
+ * @param result Il risultato da inviare.
+ */
+    private void measure(String name, Object result)
+    {
+        try {
+            ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutput = new ObjectOutputStream(javaBytes)) {
+                objectOutput.writeObject(result);
+            }
+
+            int binarySize = encode(result, 0).length;
+            int deflateSize = encode(result, ComunicationManager.DEFAULT_COMPRESSION_THRESHOLD).length;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                byte[] frame = encode(result, 0);
+                BinaryProtocol.readResponse(new DataInputStream(new ByteArrayInputStream(frame)));
+            }
+            double elapsed = (System.nanoTime() - start) / (double) ITERATIONS;
+
+            terminal.printInfoln(String.format("%-26s %12d %12d %12d %12.3f", name, javaBytes.size(), binarySize, deflateSize, elapsed / 1e6));
+        }
+        catch (IOException e) {
+            terminal.printErrorln(name + " failed: " + e);
+        }
+    }
+
+
+
+    private static byte[] encode(Object result, int compressionThreshold) throws IOException
+    {
+        BinaryProtocol protocol = new BinaryProtocol();
+        protocol.setCompressionThreshold(compressionThreshold);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        protocol.writeResponse(new DataOutputStream(bytes), "1", result);
+        return bytes.toByteArray();
+    }
+
+
+
+/**
+ * Crea le emozioni della canzone sintetica, ordinate per ID decrescente come le restituisce SONG_COMMENTS.
+ * I valori sono generati con un seme fisso, così ogni esecuzione misura gli stessi dati.
+ */
+    private static ArrayList<Emotion> createEmotions()
+    {
+        Random random = new Random(42);
+        ArrayList<Emotion> emotions = new ArrayList<>(EMOTIONS);
+
+        for (int i = EMOTIONS - 1; i >= 0; i--) {
+            StringBuilder comment = new StringBuilder();
+            int words = 5 + random.nextInt(25);
+            for (int w = 0; w < words; w++)
+                comment.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+
+            HashMap<Colonne, Object> table = new HashMap<>();
+            table.put(Colonne.ID, String.format("E%08d", i));
+            table.put(Colonne.TYPE, TYPES[random.nextInt(TYPES.length)]);
+            table.put(Colonne.VALUE, 1 + random.nextInt(5));
+            table.put(Colonne.COMMENTO, comment.toString());
+            table.put(Colonne.SONG_ID_REF, "4uLU6hMCjMI75M1A2tKUQC");
+            table.put(Colonne.ACCOUNT_ID_REF, "user" + i);
+            emotions.add(new Emotion(table));
+        }
+        return emotions;
+    }
+
+
+
+    private static int averageComment(ArrayList<Emotion> emotions)
+    {
+        long length = 0;
+        for (Emotion emotion : emotions)
+            length += emotion.getComment().length();
+        return (int) (length / emotions.size());
+    }
+}
@@ -0,0 +1,209 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import database.DatabaseManager;
+import database.FacetBitmap;
+import database.FacetIndex;
+import database.SearchEngine;
+import enumclass.FacetType;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark della ricerca a faccette sul catalogo completo del database connesso.
+ *
+ * Ricostruisce l'indice a faccette misurando il tempo e la memoria, confrontata con quella di un insieme non compresso
+ * di un bit per canzone per ogni valore. Poi misura la velocità delle intersezioni tra i valori di due facet,
+ * creando l'intersezione e contandone solo gli elementi, e infine la latenza delle ricerche complete, con la pagina
+ * e i conteggi di tutti i facet, filtrando da uno a quattro facet con valori scelti a caso.
+ */
+class FacetBenchmark
+{
+    private static final int PAIRS = 20000;
+    private static final int QUERIES = 2000;
+    private static final int WARMUP = 200;
+    private static final int LIMIT = 20;
+    private static final int MAX_YEARS = 5;
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public FacetBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            SearchEngine.buildFacets();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            FacetIndex index = SearchEngine.buildFacets();
+            long buildTime = System.nanoTime() - start;
+            System.gc();
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+            if(index.size() == 0) {
+                terminal.printErrorln("the database does not contain songs");
+                return;
+            }
+
+            //il primo indice viene liberato mentre si costruisce il secondo, quindi la differenza dell'heap è quella del nuovo indice
+            EnumMap<FacetType, Integer> values = index.getValueCounts();
+            long plainBytes = 0;
+            for (FacetType type : FacetType.values())
+                plainBytes += values.get(type) * (long) (index.size() / 8 + 1);
+            terminal.printInfoln(String.format("facets built in %s: %d songs, %d years, %d genres, %d popularity ranges, %d emotions",
+                TimeFormatter.formatTime(buildTime), index.size(), values.get(FacetType.YEAR), values.get(FacetType.GENRE),
+                values.get(FacetType.POPULARITY), values.get(FacetType.EMOTION)));
+            terminal.printInfoln(String.format("heap %.1f MB, compressed sets %.1f MB, uncompressed sets %.1f MB",
+                Math.max(0, heapAfter - heapBefore) / (1024.0 * 1024.0), index.estimateBytes() / (1024.0 * 1024.0), plainBytes / (1024.0 * 1024.0)));
+
+            Random random = new Random(42);
+            terminal.printInfoln(String.format("%-20s %8s %14s %14s %14s %14s", "intersection", "pairs", "and/s", "count/s", "songs/s", "avg result"));
+            measurePairs(index, FacetType.YEAR, FacetType.POPULARITY, random);
+            measurePairs(index, FacetType.GENRE, FacetType.YEAR, random);
+            measurePairs(index, FacetType.GENRE, FacetType.EMOTION, random);
+            measurePairs(index, FacetType.POPULARITY, FacetType.EMOTION, random);
+
+            terminal.printInfoln(String.format("%-8s %8s %10s %10s %10s %12s", "facets", "queries", "p50", "p99", "max", "avg found"));
+            for (int facets = 1; facets <= FacetType.values().length; facets++)
+                measureQueries(index, facets, random);
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("facet benchmark failed: " + e.getMessage());
+        }
+    }
+
+
+
+/**
+ * Interseca {@code PAIRS} coppie di valori scelti a caso tra due facet, prima creando l'intersezione e poi
+ * contandone solo gli elementi, e stampa le operazioni al secondo e le canzoni dei due insiemi lette al secondo.
+ */
+    private void measurePairs(FacetIndex index, FacetType first, FacetType second, Random random)
+    {
+        FacetBitmap[] a = index.getValues(first).values().toArray(new FacetBitmap[0]);
+        FacetBitmap[] b = index.getValues(second).values().toArray(new FacetBitmap[0]);
+        if(a.length == 0 || b.length == 0) {
+            terminal.printErrorln("the catalog has no " + (a.length == 0 ? first : second) + " values");
+            return;
+        }
+
+        int[][] pairs = new int[PAIRS][];
+        long scanned = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            pairs[i] = new int[] {random.nextInt(a.length), random.nextInt(b.length)};
+            scanned += a[pairs[i][0]].cardinality() + b[pairs[i][1]].cardinality();
+        }
+
+        //un giro senza misure, così il codice è già compilato
+        long found = 0;
+        for (int[] pair : pairs)
+            found += FacetBitmap.and(a[pair[0]], b[pair[1]]).cardinality();
+
+        long start = System.nanoTime();
+        for (int[] pair : pairs)
+            found += FacetBitmap.and(a[pair[0]], b[pair[1]]).cardinality();
+        long andTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int[] pair : pairs)
+            found += FacetBitmap.andCardinality(a[pair[0]], b[pair[1]]);
+        long countTime = System.nanoTime() - start;
+
+        terminal.printInfoln(String.format("%-20s %8d %14.0f %14.0f %14.0f %14.1f",
+            first.toString().toLowerCase() + " x " + second.toString().toLowerCase(),
+            PAIRS,
+            BenchmarkStats.throughput(PAIRS, andTime),
+            BenchmarkStats.throughput(PAIRS, countTime),
+            BenchmarkStats.throughput(scanned, andTime),
+            found / (3.0 * PAIRS)));
+    }
+
+
+
+/**
+ * Esegue {@code QUERIES} ricerche complete che filtrano il numero di facet indicato, con un valore per facet
+ * oppure, per gli anni, un intervallo fino a {@code MAX_YEARS} anni consecutivi, e stampa la latenza.
+ */
+    private void measureQueries(FacetIndex index, int facets, Random random)
+    {
+        ArrayList<EnumMap<FacetType, String[]>> filters = new ArrayList<>();
+        for (int i = 0; i < WARMUP + QUERIES; i++)
+            filters.add(createFilter(index, facets, random));
+
+        long[] latencies = new long[QUERIES];
+        long found = 0;
+        for (int i = 0; i < WARMUP + QUERIES; i++) {
+            long begin = System.nanoTime();
+            FacetIndex.Result result = index.search(filters.get(i), LIMIT, 0);
+            if(i >= WARMUP) {
+                latencies[i - WARMUP] = System.nanoTime() - begin;
+                found += result.getTotal();
+            }
+        }
+
+        long max = 0;
+        for (long latency : latencies)
+            max = Math.max(max, latency);
+
+        terminal.printInfoln(String.format("%-8d %8d %10s %10s %10s %12.1f",
+            facets,
+            QUERIES,
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, QUERIES, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, QUERIES, 99)),
+            TimeFormatter.formatTime(max),
+            (double) found / QUERIES));
+    }
+
+
+
+    private static EnumMap<FacetType, String[]> createFilter(FacetIndex index, int facets, Random random)
+    {
+        ArrayList<FacetType> types = new ArrayList<>();
+        for (FacetType type : FacetType.values()) {
+            if(!index.getValues(type).isEmpty())
+                types.add(type);
+        }
+
+        EnumMap<FacetType, String[]> filter = new EnumMap<>(FacetType.class);
+        while (filter.size() < facets && !types.isEmpty()) {
+            FacetType type = types.remove(random.nextInt(types.size()));
+            TreeMap<String, FacetBitmap> values = index.getValues(type);
+            String[] names = values.keySet().toArray(new String[0]);
+
+            int from = random.nextInt(names.length);
+            int count = type == FacetType.YEAR ? 1 + random.nextInt(MAX_YEARS) : 1;
+            ArrayList<String> chosen = new ArrayList<>();
+            for (int i = from; i < Math.min(names.length, from + count); i++)
+                chosen.add(names[i]);
+            filter.put(type, chosen.toArray(new String[0]));
+        }
+        return filter;
+    }
+}
@@ -0,0 +1,262 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import database.DatabaseManager;
+import database.QueriesManager;
+import database.SearchEngine;
+import database.SearchIndex;
+import objects.Album;
+import objects.Artist;
+import objects.Song;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark della pertinenza e della latenza della ricerca approssimata sul catalogo del database connesso.
+ *
+ * Per le canzoni, gli album e gli artisti più popolari crea chiavi con errori simili a quelli degli utenti:
+ * una lettera sostituita, due lettere scambiate, una lettera mancante, la prima parola mancante e il nome incompleto.
+ * Per ogni tipo di errore stampa la percentuale di chiavi per cui l'elemento cercato è il primo risultato e tra
+ * i primi dieci, con la ricerca esatta e con quella approssimata, il rango reciproco medio della ricerca approssimata,
+ * la latenza mediana e il 99° percentile e le ricerche interrotte dal tempo massimo.
+ */
+class FuzzySearchBenchmark
+{
+    private static final int SAMPLE = 200;
+    private static final int LIMIT = 10;
+    private static final int WARMUP = 2;
+    private static final String[] ERRORS = {"none", "replace", "swap", "delete", "no first", "partial"};
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+    private interface Search {
+        SearchIndex.Hits execute(String key, long limit);
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public FuzzySearchBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        boolean enabled = SearchEngine.isEnabled();
+        try {
+            SearchEngine.setEnabled(true);
+            if(!SearchEngine.isReady()) {
+                terminal.printInfoln("building the search index...");
+                SearchEngine.build();
+            }
+
+            ArrayList<String[]> songs = new ArrayList<>();
+            for (Song song : QueriesManager.getTopPopularSongs(SAMPLE, 0))
+                songs.add(new String[] {song.getId(), song.getTitle()});
+            ArrayList<String[]> albums = new ArrayList<>();
+            for (Album album : QueriesManager.getRecentPublischedAlbum(SAMPLE, 0, 0))
+                albums.add(new String[] {album.getID(), album.getName()});
+            ArrayList<String[]> artists = new ArrayList<>();
+            @SuppressWarnings("unchecked")
+            ArrayList<Artist> found = (ArrayList<Artist>) QueriesManager.searchArtists("", SAMPLE, 0, null, 0)[1];
+            for (Artist artist : found)
+                artists.add(new String[] {artist.getID(), artist.getName()});
+
+            terminal.printInfoln("fuzzy search budget: " + SearchEngine.getFuzzyBudget() + " ms");
+            terminal.printInfoln(String.format("%-8s %-9s %5s %8s %8s %8s %8s %6s %10s %10s %6s",
+                "search", "error", "keys", "exact@1", "exact@10", "fuzzy@1", "fuzzy@10", "mrr", "p50", "p99", "cut"));
+            measureAll("songs", songs,
+                (key, limit) -> SearchEngine.searchSongs(key, limit, 0, null),
+                (key, limit) -> SearchEngine.fuzzySearchSongs(key, limit, 0));
+            measureAll("albums", albums,
+                (key, limit) -> SearchEngine.searchAlbums(key, limit, 0, null),
+                (key, limit) -> SearchEngine.fuzzySearchAlbums(key, limit, 0));
+            measureAll("artists", artists,
+                (key, limit) -> SearchEngine.searchArtists(key, limit, 0, null),
+                (key, limit) -> SearchEngine.fuzzySearchArtists(key, limit, 0));
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("fuzzy search benchmark failed: " + e.getMessage());
+        }
+        finally {
+            SearchEngine.setEnabled(enabled);
+        }
+    }
+
+
+
+/**
+ * Misura la ricerca esatta e quella approssimata con ogni tipo di errore sugli elementi indicati.
+ *
+ * @param name Il nome della ricerca.
+ * @param elements Gli ID e i nomi degli elementi da cercare.
+ * @param exact Esegue la ricerca esatta nell'indice.
+ * @param fuzzy Esegue la ricerca approssimata nell'indice.
+ */
+    private void measureAll(String name, ArrayList<String[]> elements, Search exact, Search fuzzy)
+    {
+        if(elements.isEmpty()) {
+            terminal.printErrorln("the database does not contain " + name);
+            return;
+        }
+
+        //lo stesso seme per ogni esecuzione, così le chiavi sono sempre le stesse
+        Random random = new Random(42);
+        for (int error = 0; error < ERRORS.length; error++) {
+            ArrayList<String[]> keys = new ArrayList<>();
+            for (String[] element : elements) {
+                String key = corrupt(element[1], error, random);
+                if(key != null)
+                    keys.add(new String[] {element[0], key});
+            }
+            if(!keys.isEmpty())
+                measure(name, ERRORS[error], keys, exact, fuzzy);
+        }
+    }
+
+
+
+/**
+ * Esegue le ricerche e stampa la pertinenza e la latenza della ricerca approssimata.
+ * Un elemento è trovato alla posizione n se è l'n-esimo risultato della pagina di {@code LIMIT} elementi.
+ */
+    private void measure(String name, String error, ArrayList<String[]> keys, Search exact, Search fuzzy)
+    {
+        for (int i = 0; i < WARMUP; i++) {
+            for (String[] key : keys)
+                fuzzy.execute(key[1], LIMIT);
+        }
+
+        int exactFirst = 0, exactTop = 0, fuzzyFirst = 0, fuzzyTop = 0, incomplete = 0;
+        double reciprocalRank = 0;
+        long[] latencies = new long[keys.size()];
+
+        for (int i = 0; i < keys.size(); i++) {
+            String id = keys.get(i)[0];
+            String key = keys.get(i)[1];
+
+            int position = position(exact.execute(key, LIMIT), id);
+            if(position == 1)
+                exactFirst++;
+            if(position > 0)
+                exactTop++;
+
+            long begin = System.nanoTime();
+            SearchIndex.Hits hits = fuzzy.execute(key, LIMIT);
+            latencies[i] = System.nanoTime() - begin;
+
+            if(!hits.isComplete())
+                incomplete++;
+            position = position(hits, id);
+            if(position == 1)
+                fuzzyFirst++;
+            if(position > 0) {
+                fuzzyTop++;
+                reciprocalRank += 1.0 / position;
+            }
+        }
+
+        int count = keys.size();
+        terminal.printInfoln(String.format("%-8s %-9s %5d %7.1f%% %7.1f%% %7.1f%% %7.1f%% %6.3f %10s %10s %6d",
+            name,
+            error,
+            count,
+            100.0 * exactFirst / count,
+            100.0 * exactTop / count,
+            100.0 * fuzzyFirst / count,
+            100.0 * fuzzyTop / count,
+            reciprocalRank / count,
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, count, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, count, 99)),
+            incomplete));
+    }
+
+
+
+    private static int position(SearchIndex.Hits hits, String id)
+    {
+        if(hits == null)
+            return 0;
+        int index = Arrays.asList(hits.getIds()).indexOf(id);
+        return index + 1;
+    }
+
+
+
+/**
+ * Crea una chiave di ricerca con un errore a partire dal nome di un elemento.
+ * Gli errori sulle lettere vengono fatti nella parola più lunga, che ne ha almeno quattro.
+ *
+ * @param name Il nome dell'elemento.
+ * @param error L'indice del tipo di errore in {@code ERRORS}.
+ * @param random Il generatore usato per scegliere la posizione dell'errore.
+ * @return La chiave, oppure null se il nome non permette quel tipo di errore.
+ */
+    private static String corrupt(String name, int error, Random random)
+    {
+        String[] words = name.trim().split("\\s+");
+        int longest = 0;
+        for (int i = 1; i < words.length; i++) {
+            if(words[i].length() > words[longest].length())
+                longest = i;
+        }
+        String word = words[longest];
+
+        switch (ERRORS[error]) {
+            case "none":
+                return name;
+            case "no first":
+                return words.length > 1 ? String.join(" ", Arrays.copyOfRange(words, 1, words.length)) : null;
+            case "partial":
+                return name.length() > 4 ? name.substring(0, Math.max(3, name.length() * 2 / 3)) : null;
+            default:
+                break;
+        }
+        if(word.length() < 4)
+            return null;
+
+        char[] letters = word.toCharArray();
+        int at = 1 + random.nextInt(letters.length - 2);
+        switch (ERRORS[error]) {
+            case "replace":
+                letters[at] = letters[at] == 'x' ? 'q' : 'x';
+                words[longest] = new String(letters);
+                break;
+            case "swap":
+                if(letters[at] == letters[at + 1])
+                    return null;
+                char swap = letters[at];
+                letters[at] = letters[at + 1];
+                letters[at + 1] = swap;
+                words[longest] = new String(letters);
+                break;
+            case "delete":
+                words[longest] = word.substring(0, at) + word.substring(at + 1);
+                break;
+            default:
+                return null;
+        }
+        return String.join(" ", words);
+    }
+}
@@ -0,0 +1,142 @@
+package server;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import utility.BenchmarkStats;
+import utility.IdGenerator;
+
+
+/**
+ * Benchmark del generatore di ID con un numero crescente di thread.
+ *
+ * Ogni thread genera {@code IDS_PER_THREAD} ID numerici e poi altrettanti ID testuali, come quelli salvati nel database.
+ * Al termine controlla che tutti gli ID numerici siano distinti e che ogni thread li abbia ricevuti in ordine crescente.
+ */
+class IdGeneratorBenchmark
+{
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final int IDS_PER_THREAD = 200000;
+
+    private Terminal terminal;
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public IdGeneratorBenchmark() {
+        this.terminal = Terminal.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        terminal.printInfoln(String.format("%-8s %14s %14s %12s %10s", "threads", "long id/s", "string id/s", "duplicates", "unordered"));
+
+        for (int threads : THREADS) {
+            try {
+                measure(threads);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+
+/**
+ * Genera gli ID con il numero di thread indicato e stampa i risultati.
+ *
+ * @param threads Il numero di thread che generano ID contemporaneamente.
+ * @throws InterruptedException Se il thread del terminale viene interrotto durante l'attesa.
+ */
+    private void measure(int threads) throws InterruptedException
+    {
+        long[][] ids = new long[threads][IDS_PER_THREAD];
+        int[] unordered = new int[threads];
+
+        double longTime = runThreads(threads, (t) -> {
+            long[] own = ids[t];
+            for (int i = 0; i < IDS_PER_THREAD; i++)
+                own[i] = IdGenerator.nextLong();
+        });
+        double stringTime = runThreads(threads, (t) -> {
+            for (int i = 0; i < IDS_PER_THREAD; i++)
+                IdGenerator.nextId();
+        });
+
+        long[] all = new long[threads * IDS_PER_THREAD];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                if(ids[t][i] <= ids[t][i - 1])
+                    unordered[t]++;
+            }
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+
+        Arrays.sort(all);
+        int duplicates = 0;
+        for (int i = 1; i < all.length; i++) {
+            if(all[i] == all[i - 1])
+                duplicates++;
+        }
+
+        terminal.printInfoln(String.format("%-8d %14.0f %14.0f %12d %10d",
+            threads,
+            BenchmarkStats.throughput(all.length, longTime),
+            BenchmarkStats.throughput(all.length, stringTime),
+            duplicates,
+            Arrays.stream(unordered).sum()));
+    }
+
+
+
+    private interface Task {
+        void run(int thread);
+    }
+
+
+
+/**
+ * Avvia insieme i thread e attende che terminino.
+ *
+ * @param threads Il numero di thread.
+ * @param task Il lavoro di ogni thread, che riceve il proprio indice.
+ * @return Il tempo impiegato in nanosecondi.
+ * @throws InterruptedException Se il thread del terminale viene interrotto durante l'attesa.
+ */
+    private static double runThreads(int threads, Task task) throws InterruptedException
+    {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(index);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    done.countDown();
+                }
+            }, "Benchmark-id-" + t);
+            thread.start();
+        }
+
+        double begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+}
@@ -0,0 +1,370 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+/**
+ * Pipeline a stadi dell'importazione di un file del dataset.
+ *
+ * Lo stadio di lettura estrae i record dal file, quello di trasformazione li converte nelle righe delle tabelle,
+ * ad esempio decodificando le immagini e i generi, e quello di scrittura invia le righe al database. Gli stadi sono
+ * collegati da code limitate di lotti di elementi: quando uno stadio è più lento del precedente la sua coda si riempie
+ * e lo stadio precedente aspetta che si liberi spazio, così la memoria usata resta limitata qualunque sia la velocità
+ * del database. La lettura usa un solo thread perché il file va letto in ordine; i thread degli altri due stadi
+ * sono configurabili.
+ *
+ * Un record che non può essere trasformato o una riga che non può essere scritta vengono contati tra gli errori
+ * dello stadio e la pipeline continua con i successivi; un errore di lettura invece termina la lettura del file.
+ *
+ * @param <R> Il tipo dei record letti dal file.
+ * @param <T> Il tipo delle righe scritte nel database.
+ */
+class ImportPipeline<R, T>
+{
+    public static final int DEFAULT_TRANSFORM_THREADS = 2;
+    public static final int DEFAULT_WRITE_THREADS = 8;
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+    //elementi passati insieme da uno stadio al successivo, così le code non vengono usate per ogni elemento
+    private static final int BATCH_SIZE = 256;
+    //ogni quanto viene aggiornato l'avanzamento mentre si aspetta la fine della pipeline
+    private static final long PROGRESS_INTERVAL = 200;
+
+    private final Source<R> source;
+    private final Transformer<R, T> transformer;
+    private final Sink<T> sink;
+    private final Stage read;
+    private final Stage transform;
+    private final Stage write;
+    private final BlockingQueue<List<R>> records;
+    private final BlockingQueue<List<T>> rows;
+    //i lotti vuoti che indicano a un thread che lo stadio precedente ha finito
+    private final List<R> endOfRecords = new ArrayList<>(0);
+    private final List<T> endOfRows = new ArrayList<>(0);
+    private final CountDownLatch done;
+    private long start;
+
+
+
+/**
+ * Lo stadio di lettura: restituisce il record successivo del file.
+ */
+    public interface Source<R> {
+        R read() throws Exception;
+    }
+
+/**
+ * Lo stadio di trasformazione: converte un record nelle righe da scrivere, passandole a {@code rows}.
+ */
+    public interface Transformer<R, T> {
+        void transform(R record, Consumer<T> rows) throws Exception;
+    }
+
+/**
+ * Lo stadio di scrittura: scrive una riga nel database. Viene chiamato da più thread insieme.
+ */
+    public interface Sink<T> {
+        void write(T row) throws Exception;
+    }
+
+
+
+/**
+ * I contatori di uno stadio: gli elementi elaborati, gli errori e l'occupazione della coda da cui lo stadio legge.
+ */
+    public class Stage
+    {
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<?> input;
+        private final int capacity;
+        private final AtomicLong items = new AtomicLong(0);
+        private final AtomicLong errors = new AtomicLong(0);
+        private final AtomicInteger running;
+        private volatile long end = 0;
+        private volatile Exception firstError = null;
+
+        private Stage(String name, int threads, BlockingQueue<?> input, int capacity) {
+            this.name = name;
+            this.threads = threads;
+            this.input = input;
+            this.capacity = capacity;
+            this.running = new AtomicInteger(threads);
+        }
+
+        private void error(Exception e) {
+            if(errors.getAndIncrement() == 0)
+                firstError = e;
+        }
+
+    /**
+     * Registra la fine di un thread dello stadio.
+     *
+     * @return true se era l'ultimo thread dello stadio ancora attivo.
+     */
+        private boolean finish() {
+            if(running.decrementAndGet() > 0)
+                return false;
+            end = System.nanoTime();
+            return true;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+    /**
+     * @return Il primo errore dello stadio, oppure null.
+     */
+        public Exception getFirstError() {
+            return firstError;
+        }
+
+    /**
+     * @return Gli elementi elaborati al secondo dall'avvio della pipeline alla fine dello stadio, o fino a ora.
+     */
+        public double getThroughput() {
+            long elapsed = (end == 0 ? System.nanoTime() : end) - start;
+            return elapsed <= 0 ? 0 : items.get() * 1e9 / elapsed;
+        }
+
+    /**
+     * @return I lotti in attesa nella coda da cui lo stadio legge, 0 per lo stadio di lettura.
+     */
+        public int getQueued() {
+            return input == null ? 0 : input.size();
+        }
+
+        public int getQueueCapacity() {
+            return capacity;
+        }
+    }
+
+
+
+/**
+ * Crea la pipeline di un file.
+ *
+ * @param source Lo stadio di lettura, che restituisce null alla fine del file.
+ * @param transformer Lo stadio di trasformazione.
+ * @param transformThreads I thread dello stadio di trasformazione.
+ * @param sink Lo stadio di scrittura.
+ * @param writeThreads I thread dello stadio di scrittura.
+ * @param queueSize I lotti di elementi che ogni coda può contenere.
+ */
+    public ImportPipeline(Source<R> source, Transformer<R, T> transformer, int transformThreads, Sink<T> sink, int writeThreads, int queueSize)
+    {
+        if(transformThreads < 1 || writeThreads < 1 || queueSize < 1)
+            throw new IllegalArgumentException("the pipeline needs at least one thread per stage and one batch per queue");
+
+        this.source = source;
+        this.transformer = transformer;
+        this.sink = sink;
+        this.records = new ArrayBlockingQueue<>(queueSize);
+        this.rows = new ArrayBlockingQueue<>(queueSize);
+        this.read = new Stage("read", 1, null, 0);
+        this.transform = new Stage("transform", transformThreads, records, queueSize);
+        this.write = new Stage("write", writeThreads, rows, queueSize);
+        this.done = new CountDownLatch(writeThreads);
+    }
+
+
+
+/**
+ * Avvia i thread degli stadi e aspetta che tutte le righe siano state scritte.
+ *
+ * @param progress Chiamato periodicamente mentre la pipeline è in esecuzione e una volta alla fine.
+ * @throws InterruptedException Se il thread viene interrotto mentre aspetta la pipeline.
+ */
+    public void run(Runnable progress) throws InterruptedException
+    {
+        start = System.nanoTime();
+        new Thread(this::readRecords, "Import-read").start();
+        for (int i = 0; i < transform.threads; i++)
+            new Thread(this::transformRecords, "Import-transform-" + i).start();
+        for (int i = 0; i < write.threads; i++)
+            new Thread(this::writeRows, "Import-write-" + i).start();
+
+        while (!done.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS))
+            progress.run();
+        progress.run();
+    }
+
+
+
+    private void readRecords()
+    {
+        try {
+            List<R> batch = new ArrayList<>(BATCH_SIZE);
+            while (true) {
+                R record;
+                try {
+                    record = source.read();
+                }
+                catch (Exception e) {
+                    read.error(e);
+                    break;
+                }
+                if(record == null)
+                    break;
+
+                batch.add(record);
+                read.items.incrementAndGet();
+                if(batch.size() == BATCH_SIZE) {
+                    records.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if(!batch.isEmpty())
+                records.put(batch);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            read.finish();
+            endStage(records, endOfRecords, transform.threads);
+        }
+    }
+
+
+
+    private void transformRecords()
+    {
+        try {
+            List<T> batch = new ArrayList<>(BATCH_SIZE);
+            List<R> next;
+            while ((next = records.take()) != endOfRecords) {
+                for (R record : next) {
+                    //le righe di un record vengono aggiunte al lotto solo se la trasformazione dell'intero record riesce
+                    ArrayList<T> recordRows = new ArrayList<>();
+                    try {
+                        transformer.transform(record, recordRows::add);
+                    }
+                    catch (Exception e) {
+                        transform.error(e);
+                        continue;
+                    }
+                    transform.items.incrementAndGet();
+                    batch.addAll(recordRows);
+
+                    if(batch.size() >= BATCH_SIZE) {
+                        rows.put(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            }
+            if(!batch.isEmpty())
+                rows.put(batch);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            if(transform.finish())
+                endStage(rows, endOfRows, write.threads);
+        }
+    }
+
+
+
+    private void writeRows()
+    {
+        try {
+            List<T> next;
+            while ((next = rows.take()) != endOfRows) {
+                for (T row : next) {
+                    try {
+                        sink.write(row);
+                        write.items.incrementAndGet();
+                    }
+                    catch (Exception e) {
+                        write.error(e);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            write.finish();
+            done.countDown();
+        }
+    }
+
+
+
+/**
+ * Indica a ogni thread dello stadio successivo che non arriveranno altri lotti.
+ */
+    private static <E> void endStage(BlockingQueue<List<E>> queue, List<E> end, int threads)
+    {
+        try {
+            for (int i = 0; i < threads; i++)
+                queue.put(end);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+
+/**
+ * @return Gli stadi della pipeline, nell'ordine in cui gli elementi li attraversano.
+ */
+    public List<Stage> getStages() {
+        return List.of(read, transform, write);
+    }
+
+
+
+/**
+ * Restituisce lo stato degli stadi da mostrare accanto alla barra di avanzamento: gli elementi al secondo di ogni stadio
+ * e i lotti in attesa nella sua coda.
+ *
+ * @return Ad esempio "read 41.2k/s | transform 40.8k/s 3/16 | write 120.5k/s 16/16".
+ */
+    public String getStatus()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : getStages()) {
+            if(sb.length() > 0)
+                sb.append(" | ");
+            sb.append(stage.name).append(' ').append(formatRate(stage.getThroughput())).append("/s");
+            if(stage.input != null)
+                sb.append(' ').append(stage.getQueued()).append('/').append(stage.capacity);
+        }
+        return sb.toString();
+    }
+
+
+
+    private static String formatRate(double rate) {
+        if(rate >= 1e6)
+            return String.format("%.1fM", rate / 1e6);
+        if(rate >= 1e3)
+            return String.format("%.1fk", rate / 1e3);
+        return String.format("%.0f", rate);
+    }
+}
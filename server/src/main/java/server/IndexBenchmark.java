@@ -0,0 +1,217 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+import database.DatabaseManager;
+import database.IndexManager;
+import database.QueriesManager;
+import database.QueryTemplate;
+import database.RowMappers;
+import database.SearchEngine;
+import database.PredefinedSQLCode.Indici;
+import enumclass.ServerServicesName;
+import objects.Account;
+import objects.Album;
+import objects.Artist;
+import objects.Playlist;
+import objects.Song;
+import utility.BenchmarkStats;
+
+
+/**
+ * Confronto della latenza dei servizi del server senza e con gli indici del catalogo.
+ *
+ * Esegue la richiesta al database di ogni servizio di lettura con gli indici di {@link database.PredefinedSQLCode#tablesIndexes}
+ * eliminati e poi di nuovo dopo averli creati, e per ogni ServerServicesName stampa la latenza mediana e il 99° percentile
+ * nei due casi. I servizi che modificano i dati e quelli senza dati di esempio nel database non vengono misurati.
+ * Al termine gli indici del catalogo restano creati.
+ */
+class IndexBenchmark
+{
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 100;
+    private static final int LIMIT = 20;
+    private static final String[] SEARCH_KEYS = {"a", "b", "c", "d", "e", "l", "m", "s", "t", "lo"};
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+    private interface Request {
+        void execute(int i) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public IndexBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        EnumMap<ServerServicesName, Request> requests;
+        try {
+            requests = createRequests();
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("unable to read the test data: " + e.getMessage());
+            return;
+        }
+        if(requests == null) {
+            terminal.printErrorln("the database does not contain songs, albums and artists");
+            return;
+        }
+
+        EnumMap<ServerServicesName, long[]> before;
+        EnumMap<ServerServicesName, long[]> after;
+        //le ricerche devono usare le query SQL, non l'indice in memoria
+        boolean memorySearch = SearchEngine.isEnabled();
+        SearchEngine.setEnabled(false);
+        try {
+            terminal.printInfoln("dropping the catalog indexes...");
+            IndexManager.dropIndexes();
+            database.submitQuery("ANALYZE;");
+            before = measure(requests);
+
+            terminal.printInfoln("creating the catalog indexes...");
+            for (Indici indice : IndexManager.createIndexes())
+                terminal.printErrorln("index " + indice + " skipped: the extension " + indice.getExtension() + " is not available");
+            database.submitQuery("ANALYZE;");
+            after = measure(requests);
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("index benchmark failed: " + e.getMessage());
+            restoreIndexes();
+            return;
+        }
+        finally {
+            SearchEngine.setEnabled(memorySearch);
+        }
+
+        terminal.printInfoln(String.format("%-30s %12s %12s %12s %12s %8s", "service", "p50 before", "p50 after", "p99 before", "p99 after", "speedup"));
+        for (ServerServicesName service : ServerServicesName.values()) {
+            long[] b = before.get(service);
+            long[] a = after.get(service);
+            if(b == null || a == null) {
+                terminal.printInfoln(String.format("%-30s %12s %12s %12s %12s %8s", service, "-", "-", "-", "-", "-"));
+                continue;
+            }
+
+            long p50Before = BenchmarkStats.percentile(b, ITERATIONS, 50);
+            long p50After = BenchmarkStats.percentile(a, ITERATIONS, 50);
+            terminal.printInfoln(String.format("%-30s %9.3f ms %9.3f ms %9.3f ms %9.3f ms %7.1fx",
+                service,
+                p50Before / 1e6,
+                p50After / 1e6,
+                BenchmarkStats.percentile(b, ITERATIONS, 99) / 1e6,
+                BenchmarkStats.percentile(a, ITERATIONS, 99) / 1e6,
+                (double) p50Before / Math.max(1, p50After)));
+        }
+    }
+
+
+
+/**
+ * Esegue ogni richiesta {@code WARMUP} volte senza misurarla e poi {@code ITERATIONS} volte misurandone la latenza.
+ * La cache dei conteggi viene svuotata prima di ogni richiesta, così le ricerche eseguono sempre il conteggio.
+ *
+ * @param requests Le richieste da misurare.
+ * @return Le latenze in nanosecondi di ogni servizio.
+ * @throws SQLException Se una richiesta non riesce.
+ */
+    private EnumMap<ServerServicesName, long[]> measure(EnumMap<ServerServicesName, Request> requests) throws SQLException
+    {
+        EnumMap<ServerServicesName, long[]> latencies = new EnumMap<>(ServerServicesName.class);
+
+        for (ServerServicesName service : requests.keySet()) {
+            Request request = requests.get(service);
+            long[] values = new long[ITERATIONS];
+
+            for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                database.getCountCache().clear();
+                long begin = System.nanoTime();
+                request.execute(i);
+                if(i >= WARMUP)
+                    values[i - WARMUP] = System.nanoTime() - begin;
+            }
+            latencies.put(service, values);
+        }
+        return latencies;
+    }
+
+
+
+/**
+ * Legge dal database gli elementi usati come parametri delle richieste e associa a ogni servizio di lettura
+ * la richiesta al database che esegue.
+ *
+ * @return Le richieste di ogni servizio, oppure null se il database non contiene canzoni, album e artisti.
+ * @throws SQLException Se la lettura dei dati di esempio non riesce.
+ */
+    private EnumMap<ServerServicesName, Request> createRequests() throws SQLException
+    {
+        ArrayList<Song> songs = QueriesManager.getTopPopularSongs(LIMIT, 0);
+        ArrayList<Album> albums = QueriesManager.getRecentPublischedAlbum(LIMIT, 0, 0);
+        @SuppressWarnings("unchecked")
+        ArrayList<Artist> artists = (ArrayList<Artist>) QueriesManager.searchArtists("", LIMIT, 0, null, 0)[1];
+        if(songs.isEmpty() || albums.isEmpty() || artists.isEmpty())
+            return null;
+
+        String[] songIds = new String[songs.size()];
+        for (int i = 0; i < songIds.length; i++)
+            songIds[i] = songs.get(i).getId();
+
+        EnumMap<ServerServicesName, Request> requests = new EnumMap<>(ServerServicesName.class);
+        requests.put(ServerServicesName.SEARCH_SONGS, (i) -> QueriesManager.searchSong_and_countElement(SEARCH_KEYS[i % SEARCH_KEYS.length], LIMIT, 0, null, 0));
+        requests.put(ServerServicesName.SEARCH_ALBUMS, (i) -> QueriesManager.searchAlbum(SEARCH_KEYS[i % SEARCH_KEYS.length], LIMIT, 0, null, 0));
+        requests.put(ServerServicesName.SEARCH_ARTISTS, (i) -> QueriesManager.searchArtists(SEARCH_KEYS[i % SEARCH_KEYS.length], LIMIT, 0, null, 0));
+        requests.put(ServerServicesName.GET_MOST_POPULAR_SONGS, (i) -> QueriesManager.getTopPopularSongs_and_cursor(LIMIT, 0, null));
+        requests.put(ServerServicesName.GET_RECENT_PUPLISCED_ALBUMS, (i) -> QueriesManager.getRecentPublischedAlbum_and_cursor(LIMIT, 0, null, 0));
+        requests.put(ServerServicesName.GET_SONG_BY_IDS, (i) -> QueriesManager.searchSongByIDs(songIds));
+        requests.put(ServerServicesName.GET_ARTIST_SONGS, (i) -> QueriesManager.getArtistSong(artists.get(i % artists.size()).getID()));
+        requests.put(ServerServicesName.GET_ALBUM_SONGS, (i) -> QueriesManager.getAlbumSongs(albums.get(i % albums.size()).getID()));
+        requests.put(ServerServicesName.GET_ALBUM_BY_ID, (i) -> QueriesManager.getAlbumByID(albums.get(i % albums.size()).getID()));
+        requests.put(ServerServicesName.GET_ARTIST_BY_ID, (i) -> QueriesManager.getArtistByID(artists.get(i % artists.size()).getID()));
+        requests.put(ServerServicesName.GET_SONG_EMOTION, (i) -> QueriesManager.getSongEmotion(songIds[i % songIds.length]));
+
+        //i servizi degli account si misurano solo se esiste almeno una playlist
+        Playlist playlist = database.querySingle(QueryTemplate.SAMPLE_PLAYLIST, RowMappers.PLAYLIST);
+        Account account = playlist != null ? QueriesManager.getAccountByNickname(playlist.getUserID()) : null;
+        if(account != null) {
+            requests.put(ServerServicesName.GET_ACCOUNT, (i) -> QueriesManager.getAccountByEmail(account.getEmail()));
+            requests.put(ServerServicesName.GET_ACCOUNT_PLAYLIST, (i) -> QueriesManager.getAccountsPlaylists(account.getNickname()));
+            requests.put(ServerServicesName.GET_PLAYLIST_SONGS, (i) -> QueriesManager.getPlaylistSong(playlist.getId()));
+            requests.put(ServerServicesName.GET_ACCOUNT_EMOTIONS, (i) -> QueriesManager.getAccountEmotions(account.getNickname()));
+        }
+        return requests;
+    }
+
+
+
+    private void restoreIndexes()
+    {
+        try {
+            IndexManager.createIndexes();
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("unable to create the catalog indexes: " + e.getMessage());
+        }
+    }
+}
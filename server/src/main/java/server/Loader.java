@@ -7,14 +7,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
 import javax.swing.JFileChooser;
 
@@ -28,9 +27,12 @@ import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 
 import Parser.JsonParser;
+import database.CopyWriter;
+import database.IndexManager;
 import database.PredefinedSQLCode;
 import database.QueryBuilder;
 import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Indici;
 import database.PredefinedSQLCode.Tabelle;
 //import me.tongfei.progressbar.ProgressBar;
 //import me.tongfei.progressbar.ProgressBarStyle;
@@ -39,6 +41,7 @@ import server.Terminal;
 import utility.FileElementCounter;
 import utility.GenericThread;
 import utility.OS_utility;
+import utility.TimeFormatter;
 import utility.WaithingAnimationThread;
 
 
@@ -51,6 +54,7 @@ public class Loader {
     private Terminal terminal;
     private App main;
     private FileType filesType = FileType.CSV;
+    private LoadMode loadMode = LoadMode.COPY;
     private int progressBarsLastValue = -1;
     private long lastprogressBarUpdate = 0;
     
@@ -66,6 +70,28 @@ public class Loader {
     }
 
 
+/**
+ * Enumerazione che rappresenta i modi di scrivere nel database i dati dei file CSV.
+ *
+ * INSERT esegue una INSERT costruita come testo per ogni riga, COPY invia le righe di ogni tabella
+ * con il comando COPY attraverso un {@link CopyWriter}.
+ */
+    private enum LoadMode {
+        INSERT, COPY
+    }
+
+    private static final String ARTISTS_CSV = "Artists.csv";
+    private static final String ALBUMS_CSV = "Album.csv";
+    private static final String TRACKS_CSV = "Tracks.csv";
+    private static final String[] TO_REMOVE = {"[","]","\'"," "};
+
+    //le tabelle caricate dai file CSV, nell'ordine in cui le loro righe possono essere inserite
+    private static final Tabelle[] CSV_TABLES = {
+        Tabelle.ARTIST, Tabelle.GENERI_MUSICALI, Tabelle.GENERI_ARTISTA, Tabelle.ALBUM,
+        Tabelle.ALBUM_IMAGES, Tabelle.ARTIST_IMAGES, Tabelle.SONG, Tabelle.SONG_AUTORS
+    };
+
+
 /**
  * Restituisce l'istanza singola dell'oggetto Loader utilizzando il pattern Singleton.
  *
@@ -125,7 +151,8 @@ public class Loader {
  *
  * Questo metodo itera attraverso le tabelle definite nell'enumerazione Tabelle e, se l'opzione
  * 'clear' è attiva, elimina prima ogni tabella utilizzando le relative query di eliminazione.
- * Successivamente, crea ciascuna tabella nel database utilizzando le relative query di creazione.
+ * Successivamente, crea ciascuna tabella nel database utilizzando le relative query di creazione
+ * e infine gli indici del catalogo che non esistono ancora.
  *
  * @param clear Indica se eliminare le tabelle esistenti prima di crearle nuovamente.
  */
@@ -139,6 +166,10 @@ public class Loader {
                 terminal.printInfoln("Creating table: " + table);
                 this.main.database.submitQuery(PredefinedSQLCode.createTable_Queries.get(table)); 
             }
+
+            terminal.printInfoln("Creating indexes");
+            for (Indici indice : IndexManager.createIndexes())
+                terminal.printErrorln("Index " + indice + " skipped: the extension " + indice.getExtension() + " is not available");
         } catch (SQLException e) {
             terminal.printErrorln(e.toString());
             e.printStackTrace();
@@ -154,14 +185,16 @@ public class Loader {
  * Questo metodo crea e stampa una barra di avanzamento nel terminale, mostrando visivamente
  * lo stato di avanzamento di un processo. La barra di avanzamento include informazioni come
  * la percentuale completata, il numero di elementi completati rispetto al totale e il tempo
- * stimato rimanente per il completamento del processo.
+ * stimato rimanente per il completamento del processo. Dopo la barra viene mostrato lo stato indicato,
+ * ad esempio la velocità e le code degli stadi della pipeline di importazione.
  *
  * @param index L'indice corrente del processo.
  * @param total Il numero totale di elementi nel processo.
+ * @param status Lo stato da mostrare dopo la barra.
  */
-    private void makeProgressBar(long index, long total) 
+    private void makeProgressBar(long index, long total, String status) 
     {
-        final double step = terminal.getTerminalColumns() - 32;
+        final double step = Math.max(10, terminal.getTerminalColumns() - 34 - status.length());
         StringBuilder sb = new StringBuilder();
 
         long startTime = System.currentTimeMillis();
@@ -193,6 +226,7 @@ public class Loader {
             sb.append(" ");
             
         sb.append("] " + Terminal.Color.YELLOW_BOLD_BRIGHT + (int) (progressPercentage * 100) + "%  " +  Terminal.Color.BLUE_BOLD_BRIGHT + Long.toString(index) + Terminal.Color.RESET +"/" + Terminal.Color.BLUE_BOLD_BRIGHT + Long.toString(total) + Terminal.Color.RESET);
+        sb.append("  " + status);
 
         for (int i = 0; i < sb.length() + 20; i++) {
             System.out.print("\b");
@@ -216,7 +250,7 @@ public class Loader {
  *
  * Questo metodo guida l'utente attraverso la selezione della cartella contenente i dati del dataset.
  * Successivamente, inizializza il database creando le tabelle e carica i dati dal dataset, utilizzando
- * il tipo di file specificato (JSON o CSV).
+ * il tipo di file specificato (JSON o CSV) e, per i file CSV, il modo di scrittura scelto (COPY o INSERT).
  *
  * @return Il numero di dati caricati o un codice di errore negativo in caso di fallimento.
  * @throws IOException Se si verifica un errore durante l'interazione con l'input/output.
@@ -236,6 +270,10 @@ public class Loader {
         Terminal.getInstance().printArrow();
         database__data_folder = new File(OS_utility.formatPath(in.readLine()));
         //in.close();
+
+        Terminal.getInstance().println("Loading mode, copy or insert (default copy):");
+        Terminal.getInstance().printArrow();
+        loadMode = in.readLine().trim().equalsIgnoreCase("insert") ? LoadMode.INSERT : LoadMode.COPY;
         
         //database__data_folder = new File("C:\Users\Utente\Desktop\DataSet");
         
@@ -292,9 +330,9 @@ public class Loader {
  */
     private int load_CSV(HashMap<String, File> foldersPath, File database__data_folder) 
     {
-        final String ARTIST = "Artists.csv";
-        final String ALBUM = "Album.csv";
-        final String TRACKS = "Tracks.csv";
+        final String ARTIST = ARTISTS_CSV;
+        final String ALBUM = ALBUMS_CSV;
+        final String TRACKS = TRACKS_CSV;
         final String[] files = {ARTIST, ALBUM, TRACKS};
 
         HashMap<String, Integer> file_line_count = new HashMap<>();
@@ -352,267 +390,258 @@ public class Loader {
             }
         }
 
-        final String[] toRemove = {"[","]","\'"," "};
-        
+        return import_CSV(foldersPath, file_line_count, files);
+    }
 
 
-        for (String current_File : files) 
-        { 
-            terminal.println("");
-            switch (current_File) 
-            {         
-                case ARTIST -> {
-                    terminal.printInfoln("loading Artist...");
-                }
 
-                case ALBUM -> {
-                    terminal.printInfoln("loading Album...");
-                }
+/**
+ * Carica i file CSV con una {@link ImportPipeline} per file: la lettura dei record, la loro trasformazione nelle righe
+ * delle tabelle e la scrittura nel database sono stadi separati, con i thread indicati nelle impostazioni.
+ *
+ * Nel modo COPY ogni tabella viene scritta da un {@link CopyWriter}. Gli indici secondari vengono eliminati prima
+ * di inserire le righe nelle tabelle e creati di nuovo alla fine, perché costruirli una volta sui dati caricati costa
+ * meno che aggiornarli riga per riga. Nel modo INSERT ogni riga viene inserita con una query.
+ * Alla fine di ogni file stampa gli elementi al secondo di ogni stadio e, nel modo COPY, le righe di ogni tabella.
+ *
+ * @param foldersPath I file CSV del dataset.
+ * @param file_line_count Il numero di righe di ogni file, senza l'intestazione.
+ * @param files I nomi dei file, nell'ordine in cui vanno caricati.
+ * @return 0 al termine del caricamento, anche se non è riuscito.
+ */
+    private int import_CSV(HashMap<String, File> foldersPath, HashMap<String, Integer> file_line_count, String[] files)
+    {
+        final int transformThreads = main.getLoaderTransformThreads();
+        final int writeThreads = main.getLoaderWriteThreads();
+        final int queueSize = main.getLoaderQueueSize();
+        EnumMap<Tabelle, CopyWriter> writers = new EnumMap<>(Tabelle.class);
+        long loadStart = System.nanoTime();
+        long rows = 0;
 
-                case TRACKS -> {
-                    terminal.printInfoln("loading tracks...");
-                }
+        terminal.printInfoln(String.format("loading mode %s: %d transform threads, %d write threads, queues of %d batches",
+            loadMode, transformThreads, writeThreads, queueSize));
+
+        try {
+            if(loadMode == LoadMode.COPY) {
+                for (Tabelle table : CSV_TABLES)
+                    writers.put(table, new CopyWriter(table));
             }
 
-            try {Thread.sleep(1000);} catch (InterruptedException e) {e.printStackTrace();} 
+            ImportPipeline.Sink<Row> sink = loadMode == LoadMode.COPY
+                ? (row) -> writers.get(row.table).add(row.values)
+                : (row) -> insertRow(row);
 
-            long index = 0;
-            try (CSVReader csvReader = new CSVReader(new FileReader(foldersPath.get(current_File)))) 
+            //i file vengono caricati uno alla volta: nel modo INSERT le righe di un file riferiscono quelle dei precedenti
+            for (String current_File : files) 
             {
-                String[] record;
-                long currentIndex = 0;
+                terminal.println("");
+                terminal.printInfoln("loading " + current_File + "...");
 
-                final int numThreads = 8; // Numero di thread da utilizzare
-                ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
-                
-
-                while ((record = csvReader.readNext()) != null) 
+                try (CSVReader csvReader = new CSVReader(new FileReader(foldersPath.get(current_File)))) 
                 {
-                    final String[] finalRecord = record;
-                    final String file = current_File;
-
                     //salto l'header
-                    if(index == 0) {
-                        index++;
-                        continue;
+                    csvReader.readNext();
+
+                    ImportPipeline.Transformer<String[], Row> transformer = switch (current_File) {
+                        case ARTISTS_CSV -> Loader::toArtistRows;
+                        case ALBUMS_CSV  -> Loader::toAlbumRows;
+                        default          -> Loader::toTrackRows;
+                    };
+                    ImportPipeline<String[], Row> pipeline = new ImportPipeline<>(csvReader::readNext, transformer, transformThreads, sink, writeThreads, queueSize);
+                    ImportPipeline<String[], Row>.Stage read = pipeline.getStages().get(0);
+                    long total = file_line_count.get(current_File);
+
+                    pipeline.run(() -> makeProgressBar(read.getItems(), total, pipeline.getStatus()));
+                    terminal.println("");
+
+                    terminal.printInfoln(String.format("%-10s %8s %12s %12s %8s", "stage", "threads", "items", "items/s", "errors"));
+                    for (ImportPipeline<String[], Row>.Stage stage : pipeline.getStages()) {
+                        terminal.printInfoln(String.format("%-10s %8d %12d %12.0f %8d",
+                            stage.getName(), stage.getThreads(), stage.getItems(), stage.getThroughput(), stage.getErrors()));
+                        if(stage.getFirstError() != null)
+                            terminal.printErrorln(stage.getName() + ": " + stage.getFirstError());
                     }
+                    rows += pipeline.getStages().get(2).getItems();
+                }
+            }
 
-                    makeProgressBar(currentIndex++, file_line_count.get(current_File));
-  
-                    // Aspetta finché ci sono meno di n thread attivi
-                    while (((ThreadPoolExecutor) executorService).getActiveCount() >= numThreads) {
-                        try {Thread.sleep(1);} catch (InterruptedException e) {e.printStackTrace();} 
-                    }
-                    final long newIndex = currentIndex;
-                    executorService.submit(() -> {
-                        
-                        try {
-                            switch (file) {
-                                case ARTIST -> {
+            if(loadMode == LoadMode.COPY) {
+                terminal.println("");
+                terminal.printInfoln("Dropping indexes");
+                IndexManager.dropIndexes();
 
-                                    if(true) {
-                                        break;
-                                    }
-                                    
-                                
-                                    //ottengo i dati di ogni record
-                                    String spotifyUrl = finalRecord[0];
-                                    int popularity = 50;
-                                    long followers = 10000;
-                                    try {popularity = Integer.parseInt(finalRecord[1]);}catch(Exception e) {}
-                                    try {followers = Long.parseLong(finalRecord[2]);}catch(Exception e) {}
-                                    String genresString = finalRecord[3];
-                                    String imagesString = finalRecord[4];
-                                    String artistId = finalRecord[5];
-                                    String type = finalRecord[6];
-                                    String name = finalRecord[7];
-                                
-                                
-                                    //creo l'hahMap per le informazioni dell'artista
-                                    HashMap<String, Object> artistInfo = new HashMap<>();
+                //le tabelle riferite vengono chiuse per prime, così le loro chiavi esistono quando si inseriscono le altre
+                for (Tabelle table : CSV_TABLES) {
+                    terminal.printInfoln("Inserting " + table);
+                    writers.get(table).close();
+                }
 
-                                    //estraggo i dai delle immagini
-                                    JSONArray image_node_list = new JSONArray(imagesString);
-                                    
-                                    //aggiungo le immagini
-                                    for (int i = 0; i < image_node_list.length(); i++) 
-                                    {
-                                        HashMap<String, Object> image = new HashMap<String, Object>();
-                                        JSONObject imageNode = image_node_list.getJSONObject(i);
-                                        
-                                        String imageUrl = (String)imageNode.get("url");
-                                        String height   = (String)Integer.toString((int)imageNode.get("height"));
-                                        String width    = (String)Integer.toString((int)imageNode.get("width"));
-                                    
-                                        image.put(PredefinedSQLCode.Colonne.ID.getName(), artistId);
-                                        image.put(PredefinedSQLCode.Colonne.IMAGE_SIZE.getName(), height + "x" + width);
-                                        image.put(PredefinedSQLCode.Colonne.URL.getName(), imageUrl);
-                
-                                        PredefinedSQLCode.crea_INSER_query_ed_esegui(image, PredefinedSQLCode.Tabelle.ARTIST_IMAGES, this.main);
-                                    }
-
-                                    artistInfo.put(PredefinedSQLCode.Colonne.NAME.getName(), name);
-                                    artistInfo.put(PredefinedSQLCode.Colonne.POPULARITY.getName(), popularity);
-                                    artistInfo.put(PredefinedSQLCode.Colonne.FOLLOWERS.getName(), followers);
-                                    artistInfo.put(PredefinedSQLCode.Colonne.URL.getName(), spotifyUrl);
-                                    artistInfo.put(PredefinedSQLCode.Colonne.ID.getName(), artistId);
-                                
-                                    //ARTIST data
-                                    PredefinedSQLCode.crea_INSER_query_ed_esegui(artistInfo, PredefinedSQLCode.Tabelle.ARTIST, this.main);
-                                
-                                    
-                                    //creo la lista dei generi
-                                    for (String str : toRemove) {
-                                        genresString = genresString.replace(str, "");
-                                    }
+                terminal.printInfoln("Creating indexes");
+                for (Indici indice : IndexManager.createIndexes())
+                    terminal.printErrorln("Index " + indice + " skipped: the extension " + indice.getExtension() + " is not available");
+                printCopyReport(writers);
+            }
+        }
+        catch (IOException | CsvException | SQLException | InterruptedException e) {
+            terminal.printErrorln(Terminal.Color.RED_BOLD_BRIGHT + e.toString() + Terminal.Color.RESET);
+            try {
+                for (CopyWriter writer : writers.values())
+                    writer.abort();
+                IndexManager.createIndexes();
+            }
+            catch (SQLException ex) {
+                terminal.printErrorln(ex.toString());
+            }
+            return 0;
+        }
 
-                                    String[] genresList = genresString.split(",");
-                                    
-                                    //GENRES e Artist Genres
-                                    for(String o : genresList) {
+        long loadTime = System.nanoTime() - loadStart;
+        terminal.printSuccesln(String.format("dataset loaded in %s, %d rows, %.0f rows/s",
+            TimeFormatter.formatTime(loadTime), rows, rows * 1e9 / loadTime));
+        return 0;
+    }
 
-                                        HashMap<String, Object> table1 = new HashMap<String, Object>();
-                                        table1.put(PredefinedSQLCode.Colonne.GENERE_MUSICALE.getName(), o);
 
-                                        HashMap<String, Object> table2 = new HashMap<String, Object>();
-                                        table2.put(PredefinedSQLCode.Colonne.GENERE_MUSICALE.getName(), o);
-                                        table2.put(PredefinedSQLCode.Colonne.ID.getName(), artistId);
 
-                                        PredefinedSQLCode.crea_INSER_query_ed_esegui(table1, PredefinedSQLCode.Tabelle.GENERI_MUSICALI, this.main);
-                                        PredefinedSQLCode.crea_INSER_query_ed_esegui(table2, PredefinedSQLCode.Tabelle.GENERI_ARTISTA, this.main);   
-                                    } 
-                                }
+/**
+ * Stampa per ogni tabella caricata con COPY le righe ricevute, scartate e perse per un blocco rifiutato,
+ * le righe copiate al secondo e quelle inserite nella tabella.
+ */
+    private void printCopyReport(EnumMap<Tabelle, CopyWriter> writers)
+    {
+        terminal.printInfoln(String.format("%-18s %10s %10s %10s %14s %10s %12s", "table", "rows", "rejected", "failed", "copy rows/s", "inserted", "insert time"));
+        for (CopyWriter writer : writers.values()) {
+            terminal.printInfoln(String.format("%-18s %10d %10d %10d %14.0f %10d %12s",
+                writer.getTable(),
+                writer.getRows(),
+                writer.getRejected(),
+                writer.getFailed(),
+                writer.getCopyTime() == 0 ? 0 : writer.getCopied() * 1e9 / writer.getCopyTime(),
+                writer.getInserted(),
+                TimeFormatter.formatTime(writer.getMergeTime())));
+        }
+    }
 
-                                case ALBUM -> {
-
-                                    if(true) {
-                                        break;
-                                    }
-
-                                    String id = finalRecord[0];
-                                    int element = 0;
-                                    try {element = Integer.parseInt(finalRecord[1]);} catch (Exception e) {}
-                                    String spotifyUrl = finalRecord[2];
-                                    String imagesString = finalRecord[3];
-                                    String name = finalRecord[4];
-                                    String releaseDate = finalRecord[5];
-                                    String type = finalRecord[6];
-                                    String artistsIdString = finalRecord[7];
-
-                                    HashMap<String, Object> albumInfo = new HashMap<>();
-
-                                    //crelo la lista degli autori dell'album
-                                    for (String str : toRemove) {
-                                        artistsIdString = artistsIdString.replace(str, "");
-                                    }
-
-                                    //seleziono solo quello in posizione 0
-                                    String genresList = artistsIdString.split(",")[0];
-
-                                    albumInfo.put(PredefinedSQLCode.Colonne.ID.getName(), id);
-                                    albumInfo.put(PredefinedSQLCode.Colonne.TYPE.getName(), "album");
-                                    albumInfo.put(PredefinedSQLCode.Colonne.NAME.getName(), name);
-                                    albumInfo.put(PredefinedSQLCode.Colonne.RELEASE_DATE.getName(), releaseDate);
-                                    albumInfo.put(PredefinedSQLCode.Colonne.URL.getName(), spotifyUrl);
-                                    albumInfo.put(PredefinedSQLCode.Colonne.ARTIST_ID_REF.getName(), genresList);
-                                    albumInfo.put(PredefinedSQLCode.Colonne.ELEMENT.getName(), element);
-                                    
-                                    PredefinedSQLCode.crea_INSER_query_ed_esegui(albumInfo, PredefinedSQLCode.Tabelle.ALBUM, this.main); 
 
 
-                                    //estraggo i dai delle immagini
-                                    JSONArray image_node_list = new JSONArray(imagesString);
-                                    
-                                    //aggiungo le immagini
-                                    for (int i = 0; i < image_node_list.length(); i++) 
-                                    {
-                                        HashMap<String, Object> image = new HashMap<String, Object>();
-                                        JSONObject imageNode = image_node_list.getJSONObject(i);
-                                        
-                                        String imageUrl = (String)imageNode.get("url");
-                                        String height   = (String)Integer.toString((int)imageNode.get("height"));
-                                        String width    = (String)Integer.toString((int)imageNode.get("width"));
-                                    
-                                        image.put(PredefinedSQLCode.Colonne.ID.getName(), id);
-                                        image.put(PredefinedSQLCode.Colonne.IMAGE_SIZE.getName(), height + "x" + width);
-                                        image.put(PredefinedSQLCode.Colonne.URL.getName(), imageUrl);
-                
-                                        PredefinedSQLCode.crea_INSER_query_ed_esegui(image, PredefinedSQLCode.Tabelle.ALBUM_IMAGES, this.main);
-                                    }
-                                }
+/**
+ * Una riga da scrivere in una tabella, con i valori nell'ordine delle colonne della tabella
+ * in {@link PredefinedSQLCode#tablesAttributes}.
+ */
+    private static class Row
+    {
+        final Tabelle table;
+        final Object[] values;
 
-                                case TRACKS -> {
+        Row(Tabelle table, Object... values) {
+            this.table = table;
+            this.values = values;
+        }
+    }
 
-                                    HashMap<String, Object> trackInfo = new HashMap<>();
 
-                                    String albumId = finalRecord[0];
-                                    String artistsIdString  = finalRecord[1];
-                                    long durationMs = Long.parseLong(finalRecord[2]);
-                                    String spotifyUrl = finalRecord[3];
-                                    String id = finalRecord[4];
-                                    String name = finalRecord[5];
-                                    int popularity = Integer.parseInt(finalRecord[6]);
 
-                                    //terminal.println("id: " + id + " name: " + name + " duration: " + durationMs + " popularity: " + popularity + " spotifyUrl: " + spotifyUrl + " albumId: " + albumId + " artistsIdString: " + artistsIdString.replace("[", "").replace("]", "").replace("\'", "").replace(" ", ""));
+/**
+ * Inserisce una riga con una query, come il caricamento riga per riga: le righe duplicate
+ * o con una chiave esterna mancante vengono ignorate.
+ */
+    private void insertRow(Row row)
+    {
+        Colonne[] columns = PredefinedSQLCode.tablesAttributes.get(row.table);
+        HashMap<String, Object> data = new HashMap<>();
 
-                                    trackInfo.put(PredefinedSQLCode.Colonne.TITLE.getName(), name);
-                                    trackInfo.put(PredefinedSQLCode.Colonne.DURATION.getName(), durationMs);
-                                    trackInfo.put(PredefinedSQLCode.Colonne.POPULARITY.getName(), popularity);
-                                    trackInfo.put(PredefinedSQLCode.Colonne.URL.getName(), spotifyUrl);
-                                    trackInfo.put(PredefinedSQLCode.Colonne.ID.getName(), id);
-                                    trackInfo.put(PredefinedSQLCode.Colonne.ALBUM_ID_REF.getName(), albumId);
-                                
-                                    
+        for (int i = 0; i < columns.length; i++)
+            data.put(columns[i].getName(), row.values[i]);
 
-                                    String[] artistsIdList = artistsIdString.replace("[", "").replace("]", "").replace("\'", "").replace(" ", "").split(",");
+        PredefinedSQLCode.crea_INSER_query_ed_esegui(data, row.table, this.main);
+    }
 
-                                    //TRACK data
-                                    PredefinedSQLCode.crea_INSER_query_ed_esegui(trackInfo, PredefinedSQLCode.Tabelle.SONG, this.main);
-                                
-                                    //AUTORI canzone
-                                    for(Object id_autor : artistsIdList) 
-                                    {
-                                        HashMap<String, Object> table1 = new HashMap<String, Object>();
-                                        table1.put(Colonne.ARTIST_ID_REF.getName(), id_autor);
-                                        table1.put(Colonne.SONG_ID_REF.getName(), id);
-                                        PredefinedSQLCode.crea_INSER_query_ed_esegui(table1, PredefinedSQLCode.Tabelle.SONG_AUTORS, this.main);
-                                    }
-                                }
-                            }//switch
-                        }//try
-                        catch (Exception e) {
-                            System.out.println(e);
-                            e.printStackTrace();
-
-                            System.out.println("LIne:" + (newIndex - 1));
-                            System.exit(0);
-
-                            int i = 0;
-                            System.out.println("record:");
-                            for (String string : finalRecord) {
-                                System.out.println("record[" + (i++) + "]: " + string + ",");
-                            }
-                            System.exit(0);
-                        }
-                    });
-                }//while
 
-                // Attendere il completamento di tutti i thread
-                executorService.shutdown();
-                
-                while (!executorService.isTerminated()) {
-                    // Attendere finché tutti i thread non sono terminati
-                }
 
-                makeProgressBar(currentIndex++, file_line_count.get(current_File));
+    private static void toArtistRows(String[] record, Consumer<Row> rows)
+    {
+        String spotifyUrl = record[0];
+        int popularity = 50;
+        long followers = 10000;
+        try {popularity = Integer.parseInt(record[1]);}catch(Exception e) {}
+        try {followers = Long.parseLong(record[2]);}catch(Exception e) {}
+        String genresString = record[3];
+        String artistId = record[5];
+        String name = record[7];
+        ArrayList<Row> images = toImageRows(record[4], artistId, Tabelle.ARTIST_IMAGES);
+
+        rows.accept(new Row(Tabelle.ARTIST, artistId, name, spotifyUrl, followers, popularity));
+        images.forEach(rows);
+
+        for (String str : TO_REMOVE) {
+            genresString = genresString.replace(str, "");
+        }
 
+        for (String genre : genresString.split(",")) {
+            if(genre.isEmpty())
+                continue;
+            rows.accept(new Row(Tabelle.GENERI_MUSICALI, genre));
+            rows.accept(new Row(Tabelle.GENERI_ARTISTA, genre, artistId));
+        }
+    }
 
-            } catch (IOException | CsvException e) {
-                e.printStackTrace();
-            }
+
+
+    private static void toAlbumRows(String[] record, Consumer<Row> rows)
+    {
+        String id = record[0];
+        int element = 0;
+        try {element = Integer.parseInt(record[1]);} catch (Exception e) {}
+        String spotifyUrl = record[2];
+        String name = record[4];
+        String releaseDate = record[5];
+        String artistsIdString = record[7];
+        ArrayList<Row> images = toImageRows(record[3], id, Tabelle.ALBUM_IMAGES);
+
+        for (String str : TO_REMOVE) {
+            artistsIdString = artistsIdString.replace(str, "");
         }
 
-        return 0;
+        //l'album appartiene solo al primo artista
+        rows.accept(new Row(Tabelle.ALBUM, id, name, releaseDate, spotifyUrl, "album", element, artistsIdString.split(",")[0]));
+        images.forEach(rows);
+    }
+
+
+
+    private static void toTrackRows(String[] record, Consumer<Row> rows)
+    {
+        String albumId = record[0];
+        String artistsIdString = record[1];
+        long durationMs = Long.parseLong(record[2]);
+        String spotifyUrl = record[3];
+        String id = record[4];
+        String name = record[5];
+        int popularity = Integer.parseInt(record[6]);
+
+        rows.accept(new Row(Tabelle.SONG, id, name, spotifyUrl, durationMs, popularity, albumId));
+
+        for (String str : TO_REMOVE) {
+            artistsIdString = artistsIdString.replace(str, "");
+        }
+
+        for (String artistId : artistsIdString.split(",")) {
+            rows.accept(new Row(Tabelle.SONG_AUTORS, artistId, id));
+        }
+    }
+
+
+
+    private static ArrayList<Row> toImageRows(String imagesString, String id, Tabelle table)
+    {
+        ArrayList<Row> images = new ArrayList<>();
+        JSONArray image_node_list = new JSONArray(imagesString);
+
+        for (int i = 0; i < image_node_list.length(); i++) {
+            JSONObject imageNode = image_node_list.getJSONObject(i);
+            images.add(new Row(table, id, imageNode.getString("url"), imageNode.getInt("height") + "x" + imageNode.getInt("width")));
+        }
+        return images;
     }
 
 
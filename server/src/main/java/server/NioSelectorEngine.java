@@ -0,0 +1,706 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import interfaces.ClientConnection;
+import objects.BinaryProtocol;
+import objects.Packet;
+
+
+/**
+ * La classe NioSelectorEngine è un motore di rete alternativo a quello con un thread per connessione.
+ * Le connessioni vengono accettate tramite un {@code Selector} e distribuite su un numero fisso di thread di I/O,
+ * ognuno con il proprio {@code Selector}, che leggono e scrivono su {@code SocketChannel} non bloccanti.
+ *
+ * Sono supportati sia il protocollo binario sia gli stream di oggetti Java: i byte letti da ogni canale vengono
+ * accodati in un buffer della connessione e un piccolo pool di decoder ricostruisce i pacchetti, che vengono poi
+ * eseguiti dalla normale {@code executeServerServiceFunction} del ComunicationManager.
+ * Con il protocollo binario un frame viene decodificato solo quando è arrivato per intero.
+ * Uno stream di oggetti invece non indica la lunghezza dei pacchetti e la sua lettura si blocca finché l'oggetto
+ * non è arrivato: per questo le connessioni che lo usano vengono decodificate da un pool a parte, così un client lento
+ * non occupa i decoder condivisi dalle connessioni binarie.
+ */
+class NioSelectorEngine
+{
+    //tempo massimo di attesa per i byte mancanti di un pacchetto ricevuto solo in parte
+    private static final long PARTIAL_PACKET_TIMEOUT_MS = 10000;
+    private static final int READ_BUFFER_SIZE = 8192;
+    //byte in attesa di essere inviati oltre i quali il client è considerato bloccato
+    private static final long MAX_PENDING_OUTPUT_BYTES = 16 * 1024 * 1024;
+
+    private ComunicationManager manager;
+    private Terminal terminal;
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private IoThread[] ioThreads;
+    private ExecutorService decoders;
+    private ExecutorService legacyDecoders;
+    private Set<NioConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean exit = false;
+    private int nextIoThread = 0;
+
+
+
+/**
+ * Costruisce un nuovo motore NIO.
+ *
+ * @param manager Il ComunicationManager che esegue i servizi richiesti dai client.
+ * @param ioThreadsCount Il numero di thread di I/O da utilizzare.
+ */
+    public NioSelectorEngine(ComunicationManager manager, int ioThreadsCount) {
+        this.manager = manager;
+        this.terminal = Terminal.getInstance();
+        this.ioThreads = new IoThread[Math.max(1, ioThreadsCount)];
+    }
+
+
+
+/**
+ * Apre il canale del server sulla porta specificata e avvia i thread di I/O e i decoder.
+ *
+ * @param port La porta su cui ascoltare, 0 per una porta libera qualsiasi.
+ * @return La porta su cui il server è effettivamente in ascolto.
+ * @throws IOException Se non è possibile aprire il canale o i selector.
+ */
+    public int bind(int port) throws IOException
+    {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < ioThreads.length; i++) {
+            ioThreads[i] = new IoThread(i);
+            ioThreads[i].start();
+        }
+
+        final AtomicInteger decoderIndex = new AtomicInteger(0);
+        decoders = Executors.newFixedThreadPool(ioThreads.length, (r) -> {
+            Thread t = new Thread(r, "NIO-Decoder-" + decoderIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        //un thread per ogni connessione con lo stream di oggetti che sta decodificando, terminato quando resta inattivo
+        final AtomicInteger legacyDecoderIndex = new AtomicInteger(0);
+        legacyDecoders = Executors.newCachedThreadPool((r) -> {
+            Thread t = new Thread(r, "NIO-Legacy-Decoder-" + legacyDecoderIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        return serverChannel.socket().getLocalPort();
+    }
+
+
+
+/**
+ * Accetta le nuove connessioni finché il motore non viene fermato.
+ * Ogni connessione viene assegnata a turno a uno dei thread di I/O.
+ */
+    public void acceptConnections()
+    {
+        while(!exit)
+        {
+            try {
+                //stesso timeout del ServerSocket del motore classico
+                if(acceptSelector.select(500) == 0)
+                    continue;
+
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+
+                    SocketChannel channel = serverChannel.accept();
+                    if(channel == null)
+                        continue;
+
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+
+                    IoThread ioThread = ioThreads[nextIoThread++ % ioThreads.length];
+                    NioConnection connection = new NioConnection(channel, ioThread);
+                    connections.add(connection);
+                    ioThread.register(connection);
+
+                    if(manager.isConnectionLoggingEnabled())
+                        terminal.printInfoln("Connection established with: " + Terminal.Color.MAGENTA + connection.getClientIP() + Terminal.Color.RESET);
+                }
+            }
+            catch (IOException e) {
+                if(!exit) {
+                    terminal.printErrorln(e.toString());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Ferma il ciclo di accettazione delle connessioni.
+ */
+    public void stopAccepting() {
+        exit = true;
+        if(acceptSelector != null)
+            acceptSelector.wakeup();
+    }
+
+
+
+/**
+ * Chiude tutte le connessioni, i thread di I/O, i decoder e il canale del server.
+ */
+    public void close()
+    {
+        stopAccepting();
+
+        for (NioConnection connection : connections.toArray(new NioConnection[0]))
+            connection.close();
+
+        for (IoThread ioThread : ioThreads) {
+            if(ioThread == null) continue;
+            ioThread.selector.wakeup();
+            try {ioThread.join(1000);} catch (InterruptedException e) {}
+        }
+
+        for (ExecutorService pool : new ExecutorService[] {decoders, legacyDecoders}) {
+            if(pool == null) continue;
+            pool.shutdownNow();
+            try {pool.awaitTermination(1, TimeUnit.SECONDS);} catch (InterruptedException e) {}
+        }
+
+        try {
+            if(acceptSelector != null) acceptSelector.close();
+            if(serverChannel != null) serverChannel.close();
+        }
+        catch (IOException e) {
+            terminal.printErrorln(e.toString());
+        }
+    }
+
+
+
+/**
+ * Verifica se il canale del server è chiuso.
+ *
+ * @return true se il canale è chiuso, false altrimenti.
+ */
+    public boolean isClosed() {
+        return serverChannel == null || !serverChannel.isOpen();
+    }
+
+
+
+/**
+ * Restituisce il numero di client attualmente connessi.
+ *
+ * @return Il numero di connessioni aperte.
+ */
+    public int getConnectionsCount() {
+        return connections.size();
+    }
+
+
+
+/**
+ * Thread di I/O: gestisce con un proprio Selector le letture e le scritture di un sottoinsieme di connessioni.
+ */
+    private class IoThread extends Thread
+    {
+        private Selector selector;
+        private ConcurrentLinkedQueue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private ConcurrentLinkedQueue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+        public IoThread(int index) throws IOException {
+            super("NIO-IO-" + index);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        public void register(NioConnection connection) {
+            pendingRegistrations.add(connection);
+            selector.wakeup();
+        }
+
+        public void requestWrite(NioConnection connection) {
+            //una sola richiesta in coda per connessione: le risposte arrivate nel frattempo partono con la stessa scrittura
+            if(connection.writeScheduled.compareAndSet(false, true)) {
+                pendingWrites.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while(!exit)
+            {
+                try {
+                    selector.select();
+
+                    NioConnection connection;
+                    while((connection = pendingRegistrations.poll()) != null) {
+                        try {
+                            connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                            connection.flushOutbound();
+                        }
+                        catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+
+                    while((connection = pendingWrites.poll()) != null) {
+                        connection.writeScheduled.set(false);
+                        if(connection.key != null && connection.key.isValid())
+                            connection.flushOutbound();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while(keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        connection = (NioConnection) key.attachment();
+
+                        if(!key.isValid()) {
+                            connection.close();
+                            continue;
+                        }
+                        if(key.isReadable())
+                            connection.readFromChannel();
+                        if(key.isValid() && key.isWritable())
+                            connection.flushOutbound();
+                    }
+                }
+                catch (Exception e) {
+                    if(!exit)
+                        terminal.printErrorln(e.toString());
+                }
+            }
+
+            try {selector.close();} catch (IOException e) {}
+        }
+    }
+
+
+
+/**
+ * Connessione con un client gestita dal motore NIO.
+ */
+    private class NioConnection implements ClientConnection
+    {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private IoThread ioThread;
+        private String clientIP;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ChannelInputStream inbox = new ChannelInputStream();
+        private ObjectInputStream inputStream = null;
+        private AtomicBoolean decoding = new AtomicBoolean(false);
+        private AtomicInteger pendingRequests = new AtomicInteger(0);
+
+        private ByteArrayOutputStream encodedOutput = new ByteArrayOutputStream();
+        private ObjectOutputStream outputStream;
+
+        //protocollo scelto dal client: null finché non arrivano i primi byte
+        private volatile Boolean binary = null;
+        private DataInputStream binaryInput;
+        private DataOutputStream binaryOutput = new DataOutputStream(encodedOutput);
+        private BinaryProtocol protocol = new BinaryProtocol();
+        private ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private long outboundBytes = 0;
+        private AtomicBoolean writeScheduled = new AtomicBoolean(false);
+
+        private volatile boolean run = true;
+        private volatile boolean closed = false;
+
+        public NioConnection(SocketChannel channel, IoThread ioThread) throws IOException {
+            this.channel = channel;
+            this.ioThread = ioThread;
+            this.clientIP = channel.socket().getInetAddress().getHostAddress();
+        }
+
+        private boolean enqueueEncodedOutput() {
+            byte[] bytes = encodedOutput.toByteArray();
+            encodedOutput.reset();
+
+            synchronized(outbound) {
+                if(outboundBytes + bytes.length > MAX_PENDING_OUTPUT_BYTES)
+                    return false;
+                outbound.add(ByteBuffer.wrap(bytes));
+                outboundBytes += bytes.length;
+                return true;
+            }
+        }
+
+        //eseguito dal thread di I/O
+        private void readFromChannel()
+        {
+            try {
+                int read = channel.read(readBuffer);
+
+                if(read == -1) {
+                    close();
+                    return;
+                }
+                if(read == 0)
+                    return;
+
+                readBuffer.flip();
+                byte[] chunk = new byte[readBuffer.remaining()];
+                readBuffer.get(chunk);
+                readBuffer.clear();
+
+                inbox.append(chunk);
+                if(hasCompletePacket())
+                    scheduleDecoding();
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        //eseguito dal thread di I/O
+        private void flushOutbound()
+        {
+            try {
+                synchronized(outbound) {
+                    //tutte le risposte in coda vengono inviate con una sola scrittura
+                    while(!outbound.isEmpty()) {
+                        long written = channel.write(outbound.toArray(new ByteBuffer[0]));
+                        outboundBytes -= written;
+
+                        while(!outbound.isEmpty() && !outbound.peek().hasRemaining())
+                            outbound.poll();
+
+                        if(written == 0)
+                            break;
+                    }
+
+                    if(key != null && key.isValid())
+                        key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        //con il protocollo binario un frame incompleto non richiede un decoder: verrà decodificato all'arrivo dei byte mancanti
+        private boolean hasCompletePacket()
+        {
+            int available = inbox.available();
+            if(available == 0)
+                return false;
+
+            if(binary == null) {
+                if(available < 2)
+                    return false;
+                return !BinaryProtocol.isBinaryHandshake(inbox.peek(0), inbox.peek(1)) || isHandshakeComplete();
+            }
+            //lo stream di oggetti non indica la lunghezza: il decoder dedicato alla connessione aspetta i byte mancanti
+            if(!binary)
+                return true;
+            if(available < 4)
+                return false;
+
+            //una lunghezza non valida viene passata al decoder, che chiude la connessione
+            int length = BinaryProtocol.frameLength(inbox.peekInt());
+            return length > BinaryProtocol.MAX_FRAME_SIZE || available - 4 >= length;
+        }
+
+        //la lunghezza dell'handshake dipende dalla versione, che segue MAGIC
+        private boolean isHandshakeComplete()
+        {
+            int available = inbox.available();
+            if(available < BinaryProtocol.MAGIC.length + 1)
+                return false;
+            return available >= BinaryProtocol.handshakeLength(inbox.peek(BinaryProtocol.MAGIC.length));
+        }
+
+        //eseguito da un decoder: riconosce il protocollo dai primi byte e risponde all'handshake binario
+        private boolean detectProtocol() throws IOException
+        {
+            if(inbox.available() < 2)
+                return false;
+
+            if(!BinaryProtocol.isBinaryHandshake(inbox.peek(0), inbox.peek(1))) {
+                synchronized(encodedOutput) {
+                    //intestazione dello stream di oggetti, come farebbe un ObjectOutputStream sul socket
+                    outputStream = new ObjectOutputStream(encodedOutput);
+                    outputStream.flush();
+                    enqueueEncodedOutput();
+                }
+                binary = false;
+                ioThread.requestWrite(this);
+                return true;
+            }
+
+            if(!isHandshakeComplete())
+                return false;
+
+            binaryInput = new DataInputStream(inbox);
+            synchronized(encodedOutput) {
+                protocol.acceptHandshake(binaryInput, binaryOutput, manager.getCompressionThreshold());
+                enqueueEncodedOutput();
+            }
+            binary = true;
+            ioThread.requestWrite(this);
+            return true;
+        }
+
+        private void scheduleDecoding() {
+            if(decoding.compareAndSet(false, true))
+                (Boolean.FALSE.equals(binary) ? legacyDecoders : decoders).execute(this::decodePackets);
+        }
+
+        //eseguito da un decoder: un solo decoder alla volta per ogni connessione
+        private void decodePackets()
+        {
+            try {
+                do {
+                    while(!closed && inbox.available() > 0)
+                    {
+                        if(binary == null) {
+                            if(!detectProtocol())
+                                break;
+                            //la decodifica prosegue sul pool dello stream di oggetti, che può bloccarsi in lettura
+                            if(!binary) {
+                                legacyDecoders.execute(this::decodePackets);
+                                return;
+                            }
+                            continue;
+                        }
+
+                        final Packet packet;
+                        if(binary) {
+                            //il frame viene letto solo quando è arrivato per intero
+                            if(!hasCompletePacket())
+                                break;
+                            packet = BinaryProtocol.readRequest(binaryInput);
+                        }
+                        else {
+                            if(inputStream == null) {
+                                inputStream = new ObjectInputStream(inbox);
+                                continue;
+                            }
+                            packet = (Packet) inputStream.readObject();
+                        }
+
+                        if(!run)
+                            continue;
+
+                        if(manager.isConnectionLoggingEnabled())
+                            terminal.printInfoln("Host: " + Terminal.Color.MAGENTA_BRIGHT + clientIP + Terminal.Color.RESET + "  request: " + Terminal.Color.CYAN_BOLD_BRIGHT + packet.command + Terminal.Color.RESET);
+
+                        manager.dispatchPacket(packet, this);
+                    }
+                    decoding.set(false);
+                }
+                while(!closed && hasCompletePacket() && decoding.compareAndSet(false, true));
+            }
+            catch (Exception e) {
+                decoding.set(false);
+                if(!closed) {
+                    terminal.printErrorln(e.toString());
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void writeOnSocket(String Id, Object data) throws IOException
+        {
+            if(closed)
+                return;
+
+            //serializzazione e accodamento nello stesso blocco per mantenere l'ordine dei byte sullo stream
+            synchronized(encodedOutput) {
+                if(binary) {
+                    protocol.writeResponse(binaryOutput, Id, data);
+                }
+                else {
+                    outputStream.writeObject(Id);
+                    outputStream.writeObject(data);
+                    outputStream.flush();
+                }
+
+                if(!enqueueEncodedOutput()) {
+                    if(manager.isConnectionLoggingEnabled())
+                        terminal.printErrorln("Host: " + clientIP + " is not reading responses, connection closed");
+                    close();
+                    throw new IOException("client too slow");
+                }
+            }
+            ioThread.requestWrite(this);
+        }
+
+        @Override
+        public String getClientIP() {
+            return clientIP;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return run;
+        }
+
+        @Override
+        public void stopRunning() {
+            run = false;
+        }
+
+        @Override
+        public AtomicInteger getPendingRequests() {
+            return pendingRequests;
+        }
+
+        private void close()
+        {
+            synchronized(this) {
+                if(closed) return;
+                closed = true;
+                run = false;
+            }
+
+            if(key != null)
+                key.cancel();
+            try {channel.close();} catch (IOException e) {}
+            inbox.close();
+            synchronized(outbound) {
+                outbound.clear();
+                outboundBytes = 0;
+            }
+            connections.remove(this);
+
+            if(manager.isConnectionLoggingEnabled())
+                terminal.printInfoln("host disconected: " + Terminal.Color.MAGENTA + clientIP + Terminal.Color.RESET);
+        }
+    }
+
+
+
+/**
+ * Stream di input alimentato dai thread di I/O con i byte ricevuti da un canale.
+ * Le letture si bloccano solo se un pacchetto è arrivato in parte, al massimo per {@code PARTIAL_PACKET_TIMEOUT_MS}.
+ */
+    private static class ChannelInputStream extends InputStream
+    {
+        private LinkedList<byte[]> chunks = new LinkedList<>();
+        private int position = 0;
+        private int available = 0;
+        private boolean closed = false;
+
+        public synchronized void append(byte[] chunk) {
+            chunks.add(chunk);
+            available += chunk.length;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized int available() {
+            return available;
+        }
+
+        //restituisce il byte in posizione index senza consumarlo, -1 se non è ancora arrivato
+        public synchronized int peek(int index)
+        {
+            if(index >= available)
+                return -1;
+
+            int offset = position + index;
+            for (byte[] chunk : chunks) {
+                if(offset < chunk.length)
+                    return chunk[offset] & 0xFF;
+                offset -= chunk.length;
+            }
+            return -1;
+        }
+
+        //restituisce i primi quattro byte come int senza consumarli, -1 se non sono ancora arrivati
+        public synchronized int peekInt()
+        {
+            if(available < 4)
+                return -1;
+            return (peek(0) << 24) | (peek(1) << 16) | (peek(2) << 8) | peek(3);
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException
+        {
+            if(len == 0)
+                return 0;
+
+            long deadline = System.currentTimeMillis() + PARTIAL_PACKET_TIMEOUT_MS;
+            while(available == 0) {
+                if(closed)
+                    return -1;
+
+                long wait = deadline - System.currentTimeMillis();
+                if(wait <= 0)
+                    throw new SocketTimeoutException("incomplete packet");
+
+                try {wait(wait);} catch (InterruptedException e) {throw new InterruptedIOException();}
+            }
+
+            int copied = 0;
+            while(copied < len && available > 0) {
+                byte[] head = chunks.peek();
+                int n = Math.min(len - copied, head.length - position);
+
+                System.arraycopy(head, position, b, off + copied, n);
+                position += n;
+                copied += n;
+                available -= n;
+
+                if(position == head.length) {
+                    chunks.poll();
+                    position = 0;
+                }
+            }
+            return copied;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+}
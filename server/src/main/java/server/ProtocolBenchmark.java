@@ -0,0 +1,307 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import database.PredefinedSQLCode.Colonne;
+import enumclass.NetworkEngine;
+import objects.Account;
+import objects.Album;
+import objects.Artist;
+import objects.BinaryProtocol;
+import objects.Emotion;
+import objects.MyImage;
+import objects.Residenze;
+import objects.Song;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark del protocollo binario rispetto alla serializzazione Java.
+ *
+ * Per ogni tipo di risposta tipica del server misura i byte inviati sulla rete per messaggio e il numero di messaggi
+ * codificati e decodificati al secondo, usando uno stream di oggetti che resta aperto come quello di una connessione reale.
+ * Il protocollo binario viene misurato anche con la compressione dei frame sopra la soglia predefinita.
+ * Infine misura la latenza dei PING su un server locale con i due protocolli.
+ */
+class ProtocolBenchmark
+{
+    private static final int MESSAGES = 1000;
+    private static final int CLIENTS = 8;
+    private static final int PINGS_PER_CLIENT = 500;
+
+    private Terminal terminal;
+    private int ioThreads;
+
+
+
+/**
+ * Costruisce il benchmark.
+ *
+ * @param ioThreads Il numero di thread di I/O da usare con il motore NIO.
+ */
+    public ProtocolBenchmark(int ioThreads) {
+        this.terminal = Terminal.getInstance();
+        this.ioThreads = ioThreads;
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        terminal.printInfoln(String.format("%-14s %12s %12s %12s %8s %14s %14s %14s", "payload", "java B/msg", "binary B/msg", "deflate B/msg", "java/defl", "java msg/s", "binary msg/s", "deflate msg/s"));
+
+        measureCodec("ping", (m) -> true);
+        measureCodec("song", (m) -> createSong(m, 0));
+        measureCodec("50 songs", (m) -> createSongs(m, 50));
+        measureCodec("search", (m) -> new Object[] {500, createSongs(m, 20)});
+        measureCodec("album", (m) -> createAlbum(m));
+        measureCodec("20 artists", (m) -> createArtists(m, 20));
+        measureCodec("50 emotions", (m) -> createEmotions(m, 50));
+        measureCodec("account", (m) -> createAccount(m));
+
+        terminal.printInfoln(String.format("%-8s %-8s %12s %12s %14s", "engine", "protocol", "p50", "p99", "ping/s"));
+        for (NetworkEngine engine : NetworkEngine.values()) {
+            for (boolean binary : new boolean[] {false, true}) {
+                try {
+                    measurePing(engine, binary);
+                }
+                catch (Exception e) {
+                    terminal.printErrorln(engine + " " + (binary ? "binary" : "java") + " failed: " + e);
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Codifica e decodifica {@code MESSAGES} risposte con entrambi i formati.
+ *
+ * @param name Il nome del tipo di risposta.
+ * @param payload Crea il risultato del messaggio m: ogni messaggio usa oggetti nuovi, come le risposte reali.
+ */
+    private void measureCodec(String name, IntFunction<Object> payload)
+    {
+        try {
+            ArrayList<Object> results = new ArrayList<>(MESSAGES);
+            for (int m = 0; m < MESSAGES; m++)
+                results.add(payload.apply(m));
+
+            //serializzazione Java: il primo messaggio contiene le descrizioni delle classi e non viene conteggiato
+            ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+            double start = System.nanoTime();
+            ObjectOutputStream objectOutput = new ObjectOutputStream(javaBytes);
+            int firstMessageSize = 0;
+            for (int m = 0; m < MESSAGES; m++) {
+                objectOutput.writeObject(Integer.toString(m));
+                objectOutput.writeObject(results.get(m));
+                objectOutput.flush();
+                if(m == 0)
+                    firstMessageSize = javaBytes.size();
+            }
+            ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(javaBytes.toByteArray()));
+            for (int m = 0; m < MESSAGES; m++) {
+                objectInput.readObject();
+                objectInput.readObject();
+            }
+            double javaTime = System.nanoTime() - start;
+
+            //protocollo binario, senza e con compressione
+            ByteArrayOutputStream binaryBytes = new ByteArrayOutputStream();
+            double binaryTime = measureBinary(results, binaryBytes, 0);
+            ByteArrayOutputStream deflateBytes = new ByteArrayOutputStream();
+            double deflateTime = measureBinary(results, deflateBytes, ComunicationManager.DEFAULT_COMPRESSION_THRESHOLD);
+
+            double javaPerMessage = (javaBytes.size() - firstMessageSize) / (double) (MESSAGES - 1);
+            double binaryPerMessage = binaryBytes.size() / (double) MESSAGES;
+            double deflatePerMessage = deflateBytes.size() / (double) MESSAGES;
+
+            terminal.printInfoln(String.format("%-14s %12.0f %12.0f %12.0f %7.2fx %14.0f %14.0f %14.0f",
+                name,
+                javaPerMessage,
+                binaryPerMessage,
+                deflatePerMessage,
+                javaPerMessage / deflatePerMessage,
+                BenchmarkStats.throughput(MESSAGES, javaTime),
+                BenchmarkStats.throughput(MESSAGES, binaryTime),
+                BenchmarkStats.throughput(MESSAGES, deflateTime)));
+        }
+        catch (Exception e) {
+            terminal.printErrorln(name + " failed: " + e);
+        }
+    }
+
+
+
+/**
+ * Codifica e decodifica le risposte con il protocollo binario.
+ *
+ * @param results I risultati da codificare.
+ * @param bytes Il buffer in cui scrivere i frame.
+ * @param compressionThreshold La soglia di compressione, 0 per non comprimere.
+ * @return Il tempo impiegato, in nanosecondi.
+ * @throws IOException Se un risultato non può essere codificato.
+ */
+    private double measureBinary(ArrayList<Object> results, ByteArrayOutputStream bytes, int compressionThreshold) throws IOException
+    {
+        double start = System.nanoTime();
+        BinaryProtocol protocol = new BinaryProtocol();
+        protocol.setCompressionThreshold(compressionThreshold);
+
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (int m = 0; m < results.size(); m++)
+            protocol.writeResponse(output, Integer.toString(m), results.get(m));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int m = 0; m < results.size(); m++)
+            BinaryProtocol.readResponse(input);
+        return System.nanoTime() - start;
+    }
+
+
+
+/**
+ * Misura la latenza dei PING su un server locale.
+ *
+ * @param engine Il motore di rete da usare.
+ * @param binary true per usare il protocollo binario.
+ * @throws Exception Se non è possibile avviare il server di prova.
+ */
+    private void measurePing(NetworkEngine engine, boolean binary) throws Exception
+    {
+        ComunicationManager manager = new ComunicationManager(0, engine, ioThreads, new CommandsDispatcher());
+        manager.setConnectionLogging(false);
+        int port = manager.openEngine();
+
+        Thread acceptor = new Thread(manager::serveEngine, "Benchmark-" + engine);
+        acceptor.start();
+
+        final long[] latencies = new long[CLIENTS * PINGS_PER_CLIENT];
+        final AtomicInteger count = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+
+        double start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            pool.execute(() -> {
+                try {
+                    BenchmarkClient client = new BenchmarkClient(port, binary);
+                    for (int p = 0; p < PINGS_PER_CLIENT; p++)
+                        latencies[count.getAndIncrement()] = client.ping();
+                    client.close();
+                }
+                catch (Exception e) {
+                    terminal.printErrorln("client failed: " + e);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        double time = System.nanoTime() - start;
+
+        manager.stopEngine();
+        acceptor.join();
+        manager.closeEngine();
+
+        int samples = Math.min(count.get(), latencies.length);
+        terminal.printInfoln(String.format("%-8s %-8s %12s %12s %14.0f",
+            engine,
+            binary ? "binary" : "java",
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, samples, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, samples, 99)),
+            BenchmarkStats.throughput(samples, time)));
+    }
+
+
+
+    private static ArrayList<MyImage> createImages(String id)
+    {
+        ArrayList<MyImage> images = new ArrayList<>();
+        images.add(new MyImage("64x64", id, "https://i.scdn.co/image/ab67616d00004851" + id));
+        images.add(new MyImage("300x300", id, "https://i.scdn.co/image/ab67616d00001e02" + id));
+        images.add(new MyImage("640x640", id, "https://i.scdn.co/image/ab67616d0000b273" + id));
+        return images;
+    }
+
+    private static Song createSong(int message, int index)
+    {
+        String id = "5" + message + "Fv2iNxlGDcbHzkqXOC" + index;
+        Song song = new Song(id, "Song title " + index, "https://open.spotify.com/track/" + id, 215000 + index, 60 + index % 40, "6KOqPdwMQh" + message);
+        song.addImages(createImages(id));
+        return song;
+    }
+
+    private static ArrayList<Song> createSongs(int message, int count)
+    {
+        ArrayList<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            songs.add(createSong(message, i));
+        return songs;
+    }
+
+    private static Album createAlbum(int message)
+    {
+        String id = "6KOqPdwMQh" + message;
+        Album album = new Album(id, "Album " + message, "2021-05-14", "https://open.spotify.com/album/" + id, "album", 12, "0TnOYISbd1" + message);
+        for (int i = 0; i < 12; i++)
+            album.addSongID("5" + message + "Fv2iNxlGDcbHzkqXOC" + i);
+        album.addImages(createImages(id));
+        return album;
+    }
+
+    private static ArrayList<Artist> createArtists(int message, int count)
+    {
+        ArrayList<Artist> artists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "0TnOYISbd1" + message + "x" + i;
+            HashMap<Colonne, Object> table = new HashMap<>();
+            table.put(Colonne.ID, id);
+            table.put(Colonne.NAME, "Artist " + i);
+            table.put(Colonne.URL, "https://open.spotify.com/artist/" + id);
+            table.put(Colonne.FOLLOWERS, 1500000L + i);
+            table.put(Colonne.POPULARITY, 70 + i % 30);
+
+            Artist artist = new Artist(table);
+            artist.addImages(createImages(id));
+            artists.add(artist);
+        }
+        return artists;
+    }
+
+    private static ArrayList<Emotion> createEmotions(int message, int count)
+    {
+        ArrayList<Emotion> emotions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HashMap<Colonne, Object> table = new HashMap<>();
+            table.put(Colonne.ID, "E" + message + "x" + i);
+            table.put(Colonne.TYPE, "AMAZEMENT");
+            table.put(Colonne.VALUE, 1 + i % 5);
+            table.put(Colonne.COMMENTO, "comment " + i);
+            table.put(Colonne.SONG_ID_REF, "5" + message + "Fv2iNxlGDcbHzkqXOC");
+            table.put(Colonne.ACCOUNT_ID_REF, "user" + i);
+            emotions.add(new Emotion(table));
+        }
+        return emotions;
+    }
+
+    private static Account createAccount(int message)
+    {
+        Residenze residenze = new Residenze("R" + message, "Via Roma", 12, "Varese", "Varese");
+        return new Account("Mario", "mario" + message, "Rossi", "RSSMRA80A01L682X", "mario" + message + "@mail.it", "5f4dcc3b5aa765d61d8327deb882cf99", "R" + message, residenze);
+    }
+}
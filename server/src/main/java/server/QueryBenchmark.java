@@ -0,0 +1,129 @@
+package server;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import database.DatabaseManager;
+import database.PooledConnection;
+import database.QueryBuilder;
+import database.QueryTemplate;
+import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Tabelle;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark delle query costruite come testo rispetto alle QueryTemplate preparate.
+ *
+ * Esegue sul database connesso la ricerca delle canzoni per titolo e la lista delle canzoni più popolari,
+ * prima inviando il testo SQL completo con submitQuery e poi con executeQuery, che riusa il PreparedStatement
+ * della connessione. Ogni esecuzione prende una connessione dal pool e legge tutte le righe del risultato.
+ */
+class QueryBenchmark
+{
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+    private static final int LIMIT = 20;
+    private static final String[] SEARCH_KEYS = {"a", "b", "c", "d", "e", "l", "m", "s", "t", "lo"};
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+    private interface Query {
+        ResultSet execute(int iteration) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public QueryBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        terminal.printInfoln(String.format("%-14s %-10s %12s %12s %14s", "query", "mode", "p50", "p99", "query/s"));
+
+        measure("search", "string", (i) -> database.submitQuery(QueryBuilder.getSongSearch_query(searchKey(i), LIMIT, 0, 0)));
+        measure("search", "prepared", (i) -> database.executeQuery(QueryTemplate.SEARCH_SONGS_BY_TITLE, searchKey(i) + "%", LIMIT, 0));
+        measure("popular", "string", (i) -> database.submitQuery("SELECT * FROM " + Tabelle.SONG + " c ORDER BY c." + Colonne.POPULARITY.getName()
+            + " DESC LIMIT " + LIMIT + " OFFSET " + offset(i)));
+        measure("popular", "prepared", (i) -> database.executeQuery(QueryTemplate.POPULAR_SONGS, LIMIT, offset(i)));
+    }
+
+
+
+/**
+ * Esegue la query {@code WARMUP} volte senza misurarla e poi {@code ITERATIONS} volte misurandone la latenza.
+ *
+ * @param name Il nome della query.
+ * @param mode La modalità di esecuzione.
+ * @param query Esegue la query dell'iterazione indicata.
+ */
+    private void measure(String name, String mode, Query query)
+    {
+        long[] latencies = new long[ITERATIONS];
+        try {
+            for (int i = 0; i < WARMUP; i++)
+                execute(query, i);
+
+            double start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                long begin = System.nanoTime();
+                execute(query, i);
+                latencies[i] = System.nanoTime() - begin;
+            }
+            double time = System.nanoTime() - start;
+
+            terminal.printInfoln(String.format("%-14s %-10s %12s %12s %14.0f",
+                name,
+                mode,
+                TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, ITERATIONS, 50)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, ITERATIONS, 99)),
+                BenchmarkStats.throughput(ITERATIONS, time)));
+        }
+        catch (SQLException e) {
+            terminal.printErrorln(name + " " + mode + " failed: " + e.getMessage());
+        }
+    }
+
+
+
+    //la connessione è presa come nei servizi del server, quindi il risultato viene letto direttamente senza copia
+    @SuppressWarnings("try")
+    private void execute(Query query, int iteration) throws SQLException
+    {
+        try (PooledConnection connection = database.borrowConnection()) {
+            ResultSet resultSet = query.execute(iteration);
+            while(resultSet.next())
+                resultSet.getString(Colonne.ID.getName());
+            resultSet.close();
+        }
+    }
+
+
+
+    private static String searchKey(int iteration) {
+        return SEARCH_KEYS[iteration % SEARCH_KEYS.length];
+    }
+
+    private static int offset(int iteration) {
+        return (iteration % 10) * LIMIT;
+    }
+}
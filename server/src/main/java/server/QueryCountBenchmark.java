@@ -0,0 +1,109 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import database.DatabaseManager;
+import database.PooledConnection;
+import database.QueriesManager;
+import objects.Artist;
+import objects.Song;
+
+
+/**
+ * Benchmark del numero di query eseguite da ogni richiesta che restituisce una pagina di elementi con immagini.
+ *
+ * Esegue le richieste sul database connesso con pagine di dimensioni diverse e conta le query eseguite sulla
+ * connessione presa in prestito: caricando le immagini di una pagina con una sola query il numero resta costante,
+ * mentre caricandole elemento per elemento cresceva con la pagina (la colonna "per row" riporta quel valore).
+ */
+class QueryCountBenchmark
+{
+    private static final int[] PAGE_SIZES = {10, 50};
+
+    private Terminal terminal;
+    private DatabaseManager database;
+    private String[] songIDs;
+
+
+
+    private interface Request {
+        List<?> execute(int limit) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public QueryCountBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        //gli elementi usati come parametri vengono letti prima, così le loro query non entrano nel conteggio
+        String artistID;
+        try {
+            ArrayList<Song> songs = QueriesManager.getTopPopularSongs(PAGE_SIZES[PAGE_SIZES.length - 1], 0);
+            songIDs = new String[songs.size()];
+            for (int i = 0; i < songIDs.length; i++)
+                songIDs[i] = songs.get(i).getId();
+
+            @SuppressWarnings("unchecked")
+            ArrayList<Artist> artists = (ArrayList<Artist>) QueriesManager.searchArtists("", 1, 0, null, 0)[1];
+            artistID = artists.isEmpty() ? null : artists.get(0).getID();
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("unable to read the benchmark data: " + e.getMessage());
+            return;
+        }
+
+        terminal.printInfoln(String.format("%-16s %8s %10s %10s %10s", "request", "limit", "elements", "queries", "per row"));
+
+        measure("popular songs", (limit) -> QueriesManager.getTopPopularSongs(limit, 0));
+        measure("search songs", (limit) -> (List<?>) QueriesManager.searchSong_and_countElement("", limit, 0, null, 0)[1]);
+        measure("songs by ids", (limit) -> QueriesManager.searchSongByIDs(Arrays.copyOf(songIDs, Math.min(limit, songIDs.length))));
+        measure("recent albums", (limit) -> QueriesManager.getRecentPublischedAlbum(limit, 0, 0));
+        measure("search albums", (limit) -> (List<?>) QueriesManager.searchAlbum("", limit, 0, null, 0)[1]);
+        measure("search artists", (limit) -> (List<?>) QueriesManager.searchArtists("", limit, 0, null, 0)[1]);
+        if(artistID != null)
+            measure("artist songs", (limit) -> QueriesManager.getArtistSong(artistID));
+    }
+
+
+
+/**
+ * Esegue la richiesta con ogni dimensione di pagina e stampa il numero di query eseguite.
+ *
+ * @param name Il nome della richiesta.
+ * @param request Esegue la richiesta con il limite indicato e restituisce gli elementi ottenuti.
+ */
+    private void measure(String name, Request request)
+    {
+        for (int limit : PAGE_SIZES) {
+            try (PooledConnection connection = database.borrowConnection()) {
+                List<?> elements = request.execute(limit);
+                long queries = connection.getQueryCount();
+                terminal.printInfoln(String.format("%-16s %8d %10d %10d %10d", name, limit, elements.size(), queries, queries - 1 + elements.size()));
+            }
+            catch (SQLException e) {
+                terminal.printErrorln(name + " failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package server;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import enumclass.ServerServicesName;
+
+
+/**
+ * Unisce le richieste di lettura identiche che arrivano nello stesso momento: la prima esegue la query sul database,
+ * le altre attendono e ricevono lo stesso risultato.
+ * Due richieste sono identiche se hanno lo stesso servizio e gli stessi parametri, indipendentemente dal loro ordine.
+ *
+ * Ogni servizio di scrittura completato fa avanzare un contatore: una lettura si unisce solo a un'esecuzione
+ * iniziata dopo l'ultima scrittura, così un client che ha appena modificato dei dati non riceve un risultato precedente alla modifica.
+ */
+class RequestCoalescer
+{
+    //servizi che modificano il database: tutti gli altri sono letture e le loro richieste identiche possono essere unite.
+    //L'elenco è esplicito così un nuovo servizio di sola lettura non viene trattato come una scrittura
+    private static final EnumSet<ServerServicesName> WRITE_SERVICES = EnumSet.of(
+        ServerServicesName.ADD_ACCOUNT,
+        ServerServicesName.DELETE_ACCOUNT,
+        ServerServicesName.ADD_PLAYLIST,
+        ServerServicesName.DELETE_PLAYLIST,
+        ServerServicesName.ADD_SONG_PLAYLIST,
+        ServerServicesName.REMOVE_SONG_PLAYLIST,
+        ServerServicesName.RENAME_PLAYLIST,
+        ServerServicesName.ADD_EMOTION,
+        ServerServicesName.REMOVE_EMOTION);
+
+    private ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private AtomicLong writeEpoch = new AtomicLong(0);
+
+    private AtomicLong requests = new AtomicLong(0);
+    private AtomicLong executions = new AtomicLong(0);
+    private AtomicLong merged = new AtomicLong(0);
+
+
+
+    //un'esecuzione in corso e la scrittura più recente che ne precede l'inizio
+    private static class Flight
+    {
+        private long epoch;
+        private CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Flight(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+
+
+/**
+ * Verifica se le richieste di un servizio possono essere unite.
+ *
+ * @param name Il servizio richiesto.
+ * @return true se il servizio è di sola lettura.
+ */
+    public boolean isCoalescable(ServerServicesName name) {
+        return !WRITE_SERVICES.contains(name);
+    }
+
+
+
+/**
+ * Verifica se un servizio modifica il database, e quindi al suo completamento deve chiamare {@link #writeCompleted()}.
+ *
+ * @param name Il servizio richiesto.
+ * @return true se il servizio è di scrittura.
+ */
+    static boolean isWrite(ServerServicesName name) {
+        return WRITE_SERVICES.contains(name);
+    }
+
+
+
+/**
+ * Esegue un servizio di lettura, oppure attende il risultato di un'esecuzione identica già in corso.
+ *
+ * @param name Il servizio richiesto.
+ * @param params I parametri della richiesta.
+ * @param function La funzione che esegue il servizio.
+ * @return Il risultato del servizio, condiviso con le richieste unite.
+ * @throws Exception Se l'esecuzione condivisa termina con un'eccezione o l'attesa viene interrotta.
+ */
+    public Object execute(ServerServicesName name, HashMap<String, Object> params, Function<HashMap<String, Object>, Object> function) throws Exception
+    {
+        requests.incrementAndGet();
+        String key = createKey(name, params);
+
+        while(true)
+        {
+            long epoch = writeEpoch.get();
+            Flight current = inFlight.get(key);
+
+            if(current != null && current.epoch == epoch) {
+                merged.incrementAndGet();
+                return await(current);
+            }
+
+            //nessuna esecuzione in corso, oppure è iniziata prima di una scrittura: la sostituisco con una nuova
+            Flight mine = new Flight(epoch);
+            boolean leader = current == null ? inFlight.putIfAbsent(key, mine) == null : inFlight.replace(key, current, mine);
+            if(!leader)
+                continue;
+
+            executions.incrementAndGet();
+            try {
+                Object result = function.apply(params);
+                mine.result.complete(result);
+                return result;
+            }
+            catch (RuntimeException e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            }
+            finally {
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+
+
+
+    private Object await(Flight flight) throws Exception
+    {
+        try {
+            return flight.result.get();
+        }
+        catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+
+
+/**
+ * Segnala il completamento di un servizio di scrittura: le letture successive non si uniranno alle esecuzioni già in corso.
+ */
+    public void writeCompleted() {
+        writeEpoch.incrementAndGet();
+    }
+
+
+
+    //servizio e parametri ordinati per chiave; gli array vengono confrontati per contenuto. Usata anche dalla ResultCache
+    static String createKey(ServerServicesName name, HashMap<String, Object> params)
+    {
+        StringBuilder key = new StringBuilder(name.name());
+
+        for (Map.Entry<String, Object> entry : new TreeMap<>(params).entrySet()) {
+            key.append('|').append(entry.getKey()).append('=');
+            appendValue(key, entry.getValue());
+        }
+        return key.toString();
+    }
+
+
+
+    //ogni valore è preceduto dal tipo e dalla lunghezza, così valori diversi non producono la stessa chiave
+    private static void appendValue(StringBuilder key, Object value)
+    {
+        if(value == null) {
+            key.append("null");
+        }
+        else if(value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            key.append('[').append(array.length).append(':');
+            for (Object element : array)
+                appendValue(key, element);
+            key.append(']');
+        }
+        else {
+            String text = value.toString();
+            key.append(value.getClass().getSimpleName()).append(text.length()).append(':').append(text);
+        }
+    }
+
+
+
+/**
+ * @return Il numero di richieste di lettura ricevute.
+ */
+    public long getRequests() {
+        return requests.get();
+    }
+
+/**
+ * @return Il numero di esecuzioni sul database.
+ */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+/**
+ * @return Il numero di richieste che hanno ricevuto il risultato di un'esecuzione già in corso.
+ */
+    public long getMerged() {
+        return merged.get();
+    }
+}
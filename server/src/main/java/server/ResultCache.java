@@ -0,0 +1,440 @@
+package server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enumclass.QueryParameter;
+import enumclass.ServerServicesName;
+import objects.BinaryProtocol;
+
+
+/**
+ * Cache dei risultati dei servizi di lettura, consultata prima di eseguire la query sul database.
+ *
+ * Il catalogo (canzoni, album, artisti e immagini) cambia solo durante le importazioni del Loader, quindi i suoi risultati
+ * restano validi a lungo. I dati degli utenti (playlist ed emozioni) hanno una durata più breve e vengono rimossi
+ * appena viene eseguito un servizio di scrittura che li modifica.
+ *
+ * La dimensione di ogni risultato è stimata con la sua codifica nel protocollo binario: quando la memoria occupata supera
+ * il limite vengono rimossi i risultati usati meno di recente.
+ */
+class ResultCache
+{
+    public static final int DEFAULT_SIZE_MB = 32;
+    public static final int DEFAULT_CATALOG_TTL = 600;
+    public static final int DEFAULT_USER_TTL = 60;
+
+    //spazio stimato per la chiave, la voce della mappa e i riferimenti di ogni risultato
+    private static final long ENTRY_OVERHEAD = 128;
+
+    //un singolo risultato non può occupare più di questa frazione della cache
+    private static final int MAX_ENTRY_FRACTION = 16;
+
+    private static final EnumSet<ServerServicesName> CATALOG_SERVICES = EnumSet.of(
+        ServerServicesName.GET_MOST_POPULAR_SONGS,
+        ServerServicesName.GET_RECENT_PUPLISCED_ALBUMS,
+        ServerServicesName.GET_SONG_BY_IDS,
+        ServerServicesName.GET_ARTIST_SONGS,
+        ServerServicesName.GET_ALBUM_SONGS,
+        ServerServicesName.GET_ALBUM_BY_ID,
+        ServerServicesName.GET_ARTIST_ALBUMS,
+        ServerServicesName.GET_ARTIST_BY_ID);
+
+    private static final EnumSet<ServerServicesName> USER_SERVICES = EnumSet.of(
+        ServerServicesName.GET_ACCOUNT_PLAYLIST,
+        ServerServicesName.GET_PLAYLIST_SONGS,
+        ServerServicesName.GET_SONG_EMOTION,
+        ServerServicesName.GET_SONG_EMOTION_SUMMARY,
+        ServerServicesName.GET_COMMENTS_SONG_FOR_ACCOUNT,
+        ServerServicesName.GET_COMMENTS_SONG,
+        ServerServicesName.GET_ACCOUNT_EMOTIONS);
+
+    //per ogni servizio di scrittura, i risultati da rimuovere
+    private static final EnumMap<ServerServicesName, Invalidation[]> INVALIDATIONS = new EnumMap<>(ServerServicesName.class);
+
+    static {
+        Invalidation[] playlist = {
+            new Invalidation(ServerServicesName.GET_ACCOUNT_PLAYLIST, QueryParameter.ACCOUNT_ID),
+            new Invalidation(ServerServicesName.GET_PLAYLIST_SONGS, QueryParameter.PLAYLIST_ID)};
+
+        INVALIDATIONS.put(ServerServicesName.ADD_PLAYLIST, new Invalidation[] {
+            new Invalidation(ServerServicesName.GET_ACCOUNT_PLAYLIST, QueryParameter.ACCOUNT_ID)});
+        INVALIDATIONS.put(ServerServicesName.RENAME_PLAYLIST, new Invalidation[] {
+            new Invalidation(ServerServicesName.GET_ACCOUNT_PLAYLIST, QueryParameter.ACCOUNT_ID)});
+        INVALIDATIONS.put(ServerServicesName.DELETE_PLAYLIST, playlist);
+        INVALIDATIONS.put(ServerServicesName.ADD_SONG_PLAYLIST, playlist);
+        INVALIDATIONS.put(ServerServicesName.REMOVE_SONG_PLAYLIST, playlist);
+
+        INVALIDATIONS.put(ServerServicesName.ADD_EMOTION, new Invalidation[] {
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION, QueryParameter.SONG_ID),
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION_SUMMARY, QueryParameter.SONG_ID),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG, QueryParameter.SONG_ID),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG_FOR_ACCOUNT, QueryParameter.SONG_ID),
+            new Invalidation(ServerServicesName.GET_ACCOUNT_EMOTIONS, QueryParameter.ACCOUNT_ID)});
+
+        //la richiesta contiene solo l'ID dell'emozione: non so a quale canzone e account appartenga
+        INVALIDATIONS.put(ServerServicesName.REMOVE_EMOTION, new Invalidation[] {
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION, null),
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION_SUMMARY, null),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG, null),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG_FOR_ACCOUNT, null),
+            new Invalidation(ServerServicesName.GET_ACCOUNT_EMOTIONS, null)});
+
+        //l'eliminazione dell'account elimina anche le sue playlist e le sue emozioni
+        INVALIDATIONS.put(ServerServicesName.DELETE_ACCOUNT, new Invalidation[] {
+            new Invalidation(ServerServicesName.GET_ACCOUNT_PLAYLIST, QueryParameter.ACCOUNT_ID),
+            new Invalidation(ServerServicesName.GET_ACCOUNT_EMOTIONS, QueryParameter.ACCOUNT_ID),
+            new Invalidation(ServerServicesName.GET_PLAYLIST_SONGS, null),
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION, null),
+            new Invalidation(ServerServicesName.GET_SONG_EMOTION_SUMMARY, null),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG, null),
+            new Invalidation(ServerServicesName.GET_COMMENTS_SONG_FOR_ACCOUNT, null)});
+
+        //un servizio che invalida dei risultati deve anche far avanzare le scritture del RequestCoalescer
+        for (ServerServicesName service : INVALIDATIONS.keySet()) {
+            if(!RequestCoalescer.isWrite(service))
+                throw new IllegalStateException(service + " invalidates cached results but is not a write service");
+        }
+    }
+
+    //ordinata per accesso: il primo elemento è quello usato meno di recente
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes = 0;
+    private long generation = 0;
+
+    private volatile long maxBytes;
+    private volatile long catalogTtl;
+    private volatile long userTtl;
+
+    private EnumMap<ServerServicesName, ServiceStats> stats = new EnumMap<>(ServerServicesName.class);
+
+
+
+    //i risultati del servizio da rimuovere: tutti, oppure quelli con lo stesso valore del parametro
+    private static class Invalidation
+    {
+        private ServerServicesName service;
+        private String parameter;
+
+        private Invalidation(ServerServicesName service, QueryParameter parameter) {
+            this.service = service;
+            this.parameter = parameter == null ? null : parameter.toString();
+        }
+    }
+
+    private static class Entry
+    {
+        private ServerServicesName service;
+        private HashMap<String, Object> params;
+        private Object value;
+        private long size;
+        private long expires;
+
+        private Entry(ServerServicesName service, HashMap<String, Object> params, Object value, long size, long expires) {
+            this.service = service;
+            this.params = params;
+            this.value = value;
+            this.size = size;
+            this.expires = expires;
+        }
+    }
+
+    private static class ServiceStats
+    {
+        private AtomicLong hits = new AtomicLong(0);
+        private AtomicLong misses = new AtomicLong(0);
+        private AtomicLong evictions = new AtomicLong(0);
+        private AtomicLong expirations = new AtomicLong(0);
+        private AtomicLong invalidations = new AtomicLong(0);
+    }
+
+    //conta i byte scritti senza memorizzarli
+    private static class CountingOutputStream extends OutputStream
+    {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+
+
+/**
+ * Costruisce la cache con le dimensioni e le durate predefinite.
+ */
+    public ResultCache() {
+        configure(DEFAULT_SIZE_MB, DEFAULT_CATALOG_TTL, DEFAULT_USER_TTL);
+
+        for (ServerServicesName service : CATALOG_SERVICES)
+            stats.put(service, new ServiceStats());
+        for (ServerServicesName service : USER_SERVICES)
+            stats.put(service, new ServiceStats());
+    }
+
+
+
+/**
+ * Imposta il limite di memoria e la durata dei risultati.
+ * I risultati già presenti mantengono la loro scadenza; se il nuovo limite è più basso vengono rimossi i meno usati.
+ *
+ * @param sizeMB La memoria massima occupata dai risultati, in megabyte; 0 disattiva la cache.
+ * @param catalogTtl La durata dei risultati del catalogo, in secondi.
+ * @param userTtl La durata dei risultati con i dati degli utenti, in secondi.
+ */
+    public void configure(int sizeMB, int catalogTtl, int userTtl)
+    {
+        this.maxBytes = Math.max(0, sizeMB) * 1024L * 1024L;
+        this.catalogTtl = TimeUnit.SECONDS.toNanos(Math.max(0, catalogTtl));
+        this.userTtl = TimeUnit.SECONDS.toNanos(Math.max(0, userTtl));
+
+        synchronized (this) {
+            evict();
+        }
+    }
+
+
+
+/**
+ * Verifica se i risultati di un servizio vengono salvati nella cache.
+ *
+ * @param name Il servizio richiesto.
+ * @return true se il servizio legge il catalogo o i dati degli utenti.
+ */
+    public boolean isCacheable(ServerServicesName name) {
+        return maxBytes > 0 && stats.containsKey(name);
+    }
+
+
+
+/**
+ * Restituisce il risultato salvato nella cache oppure esegue il servizio e salva il suo risultato.
+ * Le eccezioni non vengono salvate. Se durante l'esecuzione viene completata una scrittura, il risultato
+ * potrebbe precederla e non viene salvato.
+ *
+ * @param name Il servizio richiesto.
+ * @param params I parametri della richiesta.
+ * @param loader Esegue il servizio quando il risultato non è nella cache.
+ * @return Il risultato del servizio.
+ * @throws Exception Se l'esecuzione del servizio termina con un'eccezione.
+ */
+    public Object execute(ServerServicesName name, HashMap<String, Object> params, Callable<Object> loader) throws Exception
+    {
+        ServiceStats serviceStats = stats.get(name);
+        String key = RequestCoalescer.createKey(name, params);
+        long startGeneration;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+
+            if(entry != null && entry.expires - System.nanoTime() > 0) {
+                serviceStats.hits.incrementAndGet();
+                return entry.value;
+            }
+            if(entry != null) {
+                remove(key, entry);
+                serviceStats.expirations.incrementAndGet();
+            }
+            startGeneration = generation;
+        }
+
+        serviceStats.misses.incrementAndGet();
+        Object result = loader.call();
+
+        if(result == null || result instanceof Exception)
+            return result;
+
+        long size = estimateSize(result);
+        if(size < 0 || size + key.length() * 2 + ENTRY_OVERHEAD > maxBytes / MAX_ENTRY_FRACTION)
+            return result;
+
+        long ttl = CATALOG_SERVICES.contains(name) ? catalogTtl : userTtl;
+        Entry entry = new Entry(name, params, result, size + key.length() * 2 + ENTRY_OVERHEAD, System.nanoTime() + ttl);
+
+        synchronized (this) {
+            if(generation == startGeneration) {
+                Entry old = entries.put(key, entry);
+                if(old != null)
+                    usedBytes -= old.size;
+                usedBytes += entry.size;
+                evict();
+            }
+        }
+        return result;
+    }
+
+
+
+/**
+ * Rimuove i risultati modificati da un servizio di scrittura.
+ * Va chiamato dopo l'esecuzione del servizio, anche se è terminata con un errore.
+ *
+ * @param name Il servizio di scrittura eseguito.
+ * @param params I parametri della richiesta.
+ */
+    public void invalidate(ServerServicesName name, HashMap<String, Object> params)
+    {
+        Invalidation[] invalidations = INVALIDATIONS.get(name);
+        if(invalidations == null)
+            return;
+
+        synchronized (this) {
+            generation++;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while(iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+
+                for (Invalidation invalidation : invalidations) {
+                    if(entry.service == invalidation.service
+                        && (invalidation.parameter == null || Objects.equals(entry.params.get(invalidation.parameter), params.get(invalidation.parameter))))
+                    {
+                        iterator.remove();
+                        usedBytes -= entry.size;
+                        stats.get(entry.service).invalidations.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Svuota la cache, ad esempio dopo un'importazione del Loader che ha modificato il catalogo.
+ */
+    public synchronized void clear()
+    {
+        generation++;
+        for (Entry entry : entries.values())
+            stats.get(entry.service).invalidations.incrementAndGet();
+        entries.clear();
+        usedBytes = 0;
+    }
+
+
+
+    //rimuove i risultati usati meno di recente finché la memoria occupata non rientra nel limite
+    private void evict()
+    {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(usedBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            usedBytes -= entry.size;
+            stats.get(entry.service).evictions.incrementAndGet();
+        }
+    }
+
+
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        usedBytes -= entry.size;
+    }
+
+
+
+    //byte della codifica binaria del risultato, -1 se il risultato non è codificabile
+    private static long estimateSize(Object result)
+    {
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            BinaryProtocol.writeValue(new DataOutputStream(counter), result);
+        }
+        catch (IOException e) {
+            return -1;
+        }
+        return counter.count;
+    }
+
+
+
+/**
+ * @return I servizi i cui risultati vengono salvati nella cache.
+ */
+    public EnumSet<ServerServicesName> getServices() {
+        EnumSet<ServerServicesName> services = EnumSet.copyOf(CATALOG_SERVICES);
+        services.addAll(USER_SERVICES);
+        return services;
+    }
+
+/**
+ * @return Il numero di risultati nella cache.
+ */
+    public synchronized int getEntriesCount() {
+        return entries.size();
+    }
+
+/**
+ * @return La memoria stimata occupata dai risultati, in byte.
+ */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+/**
+ * @return La memoria massima occupata dai risultati, in byte.
+ */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+/**
+ * @param name Il servizio.
+ * @return Il numero di richieste del servizio servite dalla cache.
+ */
+    public long getHits(ServerServicesName name) {
+        return stats.get(name).hits.get();
+    }
+
+/**
+ * @param name Il servizio.
+ * @return Il numero di richieste del servizio eseguite sul database.
+ */
+    public long getMisses(ServerServicesName name) {
+        return stats.get(name).misses.get();
+    }
+
+/**
+ * @param name Il servizio.
+ * @return Il numero di risultati del servizio rimossi per liberare memoria.
+ */
+    public long getEvictions(ServerServicesName name) {
+        return stats.get(name).evictions.get();
+    }
+
+/**
+ * @param name Il servizio.
+ * @return Il numero di risultati del servizio scaduti.
+ */
+    public long getExpirations(ServerServicesName name) {
+        return stats.get(name).expirations.get();
+    }
+
+/**
+ * @param name Il servizio.
+ * @return Il numero di risultati del servizio rimossi da una scrittura o da uno svuotamento.
+ */
+    public long getInvalidations(ServerServicesName name) {
+        return stats.get(name).invalidations.get();
+    }
+}
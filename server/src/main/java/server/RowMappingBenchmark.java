@@ -0,0 +1,207 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import database.PredefinedSQLCode;
+import database.PredefinedSQLCode.Colonne;
+import database.PredefinedSQLCode.Tabelle;
+import database.RowMapper;
+import database.RowMappers;
+import objects.Account;
+import objects.Album;
+import objects.Residenze;
+import objects.Song;
+import utility.BenchmarkStats;
+
+
+/**
+ * Benchmark della conversione delle righe in oggetti.
+ *
+ * Confronta i RowMappers, che cercano le colonne una volta per risultato e leggono le righe per posizione,
+ * con la costruzione di una HashMap per riga usata in precedenza. Le righe sono in un CachedRowSet in memoria,
+ * così la misura non comprende la rete e il database; per ogni modalità stampa le righe convertite al secondo
+ * e i byte allocati per riga dal thread del benchmark.
+ */
+class RowMappingBenchmark
+{
+    private static final int ROWS = 10000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    private Terminal terminal;
+    private com.sun.management.ThreadMXBean threads;
+
+
+
+    private interface Mapping {
+        Object map(ResultSet resultSet) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public RowMappingBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        terminal.printInfoln(String.format("%-10s %-10s %14s %12s", "object", "mapping", "rows/s", "B/row"));
+
+        try {
+            CachedRowSet songs = createRows(Tabelle.SONG);
+            measure("song", "hashmap", songs, null, (resultSet) -> new Song(RowMappers.getHashMap_for_ClassConstructor(resultSet, Tabelle.SONG)));
+            measure("song", "index", songs, RowMappers.SONG, null);
+
+            CachedRowSet albums = createRows(Tabelle.ALBUM);
+            measure("album", "hashmap", albums, null, (resultSet) -> new Album(RowMappers.getHashMap_for_ClassConstructor(resultSet, Tabelle.ALBUM)));
+            measure("album", "index", albums, RowMappers.ALBUM, null);
+
+            CachedRowSet accounts = createRows(Tabelle.ACCOUNT, Tabelle.RESIDENZA);
+            measure("account", "hashmap", accounts, null, (resultSet) -> {
+                HashMap<Tabelle, HashMap<Colonne, Object>> data = RowMappers.getHashMaps_for_ClassConstructor(resultSet, Tabelle.ACCOUNT, Tabelle.RESIDENZA);
+                return new Account(data.get(Tabelle.ACCOUNT), new Residenze(data.get(Tabelle.RESIDENZA)));
+            });
+            measure("account", "index", accounts, RowMappers.ACCOUNT, null);
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("row mapping benchmark failed: " + e.getMessage());
+        }
+    }
+
+
+
+/**
+ * Converte tutte le righe {@code WARMUP + ROUNDS} volte e misura solo gli ultimi {@code ROUNDS} passaggi.
+ *
+ * @param object Il nome degli oggetti costruiti.
+ * @param name Il nome della modalità di conversione.
+ * @param rows Le righe da convertire.
+ * @param mapper Il RowMapper da preparare una volta per passaggio, oppure null.
+ * @param mapping La conversione di una riga da usare se il mapper è null.
+ * @throws SQLException Se la conversione di una riga non riesce.
+ */
+    private void measure(String object, String name, CachedRowSet rows, RowMapper<?> mapper, Mapping mapping) throws SQLException
+    {
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        double time = 0;
+        Object last = null;
+
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            rows.beforeFirst();
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            if(mapper != null) {
+                RowMapper<?> bound = mapper.bind(rows.getMetaData());
+                while(rows.next())
+                    last = bound.map(rows);
+            }
+            else {
+                while(rows.next())
+                    last = mapping.map(rows);
+            }
+
+            long end = System.nanoTime();
+            long endBytes = threads.getThreadAllocatedBytes(threadId);
+            if(round >= WARMUP) {
+                time += end - start;
+                allocated += endBytes - startBytes;
+            }
+        }
+
+        if(last == null)
+            throw new SQLException("no rows converted");
+
+        long rowsConverted = (long) ROWS * ROUNDS;
+        terminal.printInfoln(String.format("%-10s %-10s %14.0f %12d", object, name, BenchmarkStats.throughput(rowsConverted, time), allocated / rowsConverted));
+    }
+
+
+
+/**
+ * Crea un risultato in memoria con {@code ROWS} righe e le colonne delle tabelle indicate.
+ *
+ * @param tabelle Le tabelle del risultato, nell'ordine delle loro colonne.
+ * @return Le righe, con il cursore prima della prima riga.
+ * @throws SQLException Se non è possibile creare il risultato.
+ */
+    private static CachedRowSet createRows(Tabelle... tabelle) throws SQLException
+    {
+        int count = 0;
+        for (Tabelle tabella : tabelle)
+            count += PredefinedSQLCode.tablesAttributes.get(tabella).length;
+
+        Colonne[] columns = new Colonne[count];
+        int next = 0;
+        for (Tabelle tabella : tabelle) {
+            for (Colonne colonna : PredefinedSQLCode.tablesAttributes.get(tabella))
+                columns[next++] = colonna;
+        }
+
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(count);
+        for (int i = 0; i < count; i++) {
+            metaData.setColumnName(i + 1, columns[i].getName());
+            metaData.setColumnLabel(i + 1, columns[i].getName());
+            metaData.setColumnType(i + 1, sqlType(columns[i]));
+        }
+
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.setMetaData(metaData);
+        for (int row = 0; row < ROWS; row++) {
+            rows.moveToInsertRow();
+            for (int i = 0; i < count; i++) {
+                switch (sqlType(columns[i])) {
+                    case Types.BIGINT:
+                        rows.updateLong(i + 1, 180000L + row);
+                        break;
+                    case Types.INTEGER:
+                        rows.updateInt(i + 1, row % 100);
+                        break;
+                    default:
+                        rows.updateString(i + 1, columns[i].getName() + "-" + row);
+                }
+            }
+            rows.insertRow();
+            rows.moveToCurrentRow();
+        }
+        rows.beforeFirst();
+        return rows;
+    }
+
+
+
+    private static int sqlType(Colonne colonna)
+    {
+        switch (colonna) {
+            case DURATION:
+            case FOLLOWERS:
+                return Types.BIGINT;
+            case POPULARITY:
+            case ELEMENT:
+            case VALUE:
+            case CIVIC_NUMER:
+                return Types.INTEGER;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package server;
+
+import java.sql.SQLException;
+
+import database.CountCache;
+import database.DatabaseManager;
+import database.PooledConnection;
+import database.QueriesManager;
+import database.SearchEngine;
+import enumclass.SearchCountMode;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark delle ricerche che restituiscono una pagina e il numero totale di risultati.
+ *
+ * Esegue le ricerche sul database connesso con ogni modo di conteggio: la pagina e il conteggio con due query,
+ * la pagina con il totale in una sola query, il totale letto dalla cache e il totale stimato per le chiavi corte.
+ * Per ogni combinazione stampa la latenza e il numero di query eseguite da una richiesta.
+ * Al termine ripristina le impostazioni di conteggio del server.
+ */
+class SearchCountBenchmark
+{
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+    private static final int LIMIT = 50;
+    private static final String[] SEARCH_KEYS = {"a", "b", "c", "d", "e", "l", "m", "s", "t", "lo"};
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+    private interface Search {
+        Object[] execute(String key) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public SearchCountBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        SearchCountMode mode = database.getSearchCountMode();
+        int ttl = database.getCountCache().getTtl();
+        int approximatePrefix = database.getApproximateCountPrefix();
+        //i conteggi misurati sono quelli delle query SQL, non dell'indice in memoria
+        boolean memorySearch = SearchEngine.isEnabled();
+        SearchEngine.setEnabled(false);
+
+        terminal.printInfoln(String.format("%-14s %-12s %12s %12s %10s", "search", "count", "p50", "p99", "queries"));
+        try {
+            measureAll("songs", (key) -> QueriesManager.searchSong_and_countElement(key, LIMIT, 0, null, 0));
+            measureAll("emotions", (key) -> QueriesManager.searchSong_and_countElement(key, LIMIT, 0, null, 2));
+            measureAll("albums", (key) -> QueriesManager.searchAlbum(key, LIMIT, 0, null, 0));
+            measureAll("artists", (key) -> QueriesManager.searchArtists(key, LIMIT, 0, null, 0));
+        }
+        finally {
+            database.setSearchCountParametre(mode, ttl, approximatePrefix);
+            SearchEngine.setEnabled(memorySearch);
+        }
+    }
+
+
+
+    private void measureAll(String name, Search search)
+    {
+        measure(name, "separate", search, SearchCountMode.SEPARATE, 0, 0);
+        measure(name, "single pass", search, SearchCountMode.SINGLE_PASS, 0, 0);
+        measure(name, "cached", search, SearchCountMode.SINGLE_PASS, CountCache.DEFAULT_TTL, 0);
+        measure(name, "approximate", search, SearchCountMode.SINGLE_PASS, 0, 2);
+    }
+
+
+
+/**
+ * Esegue la ricerca {@code WARMUP} volte senza misurarla e poi {@code ITERATIONS} volte misurandone la latenza
+ * e contando le query eseguite.
+ *
+ * @param name Il nome della ricerca.
+ * @param count Il nome del modo di conteggio.
+ * @param search Esegue la ricerca con la chiave indicata.
+ * @param mode Il modo di conteggio da impostare.
+ * @param ttl La durata della cache dei conteggi, in secondi.
+ * @param approximatePrefix La lunghezza sotto la quale il totale viene stimato.
+ */
+    private void measure(String name, String count, Search search, SearchCountMode mode, int ttl, int approximatePrefix)
+    {
+        database.setSearchCountParametre(mode, ttl, approximatePrefix);
+        database.getCountCache().clear();
+
+        long[] latencies = new long[ITERATIONS];
+        long queries = 0;
+        try {
+            for (int i = 0; i < WARMUP; i++)
+                search.execute(SEARCH_KEYS[i % SEARCH_KEYS.length]);
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                try (PooledConnection connection = database.borrowConnection()) {
+                    long begin = System.nanoTime();
+                    search.execute(SEARCH_KEYS[i % SEARCH_KEYS.length]);
+                    latencies[i] = System.nanoTime() - begin;
+                    queries += connection.getQueryCount();
+                }
+            }
+
+            terminal.printInfoln(String.format("%-14s %-12s %12s %12s %10.1f",
+                name,
+                count,
+                TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, ITERATIONS, 50)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, ITERATIONS, 99)),
+                (double) queries / ITERATIONS));
+        }
+        catch (SQLException e) {
+            terminal.printErrorln(name + " " + count + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import database.DatabaseManager;
+import database.QueriesManager;
+import database.SearchEngine;
+import database.SearchIndex;
+import objects.Album;
+import objects.Artist;
+import objects.Song;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark della ricerca in memoria sul catalogo completo del database connesso.
+ *
+ * Costruisce gli indici del {@link SearchEngine} misurando il tempo e la memoria occupata, poi esegue le ricerche
+ * di canzoni, album e artisti con chiavi ricavate dai nomi del catalogo: prefissi di una, tre e cinque lettere,
+ * la prima parola intera e le prime due parole. Per ogni ricerca stampa la latenza mediana e il 99° percentile
+ * della sola ricerca nell'indice, del servizio completo con l'indice e del servizio con le query SQL.
+ * Al termine ripristina l'impostazione della ricerca in memoria.
+ */
+class SearchEngineBenchmark
+{
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+    private static final int LIMIT = 20;
+    private static final int SAMPLE = 50;
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+    private interface Search {
+        Object execute(String key) throws SQLException;
+    }
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public SearchEngineBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        boolean enabled = SearchEngine.isEnabled();
+        try {
+            SearchEngine.setEnabled(true);
+
+            Runtime runtime = Runtime.getRuntime();
+            SearchEngine.clear();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            int elements = SearchEngine.build();
+            long buildTime = System.nanoTime() - start;
+            System.gc();
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+            int[] sizes = SearchEngine.getSizes();
+            int[] words = SearchEngine.getWordCounts();
+            terminal.printInfoln(String.format("index built in %s: %d elements (%d songs, %d albums, %d artists), %d words, about %d MB",
+                TimeFormatter.formatTime(buildTime), elements, sizes[0], sizes[1], sizes[2], words[0] + words[1] + words[2],
+                Math.max(0, heapAfter - heapBefore) / (1024 * 1024)));
+
+            ArrayList<String> songNames = new ArrayList<>();
+            for (Song song : QueriesManager.getTopPopularSongs(SAMPLE, 0))
+                songNames.add(song.getTitle());
+            ArrayList<String> albumNames = new ArrayList<>();
+            for (Album album : QueriesManager.getRecentPublischedAlbum(SAMPLE, 0, 0))
+                albumNames.add(album.getName());
+            ArrayList<String> artistNames = new ArrayList<>();
+            @SuppressWarnings("unchecked")
+            ArrayList<Artist> artists = (ArrayList<Artist>) QueriesManager.searchArtists("", SAMPLE, 0, null, 0)[1];
+            for (Artist artist : artists)
+                artistNames.add(artist.getName());
+
+            terminal.printInfoln(String.format("%-8s %-7s %8s %10s %10s %10s %10s %10s %10s", "search", "key", "found", "index p50", "index p99", "memory p50", "memory p99", "sql p50", "sql p99"));
+            measureAll("songs", songNames,
+                (key) -> SearchEngine.searchSongs(key, LIMIT, 0, null),
+                (key) -> QueriesManager.searchSong_and_countElement(key, LIMIT, 0, null, 0));
+            measureAll("albums", albumNames,
+                (key) -> SearchEngine.searchAlbums(key, LIMIT, 0, null),
+                (key) -> QueriesManager.searchAlbum(key, LIMIT, 0, null, 0));
+            measureAll("artists", artistNames,
+                (key) -> SearchEngine.searchArtists(key, LIMIT, 0, null),
+                (key) -> QueriesManager.searchArtists(key, LIMIT, 0, null, 0));
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("search benchmark failed: " + e.getMessage());
+        }
+        finally {
+            SearchEngine.setEnabled(enabled);
+        }
+    }
+
+
+
+/**
+ * Misura una ricerca con le chiavi di ogni tipo ricavate dai nomi indicati.
+ *
+ * @param name Il nome della ricerca.
+ * @param names I nomi da cui ricavare le chiavi.
+ * @param index Esegue la ricerca solo nell'indice.
+ * @param service Esegue la ricerca del servizio, con l'indice o con SQL secondo l'impostazione corrente.
+ */
+    private void measureAll(String name, ArrayList<String> names, Search index, Search service)
+    {
+        if(names.isEmpty()) {
+            terminal.printErrorln("the database does not contain " + name);
+            return;
+        }
+
+        measure(name, "1 char", createKeys(names, 1, 0), index, service);
+        measure(name, "3 chars", createKeys(names, 3, 0), index, service);
+        measure(name, "5 chars", createKeys(names, 5, 0), index, service);
+        measure(name, "1 word", createKeys(names, 0, 1), index, service);
+        measure(name, "2 words", createKeys(names, 0, 2), index, service);
+    }
+
+
+
+/**
+ * Esegue le ricerche {@code WARMUP} volte senza misurarle e poi {@code ITERATIONS} volte misurandone la latenza,
+ * prima solo nell'indice, poi con il servizio che usa l'indice e infine con il servizio che usa SQL.
+ * La cache dei conteggi viene svuotata prima di ogni ricerca SQL, così ogni ricerca esegue il conteggio.
+ */
+    private void measure(String name, String keyType, String[] keys, Search index, Search service)
+    {
+        try {
+            long found = 0;
+            for (String key : keys)
+                found += ((SearchIndex.Hits) index.execute(key)).getTotal();
+
+            long[] indexLatencies = measure(keys, index, false);
+            long[] memoryLatencies = measure(keys, service, false);
+
+            SearchEngine.setEnabled(false);
+            long[] sqlLatencies;
+            try {
+                sqlLatencies = measure(keys, service, true);
+            }
+            finally {
+                SearchEngine.setEnabled(true);
+            }
+
+            terminal.printInfoln(String.format("%-8s %-7s %8d %10s %10s %10s %10s %10s %10s",
+                name,
+                keyType,
+                found / keys.length,
+                TimeFormatter.formatTime(BenchmarkStats.percentile(indexLatencies, ITERATIONS, 50)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(indexLatencies, ITERATIONS, 99)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(memoryLatencies, ITERATIONS, 50)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(memoryLatencies, ITERATIONS, 99)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(sqlLatencies, ITERATIONS, 50)),
+                TimeFormatter.formatTime(BenchmarkStats.percentile(sqlLatencies, ITERATIONS, 99))));
+        }
+        catch (SQLException e) {
+            terminal.printErrorln(name + " " + keyType + " failed: " + e.getMessage());
+        }
+    }
+
+
+
+    private long[] measure(String[] keys, Search search, boolean clearCounts) throws SQLException
+    {
+        long[] latencies = new long[ITERATIONS];
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            if(clearCounts)
+                database.getCountCache().clear();
+
+            long begin = System.nanoTime();
+            search.execute(keys[i % keys.length]);
+            if(i >= WARMUP)
+                latencies[i - WARMUP] = System.nanoTime() - begin;
+        }
+        return latencies;
+    }
+
+
+
+/**
+ * Ricava le chiavi di ricerca dai nomi: i primi caratteri del nome oppure le prime parole.
+ *
+ * @param names I nomi del catalogo.
+ * @param chars Il numero di caratteri da usare, 0 per usare le parole.
+ * @param words Il numero di parole da usare se chars è 0; i nomi con meno parole vengono scartati.
+ * @return Le chiavi, senza ripetizioni.
+ */
+    private static String[] createKeys(ArrayList<String> names, int chars, int words)
+    {
+        LinkedHashSet<String> keys = new LinkedHashSet<>();
+        for (String name : names) {
+            if(chars > 0) {
+                keys.add(name.substring(0, Math.min(chars, name.length())));
+                continue;
+            }
+
+            String[] parts = name.trim().split("\\s+");
+            if(parts.length >= words)
+                keys.add(String.join(" ", Arrays.copyOf(parts, words)));
+        }
+
+        //se nessun nome ha abbastanza parole si usano i nomi interi
+        if(keys.isEmpty())
+            keys.addAll(names);
+        return keys.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,151 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import database.DatabaseManager;
+import database.PooledConnection;
+import database.QueriesManager;
+import database.QueryTemplate;
+import database.RowMappers;
+import objects.Album;
+import objects.Artist;
+import objects.Song;
+import utility.BenchmarkStats;
+
+
+/**
+ * Test di durata delle query del server sul database connesso.
+ *
+ * Esegue a ciclo le richieste di lettura dei servizi per il tempo indicato e a ogni intervallo stampa la memoria
+ * occupata dopo una garbage collection, le risorse del driver rimaste aperte alla fine di ogni richiesta e il numero
+ * di query preparate da PostgreSQL sulla connessione. In un'esecuzione sana tutti e tre i valori restano costanti.
+ */
+class SoakBenchmark
+{
+    private static final long REPORT_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    private static final String[] SEARCH_KEYS = {"a", "b", "c", "d", "e", "l", "m", "s", "t", "lo"};
+    private static final int LIMIT = 20;
+
+    private Terminal terminal;
+    private DatabaseManager database;
+    private long duration;
+
+
+
+/**
+ * Costruisce il test.
+ *
+ * @param minutes La durata del test in minuti.
+ */
+    public SoakBenchmark(long minutes) {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+        this.duration = TimeUnit.MINUTES.toNanos(minutes);
+    }
+
+
+
+/**
+ * Esegue il test e stampa i risultati a ogni intervallo.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        ArrayList<Song> songs;
+        ArrayList<Album> albums;
+        ArrayList<Artist> artists;
+        try {
+            songs = QueriesManager.getTopPopularSongs(LIMIT, 0);
+            albums = QueriesManager.getRecentPublischedAlbum(LIMIT, 0, 0);
+            @SuppressWarnings("unchecked")
+            ArrayList<Artist> found = (ArrayList<Artist>) QueriesManager.searchArtists("", LIMIT, 0, null, 0)[1];
+            artists = found;
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("unable to read the test data: " + e.getMessage());
+            return;
+        }
+        if(songs.isEmpty() || albums.isEmpty() || artists.isEmpty()) {
+            terminal.printErrorln("the database does not contain songs, albums and artists");
+            return;
+        }
+
+        terminal.printInfoln(String.format("%-10s %12s %12s %12s %10s %10s", "elapsed", "requests", "request/s", "heap", "open", "prepared"));
+        report(0, 0, 0, 0, 0);
+
+        long start = System.nanoTime();
+        long nextReport = start + REPORT_INTERVAL;
+        long requests = 0;
+        long intervalRequests = 0;
+        int maxOpen = 0;
+        long prepared = 0;
+
+        while(System.nanoTime() - start < duration) {
+            int i = (int) (requests % 1000);
+            try (PooledConnection connection = database.borrowConnection()) {
+                String key = SEARCH_KEYS[i % SEARCH_KEYS.length];
+                Song song = songs.get(i % songs.size());
+
+                QueriesManager.getTopPopularSongs(LIMIT, (i % 10) * LIMIT);
+                QueriesManager.searchSong_and_countElement(key, LIMIT, 0, null, i % 3);
+                QueriesManager.searchAlbum(key, LIMIT, 0, null, 0);
+                QueriesManager.searchArtists(key, LIMIT, 0, null, 0);
+                QueriesManager.getAlbumByID(albums.get(i % albums.size()).getID());
+                QueriesManager.getAlbumSongs(song.getAlbumId());
+                QueriesManager.getArtistByID(artists.get(i % artists.size()).getID());
+                QueriesManager.getSongEmotion(song.getId());
+
+                maxOpen = Math.max(maxOpen, connection.getOpenResources());
+                if(requests % 100 == 0)
+                    prepared = database.querySingle(QueryTemplate.SERVER_PREPARED_STATEMENTS, RowMappers.COUNT);
+            }
+            catch (SQLException e) {
+                terminal.printErrorln("request failed: " + e.getMessage());
+                return;
+            }
+            requests++;
+            intervalRequests++;
+
+            long now = System.nanoTime();
+            if(now >= nextReport) {
+                report(now - start, requests, BenchmarkStats.throughput(intervalRequests, REPORT_INTERVAL + now - nextReport), maxOpen, prepared);
+                nextReport += REPORT_INTERVAL;
+                intervalRequests = 0;
+                maxOpen = 0;
+            }
+        }
+        report(System.nanoTime() - start, requests, 0, maxOpen, prepared);
+    }
+
+
+
+/**
+ * Stampa una riga dei risultati, misurando la memoria occupata dopo una garbage collection.
+ *
+ * @param elapsed Il tempo trascorso dall'inizio del test, in nanosecondi.
+ * @param requests Il numero di richieste eseguite dall'inizio del test.
+ * @param throughput Le richieste al secondo nell'ultimo intervallo.
+ * @param open Il massimo di risorse del driver rimaste aperte alla fine di una richiesta nell'ultimo intervallo.
+ * @param prepared Il numero di query preparate da PostgreSQL sulla connessione usata dal test.
+ */
+    private void report(long elapsed, long requests, double throughput, int open, long prepared)
+    {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+
+        terminal.printInfoln(String.format("%-10s %12d %12.0f %9d MB %10d %10d",
+            String.format("%.1f min", elapsed / 6e10),
+            requests,
+            throughput,
+            heap / (1024 * 1024),
+            open,
+            prepared));
+    }
+}
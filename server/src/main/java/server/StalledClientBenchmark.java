@@ -0,0 +1,164 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import enumclass.NetworkEngine;
+import enumclass.ServerServicesName;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark dell'isolamento delle scritture: per ogni motore di rete misura la latenza dei PING di un gruppo di client,
+ * prima da soli e poi mentre un altro client invia richieste senza mai leggere le risposte.
+ * Con le code di uscita per connessione la latenza dei client sani non deve cambiare
+ * e il client bloccato viene disconnesso quando la sua coda si riempie.
+ */
+class StalledClientBenchmark
+{
+    private static final int HEALTHY_CLIENTS = 16;
+    private static final long DURATION_MS = 2000;
+    private static final int MAX_SAMPLES_PER_CLIENT = 200000;
+    //lunghezza degli identificativi inviati dal client bloccato, per riempire in fretta i buffer del socket
+    private static final int STALLED_ID_LENGTH = 16384;
+
+    private Terminal terminal;
+    private int ioThreads;
+
+
+
+/**
+ * Costruisce il benchmark.
+ *
+ * @param ioThreads Il numero di thread di I/O da usare con il motore NIO.
+ */
+    public StalledClientBenchmark(int ioThreads) {
+        this.terminal = Terminal.getInstance();
+        this.ioThreads = ioThreads;
+    }
+
+
+
+/**
+ * Esegue il benchmark su tutti i motori di rete, con e senza il client bloccato.
+ */
+    public void run()
+    {
+        terminal.printInfoln(String.format("%-8s %8s %12s %12s %12s %14s %14s", "engine", "stalled", "p50", "p99", "max", "ping/s", "stalled sent"));
+
+        for (NetworkEngine engine : NetworkEngine.values()) {
+            for (boolean stalled : new boolean[] {false, true}) {
+                try {
+                    measure(engine, stalled);
+                }
+                catch (Exception e) {
+                    terminal.printErrorln(engine + (stalled ? " with" : " without") + " stalled client failed: " + e);
+                }
+            }
+        }
+    }
+
+
+
+/**
+ * Misura la latenza dei client sani per un motore di rete.
+ *
+ * @param engine Il motore di rete da misurare.
+ * @param stalled true per aggiungere il client che non legge le risposte.
+ * @throws Exception Se non è possibile avviare il server di prova.
+ */
+    private void measure(NetworkEngine engine, boolean stalled) throws Exception
+    {
+        ComunicationManager manager = new ComunicationManager(0, engine, ioThreads, new CommandsDispatcher());
+        manager.setConnectionLogging(false);
+        int port = manager.openEngine();
+
+        Thread acceptor = new Thread(manager::serveEngine, "Benchmark-" + engine);
+        acceptor.start();
+
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicLong stalledRequests = new AtomicLong(0);
+        final AtomicBoolean stalledDisconnected = new AtomicBoolean(false);
+        Thread flooder = null;
+
+        if(stalled) {
+            final BenchmarkClient stalledClient = new BenchmarkClient(port);
+            final String padding = "x".repeat(STALLED_ID_LENGTH);
+            flooder = new Thread(() -> {
+                try {
+                    while(!stop.get()) {
+                        stalledClient.send(stalledRequests.get() + padding, ServerServicesName.PING);
+                        stalledRequests.incrementAndGet();
+                    }
+                }
+                catch (IOException e) {
+                    stalledDisconnected.set(true);
+                }
+                stalledClient.close();
+            }, "Benchmark-Stalled");
+            flooder.setDaemon(true);
+            flooder.start();
+        }
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        final long[][] latencies = new long[HEALTHY_CLIENTS][MAX_SAMPLES_PER_CLIENT];
+        final int[] samples = new int[HEALTHY_CLIENTS];
+        final long deadline = System.nanoTime() + DURATION_MS * 1000000;
+
+        for (int c = 0; c < HEALTHY_CLIENTS; c++) {
+            final int index = c;
+            final BenchmarkClient client = new BenchmarkClient(port);
+            Thread thread = new Thread(() -> {
+                try {
+                    while(System.nanoTime() < deadline && samples[index] < MAX_SAMPLES_PER_CLIENT)
+                        latencies[index][samples[index]++] = client.ping();
+                }
+                catch (Exception e) {
+                    terminal.printErrorln("healthy client failed: " + e);
+                }
+                client.close();
+            }, "Benchmark-Client-" + c);
+            threads.add(thread);
+        }
+
+        double start = System.nanoTime();
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        double time = System.nanoTime() - start;
+
+        stop.set(true);
+        if(flooder != null)
+            flooder.join(1000);
+
+        manager.stopEngine();
+        acceptor.join();
+        manager.closeEngine();
+
+        int total = 0;
+        for (int count : samples)
+            total += count;
+
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < HEALTHY_CLIENTS; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, samples[c]);
+            offset += samples[c];
+        }
+
+        String stalledInfo = !stalled ? "-" : stalledRequests.get() + (stalledDisconnected.get() ? " (closed)" : "");
+
+        terminal.printInfoln(String.format("%-8s %8s %12s %12s %12s %14.0f %14s",
+            engine,
+            stalled ? "yes" : "no",
+            TimeFormatter.formatTime(BenchmarkStats.percentile(all, total, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(all, total, 99)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(all, total, 100)),
+            BenchmarkStats.throughput(total, time),
+            stalledInfo));
+    }
+}
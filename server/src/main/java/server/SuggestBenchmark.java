@@ -0,0 +1,140 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import database.DatabaseManager;
+import database.QueriesManager;
+import database.SearchEngine;
+import database.SuggestTrie;
+import objects.Album;
+import objects.Artist;
+import objects.Song;
+import utility.BenchmarkStats;
+import utility.TimeFormatter;
+
+
+/**
+ * Benchmark del trie dei suggerimenti sul catalogo completo del database connesso.
+ *
+ * Ricostruisce il trie misurando il tempo, la memoria occupata secondo l'heap e secondo la stima del trie,
+ * il numero di nomi e di nodi. Poi simula la scrittura dei nomi di canzoni, album e artisti popolari una lettera
+ * alla volta e per ogni lunghezza del prefisso stampa la latenza mediana, il 99° percentile e il massimo dei completamenti.
+ */
+class SuggestBenchmark
+{
+    private static final int SAMPLE = 200;
+    private static final int MAX_PREFIX = 8;
+    private static final int ROUNDS = 20;
+
+    private Terminal terminal;
+    private DatabaseManager database;
+
+
+
+/**
+ * Costruisce il benchmark.
+ */
+    public SuggestBenchmark() {
+        this.terminal = Terminal.getInstance();
+        this.database = DatabaseManager.getInstance();
+    }
+
+
+
+/**
+ * Esegue il benchmark e stampa i risultati.
+ */
+    public void run()
+    {
+        if(!database.isConnected()) {
+            terminal.printErrorln("the database is not connected");
+            return;
+        }
+
+        boolean enabled = SearchEngine.isEnabled();
+        try {
+            SearchEngine.setEnabled(true);
+
+            Runtime runtime = Runtime.getRuntime();
+            SearchEngine.buildSuggestions();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            SuggestTrie trie = SearchEngine.buildSuggestions();
+            long buildTime = System.nanoTime() - start;
+            System.gc();
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+            //il primo trie viene liberato mentre si costruisce il secondo, quindi la differenza dell'heap è quella del nuovo trie
+            terminal.printInfoln(String.format("trie built in %s: %d names, %d nodes, heap %.1f MB, estimate %.1f MB",
+                TimeFormatter.formatTime(buildTime), trie.size(), trie.getNodeCount(),
+                Math.max(0, heapAfter - heapBefore) / (1024.0 * 1024.0), trie.estimateBytes() / (1024.0 * 1024.0)));
+
+            ArrayList<String> names = new ArrayList<>();
+            for (Song song : QueriesManager.getTopPopularSongs(SAMPLE, 0))
+                names.add(song.getTitle());
+            for (Album album : QueriesManager.getRecentPublischedAlbum(SAMPLE, 0, 0))
+                names.add(album.getName());
+            @SuppressWarnings("unchecked")
+            ArrayList<Artist> artists = (ArrayList<Artist>) QueriesManager.searchArtists("", SAMPLE, 0, null, 0)[1];
+            for (Artist artist : artists)
+                names.add(artist.getName());
+            if(names.isEmpty()) {
+                terminal.printErrorln("the database does not contain songs, albums and artists");
+                return;
+            }
+
+            terminal.printInfoln(String.format("%-8s %8s %10s %10s %10s %8s", "prefix", "requests", "p50", "p99", "max", "found"));
+            for (int length = 1; length <= MAX_PREFIX; length++)
+                measure(names, length);
+        }
+        catch (SQLException e) {
+            terminal.printErrorln("suggest benchmark failed: " + e.getMessage());
+        }
+        finally {
+            SearchEngine.setEnabled(enabled);
+        }
+    }
+
+
+
+/**
+ * Chiede i completamenti dei primi length caratteri di ogni nome, {@code ROUNDS} volte, e stampa la latenza
+ * dell'ultimo giro, quando il codice è già stato compilato, e il numero medio di suggerimenti trovati.
+ */
+    private void measure(ArrayList<String> names, int length)
+    {
+        ArrayList<String> prefixes = new ArrayList<>();
+        for (String name : names) {
+            if(name != null && name.length() >= length)
+                prefixes.add(name.substring(0, length));
+        }
+        if(prefixes.isEmpty())
+            return;
+
+        long[] latencies = new long[prefixes.size()];
+        long found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            found = 0;
+            for (int i = 0; i < prefixes.size(); i++) {
+                long begin = System.nanoTime();
+                Object[] result = SearchEngine.suggest(prefixes.get(i), SuggestTrie.MAX_SUGGESTIONS);
+                latencies[i] = System.nanoTime() - begin;
+                found += ((String[]) result[0]).length;
+            }
+        }
+
+        long max = 0;
+        for (long latency : latencies)
+            max = Math.max(max, latency);
+
+        terminal.printInfoln(String.format("%-8d %8d %10s %10s %10s %8.1f",
+            length,
+            prefixes.size(),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, latencies.length, 50)),
+            TimeFormatter.formatTime(BenchmarkStats.percentile(latencies, latencies.length, 99)),
+            TimeFormatter.formatTime(max),
+            (double) found / prefixes.size()));
+    }
+}
@@ -1,5 +1,6 @@
 package server;
 
+import database.PredefinedSQLCode.Indici;
 import database.PredefinedSQLCode.Tabelle;
 import java.time.format.DateTimeFormatter;
 import utility.WaithingAnimationThread;
@@ -19,8 +20,19 @@ import java.util.HashMap;
 import java.util.Hashtable;
 
 import database.DatabaseManager;
+import database.IndexManager;
+import database.QueriesManager;
+import database.SearchEngine;
+import database.SuggestTrie;
+import database.FacetIndex;
+import database.IndexManager.IndexInfo;
+import enumclass.IndexState;
+import enumclass.FacetType;
 import java.awt.Desktop;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.Semaphore;
 import java.io.File;
@@ -232,7 +244,7 @@ public class Terminal extends Thread
         HELP(           "help      ", " Elenco dei comandi"),
         START(          "start     ", " Avvia il Server"),
         CLOSE(          "exit      ", " Termina l'applicazione"),
-        //BUILD_SERVER(   "init   ", " Inizilizza il database dell'applicazione"),
+        BUILD_SERVER(   "init      ", " Inizializza il database caricando il dataset di Spotify dai file CSV"),
         //CLEAR_DB(       "clear     ", " Cancella tutte le informazioni del database"),
         PRINT_SQL(      "sql       ", "  Mostra i codici SQL statici creati"),
         //SAVE(           "save", " Salva i settaggi della connessione con il DB"),
@@ -246,7 +258,12 @@ public class Terminal extends Thread
         IMPORT(         "import    ", " per importare i dati nel database tramite dei file CSV"),
 
         QUERY_DB_ON(    "edqp      ", " Abilita la scrittura delle query dinamiche"),
-        QUERY_DB_OFF(   "ddqp      ", " Disabilita la scrittura delle query dinamiche");
+        QUERY_DB_OFF(   "ddqp      ", " Disabilita la scrittura delle query dinamiche"),
+        BENCHMARK(      "bench     ", " Esegue un benchmark delle prestazioni del server"),
+        INDEX(          "index     ", " Crea, verifica o ricostruisce gli indici del database"),
+        EMOTIONS(       "emotions  ", " Ricalcola il riepilogo delle emozioni delle canzoni"),
+        SEARCH(         "search    ", " Ricostruisce l'indice della ricerca in memoria"),
+        STATS(          "stats     ", " Mostra i contatori del server (anche mentre è in esecuzione)");
         //SQL_TERMINAL("makequery", " Apre la console SQL");
 
         public final String value;
@@ -385,7 +402,15 @@ public class Terminal extends Thread
                     //do {
                         if(main.isDatabaseConnected()) {
                             main.runServer();
-                            System.console().readLine();
+
+                            //mentre il server è attivo "stats" mostra i contatori, ENTER ferma il server
+                            String line;
+                            while((line = System.console().readLine()) != null && !line.isBlank()) {
+                                if(line.trim().equalsIgnoreCase(Command.STATS.getCommandValue()))
+                                    main.printServerStatistics();
+                                else
+                                    printInfoln("type \"" + Command.STATS.getCommandValue() + "\" to see the server counters or press ENTER to stop the server");
+                            }
                             main.StopServer();
                             setAddTime(false);
                             //break;
@@ -400,9 +425,14 @@ public class Terminal extends Thread
                 else if(command.equalsIgnoreCase(Command.CLOSE.getCommandValue())) {
                     main.exit();
                 }
-                // else if(command.equalsIgnoreCase(Command.BUILD_SERVER.getCommandValue())) {
-                //     initializeDatabase();
-                // }
+                else if(command.equalsIgnoreCase(Command.BUILD_SERVER.getCommandValue())) {
+                    if(main.isDatabaseConnected()) {
+                        initializeDatabase();
+                    }
+                    else {
+                        printErrorln("The database is not connected");
+                    }
+                }
                 // else if(command.equalsIgnoreCase(Command.CLEAR_DB.getCommandValue())) {
 
                 //     if(main.isDatabaseConnected()) {
@@ -497,6 +527,38 @@ public class Terminal extends Thread
                 else if(command.equalsIgnoreCase(Command.QUERY_DB_OFF.getCommandValue())) {
                     QueryBuilder.setQueryDebug(false);
                 }
+                else if(command.equalsIgnoreCase(Command.BENCHMARK.getCommandValue())) {
+                    runBenchmark();
+                }
+                else if(command.equalsIgnoreCase(Command.STATS.getCommandValue())) {
+                    main.printServerStatistics();
+                }
+                else if(command.equalsIgnoreCase(Command.EMOTIONS.getCommandValue())) {
+                    if(main.isDatabaseConnected()) {
+                        printInfoln("Rebuilding the emotion summaries...");
+                        int songs = QueriesManager.rebuildEmotionSummaries();
+                        printSuccesln("emotion summaries rebuilt for " + songs + " songs");
+                    }
+                    else {
+                        printErrorln("The database is not connected");
+                    }
+                }
+                else if(command.equalsIgnoreCase(Command.SEARCH.getCommandValue())) {
+                    if(main.isDatabaseConnected()) {
+                        rebuildSearchIndex();
+                    }
+                    else {
+                        printErrorln("The database is not connected");
+                    }
+                }
+                else if(command.equalsIgnoreCase(Command.INDEX.getCommandValue())) {
+                    if(main.isDatabaseConnected()) {
+                        manageIndexes();
+                    }
+                    else {
+                        printErrorln("The database is not connected");
+                    }
+                }
                 else if( !(command.equals("\n")||command.equals("\r")||command.equals("\n\r")||command.equals("\r\n"))) {
                    printErrorln("Unknown command \"" + Color.CYAN_BOLD_BRIGHT + command + Color.RESET + "\""); 
                 }
@@ -557,6 +619,8 @@ public class Terminal extends Thread
         HashMap<String, File> fileToLoad = new HashMap<>();
 
         for (PredefinedSQLCode.Tabelle table : PredefinedSQLCode.Tabelle.values()) {
+            if(table.isDerived())
+                continue;
             String tableName = table.toString();
             filesName.put(tableName.toLowerCase(), 0);
          }
@@ -641,6 +705,10 @@ public class Terminal extends Thread
 
         for (PredefinedSQLCode.Tabelle table : PredefinedSQLCode.Tabelle.values()) 
         {
+            //le tabelle derivate vengono ricalcolate alla fine dell'importazione
+            if(table.isDerived())
+                continue;
+
             String tableName = table.toString();
             
             File file = fileToLoad.get(tableName.toLowerCase());
@@ -677,6 +745,27 @@ public class Terminal extends Thread
             }
         }
 
+        try {
+            printInfoln("Rebuilding the emotion summaries");
+            QueriesManager.rebuildEmotionSummaries();
+        }
+        catch (SQLException e) {
+            printErrorln(Color.RED_BOLD_BRIGHT + e.toString() + Color.RESET);
+            success = false;
+        }
+
+        //l'importazione sostituisce il catalogo: l'indice di ricerca va costruito da capo
+        if(SearchEngine.isEnabled()) {
+            try {
+                printInfoln("Rebuilding the search index");
+                SearchEngine.build();
+            }
+            catch (SQLException e) {
+                printErrorln(Color.RED_BOLD_BRIGHT + e.toString() + Color.RESET);
+                success = false;
+            }
+        }
+
         if(success) {
             printSuccesln(Color.GREEN_BOLD_BRIGHT + "Database successfully imported".toUpperCase() + Color.RESET);
         }
@@ -731,6 +820,9 @@ public class Terminal extends Thread
         
         for (PredefinedSQLCode.Tabelle table : PredefinedSQLCode.Tabelle.values()) 
         {
+            if(table.isDerived())
+                continue;
+
             String tableName = table.toString();
             String path = OS_utility.formatPath(output.getAbsolutePath() + "\\" + tableName + ".csv");
             String query = QueryBuilder.exportQuery(tableName, path);
@@ -761,6 +853,193 @@ public class Terminal extends Thread
 
 
 
+/**
+ * Chiede all'utente quale benchmark eseguire e lo avvia.
+ * I benchmark usano server e client locali e non richiedono che il server sia avviato.
+ *
+ * @throws IOException se si verifica un errore durante la lettura dell'input.
+ */
+    private void runBenchmark() throws IOException 
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+        println("Available benchmarks:");
+        println("  net   - scalabilita' delle connessioni (thread per connessione vs NIO)");
+        println("  stall - latenza dei client quando un altro client smette di leggere le risposte");
+        println("  proto - protocollo binario contro serializzazione Java (byte per messaggio e velocita')");
+        println("  sql   - query costruite come testo contro query preparate sul database connesso");
+        println("  n1    - numero di query eseguite dalle richieste che restituiscono pagine con immagini");
+        println("  id    - generazione di ID univoci con piu' thread");
+        println("  soak  - richieste ripetute per molti minuti controllando memoria e risorse del database");
+        println("  rows  - conversione delle righe in oggetti per posizione contro HashMap per riga");
+        println("  count - ricerche con il totale contato a parte, nella stessa query, dalla cache o stimato");
+        println("  index - latenza di ogni servizio senza e con gli indici del catalogo");
+        println("  search - latenza delle ricerche con l'indice in memoria contro le query SQL");
+        println("  fuzzy - pertinenza e latenza della ricerca approssimata con chiavi che contengono errori");
+        println("  suggest - memoria del trie dei suggerimenti e latenza dei completamenti");
+        println("  facet - memoria degli insiemi della ricerca a faccette e velocita' delle intersezioni");
+        println("  emo   - byte inviati per mostrare le emozioni di una canzone con 10000 voti, lista completa contro riepilogo");
+        println("Benchmark name:");
+        printArrow();
+        String name = in.readLine().trim();
+
+        if(name.equalsIgnoreCase("net")) {
+            println("Clients per step (default 100,500,1000,2000):");
+            printArrow();
+            String steps = in.readLine().trim();
+            int[] connectionSteps = new int[]{100, 500, 1000, 2000};
+
+            if(!steps.isEmpty()) {
+                String[] values = steps.split(",");
+                connectionSteps = new int[values.length];
+                for (int i = 0; i < values.length; i++)
+                    connectionSteps[i] = Integer.parseInt(values[i].trim());
+            }
+
+            new ConnectionScalingBenchmark(connectionSteps, main.getNioIoThreads()).run();
+        }
+        else if(name.equalsIgnoreCase("stall")) {
+            new StalledClientBenchmark(main.getNioIoThreads()).run();
+        }
+        else if(name.equalsIgnoreCase("proto")) {
+            new ProtocolBenchmark(main.getNioIoThreads()).run();
+        }
+        else if(name.equalsIgnoreCase("sql")) {
+            new QueryBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("n1")) {
+            new QueryCountBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("id")) {
+            new IdGeneratorBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("soak")) {
+            println("Duration in minutes (default 60):");
+            printArrow();
+            String minutes = in.readLine().trim();
+            new SoakBenchmark(minutes.isEmpty() ? 60 : Long.parseLong(minutes)).run();
+        }
+        else if(name.equalsIgnoreCase("rows")) {
+            new RowMappingBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("count")) {
+            new SearchCountBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("search")) {
+            new SearchEngineBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("fuzzy")) {
+            new FuzzySearchBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("suggest")) {
+            new SuggestBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("facet")) {
+            new FacetBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("emo")) {
+            new EmotionPayloadBenchmark().run();
+        }
+        else if(name.equalsIgnoreCase("index")) {
+            String ask = "The catalog indexes will be dropped and created again. Do you want to proceed ?";
+
+            if(askYesNo(ask))
+                new IndexBenchmark().run();
+            else
+                printInfoln("operation cancelled");
+        }
+        else {
+            printErrorln("Unknown benchmark \"" + Color.CYAN_BOLD_BRIGHT + name + Color.RESET + "\"");
+        }
+    }
+
+
+
+/**
+ * Ricostruisce l'indice della ricerca in memoria e stampa il numero di elementi e di parole indicizzati,
+ * le dimensioni del trie dei suggerimenti e dell'indice a faccette.
+ *
+ * @throws SQLException se si verifica un errore durante la lettura del catalogo.
+ */
+    private void rebuildSearchIndex() throws SQLException
+    {
+        if(!SearchEngine.isEnabled()) {
+            printErrorln("The memory search is disabled in the settings");
+            return;
+        }
+
+        printInfoln("Rebuilding the search index...");
+        long start = System.nanoTime();
+        SearchEngine.build();
+
+        int[] sizes = SearchEngine.getSizes();
+        int[] words = SearchEngine.getWordCounts();
+        printSuccesln(String.format("search index rebuilt in %d ms: %d songs, %d albums, %d artists, %d words",
+            (System.nanoTime() - start) / 1000000, sizes[0], sizes[1], sizes[2], words[0] + words[1] + words[2]));
+
+        SuggestTrie suggestions = SearchEngine.getSuggestions();
+        if(suggestions != null)
+            printInfoln(String.format("suggestions: %d names, %d nodes, about %d MB", suggestions.size(), suggestions.getNodeCount(), suggestions.estimateBytes() / (1024 * 1024)));
+
+        FacetIndex facets = SearchEngine.getFacets();
+        if(facets != null) {
+            EnumMap<FacetType, Integer> values = facets.getValueCounts();
+            printInfoln(String.format("facets: %d songs, %d years, %d genres, %d popularity ranges, %d emotions, about %d MB", facets.size(),
+                values.get(FacetType.YEAR), values.get(FacetType.GENRE), values.get(FacetType.POPULARITY), values.get(FacetType.EMOTION), facets.estimateBytes() / (1024 * 1024)));
+        }
+    }
+
+
+
+/**
+ * Chiede all'utente quale operazione eseguire sugli indici del catalogo e la esegue.
+ * "verify" stampa lo stato, la dimensione e il numero di letture di ogni indice;
+ * "create" crea gli indici mancanti e "rebuild" elimina e crea di nuovo tutti gli indici.
+ *
+ * @throws IOException se si verifica un errore durante la lettura dell'input.
+ * @throws SQLException se si verifica un errore durante l'operazione sul database.
+ */
+    private void manageIndexes() throws IOException, SQLException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+        println("Operation (create, verify, rebuild):");
+        printArrow();
+        String operation = in.readLine().trim();
+
+        if(operation.equalsIgnoreCase("verify")) {
+            println(String.format("%-34s %-16s %-8s %10s %12s", "index", "table", "state", "size KB", "scans"));
+            for (Map.Entry<Indici, IndexInfo> entry : IndexManager.verifyIndexes().entrySet()) {
+                IndexInfo info = entry.getValue();
+                String line = String.format("%-34s %-16s %-8s %10d %12d", entry.getKey(), entry.getKey().getTable(), info.getState(), info.getSize() / 1024, info.getScans());
+
+                if(info.getState() == IndexState.VALID)
+                    printInfoln(line);
+                else
+                    printErrorln(line);
+            }
+            return;
+        }
+
+        ArrayList<Indici> skipped;
+        if(operation.equalsIgnoreCase("create")) {
+            skipped = IndexManager.createIndexes();
+        }
+        else if(operation.equalsIgnoreCase("rebuild")) {
+            skipped = IndexManager.rebuildIndexes();
+        }
+        else {
+            printErrorln("Unknown operation \"" + Color.CYAN_BOLD_BRIGHT + operation + Color.RESET + "\"");
+            return;
+        }
+
+        for (Indici indice : skipped)
+            printErrorln("Index " + indice + " skipped: the extension " + indice.getExtension() + " is not available");
+        printSuccesln("indexes " + operation.toLowerCase() + " completed");
+    }
+
+
+
 /**
  * Imposta la modalità di aggiunta del tempo.
  *
@@ -904,7 +1183,15 @@ public class Terminal extends Thread
  * @throws SQLException Se si verifica un errore SQL durante l'operazione.
  */
     private int initializeDatabase() throws IOException, SQLException {
-        return Loader.getInstance().loadApplicationData();
+        int result = Loader.getInstance().loadApplicationData();
+
+        //il catalogo è cambiato: i risultati salvati dal server non sono più validi
+        App.getInstance().clearServerCache();
+        if(SearchEngine.isEnabled()) {
+            printInfoln("Updating the search index...");
+            printSuccesln(SearchEngine.update() + " elements added to the search index");
+        }
+        return result;
     }
 
     
@@ -0,0 +1,41 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * Questa classe fornisce metodi statici per riassumere le misure raccolte durante i benchmark del server.
+ */
+public class BenchmarkStats {
+
+    /**
+     * Calcola il percentile richiesto sui primi {@code count} valori dell'array.
+     * L'array viene ordinato sul posto.
+     *
+     * @param values  I valori misurati (ad esempio le latenze in nanosecondi).
+     * @param count   Il numero di valori validi presenti nell'array.
+     * @param percent Il percentile da calcolare, compreso tra 0 e 100.
+     * @return Il valore del percentile, 0 se non ci sono valori.
+     */
+    public static long percentile(long[] values, int count, double percent) {
+        if (count <= 0) {
+            return 0;
+        }
+        Arrays.sort(values, 0, count);
+        int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+        return values[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Calcola il numero di operazioni al secondo.
+     *
+     * @param operations Il numero di operazioni eseguite.
+     * @param nanoSeconds Il tempo impiegato in nanosecondi.
+     * @return Le operazioni al secondo.
+     */
+    public static double throughput(long operations, double nanoSeconds) {
+        if (nanoSeconds <= 0) {
+            return 0;
+        }
+        return operations / (nanoSeconds / 1e9);
+    }
+}
@@ -0,0 +1,139 @@
+package utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Questa classe genera ID univoci e ordinati nel tempo, utilizzabili da più thread contemporaneamente senza lock.
+ *
+ * Ogni ID è un numero a 64 bit composto da 41 bit di millisecondi trascorsi da {@link #EPOCH}, 10 bit con l'ID del nodo
+ * e 12 bit di sequenza, quindi ogni nodo può generare 4096 ID per millisecondo. Se la sequenza di un millisecondo
+ * si esaurisce, o se l'orologio torna indietro, il generatore prosegue dal valore successivo all'ultimo ID emesso:
+ * gli ID restano sempre crescenti e non si attende mai.
+ *
+ * Il generatore ricorda solo gli ID emessi dal processo: all'avvio va fatto proseguire dopo l'ultimo ID salvato
+ * con {@link #advancePast(long)}, altrimenti un riavvio rapido o un orologio spostato indietro potrebbero
+ * ripetere ID già usati.
+ *
+ * L'ID viene restituito come stringa esadecimale di lunghezza fissa, così l'ordine alfabetico coincide con l'ordine
+ * di creazione e l'ID rientra nelle colonne VARCHAR(64) che contenevano gli hash SHA-256.
+ */
+public class IdGenerator {
+
+    //il 1 gennaio 2024 in millisecondi: i 41 bit del tempo bastano per circa 69 anni da questa data
+    public static final long EPOCH = 1704067200000L;
+    public static final int MAX_NODE_ID = 1023;
+    //lunghezza degli ID testuali
+    public static final int ID_LENGTH = 16;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    //millisecondi e sequenza dell'ultimo ID emesso, nella forma (tempo << SEQUENCE_BITS) | sequenza
+    private static final AtomicLong last = new AtomicLong(0);
+    private static volatile long node = 0;
+
+
+
+/**
+ * Imposta l'ID del nodo, che distingue gli ID generati da server diversi collegati allo stesso database.
+ *
+ * @param nodeId L'ID del nodo, compreso tra 0 e {@link #MAX_NODE_ID}.
+ * @throws IllegalArgumentException Se l'ID del nodo non è compreso nell'intervallo.
+ */
+    public static void setNodeId(int nodeId)
+    {
+        if(nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        node = nodeId;
+    }
+
+/**
+ * @return L'ID del nodo usato nei nuovi ID.
+ */
+    public static int getNodeId() {
+        return (int) node;
+    }
+
+
+
+/**
+ * Fa proseguire il generatore dopo un ID già emesso, anche da un altro nodo: gli ID generati in seguito
+ * saranno maggiori, anche se l'orologio non ha ancora raggiunto l'istante di quell'ID.
+ *
+ * @param id L'ID numerico, ad esempio il più grande salvato nel database.
+ */
+    public static void advancePast(long id)
+    {
+        long issued = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        last.accumulateAndGet(issued, Math::max);
+    }
+
+
+
+/**
+ * Genera un nuovo ID numerico, maggiore di tutti quelli generati in precedenza dal processo
+ * e di quello indicato con {@link #advancePast(long)}.
+ *
+ * @return Il nuovo ID.
+ */
+    public static long nextLong()
+    {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            next = Math.max(now, prev + 1);
+        } while(!last.compareAndSet(prev, next));
+
+        long time = next >>> SEQUENCE_BITS;
+        return (time << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+/**
+ * Genera un nuovo ID come stringa esadecimale di {@link #ID_LENGTH} caratteri.
+ *
+ * @return Il nuovo ID.
+ */
+    public static String nextId() {
+        return toString(nextLong());
+    }
+
+
+
+/**
+ * Converte un ID numerico nella sua forma testuale.
+ *
+ * @param id L'ID numerico.
+ * @return L'ID come stringa esadecimale di {@link #ID_LENGTH} caratteri, con gli zeri iniziali.
+ */
+    public static String toString(long id) {
+        String hex = Long.toHexString(id);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+/**
+ * Converte la forma testuale di un ID nell'ID numerico.
+ *
+ * @param id L'ID restituito da {@link #nextId()}.
+ * @return L'ID numerico.
+ * @throws NumberFormatException Se la stringa non è un ID generato da questa classe.
+ */
+    public static long parse(String id)
+    {
+        if(id.length() != ID_LENGTH)
+            throw new NumberFormatException("not a generated id: " + id);
+        return Long.parseUnsignedLong(id, 16);
+    }
+
+/**
+ * Restituisce l'istante in cui è stato generato un ID.
+ *
+ * @param id L'ID numerico.
+ * @return L'istante di generazione in millisecondi dal 1 gennaio 1970.
+ */
+    public static long getTimestamp(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+}